@@ -7,8 +7,6 @@ import android.content.pm.PackageManager;
 import android.graphics.Color;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 import android.widget.Button;
 import android.widget.TextView;
@@ -101,11 +99,9 @@ public class MainActivity extends AppCompatActivity {
                 mConnectionStatusTextViewLeft.setText(
                         String.format("%s：機器に接続されました", bluetoothDevice.getName()));
                 // インソール用のリアルタイムモードに設定
-                // 2秒〜3秒ほど遅延させないとうまく書き込めない
+                // 接続時の設定が終わってから順番に書き込まれる
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-                    new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                        mOrpheLeft.setSensorRequestMode(OrpheSensorRequestMode.realtimeForInsole);
-                    }, 2000);
+                    mOrpheLeft.setSensorRequestMode(OrpheSensorRequestMode.realtimeForInsole);
                 }
             }
         }
@@ -168,11 +164,9 @@ public class MainActivity extends AppCompatActivity {
                 mConnectionStatusTextViewRight.setText(
                         String.format("%s：機器に接続されました", bluetoothDevice.getName()));
                 // インソール用のリアルタイムモードに設定
-                // 2秒〜3秒ほど遅延させないとうまく書き込めない
+                // 接続時の設定が終わってから順番に書き込まれる
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-                    new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                        mOrpheRight.setSensorRequestMode(OrpheSensorRequestMode.realtimeForInsole);
-                    }, 2000);
+                    mOrpheRight.setSensorRequestMode(OrpheSensorRequestMode.realtimeForInsole);
                 }
             }
         }
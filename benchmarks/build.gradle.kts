@@ -0,0 +1,36 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+// デコーダーはAndroidの機能を使わないため、SDKのコンパイル済みのクラスをJVMでそのまま計測する
+evaluationDependsOn(":orphecoresdk")
+
+val sdkProject = project(":orphecoresdk")
+val sdkJavaCompile = sdkProject.tasks.named<JavaCompile>("compileReleaseJavaWithJavac")
+
+// android.os.Buildの定数などを参照するために、SDKと同じcompileSdkのandroid.jarをコンパイル時だけ使う
+val androidJar = sdkProject.extensions.getByType<com.android.build.gradle.LibraryExtension>().let { android ->
+    android.sdkDirectory.resolve("platforms/${android.compileSdkVersion}/android.jar")
+}
+
+dependencies {
+    compileOnly(files(androidJar))
+    implementation(files(sdkJavaCompile.flatMap { it.destinationDirectory }).builtBy(sdkJavaCompile))
+    implementation(libs.annotation)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    // gc.alloc.rate.normで1回あたりの確保バイト数を出力する
+    profilers.add("gc")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+}
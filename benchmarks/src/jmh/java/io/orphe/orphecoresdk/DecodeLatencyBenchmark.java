@@ -0,0 +1,117 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Notifyを受け取ってからコールバックが呼ばれるまでの遅延の計測。
+ * [OrpheDecodeMode]の2つの設定を、描画などでメインスレッドが一定の割合で塞がっている状態で比較します。
+ * メインスレッドは1つのスレッドの[ExecutorService]で、16msごとに[mainThreadBusyMillis]の間処理を行います。
+ * [callbackOnMainThread]がfalseの場合は、専用のスレッドでデコードしたあとそのスレッドでコールバックを呼び出します。
+ * 1回の計測は1パケットをNotifyしてからコールバックが呼ばれるまでで、p50やp99はSampleTimeの結果で確認できます。
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DecodeLatencyBenchmark {
+    private static final int PACKET_COUNT = 64;
+    private static final long FRAME_MILLIS = 16;
+
+    @Param({"mainThread", "pipelineThread"})
+    public OrpheDecodeMode decodeMode;
+
+    @Param({"0", "8"})
+    public int mainThreadBusyMillis;
+
+    @Param({"true", "false"})
+    public boolean callbackOnMainThread;
+
+    private final byte[][] mPackets = new byte[PACKET_COUNT][];
+    private final AtomicLong mDelivered = new AtomicLong();
+    private ExecutorService mMainThread;
+    private ExecutorService mPipelineThread;
+    private ScheduledExecutorService mFrameTimer;
+    private OrpheNotificationPipeline<OrpheSensorSample> mPipeline;
+    private int mNext;
+    private long mSent;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(54, 1);
+        final int[] count = {0};
+        simulator.setSink(value -> mPackets[count[0]++] = value.clone());
+        simulator.emit(PACKET_COUNT);
+
+        mMainThread = Executors.newSingleThreadExecutor();
+        mPipelineThread = Executors.newSingleThreadExecutor();
+        mFrameTimer = Executors.newSingleThreadScheduledExecutor();
+        if (mainThreadBusyMillis > 0) {
+            final long busyNanos = TimeUnit.MILLISECONDS.toNanos(mainThreadBusyMillis);
+            mFrameTimer.scheduleAtFixedRate(() -> mMainThread.execute(() -> {
+                final long end = System.nanoTime() + busyNanos;
+                while (System.nanoTime() < end) {
+                    // 描画などの処理の代わり
+                }
+            }), 0, FRAME_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        final OrpheDeviceClock clock = new OrpheDeviceClock();
+        mPipeline = new OrpheNotificationPipeline<>(
+                value -> OrpheSensorSample.fromBytes(value, OrpheSidePosition.leftPlantar,
+                        OrpheAccRange.range16, OrpheGyroRange.range2000, clock),
+                new OrpheNotificationPipeline.Listener<OrpheSensorSample>() {
+                    @Override
+                    public void onCurrentSerialNumber(int serialNumber) {
+                    }
+
+                    @Override
+                    public void onValueNotFound(int serialNumber, int length) {
+                    }
+
+                    @Override
+                    public void onValues(@NonNull OrpheSensorSample[] values) {
+                        mDelivered.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onRequestValues(@NonNull OrpheValueRequest[] requests) {
+                    }
+                },
+                // Orphe.setDecodeModeと同じく、メインスレッドでデコードする場合はそのまま呼び出す
+                decodeMode == OrpheDecodeMode.pipelineThread ? mPipelineThread : mMainThread,
+                decodeMode == OrpheDecodeMode.pipelineThread && callbackOnMainThread ? mMainThread : null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mFrameTimer.shutdownNow();
+        mPipelineThread.shutdownNow();
+        mMainThread.shutdownNow();
+    }
+
+    @Benchmark
+    public long notifyToCallback() {
+        mNext = (mNext + 1) % PACKET_COUNT;
+        mPipeline.onNotified(mPackets[mNext]);
+        mSent++;
+        while (mDelivered.get() < mSent) {
+            // コールバックが呼ばれるまで待つ
+        }
+        return mSent;
+    }
+}
@@ -0,0 +1,113 @@
+package io.orphe.orphecoresdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生データのデコーダーの計測。
+ * [OrpheDeviceSimulator]で生成したパケットを順番にデコードします。
+ * 1回あたりの確保バイト数はgcプロファイラーのgc.alloc.rate.normで確認できます。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PacketDecoderBenchmark {
+    /// 同じパケットばかりにならないように用意するパケットの数
+    private static final int PACKET_COUNT = 64;
+
+    @State(Scope.Thread)
+    public static class CorePackets {
+        @Param({"50", "54"})
+        public int packetType;
+
+        final byte[][] packets = new byte[PACKET_COUNT][];
+        final SensorFrameBatch batch = new SensorFrameBatch(SensorFrameBatch.MAX_SAMPLES_PER_PACKET);
+        final OrpheDeviceClock clock = new OrpheDeviceClock();
+        int next;
+
+        @Setup
+        public void setup() {
+            generate(packetType, packets);
+            clock.observe(OrpheDeviceClock.timeOfDayMillis(packets[0]), System.nanoTime());
+        }
+
+        byte[] next() {
+            next = (next + 1) % PACKET_COUNT;
+            return packets[next];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class InsolePackets {
+        @Param({"54", "55", "56"})
+        public int packetType;
+
+        final byte[][] packets = new byte[PACKET_COUNT][];
+        final SensorFrameBatch batch = new SensorFrameBatch(SensorFrameBatch.MAX_SAMPLES_PER_PACKET);
+        final OrpheDeviceClock clock = new OrpheDeviceClock();
+        int next;
+
+        @Setup
+        public void setup() {
+            generate(packetType, packets);
+            clock.observe(OrpheDeviceClock.timeOfDayMillis(packets[0]), System.nanoTime());
+        }
+
+        byte[] next() {
+            next = (next + 1) % PACKET_COUNT;
+            return packets[next];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DeviceInfoPackets {
+        /// バッテリー、取り付け位置、記録モード、自動記録、LED、予約、記録時間、加速度レンジ、ジャイロレンジ
+        final byte[] packet = {2, 1, 0, 1, 2, 0, 0, 30, 3, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    }
+
+    private static void generate(int packetType, byte[][] packets) {
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(packetType, 1);
+        final int[] count = {0};
+        simulator.setSink(value -> packets[count[0]++] = value.clone());
+        simulator.emit(packets.length);
+    }
+
+    @Benchmark
+    public OrpheSensorValue[] sensorValueFromBytes(CorePackets state) throws Exception {
+        return OrpheSensorValue.fromBytes(state.next(), OrpheSidePosition.leftInstep, OrpheAccRange.range16, OrpheGyroRange.range2000, state.clock);
+    }
+
+    @Benchmark
+    public OrpheSensorSample[] sensorSampleFromBytes(CorePackets state) {
+        return OrpheSensorSample.fromBytes(state.next(), OrpheSidePosition.leftInstep, OrpheAccRange.range16, OrpheGyroRange.range2000, state.clock);
+    }
+
+    @Benchmark
+    public int sensorValueIntoBatch(CorePackets state) {
+        state.batch.clear();
+        return OrpheSensorValue.fromBytes(state.next(), OrpheAccRange.range16, OrpheGyroRange.range2000, state.batch);
+    }
+
+    @Benchmark
+    public OrpheInsoleValue[] insoleValueFromBytes(InsolePackets state) throws Exception {
+        return OrpheInsoleValue.fromBytes(state.next(), OrpheSidePosition.leftPlantar, OrpheAccRange.range16, OrpheGyroRange.range2000, state.clock);
+    }
+
+    @Benchmark
+    public int insoleValueIntoBatch(InsolePackets state) {
+        state.batch.clear();
+        return OrpheInsoleValue.fromBytes(state.next(), OrpheAccRange.range16, OrpheGyroRange.range2000, state.batch);
+    }
+
+    @Benchmark
+    public DeviceInfoValue deviceInfoFromBytes(DeviceInfoPackets state) throws Exception {
+        return DeviceInfoValue.fromBytes(state.packet);
+    }
+}
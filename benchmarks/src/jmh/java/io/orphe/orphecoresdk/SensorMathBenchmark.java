@@ -0,0 +1,86 @@
+package io.orphe.orphecoresdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * デコード時に1サンプルごとに行う計算の計測。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SensorMathBenchmark {
+    private static final int SAMPLE_COUNT = 256;
+
+    private final double[] mQuaternions = new double[SAMPLE_COUNT * 4];
+    private final double[] mMilliVolts = new double[SAMPLE_COUNT];
+    private final int[] mCodes = new int[SAMPLE_COUNT];
+    private int mNext;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(1);
+        for (int i = 0; i < SAMPLE_COUNT; i++) {
+            // 正規化した四元数
+            final double w = random.nextGaussian();
+            final double x = random.nextGaussian();
+            final double y = random.nextGaussian();
+            final double z = random.nextGaussian();
+            final double norm = Math.sqrt(w * w + x * x + y * y + z * z);
+            mQuaternions[i * 4] = w / norm;
+            mQuaternions[i * 4 + 1] = x / norm;
+            mQuaternions[i * 4 + 2] = y / norm;
+            mQuaternions[i * 4 + 3] = z / norm;
+            mCodes[i] = random.nextInt(4096);
+            mMilliVolts[i] = mCodes[i];
+        }
+    }
+
+    private int next() {
+        mNext = (mNext + 1) % SAMPLE_COUNT;
+        return mNext;
+    }
+
+    @Benchmark
+    public void euler(Blackhole blackhole) {
+        final int i = next() * 4;
+        final double w = mQuaternions[i];
+        final double x = mQuaternions[i + 1];
+        final double y = mQuaternions[i + 2];
+        final double z = mQuaternions[i + 3];
+        blackhole.consume(OrpheSensorValue.toEulerX(w, x, y, z));
+        blackhole.consume(OrpheSensorValue.toEulerY(w, x, y, z));
+        blackhole.consume(OrpheSensorValue.toEulerZ(w, x, y, z));
+    }
+
+    @Benchmark
+    public void gravity(Blackhole blackhole) {
+        final int i = next() * 4;
+        final double w = mQuaternions[i];
+        final double x = mQuaternions[i + 1];
+        final double y = mQuaternions[i + 2];
+        final double z = mQuaternions[i + 3];
+        blackhole.consume(OrpheSensorValue.toGravityX(w, x, y, z));
+        blackhole.consume(OrpheSensorValue.toGravityY(w, x, y, z));
+        blackhole.consume(OrpheSensorValue.toGravityZ(w, x, y, z));
+    }
+
+    @Benchmark
+    public double milliVoltToNewton() {
+        return OrpheInsoleValue.milliVoltToNewton(mMilliVolts[next()]);
+    }
+
+    @Benchmark
+    public double pressureCurveToNewton() {
+        return OrpheInsolePressureCurve.DEFAULT.toNewton(mCodes[next()]);
+    }
+}
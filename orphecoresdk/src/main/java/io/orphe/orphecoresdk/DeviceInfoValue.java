@@ -31,7 +31,6 @@ public class DeviceInfoValue {
     @RequiresApi(api = Build.VERSION_CODES.O)
     public static DeviceInfoValue fromBytes(
             byte[] bytes) throws Exception {
-      System.out.println(bytes.length);
         return new DeviceInfoValue(
                 OrpheBatteryStatus.fromValue(getUint8(bytes, 0)),
                 OrpheSidePosition.fromValue(getUint8(bytes, 1)),
@@ -0,0 +1,624 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * デバイスに蓄積されたセンサー値を、シリアルナンバーの範囲を指定してまとめて取得します。
+ * 範囲を[windowSize]件ずつの区間に分け、同時に[maxInFlight]区間までリクエストします。
+ * 区間のすべてのシリアルナンバーを受け取ると次の区間をリクエストするため、取得にかかる時間はアプリとの往復ではなく通信速度で決まります。
+ * 一定時間受け取れなかった区間は、受け取っていないシリアルナンバーだけをリクエストし直します。
+ * [OrpheDownloadCheckpoint]を渡すと受け取ったシリアルナンバーを区間ごとにファイルに記録し、接続が切れた後も受け取っていない部分から再開できます。
+ * 記録の書き込みはセンサー値を受け取るスレッドを止めないように別のスレッドで行い、書き込みを待っている間の保存は1回にまとめます。
+ * センサー値を受け取るスレッドと[tick]を呼ぶスレッドが異なってもかまいません。
+ */
+public class OrpheBulkDownloader {
+    /**
+     * 1区間のシリアルナンバーの件数のデフォルト
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 128;
+
+    /**
+     * 同時にリクエストする区間の数のデフォルト
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    /**
+     * 区間のセンサー値を待つ最大時間（ナノ秒）。これを過ぎると足りないシリアルナンバーをリクエストし直します
+     */
+    static final long TIMEOUT_NANOS = 1_000_000_000L;
+
+    /**
+     * 1つの区間をリクエストし直す最大の回数。これを超えると足りないシリアルナンバーは失われたものとして扱います
+     */
+    static final int MAX_RETRIES = 3;
+
+    private static final byte WAITING = 0;
+    private static final byte IN_FLIGHT = 1;
+    private static final byte DONE = 2;
+
+    private static final byte MISSING = 0;
+    private static final byte RECEIVED = 1;
+    private static final byte LOST = 2;
+
+    /**
+     * リクエストを送信します。
+     */
+    public interface Sender {
+        /**
+         * シリアルナンバーの範囲をリクエストします。
+         *
+         * @param requests リクエストする範囲。[OrpheSerialGapTracker.MAX_REQUESTS_PER_WRITE]件を超える場合があります。
+         */
+        void send(@NonNull OrpheValueRequest[] requests);
+    }
+
+    /**
+     * 取得の進み具合を受け取るリスナー。
+     */
+    public interface Listener {
+        /**
+         * 区間の取得が終わるたびに呼ばれます。
+         *
+         * @param downloader 取得している[OrpheBulkDownloader]
+         */
+        void onProgress(@NonNull OrpheBulkDownloader downloader);
+
+        /**
+         * すべての区間の取得が終わったとき、または[cancel]したときに呼ばれます。
+         *
+         * @param downloader 取得した[OrpheBulkDownloader]
+         */
+        void onFinished(@NonNull OrpheBulkDownloader downloader);
+    }
+
+    /**
+     * 取得する最初のシリアルナンバー
+     */
+    public final int startSerialNumber;
+
+    /**
+     * 取得する件数
+     */
+    public final int length;
+
+    /**
+     * 1区間のシリアルナンバーの件数
+     */
+    public final int windowSize;
+
+    /**
+     * 同時にリクエストする区間の数
+     */
+    public final int maxInFlight;
+
+    @NonNull
+    private final Sender mSender;
+    @NonNull
+    private final Listener mListener;
+    @Nullable
+    private final OrpheDownloadCheckpoint mCheckpoint;
+    @NonNull
+    private final Executor mCheckpointExecutor;
+    private final AtomicBoolean mCheckpointSaveScheduled = new AtomicBoolean();
+    private final Runnable mSaveCheckpoint = this::writeCheckpoint;
+    private final byte[] mStates;
+    private final byte[] mWindowStates;
+    private final int[] mWindowRemaining;
+    private final int[] mWindowRetries;
+    private final long[] mWindowNanos;
+    private final OrpheThroughputMeter mThroughput = new OrpheThroughputMeter();
+    private int mNextWindow;
+    private int mInFlight;
+    private int mDoneWindows;
+    private int mReceivedCount;
+    private int mLostCount;
+    private long mDuplicateCount;
+    private long mRetryCount;
+    private int mResumedCount;
+    private boolean mStarted;
+    private boolean mPaused;
+    private boolean mFinished;
+    private volatile IOException mCheckpointError;
+
+    /**
+     * デバイスに蓄積されたセンサー値を、シリアルナンバーの範囲を指定してまとめて取得します。
+     *
+     * @param startSerialNumber 取得する最初のシリアルナンバー
+     * @param length 取得する件数（1〜65536）
+     * @param windowSize 1区間のシリアルナンバーの件数
+     * @param maxInFlight 同時にリクエストする区間の数
+     * @param sender リクエストを送信する[Sender]
+     * @param listener 取得の進み具合を受け取るリスナー
+     */
+    public OrpheBulkDownloader(int startSerialNumber, int length, int windowSize, int maxInFlight,
+                               @NonNull Sender sender, @NonNull Listener listener) {
+        this(startSerialNumber, length, windowSize, maxInFlight, sender, listener, null);
+    }
+
+    /**
+     * デバイスに蓄積されたセンサー値を、シリアルナンバーの範囲を指定してまとめて取得します。
+     * [checkpoint]に記録されているシリアルナンバーは受け取ったものとして扱い、リクエストしません。
+     * 記録は[OrpheBulkDownloader]で共有するバックグラウンドのスレッドで書き込みます。
+     *
+     * @param startSerialNumber 取得する最初のシリアルナンバー
+     * @param length 取得する件数（1〜65536）
+     * @param windowSize 1区間のシリアルナンバーの件数
+     * @param maxInFlight 同時にリクエストする区間の数
+     * @param sender リクエストを送信する[Sender]
+     * @param listener 取得の進み具合を受け取るリスナー
+     * @param checkpoint 受け取ったシリアルナンバーを記録する[OrpheDownloadCheckpoint]。記録しない場合はnull
+     */
+    public OrpheBulkDownloader(int startSerialNumber, int length, int windowSize, int maxInFlight,
+                               @NonNull Sender sender, @NonNull Listener listener,
+                               @Nullable OrpheDownloadCheckpoint checkpoint) {
+        this(startSerialNumber, length, windowSize, maxInFlight, sender, listener, checkpoint, CheckpointWriter.EXECUTOR);
+    }
+
+    /**
+     * デバイスに蓄積されたセンサー値を、シリアルナンバーの範囲を指定してまとめて取得します。
+     * [checkpoint]に記録されているシリアルナンバーは受け取ったものとして扱い、リクエストしません。
+     *
+     * @param startSerialNumber 取得する最初のシリアルナンバー
+     * @param length 取得する件数（1〜65536）
+     * @param windowSize 1区間のシリアルナンバーの件数
+     * @param maxInFlight 同時にリクエストする区間の数
+     * @param sender リクエストを送信する[Sender]
+     * @param listener 取得の進み具合を受け取るリスナー
+     * @param checkpoint 受け取ったシリアルナンバーを記録する[OrpheDownloadCheckpoint]。記録しない場合はnull
+     * @param checkpointExecutor 記録の書き込みと削除を行う[Executor]。順番に1つずつ実行するものを指定してください
+     */
+    public OrpheBulkDownloader(int startSerialNumber, int length, int windowSize, int maxInFlight,
+                               @NonNull Sender sender, @NonNull Listener listener,
+                               @Nullable OrpheDownloadCheckpoint checkpoint, @NonNull Executor checkpointExecutor) {
+        if (length < 1 || length > OrpheSerialNumber.MODULUS) {
+            throw new IllegalArgumentException("length must be between 1 and 65536");
+        }
+        if (windowSize < 1 || windowSize > 0xFFFF) {
+            throw new IllegalArgumentException("windowSize must be between 1 and 65535");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.startSerialNumber = startSerialNumber & (OrpheSerialNumber.MODULUS - 1);
+        this.length = length;
+        this.windowSize = windowSize;
+        this.maxInFlight = maxInFlight;
+        mSender = sender;
+        mListener = listener;
+        mStates = new byte[length];
+        final int windowCount = (length + windowSize - 1) / windowSize;
+        mWindowStates = new byte[windowCount];
+        mWindowRemaining = new int[windowCount];
+        mWindowRetries = new int[windowCount];
+        mWindowNanos = new long[windowCount];
+        for (int i = 0; i < windowCount; i++) {
+            mWindowRemaining[i] = windowLength(i);
+        }
+        mCheckpoint = checkpoint;
+        mCheckpointExecutor = checkpointExecutor;
+        if (checkpoint != null) {
+            if (checkpoint.startSerialNumber != this.startSerialNumber || checkpoint.length != length) {
+                throw new IllegalArgumentException("checkpoint range does not match");
+            }
+            restore(checkpoint);
+        }
+    }
+
+    /// 前回までに受け取ったシリアルナンバーを受け取ったものとし、すべて受け取った区間は終わったものとする
+    private void restore(@NonNull OrpheDownloadCheckpoint checkpoint) {
+        for (int offset = 0; offset < length; offset++) {
+            if (checkpoint.isReceived(offset)) {
+                mStates[offset] = RECEIVED;
+                mReceivedCount++;
+                mResumedCount++;
+                mWindowRemaining[offset / windowSize]--;
+            }
+        }
+        for (int window = 0; window < mWindowStates.length; window++) {
+            if (mWindowRemaining[window] == 0) {
+                mWindowStates[window] = DONE;
+                mDoneWindows++;
+            }
+        }
+    }
+
+    /**
+     * 最初の区間をリクエストします。
+     *
+     * @param nowNanos 現在時刻（[System.nanoTime]）
+     */
+    public synchronized void start(long nowNanos) {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        if (mDoneWindows == mWindowStates.length) {
+            // 前回までにすべて受け取っていた
+            finish();
+            return;
+        }
+        if (mPaused) {
+            return;
+        }
+        final List<OrpheValueRequest> requests = new ArrayList<>();
+        fill(requests, nowNanos);
+        send(requests);
+    }
+
+    /**
+     * リクエストを止めます。接続が切れたときに呼んでください。
+     * リクエスト中の区間は[resume]したときに、受け取っていないシリアルナンバーだけをリクエストし直します。
+     */
+    public synchronized void pause() {
+        if (mFinished || mPaused) {
+            return;
+        }
+        mPaused = true;
+        for (int window = 0; window < mWindowStates.length; window++) {
+            if (mWindowStates[window] == IN_FLIGHT) {
+                mWindowStates[window] = WAITING;
+                mWindowRetries[window] = 0;
+            }
+        }
+        mInFlight = 0;
+        mNextWindow = 0;
+        saveCheckpoint();
+    }
+
+    /**
+     * [pause]で止めたリクエストを再開します。再接続したときに呼んでください。
+     *
+     * @param nowNanos 現在時刻（[System.nanoTime]）
+     */
+    public synchronized void resume(long nowNanos) {
+        if (mFinished || !mPaused) {
+            return;
+        }
+        mPaused = false;
+        if (!mStarted) {
+            start(nowNanos);
+            return;
+        }
+        final List<OrpheValueRequest> requests = new ArrayList<>();
+        fill(requests, nowNanos);
+        send(requests);
+    }
+
+    /**
+     * Notifyで受け取ったセンサー値のシリアルナンバーを記録します。
+     *
+     * @param serialNumber シリアルナンバー
+     * @param bytes Notifyのバイト数
+     * @param receivedNanos 受信時刻（[System.nanoTime]）
+     */
+    public synchronized void onSerialNumber(int serialNumber, int bytes, long receivedNanos) {
+        final int offset = offset(serialNumber);
+        if (mFinished || offset < 0) {
+            return;
+        }
+        if (mStates[offset] == RECEIVED) {
+            mDuplicateCount++;
+            return;
+        }
+        mThroughput.record(bytes, receivedNanos);
+        if (mCheckpoint != null) {
+            mCheckpoint.setReceived(offset);
+        }
+        if (mStates[offset] == LOST) {
+            // 見つからないと通知された後に届いた
+            mLostCount--;
+        }
+        mStates[offset] = RECEIVED;
+        mReceivedCount++;
+        final int window = offset / windowSize;
+        mWindowNanos[window] = receivedNanos;
+        if (mWindowStates[window] != DONE && --mWindowRemaining[window] == 0) {
+            complete(window, receivedNanos);
+        }
+    }
+
+    /**
+     * デバイスに見つからなかったシリアルナンバーを記録します。記録されたシリアルナンバーは再度リクエストしません。
+     *
+     * @param serialNumber 見つからなかった最初のシリアルナンバー
+     * @param length 見つからなかった件数
+     * @param receivedNanos 受信時刻（[System.nanoTime]）
+     */
+    public synchronized void onNotFound(int serialNumber, int length, long receivedNanos) {
+        if (mFinished) {
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            final int offset = offset(OrpheSerialNumber.add(serialNumber, i));
+            if (offset < 0 || mStates[offset] != MISSING) {
+                continue;
+            }
+            mStates[offset] = LOST;
+            mLostCount++;
+            final int window = offset / windowSize;
+            if (mWindowStates[window] != DONE && --mWindowRemaining[window] == 0) {
+                complete(window, receivedNanos);
+                if (mFinished) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 受け取れないまま[TIMEOUT_NANOS]を過ぎた区間をリクエストし直します。定期的に呼んでください。
+     *
+     * @param nowNanos 現在時刻（[System.nanoTime]）
+     */
+    public synchronized void tick(long nowNanos) {
+        if (mFinished || !mStarted || mPaused) {
+            return;
+        }
+        final List<OrpheValueRequest> requests = new ArrayList<>();
+        for (int window = 0; window < mWindowStates.length; window++) {
+            if (mWindowStates[window] != IN_FLIGHT || nowNanos - mWindowNanos[window] < TIMEOUT_NANOS) {
+                continue;
+            }
+            if (mWindowRetries[window] >= MAX_RETRIES) {
+                // リクエストし直しても届かなかったものは失われたとする
+                for (int offset = window * windowSize; offset < window * windowSize + windowLength(window); offset++) {
+                    if (mStates[offset] == MISSING) {
+                        mStates[offset] = LOST;
+                        mLostCount++;
+                    }
+                }
+                mWindowRemaining[window] = 0;
+                complete(window, nowNanos);
+                if (mFinished) {
+                    return;
+                }
+                continue;
+            }
+            mWindowRetries[window]++;
+            mRetryCount++;
+            mWindowNanos[window] = nowNanos;
+            addHoles(requests, window);
+        }
+        fill(requests, nowNanos);
+        send(requests);
+    }
+
+    /**
+     * 取得を中止します。[Listener.onFinished]が呼ばれます。
+     * [OrpheDownloadCheckpoint]の記録は残るため、同じ範囲を取得するときは続きから再開できます。
+     */
+    public synchronized void cancel() {
+        if (mFinished) {
+            return;
+        }
+        mFinished = true;
+        saveCheckpoint();
+        mListener.onFinished(this);
+    }
+
+    /// 区間の取得を終え、次の区間をリクエストする
+    private void complete(int window, long nowNanos) {
+        if (mWindowStates[window] == IN_FLIGHT) {
+            mInFlight--;
+        }
+        mWindowStates[window] = DONE;
+        mDoneWindows++;
+        if (mDoneWindows == mWindowStates.length) {
+            mFinished = true;
+            mListener.onProgress(this);
+            finish();
+            return;
+        }
+        saveCheckpoint();
+        if (!mPaused) {
+            final List<OrpheValueRequest> requests = new ArrayList<>();
+            fill(requests, nowNanos);
+            send(requests);
+        }
+        mListener.onProgress(this);
+    }
+
+    /// すべての区間を終え、記録を削除する
+    private void finish() {
+        mFinished = true;
+        final OrpheDownloadCheckpoint checkpoint = mCheckpoint;
+        if (checkpoint != null) {
+            // 待っている書き込みの後に削除する
+            mCheckpointExecutor.execute(checkpoint::delete);
+        }
+        mListener.onFinished(this);
+    }
+
+    /// 記録の書き込みを依頼する。前の依頼がまだ実行されていない場合は、その書き込みにまとめる
+    private void saveCheckpoint() {
+        if (mCheckpoint == null || !mCheckpointSaveScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        mCheckpointExecutor.execute(mSaveCheckpoint);
+    }
+
+    private void writeCheckpoint() {
+        mCheckpointSaveScheduled.set(false);
+        try {
+            mCheckpoint.save();
+        } catch (IOException e) {
+            mCheckpointError = e;
+        }
+    }
+
+    /// 同時にリクエストする数まで、まだリクエストしていない区間を追加する
+    private void fill(@NonNull List<OrpheValueRequest> requests, long nowNanos) {
+        while (mInFlight < maxInFlight && mNextWindow < mWindowStates.length) {
+            final int window = mNextWindow++;
+            if (mWindowStates[window] != WAITING) {
+                continue;
+            }
+            mWindowStates[window] = IN_FLIGHT;
+            mWindowNanos[window] = nowNanos;
+            mInFlight++;
+            // 先にNotifyで届いていた場合は足りない部分だけリクエストする
+            addHoles(requests, window);
+        }
+    }
+
+    /// 区間の中で受け取っていない連続した範囲を追加する
+    private void addHoles(@NonNull List<OrpheValueRequest> requests, int window) {
+        final int end = window * windowSize + windowLength(window);
+        int start = -1;
+        for (int offset = window * windowSize; offset <= end; offset++) {
+            final boolean missing = offset < end && mStates[offset] == MISSING;
+            if (missing && start < 0) {
+                start = offset;
+            } else if (!missing && start >= 0) {
+                requests.add(new OrpheValueRequest(OrpheSerialNumber.add(startSerialNumber, start), offset - start));
+                start = -1;
+            }
+        }
+    }
+
+    private void send(@NonNull List<OrpheValueRequest> requests) {
+        if (!requests.isEmpty()) {
+            mSender.send(requests.toArray(new OrpheValueRequest[0]));
+        }
+    }
+
+    private int windowLength(int window) {
+        return Math.min(windowSize, length - window * windowSize);
+    }
+
+    /// 範囲の先頭からの位置。範囲外の場合は-1
+    private int offset(int serialNumber) {
+        final int offset = (serialNumber - startSerialNumber) & (OrpheSerialNumber.MODULUS - 1);
+        return offset < length ? offset : -1;
+    }
+
+    /**
+     * 受け取ったシリアルナンバーの件数を返します。
+     *
+     * @return 受け取った件数
+     */
+    public synchronized int receivedCount() {
+        return mReceivedCount;
+    }
+
+    /**
+     * デバイスに見つからなかったか、リクエストし直しても届かなかった件数を返します。
+     *
+     * @return 失われた件数
+     */
+    public synchronized int lostCount() {
+        return mLostCount;
+    }
+
+    /**
+     * 重複して受け取った件数を返します。
+     *
+     * @return 重複した件数
+     */
+    public synchronized long duplicateCount() {
+        return mDuplicateCount;
+    }
+
+    /**
+     * 区間をリクエストし直した回数を返します。
+     *
+     * @return リクエストし直した回数
+     */
+    public synchronized long retryCount() {
+        return mRetryCount;
+    }
+
+    /**
+     * [OrpheDownloadCheckpoint]から再開し、リクエストせずに受け取ったものとした件数を返します。
+     *
+     * @return 再開した件数
+     */
+    public synchronized int resumedCount() {
+        return mResumedCount;
+    }
+
+    /**
+     * [OrpheDownloadCheckpoint]への保存に失敗した場合の例外を返します。
+     *
+     * @return 失敗していない場合はnull
+     */
+    @Nullable
+    public IOException checkpointError() {
+        return mCheckpointError;
+    }
+
+    /**
+     * 取得を止めているかどうかを返します。
+     *
+     * @return [pause]で止めている場合はtrue
+     */
+    public synchronized boolean isPaused() {
+        return mPaused;
+    }
+
+    /**
+     * 取得の進み具合を返します。
+     *
+     * @return 受け取ったか失われた件数の割合（0〜1）
+     */
+    public synchronized double progress() {
+        return (mReceivedCount + mLostCount) / (double) length;
+    }
+
+    /**
+     * 取得が終わったかどうかを返します。
+     *
+     * @return 終わった場合や中止した場合はtrue
+     */
+    public synchronized boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * 受け取ったセンサー値のスループットの集計を返します。
+     *
+     * @return スループットの集計
+     */
+    @NonNull
+    public OrpheThroughputMeter throughput() {
+        return mThroughput;
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public synchronized String toString() {
+        return String.format("download:(start=%d, length=%d, received=%d, lost=%d, retry=%d, %.0fB/s)",
+                startSerialNumber, length, mReceivedCount, mLostCount, mRetryCount, mThroughput.bytesPerSecond());
+    }
+
+    /**
+     * 記録の書き込みと削除を行う共有の[Executor]を返します。
+     * デバイスの記録をまとめて削除する場合も、書き込みと順番が入れ替わらないようにこれで実行します。
+     *
+     * @return 順番に1つずつ実行する[Executor]
+     */
+    @NonNull
+    static Executor checkpointExecutor() {
+        return CheckpointWriter.EXECUTOR;
+    }
+
+    /// 記録を書き込む共有のスレッド。使われるまで作成せず、アプリの終了を妨げないようにデーモンにする
+    private static class CheckpointWriter {
+        static final Executor EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "OrpheDownloadCheckpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
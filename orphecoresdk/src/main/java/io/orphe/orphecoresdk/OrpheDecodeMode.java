@@ -0,0 +1,12 @@
+package io.orphe.orphecoresdk;
+
+/**
+ * Notifyで受け取ったセンサー値をデコードするスレッドの設定
+ */
+public enum OrpheDecodeMode {
+    /// メインスレッドでデコード
+    mainThread,
+
+    /// 専用のスレッドでデコード
+    pipelineThread;
+}
@@ -0,0 +1,252 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+import java.util.TimeZone;
+
+/**
+ * デバイスの時刻（その日の0時からのミリ秒）をエポックミリ秒に変換する時計のモデル。
+ * 接続ごとに作成し、最初に受け取ったパケットで端末の単調増加する時刻と対応付けます。
+ * 以降は受信時刻との差の最小値を追跡してデバイスの時計のずれ（ドリフト）を推定し、整数演算だけで変換します。
+ * 日付をまたいでもデバイスの時刻は連続したものとして扱い、変換後の時刻は巻き戻りません。
+ * 受信時刻がデバイスの時刻と対応するのはリアルタイムのセンサー値だけなので、
+ * 再取得したデータや蓄積されたデータは渡さないでください。日付の判定もリアルタイムのセンサー値だけで行います。
+ * 更新はデコードするスレッドからのみ行い、推定値は他のスレッドから読み取れます。
+ */
+public class OrpheDeviceClock {
+    /// 1日のミリ秒
+    static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * ドリフトを推定する区間の長さ（デバイスの時刻のナノ秒）
+     */
+    static final long WINDOW_NANOS = 10_000_000_000L;
+
+    /**
+     * 推定するドリフトの上限（ppb）。水晶発振子のずれとしてあり得ない値は無視します。
+     */
+    static final long MAX_SKEW_PPB = 1_000_000L;
+
+    private final long mAnchorEpochNanos;
+    private final long mAnchorNanos;
+
+    /// 日付をまたいだ回数から求めたデバイスの時刻の加算分
+    private long mDayOffsetMillis;
+    private long mLastTimeOfDayMillis = -1;
+
+    /// 受信時刻 ≒ デバイスの時刻 + mOffsetNanos + (デバイスの時刻 - mBaseDeviceNanos) * mSkewPpb
+    private boolean mAnchored;
+    private long mBaseDeviceNanos;
+    private long mOffsetNanos;
+
+    private long mWindowStartNanos;
+    private long mWindowMinOffsetNanos;
+    private long mWindowMinDeviceNanos;
+    private boolean mHasPreviousWindow;
+    private long mPreviousMinOffsetNanos;
+    private long mPreviousMinDeviceNanos;
+
+    private long mLatestDeviceNanos = Long.MIN_VALUE;
+    private long mLatestEpochNanos = Long.MIN_VALUE;
+
+    private volatile long mSkewPpb;
+    private volatile long mObservedCount;
+
+    /**
+     * デバイスの時刻をエポックミリ秒に変換する時計のモデル。
+     * 作成した時点の[System.currentTimeMillis]と[System.nanoTime]を基準にします。
+     */
+    public OrpheDeviceClock() {
+        this(System.currentTimeMillis(), System.nanoTime());
+    }
+
+    /**
+     * デバイスの時刻をエポックミリ秒に変換する時計のモデル。
+     *
+     * @param anchorEpochMillis 基準のエポックミリ秒
+     * @param anchorNanos [anchorEpochMillis]と同じ時点の単調増加する時刻（ナノ秒）
+     */
+    OrpheDeviceClock(long anchorEpochMillis, long anchorNanos) {
+        mAnchorEpochNanos = anchorEpochMillis * 1_000_000L;
+        mAnchorNanos = anchorNanos;
+    }
+
+    /**
+     * パケットの時刻と受信時刻を記録し、対応付けとドリフトの推定を更新します。
+     * センサー値（50/54/55/56）以外のパケットは無視します。
+     * 最新のシリアルナンバーを進めたパケット（[OrpheSerialClock.observe]がtrueを返したもの）だけを渡します。
+     *
+     * @param bytes ORPHEから送られたバイト配列
+     * @param receivedNanos 受信時刻（[System.nanoTime]）
+     */
+    void onPacket(@NonNull byte[] bytes, long receivedNanos) {
+        final long timeOfDayMillis = timeOfDayMillis(bytes);
+        if (timeOfDayMillis >= 0) {
+            observe(timeOfDayMillis, receivedNanos);
+        }
+    }
+
+    /**
+     * パケットの先頭のサンプルのデバイスの時刻を返します。
+     *
+     * @param bytes ORPHEから送られたバイト配列
+     * @return その日の0時からのミリ秒。センサー値のパケットでない場合は-1
+     */
+    static long timeOfDayMillis(@NonNull byte[] bytes) {
+        switch (bytes[0]) {
+            case 50:
+                return OrpheSensorValue.deviceTimeOfDay(bytes, bytes[6] & 0xFF);
+            case 54:
+            case 55:
+            case 56:
+                return OrpheSensorValue.deviceTimeOfDay(bytes, ((bytes[6] & 0xFF) << 8) | (bytes[7] & 0xFF));
+        }
+        return -1;
+    }
+
+    /**
+     * デバイスの時刻と受信時刻を記録します。
+     *
+     * @param timeOfDayMillis デバイスの時刻（その日の0時からのミリ秒）
+     * @param receivedNanos 受信時刻（[System.nanoTime]）
+     */
+    void observe(long timeOfDayMillis, long receivedNanos) {
+        final long deviceNanos = unwrap(timeOfDayMillis, true) * 1_000_000L;
+        final long offset = receivedNanos - deviceNanos;
+        mObservedCount++;
+        if (!mAnchored) {
+            mAnchored = true;
+            mBaseDeviceNanos = deviceNanos;
+            mOffsetNanos = offset;
+            startWindow(deviceNanos, offset);
+            return;
+        }
+        // 受信までの遅延は必ず正なので、予測より早く届いた場合は予測が遅れている
+        if (offset < predictOffset(deviceNanos)) {
+            mBaseDeviceNanos = deviceNanos;
+            mOffsetNanos = offset;
+        }
+        if (offset < mWindowMinOffsetNanos) {
+            mWindowMinOffsetNanos = offset;
+            mWindowMinDeviceNanos = deviceNanos;
+        }
+        if (deviceNanos - mWindowStartNanos < WINDOW_NANOS) {
+            return;
+        }
+        final long elapsedMillis = (mWindowMinDeviceNanos - mPreviousMinDeviceNanos) / 1_000_000L;
+        if (mHasPreviousWindow && elapsedMillis > 0) {
+            final long skew = (mWindowMinOffsetNanos - mPreviousMinOffsetNanos) * 1000 / elapsedMillis;
+            if (Math.abs(skew) <= MAX_SKEW_PPB) {
+                mSkewPpb = skew;
+                // 区間の最小値に合わせ直すことで、遅れる方向のずれにも追従する
+                mBaseDeviceNanos = mWindowMinDeviceNanos;
+                mOffsetNanos = mWindowMinOffsetNanos;
+            }
+        }
+        mHasPreviousWindow = true;
+        mPreviousMinOffsetNanos = mWindowMinOffsetNanos;
+        mPreviousMinDeviceNanos = mWindowMinDeviceNanos;
+        startWindow(deviceNanos, offset);
+    }
+
+    /**
+     * デバイスの時刻をエポックミリ秒に変換します。
+     * まだパケットを受け取っていない場合は、端末のタイムゾーンの今日の日付として変換します。
+     *
+     * @param timeOfDayMillis デバイスの時刻（その日の0時からのミリ秒）
+     * @return エポックミリ秒
+     */
+    public long toEpochMillis(long timeOfDayMillis) {
+        if (!mAnchored) {
+            return wallClockMillis(timeOfDayMillis);
+        }
+        final long deviceNanos = unwrap(timeOfDayMillis, false) * 1_000_000L;
+        long epochNanos = deviceNanos + predictOffset(deviceNanos) - mAnchorNanos + mAnchorEpochNanos;
+        // 推定の補正で新しいサンプルが前のサンプルより前の時刻にならないようにする
+        if (deviceNanos >= mLatestDeviceNanos) {
+            if (epochNanos < mLatestEpochNanos) {
+                epochNanos = mLatestEpochNanos;
+            }
+            mLatestDeviceNanos = deviceNanos;
+            mLatestEpochNanos = epochNanos;
+        }
+        return epochNanos / 1_000_000L;
+    }
+
+    /**
+     * 時計のモデルを使わずに、デバイスの時刻を端末のタイムゾーンの今日の日付として変換します。
+     *
+     * @param timeOfDayMillis デバイスの時刻（その日の0時からのミリ秒）
+     * @return エポックミリ秒
+     */
+    static long wallClockMillis(long timeOfDayMillis) {
+        final long now = System.currentTimeMillis();
+        final long zoneOffset = TimeZone.getDefault().getOffset(now);
+        final long localMidnight = Math.floorDiv(now + zoneOffset, DAY_MILLIS) * DAY_MILLIS - zoneOffset;
+        return localMidnight + timeOfDayMillis;
+    }
+
+    private long predictOffset(long deviceNanos) {
+        return mOffsetNanos + (deviceNanos - mBaseDeviceNanos) / 1000 * mSkewPpb / 1_000_000L;
+    }
+
+    /// 前回のデバイスの時刻から半日以上戻った場合は日付をまたいだとみなす
+    private long unwrap(long timeOfDayMillis, boolean update) {
+        if (mLastTimeOfDayMillis < 0) {
+            if (update) {
+                mLastTimeOfDayMillis = timeOfDayMillis;
+            }
+            return mDayOffsetMillis + timeOfDayMillis;
+        }
+        final long delta = timeOfDayMillis - mLastTimeOfDayMillis;
+        if (delta < -DAY_MILLIS / 2) {
+            if (update) {
+                mDayOffsetMillis += DAY_MILLIS;
+                mLastTimeOfDayMillis = timeOfDayMillis;
+                return mDayOffsetMillis + timeOfDayMillis;
+            }
+            return mDayOffsetMillis + DAY_MILLIS + timeOfDayMillis;
+        }
+        if (delta > DAY_MILLIS / 2) {
+            // 日付をまたぐ前のパケットが遅れて届いた
+            return mDayOffsetMillis - DAY_MILLIS + timeOfDayMillis;
+        }
+        if (update && delta > 0) {
+            mLastTimeOfDayMillis = timeOfDayMillis;
+        }
+        return mDayOffsetMillis + timeOfDayMillis;
+    }
+
+    private void startWindow(long deviceNanos, long offset) {
+        mWindowStartNanos = deviceNanos;
+        mWindowMinOffsetNanos = offset;
+        mWindowMinDeviceNanos = deviceNanos;
+    }
+
+    /**
+     * 推定したデバイスの時計のずれを返します。正の値はデバイスの時計が遅れていくことを表します。
+     *
+     * @return 10億分の1単位のずれ（ppb）
+     */
+    public long skewPpb() {
+        return mSkewPpb;
+    }
+
+    /**
+     * 記録したパケットの数を返します。
+     *
+     * @return 記録した数
+     */
+    public long observedCount() {
+        return mObservedCount;
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public String toString() {
+        return String.format("clock:(observed=%d, skew=%dppb)", observedCount(), skewPpb());
+    }
+}
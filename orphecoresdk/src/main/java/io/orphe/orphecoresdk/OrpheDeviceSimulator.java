@@ -0,0 +1,520 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 実機を使わずにORPHEから送られる生データ（50/54/55/56、53/1、53/2）を生成します。
+ * 生成したデータは[Orphe.setSimulator]や[OrpheInsole.setSimulator]で設定すると、
+ * [BluetoothGattCallback.onCharacteristicChanged]と同じ処理に渡されます。
+ * 乱数はシードから生成するため、同じ設定であれば欠落のパターンも含めて毎回同じデータになります。
+ * 50の時刻のミリ秒部分は1バイトのため、デコードした時刻が生成した時刻と一致するのはミリ秒部分が0〜255の場合だけです。
+ */
+public class OrpheDeviceSimulator {
+    /**
+     * 生成したデータを受け取ります。
+     */
+    public interface Sink {
+        /**
+         * Notifyとして生データを受け取ります。渡された配列は再利用されるため、保持しないでください。
+         *
+         * @param value 生データ
+         */
+        void onNotified(@NonNull byte[] value);
+    }
+
+    /**
+     * デフォルトで再送できるように保持するパケットの数
+     */
+    public static final int DEFAULT_RETAINED_COUNT = 4096;
+
+    private static final int STATUS_PACKET_SIZE = 20;
+    private static final int PRESSURE_BASE_MILLI_VOLT = 1500;
+
+    private final int mPacketType;
+    private final int mSamplesPerPacket;
+    private final int mPacketSize;
+    private final Random mRandom;
+    private final byte[][] mHistory;
+    private final byte[] mStatus = new byte[STATUS_PACKET_SIZE];
+    /// [write]で受け取り、まだ応答していない書き込み
+    private final ArrayDeque<byte[]> mPendingWrites = new ArrayDeque<>();
+
+    @Nullable
+    private Sink mSink;
+    private int mNextSerialNumber;
+    private long mStartTimeOfDayMillis = 12 * 60 * 60 * 1000L;
+    private double mPacketsPerSecond;
+    private double mLossRate;
+    private int mBurstLength = 1;
+    private double mDuplicateRate;
+    private int mBurstRemaining;
+    private long mSampleIndex;
+
+    private volatile long mGeneratedCount;
+    private volatile long mDeliveredCount;
+    private volatile long mLostCount;
+    private volatile long mDuplicatedCount;
+    private volatile long mResentCount;
+    private volatile long mNotFoundCount;
+
+    /**
+     * 実機を使わずにORPHEから送られる生データを生成します。
+     *
+     * @param packetType 生成するセンサー値のパケットの種類（50、54、55、56のいずれか）
+     * @param seed 欠落や重複を決める乱数のシード
+     * @param retainedCount 再送できるように保持するパケットの数
+     */
+    public OrpheDeviceSimulator(int packetType, long seed, int retainedCount) {
+        switch (packetType) {
+            case 50:
+                mSamplesPerPacket = 4;
+                mPacketSize = 4 * 21 + 8;
+                break;
+            case 54:
+                mSamplesPerPacket = 8;
+                mPacketSize = 8 * 12 + 8;
+                break;
+            case 55:
+                mSamplesPerPacket = 4;
+                mPacketSize = 4 * 24 + 8;
+                break;
+            case 56:
+                mSamplesPerPacket = 2;
+                mPacketSize = 2 * 32 + 8;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported packet type: " + packetType);
+        }
+        if (retainedCount < 1) {
+            throw new IllegalArgumentException("retainedCount must be positive");
+        }
+        mPacketType = packetType;
+        mRandom = new Random(seed);
+        mHistory = new byte[retainedCount][mPacketSize];
+        mPacketsPerSecond = 1000.0 / (mSamplesPerPacket * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * 実機を使わずにORPHEから送られる生データを生成します。
+     *
+     * @param packetType 生成するセンサー値のパケットの種類（50、54、55、56のいずれか）
+     * @param seed 欠落や重複を決める乱数のシード
+     */
+    public OrpheDeviceSimulator(int packetType, long seed) {
+        this(packetType, seed, DEFAULT_RETAINED_COUNT);
+    }
+
+    /**
+     * 生成したデータを渡す先を設定します。
+     *
+     * @param sink 生成したデータを受け取る[Sink]。nullの場合は生成したデータを捨てます。
+     */
+    public synchronized void setSink(@Nullable Sink sink) {
+        mSink = sink;
+    }
+
+    /**
+     * 次に生成するパケットのシリアルナンバーを設定します。65535の手前を指定すると折り返しを再現できます。
+     *
+     * @param serialNumber シリアルナンバー（0〜65535）
+     */
+    public synchronized void setSerialNumber(int serialNumber) {
+        mNextSerialNumber = serialNumber & 0xFFFF;
+    }
+
+    /**
+     * 最初のパケットのデバイス上の時刻を設定します。
+     *
+     * @param timeOfDayMillis その日の0時からのミリ秒
+     */
+    public synchronized void setStartTimeOfDay(long timeOfDayMillis) {
+        mStartTimeOfDayMillis = timeOfDayMillis;
+    }
+
+    /**
+     * 1秒あたりに送るパケットの数を設定します。デフォルトはサンプリング周期（5ミリ秒）から計算した値です。
+     *
+     * @param packetsPerSecond 1秒あたりのパケット数
+     */
+    public synchronized void setPacketRate(double packetsPerSecond) {
+        if (packetsPerSecond <= 0) {
+            throw new IllegalArgumentException("packetsPerSecond must be positive");
+        }
+        mPacketsPerSecond = packetsPerSecond;
+    }
+
+    /**
+     * パケットの欠落のパターンを設定します。
+     * 各パケットが[lossRate]の確率で欠落の起点となり、そこから[burstLength]件のパケットが連続して欠落します。
+     *
+     * @param lossRate 欠落の起点となる確率（0〜1）
+     * @param burstLength 1回の欠落で連続して失われるパケットの数
+     */
+    public synchronized void setLoss(double lossRate, int burstLength) {
+        if (lossRate < 0 || lossRate > 1 || burstLength < 1) {
+            throw new IllegalArgumentException("lossRate must be in [0, 1] and burstLength must be positive");
+        }
+        mLossRate = lossRate;
+        mBurstLength = burstLength;
+    }
+
+    /**
+     * 同じパケットを続けて2回送る確率を設定します。
+     *
+     * @param duplicateRate 重複して送る確率（0〜1）
+     */
+    public synchronized void setDuplicateRate(double duplicateRate) {
+        if (duplicateRate < 0 || duplicateRate > 1) {
+            throw new IllegalArgumentException("duplicateRate must be in [0, 1]");
+        }
+        mDuplicateRate = duplicateRate;
+    }
+
+    /**
+     * センサー値のパケットを生成して送ります。待ち時間は入れずにすぐに送ります。
+     * 各パケットの前に、[write]で受け取った書き込みへの応答を送ります。
+     *
+     * @param count 生成するパケットの数
+     * @return 欠落せずに送ったパケットの数
+     */
+    public synchronized int emit(int count) {
+        int delivered = 0;
+        for (int i = 0; i < count; i++) {
+            if (emitNext()) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * [setPacketRate]で設定した間隔でセンサー値のパケットを生成して送ります。呼び出したスレッドで送り終わるまで待ちます。
+     * 各パケットの前に、[write]で受け取った書き込みへの応答を送ります。
+     *
+     * @param durationMillis 送り続ける時間（ミリ秒）
+     * @return 欠落せずに送ったパケットの数
+     */
+    public int run(long durationMillis) {
+        final long start = System.nanoTime();
+        final long end = start + durationMillis * 1_000_000L;
+        int delivered = 0;
+        for (long i = 0; ; i++) {
+            final long due;
+            synchronized (this) {
+                due = start + (long) (i * 1_000_000_000L / mPacketsPerSecond);
+            }
+            if (due >= end) {
+                return delivered;
+            }
+            final long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            synchronized (this) {
+                if (emitNext()) {
+                    delivered++;
+                }
+            }
+        }
+    }
+
+    /**
+     * 現在のシリアルナンバー（53/1）を送ります。
+     */
+    public synchronized void notifyCurrentSerialNumber() {
+        final int current = OrpheSerialNumber.add(mNextSerialNumber, -1);
+        mStatus[0] = 53;
+        mStatus[1] = 1;
+        mStatus[2] = (byte) (current >> 8);
+        mStatus[3] = (byte) current;
+        mStatus[4] = 0;
+        mStatus[5] = 0;
+        send(mStatus);
+    }
+
+    /**
+     * デバイスへの書き込みを受け取ります。[Orphe.setSimulator]や[OrpheInsole.setSimulator]で設定すると、
+     * 実機のキャラクタリスティックに書き込む代わりにここに渡されます。
+     * 再送のリクエスト（11/2）には[request]と同じく応答し、現在のシリアルナンバーの取得（13/1）には53/1を送ります。それ以外は無視します。
+     * 書き込みはデコードするスレッドから行われるため、ここでは受け取るだけで応答は送りません。
+     * 応答は次の[emit]や[run]のパケットの前か、[respond]を呼んだときに、それらを呼んだスレッドから送ります。
+     *
+     * @param value 書き込むバイト配列
+     */
+    public synchronized void write(@NonNull byte[] value) {
+        mPendingWrites.add(value.clone());
+    }
+
+    /**
+     * [write]で受け取った書き込みに応答します。応答を受け取ったことで新しく書き込まれたものにも、続けて応答します。
+     *
+     * @return 応答した書き込みの数
+     */
+    public synchronized int respond() {
+        int count = 0;
+        byte[] value;
+        while ((value = mPendingWrites.poll()) != null) {
+            answer(value);
+            count++;
+        }
+        return count;
+    }
+
+    private void answer(@NonNull byte[] value) {
+        if (value.length >= 2 && value[0] == 11 && value[1] == 2) {
+            final OrpheValueRequest[] requests = new OrpheValueRequest[(value.length - 2) / 4];
+            for (int r = 0; r < requests.length; r++) {
+                final int index = 2 + r * 4;
+                requests[r] = new OrpheValueRequest(
+                        ((value[index] & 0xFF) << 8) | (value[index + 1] & 0xFF),
+                        ((value[index + 2] & 0xFF) << 8) | (value[index + 3] & 0xFF));
+            }
+            request(requests);
+        } else if (value.length >= 2 && value[0] == 13 && value[1] == 1) {
+            notifyCurrentSerialNumber();
+        }
+    }
+
+    /**
+     * センサー値の再送リクエストに応答します。保持しているパケットは欠落させずに再送し、
+     * 保持していない範囲は見つからなかったシリアルナンバー（53/2）として送ります。
+     *
+     * @param requests 再送するシリアルナンバーの範囲
+     */
+    public synchronized void request(@NonNull OrpheValueRequest[] requests) {
+        for (OrpheValueRequest request : requests) {
+            int notFoundStart = 0;
+            int notFoundLength = 0;
+            for (int i = 0; i < request.length; i++) {
+                final int serialNumber = OrpheSerialNumber.add(request.startSerialNumber, i);
+                final byte[] packet = retained(serialNumber);
+                if (packet != null) {
+                    if (notFoundLength > 0) {
+                        notifyNotFound(notFoundStart, notFoundLength);
+                        notFoundLength = 0;
+                    }
+                    mResentCount++;
+                    send(packet);
+                } else {
+                    if (notFoundLength == 0) {
+                        notFoundStart = serialNumber;
+                    }
+                    notFoundLength++;
+                }
+            }
+            if (notFoundLength > 0) {
+                notifyNotFound(notFoundStart, notFoundLength);
+            }
+        }
+    }
+
+    @Nullable
+    private byte[] retained(int serialNumber) {
+        final int age = OrpheSerialNumber.distance(serialNumber, OrpheSerialNumber.add(mNextSerialNumber, -1));
+        if (age < 0 || age >= mHistory.length || age >= mGeneratedCount) {
+            return null;
+        }
+        return mHistory[(int) ((mGeneratedCount - 1 - age) % mHistory.length)];
+    }
+
+    private void notifyNotFound(int serialNumber, int length) {
+        mNotFoundCount += length;
+        mStatus[0] = 53;
+        mStatus[1] = 2;
+        mStatus[2] = (byte) (serialNumber >> 8);
+        mStatus[3] = (byte) serialNumber;
+        mStatus[4] = (byte) (length >> 8);
+        mStatus[5] = (byte) length;
+        send(mStatus);
+    }
+
+    private boolean emitNext() {
+        respond();
+        final byte[] packet = mHistory[(int) (mGeneratedCount % mHistory.length)];
+        final long newestMillis = mStartTimeOfDayMillis
+                + (long) (mGeneratedCount * 1000 / mPacketsPerSecond);
+        fill(packet, mNextSerialNumber, newestMillis);
+        mNextSerialNumber = OrpheSerialNumber.add(mNextSerialNumber, 1);
+        mGeneratedCount++;
+
+        if (mBurstRemaining == 0 && mLossRate > 0 && mRandom.nextDouble() < mLossRate) {
+            mBurstRemaining = mBurstLength;
+        }
+        if (mBurstRemaining > 0) {
+            mBurstRemaining--;
+            mLostCount++;
+            return false;
+        }
+        send(packet);
+        mDeliveredCount++;
+        if (mDuplicateRate > 0 && mRandom.nextDouble() < mDuplicateRate) {
+            send(packet);
+            mDuplicatedCount++;
+        }
+        return true;
+    }
+
+    private void send(@NonNull byte[] value) {
+        final Sink sink = mSink;
+        if (sink != null) {
+            sink.onNotified(value);
+        }
+    }
+
+    /// データ中の位置が0のサンプルが最新で、位置が大きいほど古いサンプルになる
+    private void fill(@NonNull byte[] packet, int serialNumber, long newestMillis) {
+        final long timeOfDay = Math.floorMod(newestMillis, 24 * 60 * 60 * 1000L);
+        final long seconds = timeOfDay / 1000;
+        packet[0] = (byte) mPacketType;
+        packet[1] = (byte) (serialNumber >> 8);
+        packet[2] = (byte) serialNumber;
+        packet[3] = (byte) (seconds / 3600);
+        packet[4] = (byte) (seconds / 60 % 60);
+        packet[5] = (byte) (seconds % 60);
+        switch (mPacketType) {
+            case 50:
+                // 50は1バイトのミリ秒部分と、各サンプルの直前に基準からの経過時間を持つ。
+                // デコーダーと同じくミリ秒をそのまま入れるため、正しく表せるのは0〜255ミリ秒で、それ以上は下位8ビットになる
+                packet[6] = (byte) (timeOfDay % 1000);
+                for (int s = 0; s < 4; s++) {
+                    final int index = s * 21 + 8;
+                    packet[index - 1] = (byte) (s * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS);
+                    final long sample = mSampleIndex + mSamplesPerPacket - 1 - s;
+                    putQuaternion(packet, index, sample);
+                    putMotion(packet, index + 8, sample);
+                }
+                break;
+            case 54:
+                putUint16(packet, 6, (int) (timeOfDay % 1000));
+                for (int s = 0; s < 8; s++) {
+                    final int index = s * 12 + 8;
+                    putMotion(packet, index, mSampleIndex + mSamplesPerPacket - 1 - s);
+                }
+                break;
+            case 55:
+                putUint16(packet, 6, (int) (timeOfDay % 1000));
+                for (int s = 0; s < 4; s++) {
+                    final int index = s * 24 + 8;
+                    final long sample = mSampleIndex + mSamplesPerPacket - 1 - s;
+                    putMotion(packet, index, sample);
+                    putPressure(packet, index + 12, sample);
+                }
+                break;
+            case 56:
+                putUint16(packet, 6, (int) (timeOfDay % 1000));
+                for (int s = 0; s < 2; s++) {
+                    final int index = s * 32 + 8;
+                    final long sample = mSampleIndex + mSamplesPerPacket - 1 - s;
+                    putQuaternion(packet, index, sample);
+                    putMotion(packet, index + 8, sample);
+                    putPressure(packet, index + 20, sample);
+                }
+                break;
+        }
+        mSampleIndex += mSamplesPerPacket;
+    }
+
+    /// 1秒周期で揺れる値
+    private static double phase(long sample) {
+        return sample * 2 * Math.PI * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS / 1000.0;
+    }
+
+    private static void putQuaternion(@NonNull byte[] packet, int index, long sample) {
+        // Z軸周りに最大0.5ラジアン回転する姿勢
+        final double angle = 0.5 * Math.sin(phase(sample));
+        putUint16(packet, index, (int) Math.round(Math.cos(angle / 2) * 16384));
+        putUint16(packet, index + 2, 0);
+        putUint16(packet, index + 4, 0);
+        putUint16(packet, index + 6, (int) Math.round(Math.sin(angle / 2) * 16384));
+    }
+
+    private static void putMotion(@NonNull byte[] packet, int index, long sample) {
+        final double phase = phase(sample);
+        for (int axis = 0; axis < 3; axis++) {
+            putUint16(packet, index + axis * 2, (int) Math.round(8000 * Math.sin(phase + axis)));
+            putUint16(packet, index + 6 + axis * 2, (int) Math.round(4000 * Math.cos(phase + axis)));
+        }
+    }
+
+    private static void putPressure(@NonNull byte[] packet, int index, long sample) {
+        final double phase = phase(sample);
+        for (int cell = 0; cell < 6; cell++) {
+            final double load = Math.max(0, Math.sin(phase - cell * 0.3));
+            putUint16(packet, index + cell * 2, PRESSURE_BASE_MILLI_VOLT + (int) Math.round(1000 * load));
+        }
+    }
+
+    private static void putUint16(@NonNull byte[] packet, int index, int value) {
+        packet[index] = (byte) (value >> 8);
+        packet[index + 1] = (byte) value;
+    }
+
+    /**
+     * 生成したセンサー値のパケットの数を返します。
+     *
+     * @return 生成した数
+     */
+    public long generatedCount() {
+        return mGeneratedCount;
+    }
+
+    /**
+     * 欠落せずに送ったセンサー値のパケットの数を返します（重複と再送は含みません）。
+     *
+     * @return 送った数
+     */
+    public long deliveredCount() {
+        return mDeliveredCount;
+    }
+
+    /**
+     * 欠落させたセンサー値のパケットの数を返します。
+     *
+     * @return 欠落させた数
+     */
+    public long lostCount() {
+        return mLostCount;
+    }
+
+    /**
+     * 重複して送ったセンサー値のパケットの数を返します。
+     *
+     * @return 重複して送った数
+     */
+    public long duplicatedCount() {
+        return mDuplicatedCount;
+    }
+
+    /**
+     * リクエストに応じて再送したパケットの数を返します。
+     *
+     * @return 再送した数
+     */
+    public long resentCount() {
+        return mResentCount;
+    }
+
+    /**
+     * リクエストされたが保持しておらず、見つからなかったとして応答したシリアルナンバーの数を返します。
+     *
+     * @return 見つからなかった数
+     */
+    public long notFoundCount() {
+        return mNotFoundCount;
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public String toString() {
+        return String.format("simulator:(type=%d, generated=%d, delivered=%d, lost=%d, duplicated=%d, resent=%d, notFound=%d)",
+                mPacketType, generatedCount(), deliveredCount(), lostCount(), duplicatedCount(), resentCount(), notFoundCount());
+    }
+}
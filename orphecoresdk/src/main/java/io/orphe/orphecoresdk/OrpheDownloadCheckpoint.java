@@ -0,0 +1,228 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * [OrpheBulkDownloader]で受け取ったシリアルナンバーを、1件1ビットのファイルに記録します。
+ * ファイルはデバイスと取得する範囲ごとに作られ、接続が切れたりアプリを終了したりしても、受け取っていない部分から再開できます。
+ *
+ * <pre>
+ * ファイル: magic(4) version(2) 最初のシリアルナンバー(2) 件数(4) ビットマップ((件数 + 7) / 8)
+ * </pre>
+ */
+public class OrpheDownloadCheckpoint {
+    /// ファイルの先頭の"ORDC"
+    static final int MAGIC = 0x4F524443;
+    static final int VERSION = 1;
+    private static final String EXTENSION = ".checkpoint";
+
+    /**
+     * 取得する最初のシリアルナンバー
+     */
+    public final int startSerialNumber;
+
+    /**
+     * 取得する件数
+     */
+    public final int length;
+
+    @NonNull
+    private final File mFile;
+    private final byte[] mBits;
+    /// ファイルの書き込みと削除を順番に行うためのロック。ビットマップのロックとは分け、書き込み中も[setReceived]を止めない
+    private final Object mFileLock = new Object();
+    private int mReceivedCount;
+    private boolean mDirty;
+    private boolean mDeleted;
+
+    private OrpheDownloadCheckpoint(@NonNull File file, int startSerialNumber, int length) {
+        mFile = file;
+        this.startSerialNumber = startSerialNumber & (OrpheSerialNumber.MODULUS - 1);
+        this.length = length;
+        mBits = new byte[(length + 7) / 8];
+    }
+
+    /**
+     * 記録を開きます。ファイルがない場合は何も受け取っていない状態から始めます。
+     *
+     * @param file 記録するファイル
+     * @param startSerialNumber 取得する最初のシリアルナンバー
+     * @param length 取得する件数
+     * @return 開いた記録
+     * @throws IOException 読み込みに失敗した場合や、形式や範囲が異なる場合
+     */
+    @NonNull
+    public static OrpheDownloadCheckpoint open(@NonNull File file, int startSerialNumber, int length) throws IOException {
+        if (length < 1 || length > OrpheSerialNumber.MODULUS) {
+            throw new IllegalArgumentException("length must be between 1 and 65536");
+        }
+        final OrpheDownloadCheckpoint checkpoint = new OrpheDownloadCheckpoint(file, startSerialNumber, length);
+        if (!file.exists()) {
+            return checkpoint;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("not a checkpoint file: " + file);
+            }
+            final int version = input.readShort();
+            if (version != VERSION) {
+                throw new IOException("unsupported checkpoint file version: " + version);
+            }
+            if (input.readUnsignedShort() != checkpoint.startSerialNumber || input.readInt() != length) {
+                throw new IOException("checkpoint range does not match: " + file);
+            }
+            input.readFully(checkpoint.mBits);
+        }
+        for (byte bits : checkpoint.mBits) {
+            checkpoint.mReceivedCount += Integer.bitCount(bits & 0xFF);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * デバイスと取得する範囲に対応するファイルを返します。
+     *
+     * @param directory 記録を置くディレクトリ
+     * @param address デバイスのアドレス
+     * @param startSerialNumber 取得する最初のシリアルナンバー
+     * @param length 取得する件数
+     * @return ファイル
+     */
+    @NonNull
+    public static File fileFor(@NonNull File directory, @NonNull String address, int startSerialNumber, int length) {
+        return new File(directory, prefix(address) + (startSerialNumber & (OrpheSerialNumber.MODULUS - 1)) + "_" + length + EXTENSION);
+    }
+
+    /**
+     * デバイスのすべての記録を削除します。デバイスの蓄積をクリアしたときに呼んでください。
+     *
+     * @param directory 記録を置くディレクトリ
+     * @param address デバイスのアドレス
+     */
+    public static void deleteAll(@NonNull File directory, @NonNull String address) {
+        final String prefix = prefix(address);
+        final File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    @NonNull
+    private static String prefix(@NonNull String address) {
+        return address.replace(":", "") + "_";
+    }
+
+    /**
+     * 範囲の先頭からの位置のシリアルナンバーを受け取ったかどうかを返します。
+     *
+     * @param offset 範囲の先頭からの位置
+     * @return 受け取った場合はtrue
+     */
+    synchronized boolean isReceived(int offset) {
+        return (mBits[offset >> 3] & (1 << (offset & 7))) != 0;
+    }
+
+    /**
+     * 範囲の先頭からの位置のシリアルナンバーを受け取ったことを記録します。[save]するまでファイルには書き込みません。
+     *
+     * @param offset 範囲の先頭からの位置
+     */
+    synchronized void setReceived(int offset) {
+        final int mask = 1 << (offset & 7);
+        if ((mBits[offset >> 3] & mask) == 0) {
+            mBits[offset >> 3] |= mask;
+            mReceivedCount++;
+            mDirty = true;
+        }
+    }
+
+    /**
+     * 受け取ったシリアルナンバーの件数を返します。
+     *
+     * @return 受け取った件数
+     */
+    public synchronized int receivedCount() {
+        return mReceivedCount;
+    }
+
+    /**
+     * 記録をファイルに保存します。一時ファイルに書き込んでから置き換えるため、途中で失敗しても元のファイルは壊れません。
+     * ビットマップを写してから書き込むため、書き込み中も[setReceived]で記録できます。[delete]した後は何もしません。
+     *
+     * @throws IOException 書き込みに失敗した場合
+     */
+    public void save() throws IOException {
+        synchronized (mFileLock) {
+            final byte[] bits;
+            synchronized (this) {
+                if (!mDirty || mDeleted) {
+                    return;
+                }
+                bits = mBits.clone();
+                mDirty = false;
+            }
+            try {
+                write(bits);
+            } catch (IOException e) {
+                synchronized (this) {
+                    mDirty = true;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void write(@NonNull byte[] bits) throws IOException {
+        final File directory = mFile.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            throw new IOException("failed to create " + directory);
+        }
+        final File temporary = new File(mFile.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+            output.writeShort(startSerialNumber);
+            output.writeInt(length);
+            output.write(bits);
+        }
+        if (!temporary.renameTo(mFile)) {
+            temporary.delete();
+            throw new IOException("failed to replace " + mFile);
+        }
+    }
+
+    /**
+     * ファイルを削除します。以降の[save]では書き込みません。
+     */
+    public void delete() {
+        synchronized (mFileLock) {
+            synchronized (this) {
+                mDeleted = true;
+                mDirty = false;
+            }
+            mFile.delete();
+        }
+    }
+
+    /**
+     * 記録するファイルを返します。
+     *
+     * @return ファイル
+     */
+    @NonNull
+    public File file() {
+        return mFile;
+    }
+}
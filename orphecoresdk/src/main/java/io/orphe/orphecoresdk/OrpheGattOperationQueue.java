@@ -0,0 +1,216 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.UUID;
+
+/**
+ * GATTの読み書きを1つずつ順番に実行するキュー。
+ * Androidでは同時に1つのGATT操作しか実行できないため、前の操作の完了コールバック
+ * （onCharacteristicWrite、onDescriptorWrite、onCharacteristicReadなど）を待ってから次の操作を実行します。
+ * コールバックが返ってこない場合はタイムアウトで次の操作に進みます。
+ */
+class OrpheGattOperationQueue {
+    /**
+     * 完了コールバックを待つ最大時間のデフォルト（ミリ秒）
+     */
+    static final long DEFAULT_TIMEOUT_MILLIS = 1000;
+
+    /**
+     * MTUの変更の完了を表すUUID。MTUの変更はキャラクタリスティックを伴わないため、[onCompleted]にはこれを渡します
+     */
+    static final UUID MTU_UUID = new UUID(0, 0);
+
+    /**
+     * 接続間隔の変更の要求を表すUUID。onConnectionUpdatedが呼ばれない端末があるため、完了を待たずに次に進みます
+     */
+    static final UUID CONNECTION_PRIORITY_UUID = new UUID(0, 1);
+
+    /**
+     * PHYの変更の要求を表すUUID。要求が今のPHYと同じ場合はonPhyUpdateが呼ばれないため、完了を待たずに次に進みます
+     */
+    static final UUID PHY_UUID = new UUID(0, 2);
+
+    /// [runAfterSetup]の処理を表すUUID。完了コールバックを待たないため[onCompleted]には渡されない
+    private static final UUID AFTER_SETUP_UUID = new UUID(0, 3);
+
+    /**
+     * GATTの操作。
+     */
+    interface Operation {
+        /**
+         * 操作を実行します。
+         *
+         * @return 操作が開始され完了コールバックを待つ場合はtrue。実行できなかった場合はfalse
+         */
+        boolean execute();
+    }
+
+    /**
+     * タイムアウトのスケジュールを行います。
+     */
+    interface Scheduler {
+        /**
+         * 指定時間後に実行します。
+         *
+         * @param runnable 実行する処理
+         * @param delayMillis 遅延時間（ミリ秒）
+         */
+        void schedule(@NonNull Runnable runnable, long delayMillis);
+
+        /**
+         * スケジュールした処理を取り消します。
+         *
+         * @param runnable 取り消す処理
+         */
+        void cancel(@NonNull Runnable runnable);
+    }
+
+    private static class Entry {
+        final UUID uuid;
+        final Operation operation;
+
+        Entry(@NonNull UUID uuid, @NonNull Operation operation) {
+            this.uuid = uuid;
+            this.operation = operation;
+        }
+    }
+
+    private final ArrayDeque<Entry> mSetupQueue = new ArrayDeque<>();
+    private final ArrayDeque<Entry> mQueue = new ArrayDeque<>();
+    private final Scheduler mScheduler;
+    private final long mTimeoutMillis;
+    private Entry mCurrent;
+    private Runnable mCurrentTimeout;
+    private boolean mReady;
+    private long mTimedOutCount;
+
+    /**
+     * GATTの読み書きを1つずつ順番に実行するキュー。
+     *
+     * @param scheduler タイムアウトのスケジュールを行う[Scheduler]
+     * @param timeoutMillis 完了コールバックを待つ最大時間（ミリ秒）
+     */
+    OrpheGattOperationQueue(@NonNull Scheduler scheduler, long timeoutMillis) {
+        mScheduler = scheduler;
+        mTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 操作を追加します。サービスの探索が終わるまでは実行されません。
+     *
+     * @param uuid 完了コールバックで通知されるキャラクタリスティックまたはディスクリプタのUUID
+     * @param operation 実行する操作
+     */
+    synchronized void enqueue(@NonNull UUID uuid, @NonNull Operation operation) {
+        mQueue.add(new Entry(uuid, operation));
+        next();
+    }
+
+    /**
+     * 接続直後の設定として操作を追加します。[enqueue]で追加された操作よりも先に実行されます。
+     *
+     * @param uuid 完了コールバックで通知されるキャラクタリスティックまたはディスクリプタのUUID
+     * @param operation 実行する操作
+     */
+    synchronized void enqueueSetup(@NonNull UUID uuid, @NonNull Operation operation) {
+        mSetupQueue.add(new Entry(uuid, operation));
+        next();
+    }
+
+    /**
+     * それまでに[enqueueSetup]で追加した接続直後の設定がすべて完了してから、[runnable]を実行します。
+     * [enqueue]で追加された操作よりも先に、キューを実行しているスレッドで呼ばれます。[clear]した場合は実行しません。
+     *
+     * @param runnable 実行する処理
+     */
+    synchronized void runAfterSetup(@NonNull Runnable runnable) {
+        mSetupQueue.add(new Entry(AFTER_SETUP_UUID, () -> {
+            runnable.run();
+            return false;
+        }));
+        next();
+    }
+
+    /**
+     * 操作の実行を開始します。サービスの探索が終わったときに呼び出します。
+     */
+    synchronized void start() {
+        mReady = true;
+        next();
+    }
+
+    /**
+     * 完了コールバックを受け取ったときに呼び出します。
+     *
+     * @param uuid 完了したキャラクタリスティックまたはディスクリプタのUUID
+     */
+    synchronized void onCompleted(@NonNull UUID uuid) {
+        if (mCurrent == null || !mCurrent.uuid.equals(uuid)) {
+            return;
+        }
+        finishCurrent();
+        next();
+    }
+
+    /**
+     * 待機中の操作をすべて破棄し、再度[start]されるまで実行を止めます。切断時に呼び出します。
+     */
+    synchronized void clear() {
+        mSetupQueue.clear();
+        mQueue.clear();
+        if (mCurrent != null) {
+            finishCurrent();
+        }
+        mReady = false;
+    }
+
+    /**
+     * 実行中または待機中の操作の数を返します。
+     *
+     * @return 操作の数
+     */
+    synchronized int size() {
+        return mSetupQueue.size() + mQueue.size() + (mCurrent != null ? 1 : 0);
+    }
+
+    /**
+     * タイムアウトした操作の数を返します。
+     *
+     * @return タイムアウトした操作の数
+     */
+    synchronized long timedOutCount() {
+        return mTimedOutCount;
+    }
+
+    private void finishCurrent() {
+        mScheduler.cancel(mCurrentTimeout);
+        mCurrent = null;
+        mCurrentTimeout = null;
+    }
+
+    private void next() {
+        while (mReady && mCurrent == null) {
+            final Entry entry = !mSetupQueue.isEmpty() ? mSetupQueue.poll() : mQueue.poll();
+            if (entry == null) {
+                return;
+            }
+            if (!entry.operation.execute()) {
+                continue;
+            }
+            mCurrent = entry;
+            mCurrentTimeout = () -> onTimeout(entry);
+            mScheduler.schedule(mCurrentTimeout, mTimeoutMillis);
+        }
+    }
+
+    private synchronized void onTimeout(@NonNull Entry entry) {
+        if (mCurrent != entry) {
+            return;
+        }
+        mTimedOutCount++;
+        finishCurrent();
+        next();
+    }
+}
@@ -9,6 +9,7 @@ import android.bluetooth.BluetoothGattCharacteristic;
 import android.bluetooth.BluetoothGattDescriptor;
 import android.bluetooth.BluetoothGattService;
 import android.bluetooth.BluetoothProfile;
+import android.bluetooth.BluetoothStatusCodes;
 import android.bluetooth.le.BluetoothLeScanner;
 import android.bluetooth.le.ScanCallback;
 import android.bluetooth.le.ScanFilter;
@@ -18,12 +19,15 @@ import android.bluetooth.le.ScanSettings;
 import android.content.Context;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.ParcelUuid;
+import android.os.SystemClock;
 import android.util.Log;
 
+import java.io.File;
+import java.io.IOException;
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
 
 import androidx.annotation.NonNull;
@@ -31,11 +35,15 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.ListIterator;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * ORPHE INSOLEを管理します。
@@ -44,19 +52,93 @@ import java.util.UUID;
  */
 public class OrpheInsole {
     private static final String TAG = OrpheInsole.class.getSimpleName();
-    private static final long SCAN_PERIOD = 20000; // スキャンの期間（ミリ秒）
+    private static final long DOWNLOAD_TICK_INTERVAL = 200; // まとめて取得するときに届かない区間を確認する間隔（ミリ秒）
+    private static final long REQUEST_TICK_INTERVAL = 200; // 分割したリクエストの次を書き込むか確認する間隔（ミリ秒）
     private final Context mContext;
     private final OrpheInsoleCallback mOrpheCallback;
     private BluetoothLeScanner mBluetoothLeScanner;
     private BluetoothDevice mBluetoothDevice;
     private BluetoothGatt mBluetoothGatt;
     private final Handler mHandler = new Handler();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final OrpheGattOperationQueue.Scheduler mMainScheduler = new OrpheGattOperationQueue.Scheduler() {
+        @Override
+        public void schedule(@NonNull Runnable runnable, long delayMillis) {
+            mMainHandler.postDelayed(runnable, delayMillis);
+        }
+
+        @Override
+        public void cancel(@NonNull Runnable runnable) {
+            mMainHandler.removeCallbacks(runnable);
+        }
+    };
+    private final OrpheGattOperationQueue mGattQueue = new OrpheGattOperationQueue(mMainScheduler, OrpheGattOperationQueue.DEFAULT_TIMEOUT_MILLIS);
+    private final OrpheNotificationPipeline<OrpheInsoleValue> mPipeline;
+    private HandlerThread mPipelineThread;
+    @Nullable
+    private volatile OrpheDeviceSimulator mSimulator;
+    @NonNull
+    private volatile OrpheDeviceClock mDeviceClock = new OrpheDeviceClock();
+    @NonNull
+    private volatile OrpheInsoleCalibration mCalibration = OrpheInsoleCalibration.DEFAULT;
+    @Nullable
+    private volatile OrpheInsoleCalibrationStore mCalibrationStore;
+    /// 計測中の風袋とコールバックの組。[startTare]と配信するスレッドの間で組ごと置き換える
+    private final AtomicReference<TareTask> mTare = new AtomicReference<>();
+    @NonNull
+    private OrpheDecodeMode mDecodeMode = OrpheDecodeMode.mainThread;
+    @NonNull
+    private OrpheScanPolicy mScanPolicy = OrpheScanPolicy.DEFAULT;
+    private final OrpheLatencyStats mScanLatencyStats = new OrpheLatencyStats();
+    /// 今回のスキャンで見つかったデバイスのアドレス
+    private final Set<String> mScannedAddresses = new HashSet<>();
+    /// スキャンを開始した時刻（[SystemClock.elapsedRealtimeNanos]）
+    private long mScanStartNanos;
+    private final Runnable mScanTimeout = this::onScanTimeout;
+    private final Runnable mDownloadTick = this::onDownloadTick;
+    private final OrpheRequestPlanner mRequestPlanner = new OrpheRequestPlanner(this::setDeviceInfo);
+    private final Runnable mRequestTick = this::onRequestTick;
+    /// まとめて取得しているデバイスのアドレス。再接続したときに同じデバイスであれば再開する
+    @Nullable
+    private String mDownloadAddress;
+    @Nullable
+    private File mDownloadCheckpointDirectory;
+    @NonNull
+    private volatile OrpheLinkProfile mLinkProfile = OrpheLinkProfile.balanced;
+    @NonNull
+    private volatile OrpheLinkParameters mLinkParameters = OrpheLinkParameters.INITIAL;
+    /// スキャンせずに接続し直すための状態と、前回接続したデバイスの記録
+    private final OrpheReconnector mReconnector;
+    /// 追加されている場合は[startScan]で自分のスキャンの代わりに使う
+    @Nullable
+    private OrpheSessionManager mSessionManager;
+    private final OrpheSessionManager.Target mSessionTarget = new OrpheSessionManager.Target() {
+        @Override
+        public void onScanned(@NonNull BluetoothDevice device) {
+            mBluetoothDevice = device;
+            mOrpheCallback.onScan(device);
+            connect(device);
+        }
+
+        @Override
+        public void onScanTimeout() {
+            if (mStatus == OrpheCoreStatus.scanned) {
+                mStatus = OrpheCoreStatus.none;
+                mOrpheCallback.onScan(null);
+            }
+        }
+
+        @Override
+        public void release() {
+            disconnect();
+        }
+    };
     public final OrpheSidePosition sidePosition;
 
-    private OrpheInsoleValue mLatestValue;
+    private volatile OrpheInsoleValue mLatestValue;
 
-    private int mLatestSerialNumber;
-    private LocalDateTime mLatestSerialNumberTime;
+    private volatile int mLatestSerialNumber;
+    private volatile LocalDateTime mLatestSerialNumberTime;
 
     private boolean mDebugMode;
 
@@ -151,6 +233,8 @@ public class OrpheInsole {
         mContext = context;
         mOrpheCallback = orpheCallback;
         this.sidePosition = sidePosition;
+        mReconnector = new OrpheReconnector(OrpheKnownDevices.fromPreferences(context), OrpheKnownDevices.key(TAG, sidePosition),
+                mMainScheduler, OrpheReconnector.DEFAULT_TIMEOUT_MILLIS, this::onReconnectTimeout);
         this.accRange = accRange;
         this.gyroRange = gyroRange;
         this.mDebugMode = debugMode;
@@ -164,6 +248,92 @@ public class OrpheInsole {
             }
         }
         mBluetoothDevice = null;
+        mPipeline = new OrpheNotificationPipeline<>(
+                new OrpheNotificationPipeline.Decoder<OrpheInsoleValue>() {
+                    @RequiresApi(api = Build.VERSION_CODES.O)
+                    @Override
+                    public OrpheInsoleValue[] decode(@NonNull byte[] value) throws Exception {
+                        return OrpheInsoleValue.fromBytes(value, sidePosition, accRange, gyroRange, mDeviceClock, mCalibration);
+                    }
+
+                    @RequiresApi(api = Build.VERSION_CODES.O)
+                    @Override
+                    public OrpheInsoleValue[] decode(@NonNull byte[] value, long receivedNanos, boolean live) throws Exception {
+                        final OrpheDeviceClock clock = mDeviceClock;
+                        // 再取得したデータの受信時刻はデバイスの時刻と対応しないため、対応付けや日付の判定に使わない
+                        if (live) {
+                            clock.onPacket(value, receivedNanos);
+                        }
+                        return OrpheInsoleValue.fromBytes(value, sidePosition, accRange, gyroRange, clock, mCalibration);
+                    }
+
+                    @Override
+                    public boolean decodeFrames(@NonNull byte[] value, @NonNull SensorFrameBatch frames) {
+                        OrpheInsoleValue.fromBytes(value, accRange, gyroRange, frames, mDeviceClock, mCalibration);
+                        return true;
+                    }
+
+                    @Override
+                    public boolean toFrames(@NonNull OrpheInsoleValue[] values, @NonNull SensorFrameBatch frames) {
+                        frames.setCalibration(mCalibration);
+                        for (OrpheInsoleValue value : values) {
+                            frames.add(value);
+                        }
+                        return true;
+                    }
+                },
+                new OrpheNotificationPipeline.Listener<OrpheInsoleValue>() {
+                    @RequiresApi(api = Build.VERSION_CODES.O)
+                    @Override
+                    public void onCurrentSerialNumber(int serialNumber) {
+                        mLatestSerialNumber = serialNumber;
+                        mLatestSerialNumberTime = LocalDateTime.now();
+                        mOrpheCallback.gotCurrentSerialNumber(serialNumber);
+                    }
+
+                    @Override
+                    public void onValueNotFound(int serialNumber, int length) {
+                        for (int i = 0; i < length; i++) {
+                            mOrpheCallback.sensorValueIsNotFound(serialNumber + i);
+                        }
+                    }
+
+                    @RequiresApi(api = Build.VERSION_CODES.O)
+                    @Override
+                    public void onValues(@NonNull OrpheInsoleValue[] values) {
+                        onValues(values, true);
+                    }
+
+                    @RequiresApi(api = Build.VERSION_CODES.O)
+                    @Override
+                    public void onValues(@NonNull OrpheInsoleValue[] values, boolean live) {
+                        mOrpheCallback.gotInsoleValues(values);
+                        // 再取得したデータは計測を始める前の荷重を含むことがあるため、風袋にはリアルタイムのセンサー値だけを使う
+                        final TareTask tare = mTare.get();
+                        if (tare != null && live) {
+                            addTare(tare, values);
+                        }
+                        mLatestValue = values[0];
+                        mLatestSerialNumber = mLatestValue.serialNumber;
+                        mLatestSerialNumberTime = LocalDateTime.now();
+                    }
+
+                    @Override
+                    public void onFrames(@NonNull SensorFrameBatch frames) {
+                        mOrpheCallback.gotSensorFrames(frames);
+                    }
+
+                    @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
+                    @Override
+                    public void onRequestValues(@NonNull OrpheValueRequest[] requests) {
+                        sendValueRequests(OrpheRequestPlanner.merge(requests), false);
+                    }
+                },
+                mMainHandler::post,
+                null);
+        mPipeline.setSerialClock(new OrpheSerialClock(OrpheSerialClock.INSOLE_PERIOD_NANOS));
+        mPipeline.setRequestPlanner(mRequestPlanner);
+        mPipeline.setHoldScheduler(mMainHandler::postDelayed);
     }
     
     /**
@@ -195,6 +365,439 @@ public class OrpheInsole {
     }
 
 
+    /**
+     * Notifyで受け取ったセンサー値をデコードするスレッドとコールバックを呼び出す[Executor]を設定します。
+     * [OrpheDecodeMode.pipelineThread]の場合は専用のスレッドでデコードするため、メインスレッドの負荷を減らせます。
+     *
+     * @param mode デコードするスレッドの設定
+     * @param callbackExecutor コールバックを呼び出す[Executor]。nullの場合はメインスレッドで呼び出します。
+     */
+    public void setDecodeMode(@NonNull final OrpheDecodeMode mode, @Nullable final Executor callbackExecutor) {
+        final Executor executor = callbackExecutor != null ? callbackExecutor : mMainHandler::post;
+        if (mode == OrpheDecodeMode.pipelineThread) {
+            if (mPipelineThread == null) {
+                mPipelineThread = new HandlerThread(TAG + "-" + sidePosition.name());
+                mPipelineThread.start();
+            }
+            final Handler pipelineHandler = new Handler(mPipelineThread.getLooper());
+            mPipeline.setExecutors(pipelineHandler::post, executor);
+        } else {
+            mPipeline.setExecutors(mMainHandler::post, callbackExecutor);
+            if (mPipelineThread != null) {
+                mPipelineThread.quitSafely();
+                mPipelineThread = null;
+            }
+        }
+        mDecodeMode = mode;
+    }
+
+    /**
+     * Notifyで受け取ったセンサー値をデコードするスレッドを設定します。
+     * コールバックはメインスレッドで呼び出されます。
+     *
+     * @param mode デコードするスレッドの設定
+     */
+    public void setDecodeMode(@NonNull final OrpheDecodeMode mode) {
+        setDecodeMode(mode, null);
+    }
+
+    /**
+     * [OrpheInsoleCallback.gotSensorFrames]を呼び出すかどうかを設定します。デフォルトは無効です。
+     * 有効にすると受信したバイト配列から[SensorFrameBatch]にも書き込むため、使う場合だけ有効にしてください。
+     *
+     * @param enabled 有効にする場合はtrue
+     */
+    public void setSensorFrameCallbackEnabled(boolean enabled) {
+        mPipeline.setFramesEnabled(enabled);
+    }
+
+    /**
+     * 現在のデコードするスレッドの設定を返します。
+     *
+     * @return デコードするスレッドの設定
+     */
+    @NonNull
+    public OrpheDecodeMode decodeMode() {
+        return mDecodeMode;
+    }
+
+    /**
+     * Notifyを受け取ってからコールバックが呼ばれるまでの遅延の集計を返します。
+     * [setDecodeMode]の設定ごとに[OrpheLatencyStats.reset]してから計測すると比較できます。
+     *
+     * @return 遅延の集計
+     */
+    @NonNull
+    public OrpheLatencyStats getDeliveryLatencyStats() {
+        return mPipeline.latencyStats();
+    }
+
+    /**
+     * スキャンの設定を変更します。次の[startScan]から使われます。
+     * [OrpheSessionManager]に追加している場合は[OrpheSessionManager.setScanPolicy]の設定が使われます。
+     *
+     * @param policy スキャンの設定。デフォルトは[OrpheScanPolicy.DEFAULT]
+     */
+    public void setScanPolicy(@NonNull final OrpheScanPolicy policy) {
+        mScanPolicy = policy;
+    }
+
+    /**
+     * スキャンの設定を返します。
+     *
+     * @return スキャンの設定
+     */
+    @NonNull
+    public OrpheScanPolicy getScanPolicy() {
+        return mScanPolicy;
+    }
+
+    /**
+     * [startScan]から最初のデバイスが見つかるまでの時間の集計を返します。
+     * [setScanPolicy]の設定ごとに[OrpheLatencyStats.reset]してから計測すると比較できます。
+     * [OrpheLatencyStats.setListener]を設定すると、デバイスが見つかるたびにメインスレッドで時間を受け取れます。
+     *
+     * @return 最初のデバイスが見つかるまでの時間の集計
+     */
+    @NonNull
+    public OrpheLatencyStats getScanLatencyStats() {
+        return mScanLatencyStats;
+    }
+
+    /**
+     * 接続時に要求するBLEの通信条件を変更します。接続中の場合はすぐに要求し直します。
+     * 決まった通信条件は[OrpheInsoleCallback.onLinkParametersChanged]で通知されます。
+     *
+     * @param profile 通信条件の設定。デフォルトは[OrpheLinkProfile.balanced]
+     */
+    @SuppressLint("MissingPermission")
+    public void setLinkProfile(@NonNull final OrpheLinkProfile profile) {
+        mLinkProfile = profile;
+        final BluetoothGatt gatt = mBluetoothGatt;
+        if (mStatus == OrpheCoreStatus.connected && gatt != null) {
+            requestLinkProfile(gatt, profile);
+        }
+    }
+
+    /**
+     * 接続時に要求するBLEの通信条件を返します。
+     *
+     * @return 通信条件の設定
+     */
+    @NonNull
+    public OrpheLinkProfile getLinkProfile() {
+        return mLinkProfile;
+    }
+
+    /**
+     * デバイスとの間で決まったBLEの通信条件を返します。
+     *
+     * @return 通信条件。接続していない場合は[OrpheLinkParameters.INITIAL]
+     */
+    @NonNull
+    public OrpheLinkParameters getLinkParameters() {
+        return mLinkParameters;
+    }
+
+    /**
+     * 保存されたデータを取得するときのスループットの集計を返します。
+     * [requestInsoleValue]やまとめて取得を始めるとリセットされ、その後に受け取ったリクエストした範囲のセンサー値を集計します。
+     * 欠落の自動的な再取得やリアルタイムのセンサー値は含めません。
+     *
+     * @return スループットの集計
+     */
+    @NonNull
+    public OrpheThroughputMeter getReplayThroughput() {
+        return mPipeline.replayThroughput();
+    }
+
+    /// PHYと接続間隔の要求は他のGATTの操作と重ならないように[mGattQueue]の設定の操作として実行するが、完了は待たない。
+    /// 要求が今の条件と同じ場合や端末によってはコールバックが呼ばれず、MTUの変更や通知の有効化が遅れてしまうため
+    @SuppressLint("MissingPermission")
+    private void requestLinkProfile(@NonNull BluetoothGatt gatt, @NonNull OrpheLinkProfile profile) {
+        Log.d(TAG, "requestLinkProfile:" + profile);
+        mGattQueue.enqueueSetup(OrpheGattOperationQueue.CONNECTION_PRIORITY_UUID, () -> {
+            gatt.requestConnectionPriority(profile.connectionPriority);
+            return false;
+        });
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            mGattQueue.enqueueSetup(OrpheGattOperationQueue.PHY_UUID, () -> {
+                gatt.setPreferredPhy(profile.phy, profile.phy, BluetoothDevice.PHY_OPTION_NO_PREFERRED);
+                return false;
+            });
+        }
+    }
+
+    private void onLinkParametersChanged(@NonNull OrpheLinkParameters parameters) {
+        mLinkParameters = parameters;
+        Log.d(TAG, parameters.toString());
+        mMainHandler.post(() -> mOrpheCallback.onLinkParametersChanged(parameters));
+    }
+
+    /**
+     * Notifyの受信バッファがいっぱいになったときの動作を設定します。
+     * 保存されたデータの再送などでNotifyが集中した場合でも、バッファ以上にメモリは増えません。
+     *
+     * @param overflowPolicy バッファがいっぱいになったときの動作
+     */
+    public void setOverflowPolicy(@NonNull final OrpheOverflowPolicy overflowPolicy) {
+        mPipeline.ringBuffer().setOverflowPolicy(overflowPolicy);
+    }
+
+    /**
+     * Notifyの受信バッファを返します。現在の格納件数や最大の格納件数、破棄された件数を確認できます。
+     *
+     * @return Notifyの受信バッファ
+     */
+    @NonNull
+    public OrpheNotificationRingBuffer getNotificationBuffer() {
+        return mPipeline.ringBuffer();
+    }
+
+    /**
+     * リアルタイムモードで欠落したセンサー値を自動で再取得するかを設定します。
+     * 有効にするとシリアルナンバーの欠落を検出し、[requestInsoleValue]でまとめて再取得をリクエストします。
+     * 再取得できたセンサー値は通常のコールバックで届きます。重複して届いたセンサー値は破棄されます。
+     *
+     * @param enabled 有効にする場合はtrue
+     */
+    @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
+    public void setAutoBackfill(boolean enabled) {
+        mPipeline.setGapTracker(enabled ? new OrpheSerialGapTracker() : null);
+    }
+
+    /**
+     * 欠落したセンサー値の検出と再取得の状況を返します。
+     *
+     * @return [setAutoBackfill]で有効にしていない場合はnull
+     */
+    @Nullable
+    public OrpheSerialGapTracker getSerialGapTracker() {
+        return mPipeline.gapTracker();
+    }
+
+    /// 接続し直した場合や生データの送り元を変えた場合は、前のシリアルナンバーを重複や欠落の判定に使わない
+    private void resetGapTracker() {
+        final OrpheSerialGapTracker gapTracker = mPipeline.gapTracker();
+        if (gapTracker != null) {
+            gapTracker.reset();
+        }
+    }
+
+    /**
+     * センサー値をシリアルナンバーの順に並べ替えてから配信するかを設定します。
+     * 有効にすると重複したセンサー値は取り除かれ、欠けているシリアルナンバーがある場合は後続のセンサー値を最大で[maxHoldMillis]だけ保持して到着を待ちます。
+     * [setAutoBackfill]と併用する場合は、再取得にかかる時間より長い保持時間を指定してください。
+     * 無効にした場合や切断した場合は、保持していたセンサー値をすぐに配信します。
+     *
+     * @param enabled 有効にする場合はtrue
+     * @param maxHoldMillis 欠けているシリアルナンバーを待つ最大時間（ミリ秒）
+     */
+    public void setOrderedDelivery(boolean enabled, long maxHoldMillis) {
+        mPipeline.setReorderBuffer(enabled ? new OrpheReorderBuffer<>(value -> value.dataPosition, maxHoldMillis) : null);
+    }
+
+    /**
+     * センサー値をシリアルナンバーの順に並べ替えてから配信するかを設定します。
+     * 欠けているシリアルナンバーを待つ最大時間は[OrpheReorderBuffer.DEFAULT_MAX_HOLD_MILLIS]です。
+     *
+     * @param enabled 有効にする場合はtrue
+     */
+    public void setOrderedDelivery(boolean enabled) {
+        setOrderedDelivery(enabled, OrpheReorderBuffer.DEFAULT_MAX_HOLD_MILLIS);
+    }
+
+    /**
+     * センサー値の並べ替えの状況を返します。遅延や重複で破棄された数を確認できます。
+     *
+     * @return [setOrderedDelivery]で有効にしていない場合はnull
+     */
+    @Nullable
+    public OrpheReorderBuffer<OrpheInsoleValue> getReorderBuffer() {
+        return mPipeline.reorderBuffer();
+    }
+
+    /**
+     * Notifyで受け取った生データのファイルへの記録を開始します。
+     * 加速度レンジ、ジャイロレンジ、取り付け位置とともに受信時刻付きでバイナリ形式で記録します。
+     * すでに記録中の場合は前の記録を終了してから開始します。
+     *
+     * @param file 記録するファイル（既にある場合は上書きします）
+     * @return 記録の状況を確認できる[OrpheSessionRecorder]
+     * @throws IOException ファイルを開けなかった場合
+     */
+    @NonNull
+    public OrpheSessionRecorder startRecording(@NonNull File file) throws IOException {
+        stopRecording();
+        final OrpheSessionRecorder recorder = new OrpheSessionRecorder(file, accRange, gyroRange, sidePosition);
+        mPipeline.setRecorder(recorder);
+        return recorder;
+    }
+
+    /**
+     * 生データの記録を終了し、ファイルを閉じます。記録していない場合は何もしません。
+     *
+     * @throws IOException 書き込みに失敗していた場合
+     */
+    public void stopRecording() throws IOException {
+        final OrpheSessionRecorder recorder = mPipeline.recorder();
+        if (recorder == null) {
+            return;
+        }
+        mPipeline.setRecorder(null);
+        recorder.close();
+    }
+
+    /**
+     * 接続中のデバイスの時刻をエポックミリ秒に変換している[OrpheDeviceClock]を返します。
+     * センサー値のタイムスタンプはこの時計で変換されます。
+     *
+     * @return 接続中のデバイスの[OrpheDeviceClock]
+     */
+    @NonNull
+    public OrpheDeviceClock getDeviceClock() {
+        return mDeviceClock;
+    }
+
+    /**
+     * 接続中のデバイスのシリアルナンバーと受信時刻を対応付けている[OrpheSerialClock]を返します。
+     * 最新の値をリクエストするときは、この時計から現在のシリアルナンバーを求めます。
+     *
+     * @return 接続中のデバイスの[OrpheSerialClock]
+     */
+    @NonNull
+    public OrpheSerialClock getSerialClock() {
+        return mPipeline.serialClock();
+    }
+
+    /**
+     * すべての圧力センサーで使う、圧力をニュートンに変換する曲線を設定します。デフォルトは[OrpheInsolePressureCurve.DEFAULT]です。
+     * 曲線の表は作成時に計算されるため、デバイスごとに1回作成したものを設定してください。
+     * 風袋は0に戻ります。
+     *
+     * @param pressureCurve 圧力の変換に使う[OrpheInsolePressureCurve]
+     */
+    public void setPressureCurve(@NonNull OrpheInsolePressureCurve pressureCurve) {
+        mCalibration = pressureCurve.calibration();
+    }
+
+    /**
+     * 圧力センサーごとのキャリブレーションを設定します。デフォルトは[OrpheInsoleCalibration.DEFAULT]です。
+     *
+     * @param calibration 圧力の変換に使う[OrpheInsoleCalibration]
+     */
+    public void setCalibration(@NonNull OrpheInsoleCalibration calibration) {
+        mCalibration = calibration;
+    }
+
+    /**
+     * 圧力の変換に使っているキャリブレーションを返します。
+     *
+     * @return 圧力の変換に使う[OrpheInsoleCalibration]
+     */
+    @NonNull
+    public OrpheInsoleCalibration getCalibration() {
+        return mCalibration;
+    }
+
+    /**
+     * デバイスごとのキャリブレーションを保持する[OrpheInsoleCalibrationStore]を設定します。
+     * 接続したときに、デバイスのキャリブレーションが登録されていればそれを使います。
+     * [startTare]で求めたキャリブレーションも登録されます。
+     *
+     * @param store キャリブレーションを保持する[OrpheInsoleCalibrationStore]。nullの場合は設定を解除します。
+     */
+    public void setCalibrationStore(@Nullable OrpheInsoleCalibrationStore store) {
+        mCalibrationStore = store;
+    }
+
+    /**
+     * 荷重がない状態で指定した数のサンプルを平均し、圧力センサーごとの風袋を求めます。
+     * 欠落の再取得や蓄積されたデータの取得で届いたサンプルは含めません。
+     * 終わるとキャリブレーションに反映され、[setCalibrationStore]で設定したものに登録されます。
+     * 計測中に呼び出した場合は最初からやり直します。どのスレッドからも呼び出せます。
+     *
+     * @param sampleCount 平均するサンプル数
+     * @param callback 終わったときに呼ばれるコールバック
+     */
+    public void startTare(int sampleCount, @Nullable OrpheInsoleTare.Callback callback) {
+        mTare.set(new TareTask(new OrpheInsoleTare(sampleCount, mCalibration), callback));
+    }
+
+    /// 計測中の風袋と、終わったときのコールバック
+    private static final class TareTask {
+        @NonNull
+        final OrpheInsoleTare tare;
+        @Nullable
+        final OrpheInsoleTare.Callback callback;
+
+        TareTask(@NonNull OrpheInsoleTare tare, @Nullable OrpheInsoleTare.Callback callback) {
+            this.tare = tare;
+            this.callback = callback;
+        }
+    }
+
+    /// 配信するスレッドから呼ぶ。計測中に[startTare]が呼ばれた場合は、置き換えられた組を使わずに新しい組で測り直す
+    private void addTare(@NonNull TareTask task, @NonNull OrpheInsoleValue[] values) {
+        final OrpheInsoleTare tare = task.tare;
+        if (tare.base != mCalibration) {
+            // 計測中にキャリブレーションが変わった場合は、新しいキャリブレーションで測り直す
+            mTare.compareAndSet(task, new TareTask(new OrpheInsoleTare(tare.sampleCount, mCalibration), task.callback));
+            return;
+        }
+        for (OrpheInsoleValue value : values) {
+            if (tare.add(value)) {
+                break;
+            }
+        }
+        if (!tare.isFinished() || !mTare.compareAndSet(task, null)) {
+            return;
+        }
+        final OrpheInsoleCalibration calibration = tare.result();
+        final OrpheInsoleTare.Callback callback = task.callback;
+        mCalibration = calibration;
+        final OrpheInsoleCalibrationStore store = mCalibrationStore;
+        final BluetoothDevice device = mBluetoothDevice;
+        if (store != null && device != null) {
+            store.put(device.getAddress(), calibration);
+        }
+        if (callback != null) {
+            callback.onTareFinished(calibration);
+        }
+    }
+
+    /**
+     * 実機の代わりに[OrpheDeviceSimulator]で生成した生データを受け取るように設定します。
+     * 生成した生データはNotifyで受け取ったものと同じ処理でデコードされ、再取得のリクエストなどデバイスへの書き込みは[simulator]が受け取ります。
+     *
+     * @param simulator 生データを生成する[OrpheDeviceSimulator]。nullの場合は設定を解除します。
+     */
+    public void setSimulator(@Nullable OrpheDeviceSimulator simulator) {
+        final OrpheDeviceSimulator previous = mSimulator;
+        if (previous != null) {
+            previous.setSink(null);
+        }
+        mSimulator = simulator;
+        mDeviceClock = new OrpheDeviceClock();
+        mPipeline.setSerialClock(new OrpheSerialClock(OrpheSerialClock.INSOLE_PERIOD_NANOS));
+        resetGapTracker();
+        if (simulator != null) {
+            simulator.setSink(mPipeline::onNotified);
+        }
+    }
+
+    /**
+     * [OrpheSessionManager]に追加されたときに呼ばれます。
+     *
+     * @param sessionManager 追加された[OrpheSessionManager]。削除された場合はnull
+     * @return [OrpheSessionManager]から呼ばれる[OrpheSessionManager.Target]
+     */
+    @NonNull
+    OrpheSessionManager.Target attach(@Nullable OrpheSessionManager sessionManager) {
+        mSessionManager = sessionManager;
+        return mSessionTarget;
+    }
+
     /**
      * ORPHE INSOLEのスキャンを開始します。
      * 見つかった場合は[OrpheInsoleCallback.onScan]に対応する[BluetoothDevice]が渡されます。
@@ -204,6 +807,11 @@ public class OrpheInsole {
         if (mStatus == OrpheCoreStatus.disconnecting || mStatus == OrpheCoreStatus.connected || mStatus == OrpheCoreStatus.connecting) {
             return;
         }
+        if (mSessionManager != null) {
+            mStatus = OrpheCoreStatus.scanned;
+            mSessionManager.request(mSessionTarget);
+            return;
+        }
         if (mStatus == OrpheCoreStatus.scanned) {
             mBluetoothLeScanner.stopScan(scanCallback);
             mStatus = OrpheCoreStatus.none;
@@ -213,15 +821,12 @@ public class OrpheInsole {
         //    connect(mBluetoothDevice);
         //    return;
         // }
-        mHandler.postDelayed(() -> {
-            if (mStatus == OrpheCoreStatus.scanned) {
-                mBluetoothLeScanner.stopScan(scanCallback);
-                mOrpheCallback.onScan(null);
-            }
-        }, SCAN_PERIOD);
-
-        Log.d(TAG, "begin startScan");
+        Log.d(TAG, "begin startScan:" + mScanPolicy);
         mStatus = OrpheCoreStatus.scanned;
+        mScannedAddresses.clear();
+        mScanStartNanos = SystemClock.elapsedRealtimeNanos();
+        mHandler.removeCallbacks(mScanTimeout);
+        mHandler.postDelayed(mScanTimeout, mScanPolicy.timeoutMillis);
         // TODO: 暫定的にサービスUUIDによるフィルタはスキップ
         final List<ScanFilter> scanFilters = Arrays.asList(
                 //new ScanFilter.Builder()
@@ -231,8 +836,7 @@ public class OrpheInsole {
                 //      .setServiceUuid(ParcelUuid.fromString(GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION.toString()))
                 //    .build()
         );
-        mBluetoothLeScanner.startScan(scanFilters, new ScanSettings.Builder().build(),
-                scanCallback);
+        mBluetoothLeScanner.startScan(scanFilters, mScanPolicy.toScanSettings(), scanCallback);
     }
 
     /**
@@ -247,8 +851,17 @@ public class OrpheInsole {
             mBluetoothGatt.disconnect();
         }
         mBluetoothDevice = null;
+        if (mReconnector.isReconnecting()) {
+            mReconnector.cancel();
+            mStatus = OrpheCoreStatus.none;
+        }
         if (mStatus == OrpheCoreStatus.scanned) {
-            mBluetoothLeScanner.stopScan(scanCallback);
+            if (mSessionManager != null) {
+                mSessionManager.cancel(mSessionTarget);
+            } else {
+                mHandler.removeCallbacks(mScanTimeout);
+                mBluetoothLeScanner.stopScan(scanCallback);
+            }
             mStatus = OrpheCoreStatus.none;
         }
     }
@@ -269,6 +882,94 @@ public class OrpheInsole {
         mBluetoothDevice = null;
     }
 
+    /**
+     * 接続が切れたときに、スキャンせずに同じデバイスに接続し直すかを設定します。
+     * 有効な場合は前回見つけたサービスを使って探索を省くため、すぐに値の受信を再開できます。
+     * 5秒以内に接続できない場合はこれまでどおり[startScan]でスキャンします。
+     *
+     * @param enabled 接続し直す場合はtrue。デフォルトはfalse
+     */
+    public void setFastReconnect(boolean enabled) {
+        mReconnector.setEnabled(enabled);
+    }
+
+    /**
+     * この取り付け位置で前回接続したデバイスのアドレスを返します。アプリを再起動しても保持されます。
+     *
+     * @return アドレス。接続したことがない場合はnull
+     */
+    @Nullable
+    public String getKnownDeviceAddress() {
+        return mReconnector.knownAddress();
+    }
+
+    /**
+     * 記録した前回接続したデバイスのアドレスを削除します。
+     */
+    public void forgetKnownDevice() {
+        mReconnector.forget();
+    }
+
+    /**
+     * 前回接続したデバイスに、スキャンせずに接続します。
+     *
+     * @return 接続を開始した場合はtrue。接続したことがない場合はfalseなので、[startScan]でスキャンしてください
+     */
+    public boolean reconnect() {
+        final String address = getKnownDeviceAddress();
+        return address != null && connect(address);
+    }
+
+    /**
+     * アドレスを指定して、スキャンせずにORPHE INSOLEに接続します。
+     *
+     * @param address デバイスのアドレス
+     * @return 接続を開始した場合はtrue。アドレスが正しくない場合や、接続中の場合はfalse
+     */
+    public boolean connect(@NonNull String address) {
+        if (mStatus == OrpheCoreStatus.connected || mStatus == OrpheCoreStatus.connecting || mStatus == OrpheCoreStatus.disconnecting) {
+            return false;
+        }
+        final BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        if (bluetoothAdapter == null || !BluetoothAdapter.checkBluetoothAddress(address)) {
+            return false;
+        }
+        final BluetoothDevice device = bluetoothAdapter.getRemoteDevice(address);
+        mBluetoothDevice = device;
+        connect(device);
+        return mStatus == OrpheCoreStatus.connecting;
+    }
+
+    /// 切れたデバイスに、スキャンせずに同じ[BluetoothGatt]で接続し直す
+    @SuppressLint("MissingPermission")
+    private boolean reconnectAfterDrop(@NonNull BluetoothGatt gatt, boolean dropped) {
+        if (!mReconnector.shouldReconnect(dropped, gatt == mBluetoothGatt)) {
+            return false;
+        }
+        if (!gatt.connect()) {
+            return false;
+        }
+        Log.d(TAG, "reconnect:" + gatt.getDevice().getAddress());
+        mReconnector.onReconnecting();
+        mStatus = OrpheCoreStatus.connecting;
+        mBluetoothDevice = gatt.getDevice();
+        return true;
+    }
+
+    @SuppressLint("MissingPermission")
+    private void onReconnectTimeout() {
+        if (mStatus != OrpheCoreStatus.connecting) {
+            return;
+        }
+        Log.d(TAG, "reconnect timed out");
+        if (mBluetoothGatt != null) {
+            mBluetoothGatt.disconnect();
+        }
+        mStatus = OrpheCoreStatus.none;
+        mBluetoothDevice = null;
+        startScan();
+    }
+
     /**
      * 接続する[BluetoothDevice]を渡してORPHE INSOLE接続します。
      *
@@ -287,8 +988,9 @@ public class OrpheInsole {
         } else {
             try {
                 // connect to the GATT server on the device
-                Log.d(TAG, "connect try to connect:" + mBluetoothDevice.getAddress());
+                Log.d(TAG, "connect try to connect:" + device.getAddress());
                 mStatus = OrpheCoreStatus.connecting;
+                mReconnector.onNewGatt();
                 mBluetoothGatt = device.connectGatt(mContext, true, mBluetoothGattCallback);
             } catch (IllegalArgumentException e) {
                 Log.w(TAG, "Device not found with provided address.");
@@ -305,36 +1007,58 @@ public class OrpheInsole {
         if (mStatus != OrpheCoreStatus.connected || mBluetoothGatt == null) {
             return;
         }
-        BluetoothGattService service = mBluetoothGatt.getService(GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION);
-        if (service == null) {
-            Log.d(TAG, "Could not get service: " + GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION.toString());
-            return;
-        }
-        BluetoothGattCharacteristic characteristic = service.getCharacteristic(GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION);
-        if (characteristic == null) {
-            Log.d(TAG, "Could not get characteristic: " + GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION.toString());
-            return;
-        }
-        mBluetoothGatt.readCharacteristic(characteristic);
+        mGattQueue.enqueue(GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION,
+                () -> readCharacteristic(GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION, GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION));
     }
 
     @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
     @SuppressLint("MissingPermission")
     private void setDeviceInfo(byte[] value) {
+        final OrpheDeviceSimulator simulator = mSimulator;
+        if (simulator != null) {
+            // シミュレーターを設定している場合は、実機の代わりにシミュレーターが書き込みを受け取る
+            simulator.write(value);
+            return;
+        }
         if (mStatus != OrpheCoreStatus.connected || mBluetoothGatt == null) {
             return;
         }
-        BluetoothGattService service = mBluetoothGatt.getService(GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION);
+        mGattQueue.enqueue(GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION,
+                () -> writeCharacteristic(GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION, GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION, value));
+    }
+
+    @Nullable
+    private BluetoothGattCharacteristic findCharacteristic(@NonNull UUID serviceUUID, @NonNull UUID characteristicUUID) {
+        if (mBluetoothGatt == null) {
+            return null;
+        }
+        BluetoothGattService service = mBluetoothGatt.getService(serviceUUID);
         if (service == null) {
-            Log.d(TAG, "Could not get service: " + GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION.toString());
-            return;
+            Log.d(TAG, "Could not get service: " + serviceUUID.toString());
+            return null;
         }
-        BluetoothGattCharacteristic characteristic = service.getCharacteristic(GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION);
+        BluetoothGattCharacteristic characteristic = service.getCharacteristic(characteristicUUID);
         if (characteristic == null) {
-            Log.d(TAG, "Could not get characteristic: " + GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION.toString());
-            return;
+            Log.d(TAG, "Could not get characteristic: " + characteristicUUID.toString());
+            return null;
         }
-        mBluetoothGatt.writeCharacteristic(characteristic, value, BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
+        return characteristic;
+    }
+
+    /// [mGattQueue]から実行され、読み込みを開始できた場合はtrueを返す
+    @SuppressLint("MissingPermission")
+    private boolean readCharacteristic(@NonNull UUID serviceUUID, @NonNull UUID characteristicUUID) {
+        final BluetoothGattCharacteristic characteristic = findCharacteristic(serviceUUID, characteristicUUID);
+        return characteristic != null && mBluetoothGatt.readCharacteristic(characteristic);
+    }
+
+    /// [mGattQueue]から実行され、書き込みを開始できた場合はtrueを返す
+    @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
+    @SuppressLint("MissingPermission")
+    private boolean writeCharacteristic(@NonNull UUID serviceUUID, @NonNull UUID characteristicUUID, @NonNull byte[] value) {
+        final BluetoothGattCharacteristic characteristic = findCharacteristic(serviceUUID, characteristicUUID);
+        return characteristic != null
+                && mBluetoothGatt.writeCharacteristic(characteristic, value, BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE) == BluetoothStatusCodes.SUCCESS;
     }
 
     /**
@@ -346,18 +1070,16 @@ public class OrpheInsole {
         if (mStatus != OrpheCoreStatus.connected || mBluetoothGatt == null) {
             return;
         }
-        BluetoothGattService service = mBluetoothGatt.getService(GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION);
-        if (service == null) {
-            Log.d(TAG, "Could not get service: " + GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION.toString());
-            return;
-        }
-        BluetoothGattCharacteristic characteristic = service.getCharacteristic(GattUUIDDefine.UUID_CHAR_ORPHE_DATE_TIME);
-        if (characteristic == null) {
-            Log.d(TAG, "Could not get characteristic: " + GattUUIDDefine.UUID_CHAR_ORPHE_DATE_TIME.toString());
-            return;
-        }
+        mGattQueue.enqueue(GattUUIDDefine.UUID_CHAR_ORPHE_DATE_TIME,
+                () -> writeCharacteristic(GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION, GattUUIDDefine.UUID_CHAR_ORPHE_DATE_TIME, dateTimeValue()));
+    }
+
+    /// 書き込む時点の時刻を[GattUUIDDefine.UUID_CHAR_ORPHE_DATE_TIME]の形式に変換する
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    @NonNull
+    private static byte[] dateTimeValue() {
         final LocalDateTime now = LocalDateTime.now();
-        final int res = mBluetoothGatt.writeCharacteristic(characteristic, new byte[]{
+        return new byte[]{
                 (byte)(now.getYear() - 2000),
                 (byte)(now.getMonthValue()),
                 (byte)(now.getDayOfMonth()),
@@ -366,8 +1088,7 @@ public class OrpheInsole {
                 (byte)(now.getSecond()),
                 0,
                 //(byte)Math.round(now.getNano() / 1_000_000 / 10),
-        }, BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE);
-
+        };
     }
 
 
@@ -381,17 +1102,8 @@ public class OrpheInsole {
             return;
         }
         Log.d(TAG, "SyncTime: ");
-        BluetoothGattService service = mBluetoothGatt.getService(GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION);
-        if (service == null) {
-            Log.d(TAG, "Could not get service: " + GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION.toString());
-            return;
-        }
-        BluetoothGattCharacteristic characteristic = service.getCharacteristic(GattUUIDDefine.UUID_CHAR_ORPHE_DATE_TIME);
-        if (characteristic == null) {
-            Log.d(TAG, "Could not get characteristic: " + GattUUIDDefine.UUID_CHAR_ORPHE_DATE_TIME.toString());
-            return;
-        }
-        mBluetoothGatt.readCharacteristic(characteristic);
+        mGattQueue.enqueue(GattUUIDDefine.UUID_CHAR_ORPHE_DATE_TIME,
+                () -> readCharacteristic(GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION, GattUUIDDefine.UUID_CHAR_ORPHE_DATE_TIME));
     }
 
 
@@ -415,45 +1127,27 @@ public class OrpheInsole {
 
     /**
      * 最新の[OrpheInsoleValue]の取得をリクエストします。
+     * 現在のシリアルナンバーは[getSerialClock]で受け取ったシリアルナンバーと時刻から求めます。
+     * まだシリアルナンバーを受け取っていない場合は[getCurrentSerialNumber]を呼ぶだけで、リクエストは行いません。
      *
-     * @param length 取得する数（あくまで目安）
+     * @param length 取得する数（1〜32768）。0以下の場合は最後に受け取ったものより後に生成されたものをすべて取得します。
      */
     @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
     public void requestLatestInsoleValue(int length) {
-        if (mLatestSerialNumberTime == null) {
+        final OrpheSerialClock serialClock = mPipeline.serialClock();
+        if (!serialClock.isSynchronized()) {
             getCurrentSerialNumber();
             return;
         }
-        final long now = LocalDateTime.now().toInstant(ZoneOffset.UTC).toEpochMilli();
-        final long prev = mLatestSerialNumberTime.toInstant(ZoneOffset.UTC).toEpochMilli();
-        int serialNumber = mLatestSerialNumber;
-        if (serialNumber >= 256 * 256 - 1) {
-            serialNumber = 0;
-        } else {
-            serialNumber++;
-        }
-        if (length > 0) {
-            final long startTime = now - length * 20;
-            serialNumber = serialNumber + (int) Math.ceil((startTime - prev) / 20);
-            serialNumber = serialNumber % (256 * 256);
-            Log.d(TAG, "Request: " + serialNumber + ", " + length);
-            requestInsoleValue(new OrpheValueRequest[]{
-                    new OrpheValueRequest(serialNumber, length)
-            });
-        } else {
-            if(now > prev){
-                final int l = (int) Math.ceil((now - prev) / 20);
-                Log.d(TAG, "Request: " + serialNumber + ", " + l);
-                requestInsoleValue(new OrpheValueRequest[]{
-                        new OrpheValueRequest(serialNumber, l)
-                });
-            } else {
-                Log.d(TAG, "Request: " + serialNumber + ", " + 10);
-                requestInsoleValue(new OrpheValueRequest[]{
-                        new OrpheValueRequest(serialNumber, 10)
-                });
-            }
+        final long now = System.nanoTime();
+        final OrpheValueRequest request = length > 0
+                ? serialClock.latestRequest(length, now)
+                : serialClock.requestSince(mLatestSerialNumber, now);
+        if (request == null) {
+            return;
         }
+        Log.d(TAG, "Request: " + request.startSerialNumber + ", " + request.length);
+        requestInsoleValue(new OrpheValueRequest[]{request});
     }
 
     /**
@@ -466,38 +1160,39 @@ public class OrpheInsole {
 
     /**
      * [OrpheInsoleValue]の取得をリクエストします。
+     * 重なっているか隣り合っている範囲はまとめ、30件を超える場合は前の書き込みの範囲を受け取ってから順に書き込みます。
+     * 前の呼び出しや欠落の再取得、まとめて取得でまだ書き込んでいない範囲とはまとめて書き込みます。
      *
      * @param requests リクエスト情報を渡します。
      */
     @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
     public void requestInsoleValue(OrpheValueRequest[] requests) {
-        if (requests.length < 1) {
+        final OrpheValueRequest[] merged = OrpheRequestPlanner.merge(requests);
+        if (merged.length < 1) {
             Log.e(TAG, "A minimum of one request is required.");
-        } else if (requests.length > 30) {
-            Log.e(TAG, "You cannot send more than 30 requests.");
-        }
-        int i = 0;
-        final byte[] byteList = new byte[122];
-        for(int j = 0; j < 122; j++) {
-            byteList[j] = 0;
-        }
-        byteList[i] = 11;
-        i++;
-        byteList[i] = 2;
-        i++;
-        for (OrpheValueRequest request : requests) {
-            final int start = request.startSerialNumber;
-            final int length = request.length;
-            byteList[i] = (byte) (start >> 8);
-            i++;
-            byteList[i] = (byte) start;
-            i++;
-            byteList[i] = (byte) (length >> 8);
-            i++;
-            byteList[i] = (byte) length;
-            i++;
-        }
-        setDeviceInfo(byteList);
+            return;
+        }
+        mPipeline.startReplay(merged);
+        sendValueRequests(merged, true);
+    }
+
+    /// アプリからのリクエストに加えて、欠落の再取得とまとめて取得する場合のリクエストもここから書き込む。
+    /// [replay]はアプリとまとめて取得のリクエストでtrueにし、再送を重複として破棄しないように[OrpheSerialGapTracker]に渡す。
+    /// 欠落の再取得は渡さないため、同じシリアルナンバーを2回受け取った場合は重複として破棄される
+    @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
+    private void sendValueRequests(@NonNull OrpheValueRequest[] merged, boolean replay) {
+        if (merged.length < 1) {
+            return;
+        }
+        final OrpheSerialGapTracker gapTracker = mPipeline.gapTracker();
+        if (replay && gapTracker != null) {
+            gapTracker.onRequested(merged);
+        }
+        mRequestPlanner.plan(merged, System.nanoTime());
+        if (mRequestPlanner.hasPending()) {
+            mMainHandler.removeCallbacks(mRequestTick);
+            mMainHandler.postDelayed(mRequestTick, REQUEST_TICK_INTERVAL);
+        }
     }
 
     /**
@@ -505,9 +1200,157 @@ public class OrpheInsole {
      */
     @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
     public void cancelRequestingSensorData() {
+        mRequestPlanner.clear();
         setDeviceInfo(new byte[]{11, 7});
     }
 
+    /**
+     * 蓄積された[OrpheInsoleValue]を、シリアルナンバーの範囲を指定してまとめて取得します。
+     * 範囲は[OrpheBulkDownloader.DEFAULT_WINDOW_SIZE]件ずつの区間に分けてリクエストされ、届かなかったシリアルナンバーだけがリクエストし直されます。
+     * 取得したセンサー値はこれまでどおり[OrpheInsoleCallback.gotInsoleValues]などで渡されます。
+     * 取得中に呼ぶと前の取得は中止されます。
+     * 受け取ったシリアルナンバーはデバイスと範囲ごとにファイルに記録され、接続が切れた場合は同じデバイスに再接続したときに、
+     * 同じ範囲を取得し直した場合は呼んだときに、受け取っていない部分から再開します。
+     *
+     * @param startSerialNumber 取得する最初のシリアルナンバー
+     * @param length 取得する件数
+     * @param listener 取得の進み具合を受け取るリスナー。メインスレッドで呼ばれます
+     * @return 取得の状況
+     */
+    @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
+    @NonNull
+    public OrpheBulkDownloader downloadInsoleValues(int startSerialNumber, int length, @NonNull OrpheBulkDownloader.Listener listener) {
+        return downloadInsoleValues(startSerialNumber, length,
+                OrpheBulkDownloader.DEFAULT_WINDOW_SIZE, OrpheBulkDownloader.DEFAULT_MAX_IN_FLIGHT, listener);
+    }
+
+    /**
+     * 蓄積された[OrpheInsoleValue]を、シリアルナンバーの範囲を指定してまとめて取得します。
+     *
+     * @param startSerialNumber 取得する最初のシリアルナンバー
+     * @param length 取得する件数
+     * @param windowSize 1回にリクエストする区間のシリアルナンバーの件数
+     * @param maxInFlight 同時にリクエストする区間の数
+     * @param listener 取得の進み具合を受け取るリスナー。メインスレッドで呼ばれます
+     * @return 取得の状況
+     */
+    @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
+    @NonNull
+    public OrpheBulkDownloader downloadInsoleValues(int startSerialNumber, int length, int windowSize, int maxInFlight,
+                                                    @NonNull OrpheBulkDownloader.Listener listener) {
+        cancelDownload();
+        final BluetoothGatt gatt = mBluetoothGatt;
+        final String address = gatt != null && mSimulator == null ? gatt.getDevice().getAddress() : null;
+        final OrpheDownloadCheckpoint checkpoint = address != null ? openDownloadCheckpoint(address, startSerialNumber, length) : null;
+        mDownloadAddress = address;
+        final OrpheBulkDownloader downloader = new OrpheBulkDownloader(startSerialNumber, length, windowSize, maxInFlight,
+                requests -> sendValueRequests(OrpheRequestPlanner.merge(requests), true),
+                new OrpheBulkDownloader.Listener() {
+                    @Override
+                    public void onProgress(@NonNull OrpheBulkDownloader downloader) {
+                        mMainHandler.post(() -> listener.onProgress(downloader));
+                    }
+
+                    @Override
+                    public void onFinished(@NonNull OrpheBulkDownloader downloader) {
+                        mMainHandler.post(() -> {
+                            if (mPipeline.downloader() == downloader) {
+                                mPipeline.setDownloader(null);
+                                mMainHandler.removeCallbacks(mDownloadTick);
+                            }
+                            listener.onFinished(downloader);
+                        });
+                    }
+                },
+                checkpoint);
+        mPipeline.startReplay(new OrpheValueRequest[]{new OrpheValueRequest(startSerialNumber, length)});
+        mPipeline.setDownloader(downloader);
+        downloader.start(System.nanoTime());
+        mMainHandler.removeCallbacks(mDownloadTick);
+        mMainHandler.postDelayed(mDownloadTick, DOWNLOAD_TICK_INTERVAL);
+        return downloader;
+    }
+
+    /**
+     * まとめて取得しているセンサー値の取得を中止します。
+     */
+    @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
+    public void cancelDownload() {
+        final OrpheBulkDownloader downloader = mPipeline.downloader();
+        if (downloader != null && !downloader.isFinished()) {
+            downloader.cancel();
+            cancelRequestingSensorData();
+        }
+    }
+
+    /**
+     * まとめて取得するときに、受け取ったシリアルナンバーを記録するディレクトリを設定します。
+     *
+     * @param directory 記録するディレクトリ。nullの場合はアプリのfilesディレクトリの中のorphe_downloads
+     */
+    public void setDownloadCheckpointDirectory(@Nullable File directory) {
+        mDownloadCheckpointDirectory = directory;
+    }
+
+    @NonNull
+    private File downloadCheckpointDirectory() {
+        final File directory = mDownloadCheckpointDirectory;
+        return directory != null ? directory : new File(mContext.getFilesDir(), "orphe_downloads");
+    }
+
+    @Nullable
+    private OrpheDownloadCheckpoint openDownloadCheckpoint(@NonNull String address, int startSerialNumber, int length) {
+        final File file = OrpheDownloadCheckpoint.fileFor(downloadCheckpointDirectory(), address, startSerialNumber, length);
+        try {
+            return OrpheDownloadCheckpoint.open(file, startSerialNumber, length);
+        } catch (IOException e) {
+            // 壊れた記録は削除し、今回は記録せずに最初から取得する
+            Log.w(TAG, "discard download checkpoint:" + e.getMessage());
+            file.delete();
+            return null;
+        }
+    }
+
+    /// 接続が切れたときに取得を止める
+    private void pauseDownload() {
+        final OrpheBulkDownloader downloader = mPipeline.downloader();
+        if (downloader != null && !downloader.isFinished()) {
+            downloader.pause();
+            mMainHandler.removeCallbacks(mDownloadTick);
+        }
+    }
+
+    /// 同じデバイスに再接続し、接続直後の設定が終わったときに、受け取っていない部分から取得を再開する
+    private void resumeDownload(@NonNull String address) {
+        final OrpheBulkDownloader downloader = mPipeline.downloader();
+        if (downloader == null || !downloader.isPaused() || !address.equals(mDownloadAddress)) {
+            return;
+        }
+        Log.d(TAG, "resume download:" + downloader);
+        downloader.resume(System.nanoTime());
+        mMainHandler.removeCallbacks(mDownloadTick);
+        mMainHandler.postDelayed(mDownloadTick, DOWNLOAD_TICK_INTERVAL);
+    }
+
+    /// 届かないまま時間が過ぎた区間をリクエストし直す
+    private void onDownloadTick() {
+        final OrpheBulkDownloader downloader = mPipeline.downloader();
+        if (downloader == null || downloader.isFinished() || downloader.isPaused()) {
+            return;
+        }
+        downloader.tick(System.nanoTime());
+        mMainHandler.postDelayed(mDownloadTick, DOWNLOAD_TICK_INTERVAL);
+    }
+
+    /// 分割したリクエストの前の書き込みが何も返さないまま時間が過ぎたら次を書き込む
+    private void onRequestTick() {
+        if (!mRequestPlanner.hasPending()) {
+            return;
+        }
+        mRequestPlanner.tick(System.nanoTime());
+        mMainHandler.postDelayed(mRequestTick, REQUEST_TICK_INTERVAL);
+    }
+
     /**
      * 生データの蓄積を開始します。
      */
@@ -530,6 +1373,13 @@ public class OrpheInsole {
     @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
     public void clearAccumulation() {
         setDeviceInfo(new byte[]{11, 3});
+        final BluetoothGatt gatt = mBluetoothGatt;
+        if (gatt != null) {
+            // 蓄積が消えるため、まとめて取得したときの記録も使えなくなる。書き込みと同じスレッドで順番に削除する
+            final File directory = downloadCheckpointDirectory();
+            final String address = gatt.getDevice().getAddress();
+            OrpheBulkDownloader.checkpointExecutor().execute(() -> OrpheDownloadCheckpoint.deleteAll(directory, address));
+        }
     }
 
     private final ScanCallback scanCallback = new ScanCallback() {
@@ -551,8 +1401,7 @@ public class OrpheInsole {
                 } else if(sidePosition.side == OrpheSide.right && (manufacturerData.length < 6 || manufacturerData[6] != 1)){
                     return;
                 }
-                mBluetoothDevice = device;
-                mOrpheCallback.onScan(device);
+                onScanned(result);
                 return;
             }
             // 左右情報が一致しない場合は排除
@@ -565,12 +1414,50 @@ public class OrpheInsole {
                 return;
             }
             if (deviceName.contains(DeviceNameDefine.ORPHE_CORE)) {
-                mBluetoothDevice = device;
-                mOrpheCallback.onScan(device);
+                onScanned(result);
+            }
+        }
+
+        @Override
+        public void onBatchScanResults(List<ScanResult> results) {
+            // [OrpheScanPolicy.reportDelayMillis]を指定した場合はまとめて届く
+            for (ScanResult result : results) {
+                onScanResult(ScanSettings.CALLBACK_TYPE_ALL_MATCHES, result);
             }
         }
     };
 
+    /// スキャンで見つかったデバイスを通知し、[OrpheScanPolicy]を満たした場合はスキャンを停止する
+    @SuppressLint("MissingPermission")
+    private void onScanned(@NonNull ScanResult result) {
+        if (mStatus != OrpheCoreStatus.scanned) {
+            return;
+        }
+        final BluetoothDevice device = result.getDevice();
+        if (mScannedAddresses.add(device.getAddress()) && mScannedAddresses.size() == 1) {
+            mScanLatencyStats.record(result.getTimestampNanos() - mScanStartNanos);
+        }
+        mBluetoothDevice = device;
+        mOrpheCallback.onScan(device);
+        if (mScanPolicy.isSatisfied(mScannedAddresses.size())) {
+            mHandler.removeCallbacks(mScanTimeout);
+            // [OrpheInsoleCallback.onScan]の中で接続した場合はすでに停止している
+            if (mStatus == OrpheCoreStatus.scanned) {
+                Log.d(TAG, "scan policy satisfied");
+                mBluetoothLeScanner.stopScan(scanCallback);
+                mStatus = OrpheCoreStatus.none;
+            }
+        }
+    }
+
+    @SuppressLint("MissingPermission")
+    private void onScanTimeout() {
+        if (mStatus == OrpheCoreStatus.scanned) {
+            mBluetoothLeScanner.stopScan(scanCallback);
+            mOrpheCallback.onScan(null);
+        }
+    }
+
 
     // TODO: 不要になったら消す
     private static String bytesToHex(byte[] bytes) {
@@ -587,24 +1474,53 @@ public class OrpheInsole {
         @Override
         public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
             Log.d(TAG, "onConnectionStateChange:" + status + " " + newState);
-            final Handler mainHandler = new Handler(Looper.getMainLooper());
             if (newState == BluetoothProfile.STATE_CONNECTED) {
                 Log.d(TAG, "connected");
-                gatt.discoverServices();
-                mainHandler.post(
+                // デバイスの時計との対応付けは接続ごとにやり直す
+                mDeviceClock = new OrpheDeviceClock();
+                mPipeline.setSerialClock(new OrpheSerialClock(OrpheSerialClock.INSOLE_PERIOD_NANOS));
+                resetGapTracker();
+                mLinkParameters = OrpheLinkParameters.INITIAL;
+                // サービスの探索が終わったら、MTUの変更や通知の有効化より先に接続間隔を短くして設定も速く終わるようにする
+                requestLinkProfile(gatt, mLinkProfile);
+                final OrpheInsoleCalibrationStore store = mCalibrationStore;
+                final OrpheInsoleCalibration calibration = store != null ? store.get(gatt.getDevice().getAddress()) : null;
+                if (calibration != null) {
+                    mCalibration = calibration;
+                }
+                if (mReconnector.useCachedServices(gatt.getService(GattUUIDDefine.UUID_SERVICE_ORPHE_OTHER_SERVICE) != null)) {
+                    // 同じデバイスに接続し直した場合は前回見つけたサービスを使い、探索を省く
+                    Log.d(TAG, "reuse discovered services");
+                    setup(gatt);
+                } else {
+                    gatt.discoverServices();
+                }
+                mMainHandler.post(
                         () -> {
                             mStatus = OrpheCoreStatus.connected;
+                            mReconnector.onConnected(gatt.getDevice().getAddress());
                             mOrpheCallback.onConnect(gatt.getDevice());
                         }
                 );
             } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                mGattQueue.clear();
+                mRequestPlanner.clear();
+                // 続きが届かないため、並べ替えのために保持していたセンサー値を配信する
+                mPipeline.flushReorderBuffer();
                 Log.d(TAG, "disconnected");
                 Log.d(TAG, status().toString());
-                mainHandler.post(
+                mMainHandler.post(
                         () -> {
+                            // 切断を依頼していないのに切れた場合は接続し直す
+                            final boolean dropped = mStatus == OrpheCoreStatus.connected || mReconnector.isReconnecting();
                             mStatus = OrpheCoreStatus.none;
                             mBluetoothDevice = null;
                             mOrpheCallback.onDisconnect(gatt.getDevice());
+                            pauseDownload();
+                            if (reconnectAfterDrop(gatt, dropped)) {
+                                return;
+                            }
+                            mReconnector.cancel();
                             startScan();
                         }
                 );
@@ -616,33 +1532,77 @@ public class OrpheInsole {
         public void onServicesDiscovered(BluetoothGatt gatt, int status) {
             if (status == BluetoothGatt.GATT_SUCCESS) {
                 outputGattServicesToLog(gatt.getServices());
-                setCharacteristicNotification(gatt, GattUUIDDefine.UUID_SERVICE_ORPHE_OTHER_SERVICE,
-                        GattUUIDDefine.UUID_CHAR_ORPHE_SENSOR_VALUES, true);
-                getDeviceInfo();
+                setup(gatt);
             } else {
                 Log.w(TAG, "onServicesDiscovered received: " + status);
             }
         }
 
-        // @Override
-        // public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
-        //     UUID characteristicUuid = characteristic.getUuid();
-        //     if (characteristicUuid == GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION) {
-        //         Log.d(TAG, "onCharacteristicWrite UUID:" + characteristicUuid
-        //                 + ", status:" + status);
-        //     } else {
-        //         Log.d(TAG, "onCharacteristicWrite UUID is null");
-        //         return;
-        //     }
-        // }
+        @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
+        private void setup(@NonNull BluetoothGatt gatt) {
+            // MTUの変更、通知の有効化、設定情報と時刻の取得を、アプリから依頼された操作より先に順番に実行する
+            mGattQueue.enqueueSetup(OrpheGattOperationQueue.MTU_UUID, () -> gatt.requestMtu(OrpheLinkProfile.MTU));
+            setCharacteristicNotification(gatt, GattUUIDDefine.UUID_SERVICE_ORPHE_OTHER_SERVICE,
+                    GattUUIDDefine.UUID_CHAR_ORPHE_SENSOR_VALUES, true);
+            mGattQueue.enqueueSetup(GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION,
+                    () -> readCharacteristic(GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION, GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION));
+            mGattQueue.enqueueSetup(GattUUIDDefine.UUID_CHAR_ORPHE_DATE_TIME,
+                    () -> writeCharacteristic(GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION, GattUUIDDefine.UUID_CHAR_ORPHE_DATE_TIME, dateTimeValue()));
+            mGattQueue.enqueueSetup(GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION,
+                    () -> writeCharacteristic(GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION, GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION, new byte[]{13, 1}));
+            // 通知の有効化より先にリクエストすると届かないため、設定がすべて終わってから取得を再開する
+            final String address = gatt.getDevice().getAddress();
+            mGattQueue.runAfterSetup(() -> mMainHandler.post(() -> resumeDownload(address)));
+            mGattQueue.start();
+        }
 
-        // @Override
-        // public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
-        //     super.onDescriptorWrite(gatt, descriptor, status);
-        //     Log.d(TAG, "onDescriptorWrite Desc UUID:" + descriptor.getUuid().toString()
-        //             + ", status:" + status);
-        //     Log.d(TAG, "                  Char UUID:" + descriptor.getCharacteristic().getUuid().toString());
-        // }
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+            if (status != BluetoothGatt.GATT_SUCCESS) {
+                Log.w(TAG, "onCharacteristicWrite UUID:" + characteristic.getUuid() + ", status:" + status);
+            }
+            mGattQueue.onCompleted(characteristic.getUuid());
+        }
+
+        @Override
+        public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+            Log.d(TAG, "onMtuChanged:" + mtu + " status:" + status);
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                onLinkParametersChanged(mLinkParameters.withMtu(mtu));
+            }
+            mGattQueue.onCompleted(OrpheGattOperationQueue.MTU_UUID);
+        }
+
+        @Override
+        public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            Log.d(TAG, "onPhyUpdate:" + txPhy + "," + rxPhy + " status:" + status);
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                onLinkParametersChanged(mLinkParameters.withPhy(txPhy, rxPhy));
+            }
+        }
+
+        /// 非公開APIのため@Overrideを付けていないが、多くの端末で接続間隔が変わったときに呼ばれる
+        public void onConnectionUpdated(BluetoothGatt gatt, int interval, int latency, int timeout, int status) {
+            Log.d(TAG, "onConnectionUpdated:" + interval + " status:" + status);
+            if (status == BluetoothGatt.GATT_SUCCESS) {
+                // 1.25ミリ秒単位
+                onLinkParametersChanged(mLinkParameters.withInterval(interval * 1.25));
+            }
+        }
+
+        @Override
+        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            Log.d(TAG, "onDescriptorWrite Desc UUID:" + descriptor.getUuid().toString()
+                    + ", status:" + status);
+            if (GattUUIDDefine.UUID_DESC_CLIENT_CHAR_CONFIG.equals(descriptor.getUuid())) {
+                if (mReconnector.onNotificationEnabled(status == BluetoothGatt.GATT_SUCCESS)) {
+                    // 前回見つけたサービスが使えなかったため、切断して探索からやり直す
+                    Log.w(TAG, "discovered services are no longer valid");
+                    gatt.disconnect();
+                }
+            }
+            mGattQueue.onCompleted(descriptor.getUuid());
+        }
 
         @RequiresApi(api = Build.VERSION_CODES.O)
         @Override
@@ -650,6 +1610,7 @@ public class OrpheInsole {
             if (status == BluetoothGatt.GATT_SUCCESS) {
                 onRead(gatt, characteristic, value);
             }
+            mGattQueue.onCompleted(characteristic.getUuid());
         }
 
         @RequiresApi(api = Build.VERSION_CODES.O)
@@ -658,6 +1619,7 @@ public class OrpheInsole {
             if (status == BluetoothGatt.GATT_SUCCESS) {
                 onRead(gatt, characteristic, characteristic.getValue());
             }
+            mGattQueue.onCompleted(characteristic.getUuid());
         }
 
         @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
@@ -732,17 +1694,13 @@ public class OrpheInsole {
                     BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE
                     : BluetoothGattDescriptor.DISABLE_NOTIFICATION_VALUE);
             Log.d(TAG, "descriptor setresult:" + setResult);
-            @SuppressLint("MissingPermission") boolean writeResult = gatt.writeDescriptor(descriptor);
-            Log.d(TAG, "descriptor writeresult:" + writeResult);
+            mGattQueue.enqueueSetup(GattUUIDDefine.UUID_DESC_CLIENT_CHAR_CONFIG, () -> {
+                @SuppressLint("MissingPermission") boolean writeResult = gatt.writeDescriptor(descriptor);
+                Log.d(TAG, "descriptor writeresult:" + writeResult);
+                return writeResult;
+            });
             if (enable) {
                 mOrpheCallback.onStartNotify(characteristicUUID);
-                Handler handler = new Handler(Looper.getMainLooper());
-                handler.postDelayed(() -> {
-                    syncDateTime();
-                    handler.postDelayed(() -> {
-                        getCurrentSerialNumber();
-                    }, 500);
-                }, 500);
             } else {
                 mOrpheCallback.onStopNotify(characteristicUUID);
             }
@@ -750,19 +1708,22 @@ public class OrpheInsole {
 
         @RequiresApi(api = Build.VERSION_CODES.O)
         private void onRead(@NonNull BluetoothGatt gatt, @NonNull BluetoothGattCharacteristic characteristic, @NonNull byte[] value) {
-            final Handler mainHandler = new Handler(Looper.getMainLooper());
             if(mDebugMode){
                 Log.d(TAG, "onRead:" + characteristic.getUuid().toString() + " " + bytesToHex(value));
             }
             // DeviceInfo
             if (GattUUIDDefine.UUID_CHAR_ORPHE_DEVICE_INFORMATION.equals(characteristic.getUuid())) {
                 // Data
-                mainHandler.post(
+                mMainHandler.post(
                         () -> {
                             try {
                                 final DeviceInfoValue deviceInfo = DeviceInfoValue.fromBytes(value);
                                 mDeviceInfo = deviceInfo;
                                 mOrpheCallback.gotDeviceInfo(deviceInfo);
+                                final OrpheSessionManager sessionManager = mSessionManager;
+                                if (sessionManager != null) {
+                                    sessionManager.onDeviceInfo(mSessionTarget, gatt.getDevice(), deviceInfo.sidePosition);
+                                }
                             } catch (Exception e) {
                                 throw new RuntimeException(e);
                             }
@@ -772,7 +1733,7 @@ public class OrpheInsole {
             // DateTime
             if (GattUUIDDefine.UUID_CHAR_ORPHE_DATE_TIME.equals(characteristic.getUuid())) {
                 // Data
-                mainHandler.post(
+                mMainHandler.post(
                         () -> {
                             try {
                                 Log.d(TAG, "DateTime: " + value[0] + ", " + value[1] + ", " + value[2] + ", " + value[3] + ", " + value[4] + ", " + value[5] + ", " + value[6]);
@@ -786,7 +1747,6 @@ public class OrpheInsole {
 
         @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
         private void onNotified(@NonNull BluetoothGatt gatt, @NonNull BluetoothGattCharacteristic characteristic, @NonNull byte[] value) {
-            final Handler mainHandler = new Handler(Looper.getMainLooper());
             if (mDebugMode) {
                 Log.d(TAG, "onNotified:" + characteristic.getUuid().toString() + " " + bytesToHex(value));
             }
@@ -796,45 +1756,7 @@ public class OrpheInsole {
             // }
             // 生データ
             if (GattUUIDDefine.UUID_CHAR_ORPHE_SENSOR_VALUES.equals(characteristic.getUuid())) {
-                // Data
-                mainHandler.post(
-                        () -> {
-                            try {
-                                switch ((byte) value[0]) {
-                                    case 53:
-                                        switch ((byte) value[1]) {
-                                            case 1:
-                                                final int currentSerialNumber = (int) (((value[2] & 0xFF) << 8) | (value[3] & 0xFF));
-                                                mLatestSerialNumber = currentSerialNumber;
-                                                mLatestSerialNumberTime = LocalDateTime.now();
-                                                mOrpheCallback.gotCurrentSerialNumber(currentSerialNumber);
-                                                break;
-                                            case 2:
-                                                final int serialNumber = (int) (((value[2] & 0xFF) << 8) | (value[3] & 0xFF));
-                                                final int length = (int) (((value[4] & 0xFF) << 8) | (value[5] & 0xFF));
-                                                for (int i = 0; i < length; i++) {
-                                                    mOrpheCallback.sensorValueIsNotFound(serialNumber + i);
-                                                }
-                                                break;
-                                        }
-                                        break;
-                                    case 54:
-                                    case 55:
-                                    case 56:
-                                        final OrpheInsoleValue[] values = OrpheInsoleValue.fromBytes(value, sidePosition, accRange, gyroRange);
-                                        mOrpheCallback.gotInsoleValues(values);
-                                        if (values.length > 0) {
-                                            mLatestValue = values[0];
-                                            mLatestSerialNumber = mLatestValue.serialNumber;
-                                            mLatestSerialNumberTime = LocalDateTime.now();
-                                        }
-                                        break;
-                                }
-                            } catch (Exception e) {
-                                throw new RuntimeException(e);
-                            }
-                        }
-                );
+                mPipeline.onNotified(value);
             }
         }
     };
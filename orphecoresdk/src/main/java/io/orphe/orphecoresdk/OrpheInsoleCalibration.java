@@ -0,0 +1,193 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * ORPHE INSOLEの圧力センサーごとのキャリブレーション。
+ * センサーごとに[OrpheInsolePressureCurve]と、荷重がないときの値（風袋）を持ちます。
+ * 圧力は曲線の表で変換した値から風袋を引いた値になります。
+ * 変更するメソッドは新しいインスタンスを返すため、デコード中のスレッドから安全に参照できます。
+ */
+public class OrpheInsoleCalibration {
+    private static final int CELL_COUNT = OrpheInsoleCell.VALUES.length;
+
+    /**
+     * すべてのセンサーで標準の曲線を使い、風袋のないキャリブレーション
+     */
+    @NonNull
+    public static final OrpheInsoleCalibration DEFAULT = OrpheInsolePressureCurve.DEFAULT.calibration();
+
+    @NonNull
+    private final OrpheInsolePressureCurve[] mCurves;
+    @NonNull
+    private final double[] mTare;
+
+    /**
+     * すべてのセンサーで同じ曲線を使い、風袋のないキャリブレーション。
+     *
+     * @param curve すべてのセンサーで使う[OrpheInsolePressureCurve]
+     */
+    public OrpheInsoleCalibration(@NonNull OrpheInsolePressureCurve curve) {
+        mCurves = new OrpheInsolePressureCurve[CELL_COUNT];
+        mTare = new double[CELL_COUNT];
+        for (int i = 0; i < CELL_COUNT; i++) {
+            mCurves[i] = curve;
+        }
+    }
+
+    /**
+     * センサーごとのキャリブレーション。
+     *
+     * @param curves [OrpheInsoleCell]の順に並べたセンサーごとの[OrpheInsolePressureCurve]
+     * @param tare [OrpheInsoleCell]の順に並べたセンサーごとの風袋（N）
+     */
+    public OrpheInsoleCalibration(@NonNull OrpheInsolePressureCurve[] curves, @NonNull double[] tare) {
+        if (curves.length != CELL_COUNT || tare.length != CELL_COUNT) {
+            throw new IllegalArgumentException("curves and tare must have " + CELL_COUNT + " cells");
+        }
+        mCurves = curves.clone();
+        mTare = tare.clone();
+        for (OrpheInsolePressureCurve curve : mCurves) {
+            if (curve == null) {
+                throw new IllegalArgumentException("curves must not contain null");
+            }
+        }
+    }
+
+    /**
+     * センサーの[OrpheInsolePressureCurve]を返します。
+     *
+     * @param cell 圧力センサーの位置
+     * @return 曲線
+     */
+    @NonNull
+    public OrpheInsolePressureCurve curve(@NonNull OrpheInsoleCell cell) {
+        return mCurves[cell.ordinal()];
+    }
+
+    /**
+     * センサーの風袋を返します。
+     *
+     * @param cell 圧力センサーの位置
+     * @return 風袋（N）
+     */
+    public double tare(@NonNull OrpheInsoleCell cell) {
+        return mTare[cell.ordinal()];
+    }
+
+    /**
+     * AD変換値をニュートンに変換し、風袋を引きます。
+     *
+     * @param cell 圧力センサーの位置
+     * @param code AD変換値
+     * @return 圧力（N）
+     */
+    public double toNewton(@NonNull OrpheInsoleCell cell, int code) {
+        final int i = cell.ordinal();
+        return mCurves[i].toNewton(code) - mTare[i];
+    }
+
+    /**
+     * [toNewton]の逆変換です。
+     *
+     * @param cell 圧力センサーの位置
+     * @param newton 圧力（N）
+     * @return AD変換値。変換できない場合は-1
+     */
+    public int toCode(@NonNull OrpheInsoleCell cell, double newton) {
+        final int i = cell.ordinal();
+        return mCurves[i].toCode(newton + mTare[i]);
+    }
+
+    /**
+     * 1つのセンサーの曲線を置き換えたキャリブレーションを返します。
+     *
+     * @param cell 圧力センサーの位置
+     * @param curve 新しい曲線
+     * @return 新しいキャリブレーション
+     */
+    @NonNull
+    public OrpheInsoleCalibration withCurve(@NonNull OrpheInsoleCell cell, @NonNull OrpheInsolePressureCurve curve) {
+        final OrpheInsolePressureCurve[] curves = mCurves.clone();
+        curves[cell.ordinal()] = curve;
+        return new OrpheInsoleCalibration(curves, mTare);
+    }
+
+    /**
+     * 風袋を置き換えたキャリブレーションを返します。
+     *
+     * @param tare [OrpheInsoleCell]の順に並べたセンサーごとの風袋（N）
+     * @return 新しいキャリブレーション
+     */
+    @NonNull
+    public OrpheInsoleCalibration withTare(@NonNull double[] tare) {
+        return new OrpheInsoleCalibration(mCurves, tare);
+    }
+
+    /**
+     * 書き出します。
+     *
+     * @param output 書き出し先
+     * @throws IOException 書き出しに失敗した場合
+     */
+    void write(@NonNull DataOutput output) throws IOException {
+        for (int i = 0; i < CELL_COUNT; i++) {
+            output.writeDouble(mCurves[i].offset);
+            output.writeDouble(mCurves[i].scale);
+            output.writeDouble(mTare[i]);
+        }
+    }
+
+    /**
+     * [write]で書き出したものを読み込みます。
+     * 同じ係数の曲線は表を共有します。
+     *
+     * @param input 読み込み元
+     * @return 読み込んだキャリブレーション
+     * @throws IOException 読み込みに失敗した場合
+     */
+    @NonNull
+    static OrpheInsoleCalibration read(@NonNull DataInput input) throws IOException {
+        final OrpheInsolePressureCurve[] curves = new OrpheInsolePressureCurve[CELL_COUNT];
+        final double[] tare = new double[CELL_COUNT];
+        for (int i = 0; i < CELL_COUNT; i++) {
+            final double offset = input.readDouble();
+            final double scale = input.readDouble();
+            tare[i] = input.readDouble();
+            OrpheInsolePressureCurve curve = null;
+            for (int j = 0; j < i && curve == null; j++) {
+                if (curves[j].offset == offset && curves[j].scale == scale) {
+                    curve = curves[j];
+                }
+            }
+            if (curve == null) {
+                curve = OrpheInsolePressureCurve.DEFAULT.offset == offset && OrpheInsolePressureCurve.DEFAULT.scale == scale
+                        ? OrpheInsolePressureCurve.DEFAULT
+                        : new OrpheInsolePressureCurve(offset, scale);
+            }
+            curves[i] = curve;
+        }
+        return new OrpheInsoleCalibration(curves, tare);
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("calibration:(");
+        for (int i = 0; i < CELL_COUNT; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(String.format("%s=(%.2f, %.2f, tare=%.3f)",
+                    OrpheInsoleCell.VALUES[i], mCurves[i].offset, mCurves[i].scale, mTare[i]));
+        }
+        return builder.append(")").toString();
+    }
+}
@@ -0,0 +1,121 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ORPHE INSOLEのキャリブレーションをデバイスのアドレスごとに保持します。
+ * [OrpheInsole.setCalibrationStore]で設定すると、接続したデバイスのキャリブレーションが自動で使われます。
+ * [save]と[load]でファイルに保存して、次回の起動時に読み込めます。
+ */
+public class OrpheInsoleCalibrationStore {
+    static final int MAGIC = 0x4F524341;
+    static final int VERSION = 1;
+
+    private final Map<String, OrpheInsoleCalibration> mCalibrations = new ConcurrentHashMap<>();
+
+    /**
+     * デバイスのキャリブレーションを登録します。すでに登録されている場合は置き換えます。
+     *
+     * @param address デバイスのアドレス（[android.bluetooth.BluetoothDevice.getAddress]）
+     * @param calibration キャリブレーション
+     */
+    public void put(@NonNull String address, @NonNull OrpheInsoleCalibration calibration) {
+        mCalibrations.put(address, calibration);
+    }
+
+    /**
+     * デバイスのキャリブレーションを返します。
+     *
+     * @param address デバイスのアドレス
+     * @return 登録されていない場合はnull
+     */
+    @Nullable
+    public OrpheInsoleCalibration get(@NonNull String address) {
+        return mCalibrations.get(address);
+    }
+
+    /**
+     * デバイスのキャリブレーションを削除します。
+     *
+     * @param address デバイスのアドレス
+     */
+    public void remove(@NonNull String address) {
+        mCalibrations.remove(address);
+    }
+
+    /**
+     * 登録されているデバイスの数を返します。
+     *
+     * @return デバイスの数
+     */
+    public int size() {
+        return mCalibrations.size();
+    }
+
+    /**
+     * ファイルに保存します。一時ファイルに書き込んでから置き換えるため、途中で失敗しても元のファイルは壊れません。
+     *
+     * @param file 保存先のファイル
+     * @throws IOException 書き込みに失敗した場合
+     */
+    public void save(@NonNull File file) throws IOException {
+        final File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+            final Map<String, OrpheInsoleCalibration> snapshot = new HashMap<>(mCalibrations);
+            output.writeInt(snapshot.size());
+            for (Map.Entry<String, OrpheInsoleCalibration> entry : snapshot.entrySet()) {
+                output.writeUTF(entry.getKey());
+                entry.getValue().write(output);
+            }
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("failed to replace " + file);
+        }
+    }
+
+    /**
+     * [save]で保存したファイルを読み込みます。
+     *
+     * @param file 読み込むファイル
+     * @return 読み込んだ[OrpheInsoleCalibrationStore]。ファイルがない場合は空のもの
+     * @throws IOException 読み込みに失敗した場合や、形式が異なる場合
+     */
+    @NonNull
+    public static OrpheInsoleCalibrationStore load(@NonNull File file) throws IOException {
+        final OrpheInsoleCalibrationStore store = new OrpheInsoleCalibrationStore();
+        if (!file.exists()) {
+            return store;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("not a calibration file: " + file);
+            }
+            final int version = input.readShort();
+            if (version != VERSION) {
+                throw new IOException("unsupported calibration file version: " + version);
+            }
+            final int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                final String address = input.readUTF();
+                store.put(address, OrpheInsoleCalibration.read(input));
+            }
+        }
+        return store;
+    }
+}
@@ -18,6 +18,17 @@ public abstract class OrpheInsoleCallback implements OrpheCallback {
 
     }
 
+    /**
+     * センサー値がNotifyで取得されたときに、軸ごとの配列にまとめて渡すコールバック。
+     * [gotInsoleValues]の後に呼ばれ、同じ値が入ります。[OrpheInsole.setSensorFrameCallbackEnabled]で有効にした場合だけ呼ばれます。
+     * [frames]はコールバックから戻ると次の呼び出しに再利用されるため、コールバックの外で使う場合は値をコピーしてください。
+     *
+     * @param frames １回のNotifyで送られたセンサー値が[SensorFrameBatch.size]個入ります。
+     */
+    public void gotSensorFrames(SensorFrameBatch frames) {
+
+    }
+
     /**
      * 現在のシリアルナンバーの値がNotifyで取得されたときのコールバック。
      *
@@ -88,4 +99,13 @@ public abstract class OrpheInsoleCallback implements OrpheCallback {
     public void onStopNotify(UUID characteristicUuid) {
 
     }
+
+    /**
+     * デバイスとの間でMTU、PHY、接続間隔が決まったときのコールバック。
+     *
+     * @param parameters 決まった通信条件が入ります。
+     */
+    public void onLinkParametersChanged(OrpheLinkParameters parameters) {
+
+    }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package io.orphe.orphecoresdk;
+
+/**
+ * ORPHE INSOLEの圧力センサーの位置
+ */
+public enum OrpheInsoleCell {
+    /// つま先の外側
+    toeOutside,
+
+    /// 中足の外側
+    midOutside,
+
+    /// つま先の内側
+    toeInside,
+
+    /// 中央
+    center,
+
+    /// 中足の内側
+    midInside,
+
+    /// かかと
+    heel;
+
+    /// [values]の配列をデコードのたびに作らないようにする
+    static final OrpheInsoleCell[] VALUES = values();
+}
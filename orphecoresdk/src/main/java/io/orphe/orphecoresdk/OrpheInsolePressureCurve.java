@@ -0,0 +1,120 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ORPHE INSOLEの圧力センサーのAD変換値をニュートンに変換する曲線。
+ * 圧力 = e^((電圧[mV] + offset) / scale) の値を12ビットのAD変換値すべてについて作成時に計算しておき、
+ * デコード時は表を引くだけで変換します。
+ * 作成には数十マイクロ秒かかるため、デバイスのキャリブレーションごとに1回だけ作成して使い回してください。
+ */
+public class OrpheInsolePressureCurve {
+    /**
+     * 表に持つAD変換値の数（12ビット）
+     */
+    public static final int TABLE_SIZE = 4096;
+
+    /**
+     * 標準の曲線のoffset
+     */
+    public static final double DEFAULT_OFFSET = 360.02;
+
+    /**
+     * 標準の曲線のscale
+     */
+    public static final double DEFAULT_SCALE = 300.03;
+
+    /**
+     * [OrpheInsoleValue.milliVoltToNewton]と同じ標準の曲線
+     */
+    @NonNull
+    public static final OrpheInsolePressureCurve DEFAULT = new OrpheInsolePressureCurve(DEFAULT_OFFSET, DEFAULT_SCALE);
+
+    /**
+     * 電圧に加える値（mV）
+     */
+    public final double offset;
+
+    /**
+     * 指数の分母（mV）
+     */
+    public final double scale;
+
+    private final double[] mTable = new double[TABLE_SIZE];
+
+    /// すべてのセンサーでこの曲線を使う[OrpheInsoleCalibration]
+    private volatile OrpheInsoleCalibration mCalibration;
+
+    /**
+     * AD変換値をニュートンに変換する曲線。
+     *
+     * @param offset 電圧に加える値（mV）
+     * @param scale 指数の分母（mV）。正の値
+     */
+    public OrpheInsolePressureCurve(double offset, double scale) {
+        if (!(scale > 0) || Double.isNaN(offset) || Double.isInfinite(offset) || Double.isInfinite(scale)) {
+            throw new IllegalArgumentException("invalid pressure curve: offset=" + offset + ", scale=" + scale);
+        }
+        this.offset = offset;
+        this.scale = scale;
+        for (int code = 0; code < TABLE_SIZE; code++) {
+            mTable[code] = compute(code);
+        }
+    }
+
+    /**
+     * AD変換値をニュートンに変換します。
+     * 12ビットを超える値は表を使わずに計算します。
+     *
+     * @param code AD変換値
+     * @return 圧力（N）
+     */
+    public double toNewton(int code) {
+        if (code >= 0 && code < TABLE_SIZE) {
+            return mTable[code];
+        }
+        return compute(code);
+    }
+
+    /**
+     * ニュートンからAD変換値に戻します。[toNewton]の逆変換です。
+     *
+     * @param newton 圧力（N）
+     * @return AD変換値。0以下の値は変換できないため-1
+     */
+    public int toCode(double newton) {
+        if (!(newton > 0)) {
+            return -1;
+        }
+        return (int) Math.round((Math.log(newton) * scale - offset) * 4096 / 3300.0);
+    }
+
+    /**
+     * すべてのセンサーでこの曲線を使う[OrpheInsoleCalibration]を返します。デコードのたびに作らないように保持しておきます。
+     *
+     * @return キャリブレーション
+     */
+    @NonNull
+    OrpheInsoleCalibration calibration() {
+        OrpheInsoleCalibration calibration = mCalibration;
+        if (calibration == null) {
+            calibration = new OrpheInsoleCalibration(this);
+            mCalibration = calibration;
+        }
+        return calibration;
+    }
+
+    /// [OrpheInsoleValue.milliVoltToNewton]と同じ順序で計算して、標準の曲線では結果を一致させる
+    double compute(double milliVolt) {
+        return Math.pow(Math.E, ((milliVolt * 3.3 / 4096 * 1000) + offset) / scale);
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public String toString() {
+        return String.format("pressureCurve:(offset=%.2f, scale=%.2f)", offset, scale);
+    }
+}
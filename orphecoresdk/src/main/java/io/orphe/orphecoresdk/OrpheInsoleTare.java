@@ -0,0 +1,119 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 荷重がない状態のORPHE INSOLEの値から、圧力センサーごとの風袋を求めます。
+ * 指定した数のサンプルの平均を1サンプルごとに更新するため、サンプルを保持しません。
+ * 求めた平均は[base]の風袋に加算されるため、すでに風袋を引いた値から測り直すこともできます。
+ */
+public class OrpheInsoleTare {
+    /**
+     * 風袋の計測が終わったときのコールバック。
+     */
+    public interface Callback {
+        /**
+         * 風袋の計測が終わったときに呼ばれます。
+         *
+         * @param calibration 求めた風袋を反映したキャリブレーション
+         */
+        void onTareFinished(@NonNull OrpheInsoleCalibration calibration);
+    }
+
+    private static final int CELL_COUNT = OrpheInsoleCell.VALUES.length;
+
+    /**
+     * 平均するサンプル数
+     */
+    public final int sampleCount;
+
+    /**
+     * 計測したときに使われていたキャリブレーション
+     */
+    @NonNull
+    public final OrpheInsoleCalibration base;
+
+    private final double[] mMean = new double[CELL_COUNT];
+    private int mCount;
+
+    /**
+     * 荷重がない状態の値から風袋を求めます。
+     *
+     * @param sampleCount 平均するサンプル数
+     * @param base 計測する値のデコードに使われているキャリブレーション
+     */
+    public OrpheInsoleTare(int sampleCount, @NonNull OrpheInsoleCalibration base) {
+        if (sampleCount <= 0) {
+            throw new IllegalArgumentException("sampleCount must be positive");
+        }
+        this.sampleCount = sampleCount;
+        this.base = base;
+    }
+
+    /**
+     * サンプルを追加します。[sampleCount]に達した後のサンプルは無視します。
+     *
+     * @param value [base]でデコードしたインソールの値
+     * @return 計測が終わった場合はtrue
+     */
+    public boolean add(@NonNull OrpheInsoleValue value) {
+        if (mCount >= sampleCount) {
+            return true;
+        }
+        mCount++;
+        update(OrpheInsoleCell.toeOutside, value.pressureToeOutside);
+        update(OrpheInsoleCell.midOutside, value.pressureMidOutside);
+        update(OrpheInsoleCell.toeInside, value.pressureToeInside);
+        update(OrpheInsoleCell.center, value.pressureCenter);
+        update(OrpheInsoleCell.midInside, value.pressureMidInside);
+        update(OrpheInsoleCell.heel, value.pressureHeel);
+        return mCount >= sampleCount;
+    }
+
+    private void update(@NonNull OrpheInsoleCell cell, double newton) {
+        final int i = cell.ordinal();
+        mMean[i] += (newton - mMean[i]) / mCount;
+    }
+
+    /**
+     * 追加したサンプル数を返します。
+     *
+     * @return サンプル数
+     */
+    public int count() {
+        return mCount;
+    }
+
+    /**
+     * 計測が終わったかどうかを返します。
+     *
+     * @return 終わった場合はtrue
+     */
+    public boolean isFinished() {
+        return mCount >= sampleCount;
+    }
+
+    /**
+     * これまでのサンプルから求めた風袋を返します。
+     *
+     * @param cell 圧力センサーの位置
+     * @return 風袋（N）
+     */
+    public double tare(@NonNull OrpheInsoleCell cell) {
+        return base.tare(cell) + mMean[cell.ordinal()];
+    }
+
+    /**
+     * 求めた風袋を[base]に反映したキャリブレーションを返します。
+     *
+     * @return 新しいキャリブレーション
+     */
+    @NonNull
+    public OrpheInsoleCalibration result() {
+        final double[] tare = new double[CELL_COUNT];
+        for (int i = 0; i < CELL_COUNT; i++) {
+            tare[i] = tare(OrpheInsoleCell.VALUES[i]);
+        }
+        return base.withTare(tare);
+    }
+}
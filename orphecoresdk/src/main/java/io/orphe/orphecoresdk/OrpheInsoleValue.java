@@ -6,10 +6,9 @@ import android.os.Build;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
 
 /**
@@ -73,6 +72,7 @@ public class OrpheInsoleValue {
       this.quatX = 0.0;
       this.quatY = 0.0;
       this.quatZ = 0.0;
+      this.deviceTime = -1;
     }
 
 
@@ -117,6 +117,56 @@ public class OrpheInsoleValue {
                           @NonNull final double quatY,
                           @NonNull final double quatZ
 
+                     ){
+      this(sidePosition, serialNumber, dataPosition, startTime, endTime,
+              pressureToeOutside, pressureMidOutside, pressureToeInside, pressureCenter, pressureMidInside, pressureHeel,
+              accX, accY, accZ, gyroX, gyroY, gyroZ, quatW, quatX, quatY, quatZ, -1);
+    }
+
+    /**
+     * デバイスの時刻を指定してORPHE INSOLEのセンサー値を作成します。
+     */
+  OrpheInsoleValue(@NonNull
+                     final OrpheSidePosition sidePosition,
+
+                          /// シリアルナンバー
+                          @NonNull final int serialNumber,
+
+                          /// 同じデータ中の位置
+                          @NonNull final int dataPosition,
+
+                          /// タイムスタンプ
+                          @NonNull final long startTime,
+
+                          final long endTime,
+
+                          /// 圧力の値
+                          @NonNull final double pressureToeOutside,
+                          @NonNull final double pressureMidOutside,
+                          @NonNull final double pressureToeInside,
+                          @NonNull final double pressureCenter,
+                          @NonNull final double pressureMidInside,
+                          @NonNull final double pressureHeel,
+
+                          /// 加速度
+                          @NonNull final double accX,
+                          @NonNull final double accY,
+                          @NonNull final double accZ,
+
+                          /// ジャイロによる角度の範囲
+                          @NonNull final double gyroX,
+                          @NonNull final double gyroY,
+                          @NonNull final double gyroZ,
+
+                          /// クオータニオン
+                          @NonNull final double quatW,
+                          @NonNull final double quatX,
+                          @NonNull final double quatY,
+                          @NonNull final double quatZ,
+
+                          /// デバイスの時刻（その日の0時からのミリ秒）
+                          final long deviceTime
+
                      ){
       this.sidePosition = sidePosition;
       this.serialNumber = serialNumber;
@@ -139,6 +189,7 @@ public class OrpheInsoleValue {
       this.quatX = quatX;
       this.quatY = quatY;
       this.quatZ = quatZ;
+      this.deviceTime = deviceTime;
     }
 
     /**
@@ -196,6 +247,62 @@ public class OrpheInsoleValue {
     @RequiresApi(api = Build.VERSION_CODES.O)
     public static OrpheInsoleValue[] fromBytes(
             byte[] bytes, OrpheSidePosition sidePosition, OrpheAccRange accRange, OrpheGyroRange gyroRange) throws Exception {
+        return fromBytes(bytes, sidePosition, accRange, gyroRange, null);
+    }
+
+    /**
+     * バイト配列から[OrpheInsoleValue]を取得します。
+     * タイムスタンプは[clock]でデバイスの時刻からエポックミリ秒に変換します。
+     *
+     * @param bytes ORPHEINSOLEから送られたバイト配列
+     * @param sidePosition 取り付け位置
+     * @param accRange 加速度レンジ
+     * @param gyroRange ジャイロレンジ
+     * @param clock 接続中のデバイスの[OrpheDeviceClock]。nullの場合は端末のタイムゾーンの今日の日付として変換します。
+     * @return OrpheInsoleValue
+     */
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    public static OrpheInsoleValue[] fromBytes(
+            byte[] bytes, OrpheSidePosition sidePosition, OrpheAccRange accRange, OrpheGyroRange gyroRange,
+            @Nullable OrpheDeviceClock clock) throws Exception {
+        return fromBytes(bytes, sidePosition, accRange, gyroRange, clock, OrpheInsolePressureCurve.DEFAULT);
+    }
+
+    /**
+     * バイト配列から[OrpheInsoleValue]を取得します。
+     * 圧力は[pressureCurve]の表でニュートンに変換します。
+     *
+     * @param bytes ORPHEINSOLEから送られたバイト配列
+     * @param sidePosition 取り付け位置
+     * @param accRange 加速度レンジ
+     * @param gyroRange ジャイロレンジ
+     * @param clock 接続中のデバイスの[OrpheDeviceClock]。nullの場合は端末のタイムゾーンの今日の日付として変換します。
+     * @param pressureCurve 圧力の変換に使う[OrpheInsolePressureCurve]
+     * @return OrpheInsoleValue
+     */
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    public static OrpheInsoleValue[] fromBytes(
+            byte[] bytes, OrpheSidePosition sidePosition, OrpheAccRange accRange, OrpheGyroRange gyroRange,
+            @Nullable OrpheDeviceClock clock, @NonNull OrpheInsolePressureCurve pressureCurve) throws Exception {
+        return fromBytes(bytes, sidePosition, accRange, gyroRange, clock, pressureCurve.calibration());
+    }
+
+    /**
+     * バイト配列から[OrpheInsoleValue]を取得します。
+     * 圧力は[calibration]でセンサーごとにニュートンに変換し、風袋を引きます。
+     *
+     * @param bytes ORPHEINSOLEから送られたバイト配列
+     * @param sidePosition 取り付け位置
+     * @param accRange 加速度レンジ
+     * @param gyroRange ジャイロレンジ
+     * @param clock 接続中のデバイスの[OrpheDeviceClock]。nullの場合は端末のタイムゾーンの今日の日付として変換します。
+     * @param calibration 圧力の変換に使う[OrpheInsoleCalibration]
+     * @return OrpheInsoleValue
+     */
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    public static OrpheInsoleValue[] fromBytes(
+            byte[] bytes, OrpheSidePosition sidePosition, OrpheAccRange accRange, OrpheGyroRange gyroRange,
+            @Nullable OrpheDeviceClock clock, @NonNull OrpheInsoleCalibration calibration) throws Exception {
 
         final ArrayList<OrpheInsoleValue> res = new ArrayList();
         int index = 0;
@@ -211,22 +318,11 @@ public class OrpheInsoleValue {
                 index = 2;
 
                 final int serialNumber = getUint16(bytes, 1);
-                final LocalDateTime now = LocalDateTime.now();
-                final LocalDateTime baseTimestamp = LocalDateTime.of(
-                        now.getYear(),
-                        now.getMonth(),
-                        now.getDayOfMonth(),
-                        getUint8(bytes, 3),
-                        getUint8(bytes, 4),
-                        getUint8(bytes, 5),
-                        getUint16(bytes, 6) * 1000
-                );
+                final long baseTime = OrpheSensorValue.deviceTimeOfDay(bytes, getUint16(bytes, 6));
+                final long baseTimestamp = OrpheSensorValue.toEpochMillis(baseTime, clock);
                 for (int s = 3; s >= 0; s--) {
                     index = s * 24 + 8;
-                    final long duration = s == 0
-                            ? 0
-                            : 5 * 1000;
-                    final LocalDateTime timestamp = baseTimestamp.minusNanos(duration);
+                    final long timestamp = baseTimestamp - s * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS;
                     // TODO: 計算で出力
                     final double quatW = 0;
                     final double quatX = 0;
@@ -239,19 +335,18 @@ public class OrpheInsoleValue {
                     final double accY = parseInt(bytes, index + 8) / (double) (1 << 15) * accRange.value;
                     final double accZ = parseInt(bytes, index + 10) / (double) (1 << 15) * accRange.value;
                     // Log.d(TAG, "ToeOutside: " + parseInt(bytes, 16) + "ToeInside: " + parseInt(bytes, 12) +"MidOutside: " +  parseInt(bytes, 20) + "Center: " + parseInt(bytes, 18) + "MidInside: " + parseInt(bytes, 14) + "Heel" +  parseInt(bytes, 22));
-                    final double pressureToeInside = milliVoltToNewton((double) getUint16(bytes, index + 12));
-                    final double pressureMidInside = milliVoltToNewton((double) getUint16(bytes, index + 14));
-                    final double pressureToeOutside = milliVoltToNewton((double) getUint16(bytes, index + 16));
-                    final double pressureCenter = milliVoltToNewton((double) getUint16(bytes, index + 18));
-                    final double pressureMidOutside = milliVoltToNewton((double) getUint16(bytes, index + 20));
-                    final double pressureHeel = milliVoltToNewton((double) getUint16(bytes, index + 22));
-                    res.add(
-                            new OrpheInsoleValue(
+                    final double pressureToeInside = calibration.toNewton(OrpheInsoleCell.toeInside, getUint16(bytes, index + 12));
+                    final double pressureMidInside = calibration.toNewton(OrpheInsoleCell.midInside, getUint16(bytes, index + 14));
+                    final double pressureToeOutside = calibration.toNewton(OrpheInsoleCell.toeOutside, getUint16(bytes, index + 16));
+                    final double pressureCenter = calibration.toNewton(OrpheInsoleCell.center, getUint16(bytes, index + 18));
+                    final double pressureMidOutside = calibration.toNewton(OrpheInsoleCell.midOutside, getUint16(bytes, index + 20));
+                    final double pressureHeel = calibration.toNewton(OrpheInsoleCell.heel, getUint16(bytes, index + 22));
+                    final OrpheInsoleValue value = new OrpheInsoleValue(
                                     sidePosition,
                                     serialNumber,
-                                    0,
-                                    timestamp.toInstant(ZoneOffset.UTC).toEpochMilli(),
-                                    timestamp.toInstant(ZoneOffset.UTC).toEpochMilli(),
+                                    s,
+                                    timestamp,
+                                    timestamp,
                                     pressureToeOutside,
                                     pressureMidOutside,
                                     pressureToeInside,
@@ -263,10 +358,14 @@ public class OrpheInsoleValue {
                                     accZ,
                                     gyroX,
                                     gyroY,
-                                    gyroZ
-
-                            )
+                                    gyroZ,
+                                    quatW,
+                                    quatX,
+                                    quatY,
+                                    quatZ,
+                                    baseTime - s * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS
                     );
+                    res.add(value);
                 }
             }
             break;
@@ -274,22 +373,11 @@ public class OrpheInsoleValue {
                 index = 2;
 
                 final int serialNumber = getUint16(bytes, 1);
-                final LocalDateTime now = LocalDateTime.now();
-                final LocalDateTime baseTimestamp = LocalDateTime.of(
-                        now.getYear(),
-                        now.getMonth(),
-                        now.getDayOfMonth(),
-                        getUint8(bytes, 3),
-                        getUint8(bytes, 4),
-                        getUint8(bytes, 5),
-                        getUint16(bytes, 6) * 1000
-                );
+                final long baseTime = OrpheSensorValue.deviceTimeOfDay(bytes, getUint16(bytes, 6));
+                final long baseTimestamp = OrpheSensorValue.toEpochMillis(baseTime, clock);
                 for (int s = 1; s >= 0; s--) {
                     index = s * 32 + 8;
-                    final long duration = s == 0
-                            ? 0
-                            : 5 * 1000;
-                    final LocalDateTime timestamp = baseTimestamp.minusNanos(duration);
+                    final long timestamp = baseTimestamp - s * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS;
                     // TODO: 計算で出力
                     final double quatW = parseInt(bytes, index) / 16384.0;
                     final double quatX = parseInt(bytes, index + 2) / 16384.0;
@@ -302,19 +390,18 @@ public class OrpheInsoleValue {
                     final double accY = parseInt(bytes, index + 16) / (double) (1 << 15) * accRange.value;
                     final double accZ = parseInt(bytes, index + 18) / (double) (1 << 15) * accRange.value;
                     // Log.d(TAG, "ToeOutside: " + parseInt(bytes, 20) + "ToeInside: " + parseInt(bytes, 24) +"MidOutside: " +  parseInt(bytes, 22) + "pressureCenter: " + parseInt(bytes, 26) + "pressureMidInside: " + parseInt(bytes, 28) + "Heel" +  parseInt(bytes, 30));
-                    final double pressureToeInside = milliVoltToNewton((double) getUint16(bytes, index + 20));
-                    final double pressureMidInside = milliVoltToNewton((double) getUint16(bytes, index + 22));
-                    final double pressureToeOutside = milliVoltToNewton((double) getUint16(bytes, index + 24));
-                    final double pressureCenter = milliVoltToNewton((double) getUint16(bytes, index + 26));
-                    final double pressureMidOutside = milliVoltToNewton((double) getUint16(bytes, index + 28));
-                    final double pressureHeel = milliVoltToNewton((double) getUint16(bytes, index + 30));
-                    res.add(
-                            new OrpheInsoleValue(
+                    final double pressureToeInside = calibration.toNewton(OrpheInsoleCell.toeInside, getUint16(bytes, index + 20));
+                    final double pressureMidInside = calibration.toNewton(OrpheInsoleCell.midInside, getUint16(bytes, index + 22));
+                    final double pressureToeOutside = calibration.toNewton(OrpheInsoleCell.toeOutside, getUint16(bytes, index + 24));
+                    final double pressureCenter = calibration.toNewton(OrpheInsoleCell.center, getUint16(bytes, index + 26));
+                    final double pressureMidOutside = calibration.toNewton(OrpheInsoleCell.midOutside, getUint16(bytes, index + 28));
+                    final double pressureHeel = calibration.toNewton(OrpheInsoleCell.heel, getUint16(bytes, index + 30));
+                    final OrpheInsoleValue value = new OrpheInsoleValue(
                                     sidePosition,
                                     serialNumber,
-                                    0,
-                                    timestamp.toInstant(ZoneOffset.UTC).toEpochMilli(),
-                                    timestamp.toInstant(ZoneOffset.UTC).toEpochMilli(),
+                                    s,
+                                    timestamp,
+                                    timestamp,
                                     pressureToeOutside,
                                     pressureMidOutside,
                                     pressureToeInside,
@@ -330,9 +417,10 @@ public class OrpheInsoleValue {
                                     quatW,
                                     quatX,
                                     quatY,
-                                    quatZ
-                                    )
+                                    quatZ,
+                                    baseTime - s * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS
                     );
+                    res.add(value);
                 }
             }
             break;
@@ -341,8 +429,150 @@ public class OrpheInsoleValue {
         return res.toArray(array);
     }
 
+    /**
+     * バイト配列から[SensorFrameBatch]にインソールの値を書き込みます。
+     * オブジェクトを生成しないため、Notifyごとのメモリ確保が発生しません。
+     * タイムスタンプは[SensorFrameBatch.deviceTime]にデバイスの時刻として格納されます。
+     *
+     * @param bytes ORPHEINSOLEから送られたバイト配列
+     * @param accRange 加速度レンジ
+     * @param gyroRange ジャイロレンジ
+     * @param batch 書き込み先のバッファ
+     * @return 書き込んだサンプル数
+     */
+    public static int fromBytes(
+            @NonNull byte[] bytes, @NonNull OrpheAccRange accRange, @NonNull OrpheGyroRange gyroRange, @NonNull SensorFrameBatch batch) {
+        return fromBytes(bytes, accRange, gyroRange, batch, null);
+    }
+
+    /**
+     * バイト配列から[SensorFrameBatch]にインソールの値を書き込みます。
+     * [clock]を指定すると[SensorFrameBatch.timestamp]にエポックミリ秒も格納します。
+     *
+     * @param bytes ORPHEINSOLEから送られたバイト配列
+     * @param accRange 加速度レンジ
+     * @param gyroRange ジャイロレンジ
+     * @param batch 書き込み先のバッファ
+     * @param clock 接続中のデバイスの[OrpheDeviceClock]。nullの場合は[SensorFrameBatch.timestamp]に0を格納します。
+     * @return 書き込んだサンプル数
+     */
+    public static int fromBytes(
+            @NonNull byte[] bytes, @NonNull OrpheAccRange accRange, @NonNull OrpheGyroRange gyroRange, @NonNull SensorFrameBatch batch,
+            @Nullable OrpheDeviceClock clock) {
+        return fromBytes(bytes, accRange, gyroRange, batch, clock, OrpheInsolePressureCurve.DEFAULT);
+    }
+
+    /**
+     * バイト配列から[SensorFrameBatch]にインソールの値を書き込みます。
+     * 圧力は[pressureCurve]の表でニュートンに変換します。
+     *
+     * @param bytes ORPHEINSOLEから送られたバイト配列
+     * @param accRange 加速度レンジ
+     * @param gyroRange ジャイロレンジ
+     * @param batch 書き込み先のバッファ
+     * @param clock 接続中のデバイスの[OrpheDeviceClock]。nullの場合は[SensorFrameBatch.timestamp]に0を格納します。
+     * @param pressureCurve 圧力の変換に使う[OrpheInsolePressureCurve]
+     * @return 書き込んだサンプル数
+     */
+    public static int fromBytes(
+            @NonNull byte[] bytes, @NonNull OrpheAccRange accRange, @NonNull OrpheGyroRange gyroRange, @NonNull SensorFrameBatch batch,
+            @Nullable OrpheDeviceClock clock, @NonNull OrpheInsolePressureCurve pressureCurve) {
+        return fromBytes(bytes, accRange, gyroRange, batch, clock, pressureCurve.calibration());
+    }
+
+    /**
+     * バイト配列から[SensorFrameBatch]にインソールの値を書き込みます。
+     * 圧力は[calibration]でセンサーごとにニュートンに変換し、風袋を引きます。[calibration]は[SensorFrameBatch.calibration]に記録されます。
+     *
+     * @param bytes ORPHEINSOLEから送られたバイト配列
+     * @param accRange 加速度レンジ
+     * @param gyroRange ジャイロレンジ
+     * @param batch 書き込み先のバッファ
+     * @param clock 接続中のデバイスの[OrpheDeviceClock]。nullの場合は[SensorFrameBatch.timestamp]に0を格納します。
+     * @param calibration 圧力の変換に使う[OrpheInsoleCalibration]
+     * @return 書き込んだサンプル数
+     */
+    public static int fromBytes(
+            @NonNull byte[] bytes, @NonNull OrpheAccRange accRange, @NonNull OrpheGyroRange gyroRange, @NonNull SensorFrameBatch batch,
+            @Nullable OrpheDeviceClock clock, @NonNull OrpheInsoleCalibration calibration) {
+        batch.setCalibration(calibration);
+        switch (getUint8(bytes, 0)) {
+            case 54:
+            case 55: {
+                batch.ensureRemaining(4);
+                final int serialNumber = getUint16(bytes, 1);
+                final long baseTime = OrpheSensorValue.deviceTimeOfDay(bytes, getUint16(bytes, 6));
+                final long baseTimestamp = clock != null ? clock.toEpochMillis(baseTime) : 0;
+                for (int s = 3; s >= 0; s--) {
+                    final int index = s * 24 + 8;
+                    final int i = batch.append();
+                    batch.serialNumber[i] = serialNumber;
+                    batch.dataPosition[i] = s;
+                    batch.deviceTime[i] = baseTime - s * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS;
+                    batch.timestamp[i] = clock != null ? baseTimestamp - s * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS : 0;
+                    batch.quatW[i] = 0;
+                    batch.quatX[i] = 0;
+                    batch.quatY[i] = 0;
+                    batch.quatZ[i] = 0;
+                    batch.gyroX[i] = (float) (parseInt(bytes, index) / (double) (1 << 15) * gyroRange.value);
+                    batch.gyroY[i] = (float) (parseInt(bytes, index + 2) / (double) (1 << 15) * gyroRange.value);
+                    batch.gyroZ[i] = (float) (parseInt(bytes, index + 4) / (double) (1 << 15) * gyroRange.value);
+                    batch.accX[i] = (float) (parseInt(bytes, index + 6) / (double) (1 << 15) * accRange.value);
+                    batch.accY[i] = (float) (parseInt(bytes, index + 8) / (double) (1 << 15) * accRange.value);
+                    batch.accZ[i] = (float) (parseInt(bytes, index + 10) / (double) (1 << 15) * accRange.value);
+                    batch.pressureToeInside[i] = (float) calibration.toNewton(OrpheInsoleCell.toeInside, getUint16(bytes, index + 12));
+                    batch.pressureMidInside[i] = (float) calibration.toNewton(OrpheInsoleCell.midInside, getUint16(bytes, index + 14));
+                    batch.pressureToeOutside[i] = (float) calibration.toNewton(OrpheInsoleCell.toeOutside, getUint16(bytes, index + 16));
+                    batch.pressureCenter[i] = (float) calibration.toNewton(OrpheInsoleCell.center, getUint16(bytes, index + 18));
+                    batch.pressureMidOutside[i] = (float) calibration.toNewton(OrpheInsoleCell.midOutside, getUint16(bytes, index + 20));
+                    batch.pressureHeel[i] = (float) calibration.toNewton(OrpheInsoleCell.heel, getUint16(bytes, index + 22));
+                }
+                return 4;
+            }
+            case 56: {
+                batch.ensureRemaining(2);
+                final int serialNumber = getUint16(bytes, 1);
+                final long baseTime = OrpheSensorValue.deviceTimeOfDay(bytes, getUint16(bytes, 6));
+                final long baseTimestamp = clock != null ? clock.toEpochMillis(baseTime) : 0;
+                for (int s = 1; s >= 0; s--) {
+                    final int index = s * 32 + 8;
+                    final int i = batch.append();
+                    batch.serialNumber[i] = serialNumber;
+                    batch.dataPosition[i] = s;
+                    batch.deviceTime[i] = baseTime - s * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS;
+                    batch.timestamp[i] = clock != null ? baseTimestamp - s * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS : 0;
+                    batch.quatW[i] = (float) (parseInt(bytes, index) / 16384.0);
+                    batch.quatX[i] = (float) (parseInt(bytes, index + 2) / 16384.0);
+                    batch.quatY[i] = (float) (parseInt(bytes, index + 4) / 16384.0);
+                    batch.quatZ[i] = (float) (parseInt(bytes, index + 6) / 16384.0);
+                    batch.gyroX[i] = (float) (parseInt(bytes, index + 8) / (double) (1 << 15) * gyroRange.value);
+                    batch.gyroY[i] = (float) (parseInt(bytes, index + 10) / (double) (1 << 15) * gyroRange.value);
+                    batch.gyroZ[i] = (float) (parseInt(bytes, index + 12) / (double) (1 << 15) * gyroRange.value);
+                    batch.accX[i] = (float) (parseInt(bytes, index + 14) / (double) (1 << 15) * accRange.value);
+                    batch.accY[i] = (float) (parseInt(bytes, index + 16) / (double) (1 << 15) * accRange.value);
+                    batch.accZ[i] = (float) (parseInt(bytes, index + 18) / (double) (1 << 15) * accRange.value);
+                    batch.pressureToeInside[i] = (float) calibration.toNewton(OrpheInsoleCell.toeInside, getUint16(bytes, index + 20));
+                    batch.pressureMidInside[i] = (float) calibration.toNewton(OrpheInsoleCell.midInside, getUint16(bytes, index + 22));
+                    batch.pressureToeOutside[i] = (float) calibration.toNewton(OrpheInsoleCell.toeOutside, getUint16(bytes, index + 24));
+                    batch.pressureCenter[i] = (float) calibration.toNewton(OrpheInsoleCell.center, getUint16(bytes, index + 26));
+                    batch.pressureMidOutside[i] = (float) calibration.toNewton(OrpheInsoleCell.midOutside, getUint16(bytes, index + 28));
+                    batch.pressureHeel[i] = (float) calibration.toNewton(OrpheInsoleCell.heel, getUint16(bytes, index + 30));
+                }
+                return 2;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 圧力センサーのAD変換値を標準の曲線でニュートンに変換します。
+     * デコード時は[OrpheInsolePressureCurve]の表を使います。
+     *
+     * @param milliVolt AD変換値
+     * @return 圧力（N）
+     */
     public static double milliVoltToNewton(double milliVolt) {
-        return Math.pow(Math.E, ((milliVolt * 3.3 / 4096 * 1000) + 360.02) / 300.03);
+        return OrpheInsolePressureCurve.DEFAULT.compute(milliVolt);
     }
 
     /**
@@ -440,6 +670,9 @@ public class OrpheInsoleValue {
      */
     @NonNull public final double quatZ;
 
+    /// [SensorFrameBatch]に書き込むためのデバイスの時刻（その日の0時からのミリ秒）。[fromBytes]以外で作成した場合は-1
+    final long deviceTime;
+
 
     private static int parseInt(@NonNull byte[] bytes,  int index) {
         return (int)((getInt8(bytes, index) << 8) + getInt8(bytes, index + 1));
@@ -0,0 +1,118 @@
+package io.orphe.orphecoresdk;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 接続したデバイスのアドレスを取り付け位置ごとに記録します。
+ * [Orphe.reconnect]や[OrpheInsole.reconnect]で、スキャンせずに接続し直すために使います。
+ */
+class OrpheKnownDevices {
+    private static final String PREFERENCES_NAME = "io.orphe.orphecoresdk.devices";
+
+    /**
+     * アドレスを保存する先。
+     */
+    interface Store {
+        /**
+         * 保存した値を返します。
+         *
+         * @param key キー
+         * @return 保存していない場合はnull
+         */
+        @Nullable
+        String get(@NonNull String key);
+
+        /**
+         * 値を保存します。
+         *
+         * @param key キー
+         * @param value 保存する値。nullの場合は削除します
+         */
+        void put(@NonNull String key, @Nullable String value);
+    }
+
+    @NonNull
+    private final Store mStore;
+
+    /**
+     * 接続したデバイスのアドレスを記録します。
+     *
+     * @param store アドレスを保存する先
+     */
+    OrpheKnownDevices(@NonNull Store store) {
+        mStore = store;
+    }
+
+    /**
+     * 端末の[SharedPreferences]に記録します。アプリを再起動しても保持されます。
+     *
+     * @param context コンテキスト
+     * @return [SharedPreferences]に記録する[OrpheKnownDevices]
+     */
+    @NonNull
+    static OrpheKnownDevices fromPreferences(@NonNull Context context) {
+        final SharedPreferences preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        return new OrpheKnownDevices(new Store() {
+            @Nullable
+            @Override
+            public String get(@NonNull String key) {
+                return preferences.getString(key, null);
+            }
+
+            @Override
+            public void put(@NonNull String key, @Nullable String value) {
+                if (value != null) {
+                    preferences.edit().putString(key, value).apply();
+                } else {
+                    preferences.edit().remove(key).apply();
+                }
+            }
+        });
+    }
+
+    /**
+     * 記録に使うキーを返します。
+     *
+     * @param owner 記録するクラスの名前
+     * @param sidePosition 取り付け位置
+     * @return キー
+     */
+    @NonNull
+    static String key(@NonNull String owner, @NonNull OrpheSidePosition sidePosition) {
+        return owner + "." + sidePosition.name();
+    }
+
+    /**
+     * アドレスを記録します。
+     *
+     * @param key [key]で作成したキー
+     * @param address デバイスのアドレス
+     */
+    void save(@NonNull String key, @NonNull String address) {
+        mStore.put(key, address);
+    }
+
+    /**
+     * 記録したアドレスを返します。
+     *
+     * @param key [key]で作成したキー
+     * @return 記録していない場合はnull
+     */
+    @Nullable
+    String load(@NonNull String key) {
+        return mStore.get(key);
+    }
+
+    /**
+     * 記録したアドレスを削除します。
+     *
+     * @param key [key]で作成したキー
+     */
+    void remove(@NonNull String key) {
+        mStore.put(key, null);
+    }
+}
@@ -0,0 +1,137 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.Nullable;
+
+/**
+ * 遅延や所要時間を集計します。Notifyを受け取ってからコールバックが呼ばれるまでの遅延、
+ * スキャンを開始してから最初のデバイスが見つかるまでの時間、左右のセンサー値の時刻のずれなどに使われます。
+ * 遅延はマイクロ秒単位で2のべき乗ごとの区間に分けて記録されます。
+ * 集計を読み出すほか、[setListener]で記録されるたびに値を受け取れます。
+ */
+public class OrpheLatencyStats {
+    /**
+     * 記録された遅延を受け取ります。
+     */
+    public interface Listener {
+        /**
+         * 遅延が記録されたときに、記録したスレッドで呼ばれます。
+         *
+         * @param latencyNanos 記録された遅延（ナノ秒）
+         */
+        void onRecorded(long latencyNanos);
+    }
+
+    private static final int BUCKET_COUNT = 32;
+
+    private final long[] mBuckets = new long[BUCKET_COUNT];
+    private long mCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+    @Nullable
+    private volatile Listener mListener;
+
+    /**
+     * 記録されるたびに遅延を受け取る[Listener]を設定します。
+     *
+     * @param listener 遅延を受け取る[Listener]。nullの場合は通知しません。
+     */
+    public void setListener(@Nullable Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 遅延を記録します。
+     *
+     * @param latencyNanos 遅延（ナノ秒）
+     */
+    public void record(long latencyNanos) {
+        if (latencyNanos < 0) {
+            latencyNanos = 0;
+        }
+        synchronized (this) {
+            final long micros = latencyNanos / 1000;
+            final int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+            mBuckets[bucket]++;
+            mCount++;
+            mTotalNanos += latencyNanos;
+            if (latencyNanos > mMaxNanos) {
+                mMaxNanos = latencyNanos;
+            }
+        }
+        // 集計を読み出すスレッドを待たせないよう、ロックの外で呼ぶ
+        final Listener listener = mListener;
+        if (listener != null) {
+            listener.onRecorded(latencyNanos);
+        }
+    }
+
+    /**
+     * 記録された件数を返します。
+     *
+     * @return 記録された件数
+     */
+    public synchronized long count() {
+        return mCount;
+    }
+
+    /**
+     * 平均の遅延を返します。
+     *
+     * @return 平均の遅延（ミリ秒）
+     */
+    public synchronized double averageMillis() {
+        return mCount == 0 ? 0 : mTotalNanos / (double) mCount / 1_000_000.0;
+    }
+
+    /**
+     * 最大の遅延を返します。
+     *
+     * @return 最大の遅延（ミリ秒）
+     */
+    public synchronized double maxMillis() {
+        return mMaxNanos / 1_000_000.0;
+    }
+
+    /**
+     * 指定したパーセンタイルの遅延の上限を返します。
+     *
+     * @param percentile パーセンタイル（0〜100）
+     * @return 遅延の上限（ミリ秒）
+     */
+    public synchronized double percentileMillis(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        final long target = (long) Math.ceil(mCount * percentile / 100.0);
+        long accumulated = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            accumulated += mBuckets[i];
+            if (accumulated >= target) {
+                return Math.min((1L << i) / 1000.0, maxMillis());
+            }
+        }
+        return maxMillis();
+    }
+
+    /**
+     * 記録をすべて破棄します。
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets[i] = 0;
+        }
+        mCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public synchronized String toString() {
+        return String.format("latency:(n=%d, avg=%.2fms, p50=%.2fms, p99=%.2fms, max=%.2fms)",
+                mCount, averageMillis(), percentileMillis(50), percentileMillis(99), maxMillis());
+    }
+}
@@ -0,0 +1,82 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+/**
+ * デバイスとの間で決まったBLEの通信条件。
+ * [OrpheCoreCallback.onLinkParametersChanged]や[OrpheInsoleCallback.onLinkParametersChanged]で渡されます。
+ */
+public class OrpheLinkParameters {
+    /**
+     * 接続直後の通信条件。MTUは23、PHYは1M、接続間隔は不明です。
+     */
+    public static final OrpheLinkParameters INITIAL = new OrpheLinkParameters(23, 1, 1, 0);
+
+    /**
+     * デバイスとの間で決まったBLEの通信条件。
+     *
+     * @param mtu MTU
+     * @param txPhy 送信のPHY（[BluetoothDevice.PHY_LE_1M]など）
+     * @param rxPhy 受信のPHY（[BluetoothDevice.PHY_LE_1M]など）
+     * @param intervalMillis 接続間隔（ミリ秒）。不明な場合は0
+     */
+    public OrpheLinkParameters(final int mtu, final int txPhy, final int rxPhy, final double intervalMillis) {
+        this.mtu = mtu;
+        this.txPhy = txPhy;
+        this.rxPhy = rxPhy;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * MTU
+     */
+    public final int mtu;
+
+    /**
+     * 送信のPHY
+     */
+    public final int txPhy;
+
+    /**
+     * 受信のPHY
+     */
+    public final int rxPhy;
+
+    /**
+     * 接続間隔（ミリ秒）。端末が通知しない場合は0
+     */
+    public final double intervalMillis;
+
+    /**
+     * 1回のNotifyで送れる最大のバイト数を返します。
+     *
+     * @return バイト数
+     */
+    public int payloadSize() {
+        return mtu - 3;
+    }
+
+    @NonNull
+    OrpheLinkParameters withMtu(int mtu) {
+        return new OrpheLinkParameters(mtu, txPhy, rxPhy, intervalMillis);
+    }
+
+    @NonNull
+    OrpheLinkParameters withPhy(int txPhy, int rxPhy) {
+        return new OrpheLinkParameters(mtu, txPhy, rxPhy, intervalMillis);
+    }
+
+    @NonNull
+    OrpheLinkParameters withInterval(double intervalMillis) {
+        return new OrpheLinkParameters(mtu, txPhy, rxPhy, intervalMillis);
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public String toString() {
+        return String.format("link:(mtu=%d, txPhy=%d, rxPhy=%d, interval=%.2fms)", mtu, txPhy, rxPhy, intervalMillis);
+    }
+}
@@ -0,0 +1,34 @@
+package io.orphe.orphecoresdk;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+
+/**
+ * 接続時に要求するBLEの通信条件の設定
+ */
+public enum OrpheLinkProfile {
+    /// 2M PHYで接続間隔を最短にし、保存されたデータの取得などを速くする
+    throughput(BluetoothDevice.PHY_LE_2M_MASK, BluetoothGatt.CONNECTION_PRIORITY_HIGH),
+
+    /// 2M PHYでAndroidの標準の接続間隔にする
+    balanced(BluetoothDevice.PHY_LE_2M_MASK, BluetoothGatt.CONNECTION_PRIORITY_BALANCED),
+
+    /// 1M PHYで接続間隔を長くし、消費電力を抑える
+    lowPower(BluetoothDevice.PHY_LE_1M_MASK, BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER);
+
+    /**
+     * 要求するMTU。1回のNotifyで送れるのは3バイト少ない244バイトまでです
+     */
+    static final int MTU = 247;
+
+    /// [BluetoothGatt.setPreferredPhy]に渡すPHY
+    final int phy;
+
+    /// [BluetoothGatt.requestConnectionPriority]に渡す優先度
+    final int connectionPriority;
+
+    OrpheLinkProfile(int phy, int connectionPriority) {
+        this.phy = phy;
+        this.connectionPriority = connectionPriority;
+    }
+}
@@ -0,0 +1,669 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Notifyで受け取った生データのデコードとコールバックへの配信を管理します。
+ * 生データは[OrpheNotificationRingBuffer]に格納され、デコード用の[Executor]でまとめて取り出してデコードされます。
+ * コールバックは配信用の[Executor]で実行されます。
+ *
+ * @param <T> デコード後の値の型
+ */
+class OrpheNotificationPipeline<T> {
+    /**
+     * 生データを値に変換します。
+     *
+     * @param <T> デコード後の値の型
+     */
+    interface Decoder<T> {
+        /**
+         * 生データを値に変換します。
+         *
+         * @param value Notifyで受け取ったバイト配列
+         * @return 変換された値の配列
+         */
+        T[] decode(@NonNull byte[] value) throws Exception;
+
+        /**
+         * 受信時刻を使って生データを値に変換します。
+         *
+         * @param value Notifyで受け取ったバイト配列
+         * @param receivedNanos 受信時刻（[System.nanoTime]）
+         * @param live [OrpheSerialClock]が最新のシリアルナンバーを進めたとみなし、
+         *             [OrpheSerialGapTracker]も新しいシリアルナンバーとして受け取った場合はtrue。
+         *             再取得したデータや蓄積されたデータはfalseで、受信時刻は生成された時刻を表しません
+         * @return 変換された値の配列
+         */
+        default T[] decode(@NonNull byte[] value, long receivedNanos, boolean live) throws Exception {
+            return decode(value);
+        }
+
+        /**
+         * 生データを[SensorFrameBatch]に直接書き込みます。[setFramesEnabled]で有効にした場合だけ、[decode]の後に同じ生データで呼ばれます。
+         *
+         * @param value Notifyで受け取ったバイト配列
+         * @param frames 書き込む空の[SensorFrameBatch]（[SensorFrameBatch.MAX_SAMPLES_PER_PACKET]件以上格納できます）
+         * @return 書き込んだ場合はtrue。対応していない場合はfalse
+         */
+        default boolean decodeFrames(@NonNull byte[] value, @NonNull SensorFrameBatch frames) throws Exception {
+            return false;
+        }
+
+        /**
+         * デコードした値を[SensorFrameBatch]に書き込みます。
+         * [OrpheReorderBuffer]で並べ替える場合は複数の生データの値がまとめて出力されるため、[decodeFrames]の代わりに呼ばれます。
+         *
+         * @param values デコードした値
+         * @param frames 書き込む空の[SensorFrameBatch]（[values]の件数以上格納できます）
+         * @return 書き込んだ場合はtrue。対応していない場合はfalse
+         */
+        default boolean toFrames(@NonNull T[] values, @NonNull SensorFrameBatch frames) {
+            return false;
+        }
+    }
+
+    /**
+     * デコードされた値を受け取ります。すべて配信用の[Executor]上で呼ばれます。
+     *
+     * @param <T> デコード後の値の型
+     */
+    interface Listener<T> {
+        /**
+         * 現在のシリアルナンバーが通知されたときに呼ばれます。
+         *
+         * @param serialNumber 現在のシリアルナンバー
+         */
+        void onCurrentSerialNumber(int serialNumber);
+
+        /**
+         * リクエストしたシリアルナンバーが見つからなかったときに呼ばれます。
+         *
+         * @param serialNumber 見つからなかった最初のシリアルナンバー
+         * @param length 見つからなかった件数
+         */
+        void onValueNotFound(int serialNumber, int length);
+
+        /**
+         * センサー値がデコードされたときに呼ばれます。
+         *
+         * @param values デコードされた値
+         */
+        void onValues(@NonNull T[] values);
+
+        /**
+         * センサー値がデコードされたときに、リアルタイムのセンサー値かどうかと共に呼ばれます。
+         * 再取得したデータや蓄積されたデータを除いて集計する場合に実装します。
+         *
+         * @param values デコードされた値
+         * @param live [Decoder.decode]に渡したものと同じ。並べ替えた場合は最初に受け取ったもの
+         */
+        default void onValues(@NonNull T[] values, boolean live) {
+            onValues(values);
+        }
+
+        /**
+         * [onValues]と同じ値を軸ごとの配列で受け取ります。[setFramesEnabled]で有効にした場合だけ、[onValues]の直後に同じスレッドで呼ばれます。
+         * [frames]はこの呼び出しの間だけ他の配信と共有されず、戻った後は次の配信に再利用されます。
+         *
+         * @param frames [Decoder.decodeFrames]か[Decoder.toFrames]で書き込んだ値
+         */
+        default void onFrames(@NonNull SensorFrameBatch frames) {
+        }
+
+        /**
+         * 欠落したシリアルナンバーの再取得が必要なときに呼ばれます。
+         * 他のメソッドと異なり、デコードするスレッドで呼ばれます。
+         *
+         * @param requests 再取得するシリアルナンバーの範囲（最大[OrpheSerialGapTracker.MAX_REQUESTS_PER_WRITE]件）
+         */
+        void onRequestValues(@NonNull OrpheValueRequest[] requests);
+    }
+
+    /**
+     * 欠落の再取得をリクエストする最短の間隔（ナノ秒）。
+     * 続けて欠落した場合にまとめてリクエストするために間隔を空けます。
+     */
+    static final long BACKFILL_INTERVAL_NANOS = 100_000_000L;
+
+    /**
+     * 再利用のために保持する[SensorFrameBatch]の最大数。配信が遅れてこれより多く使われている場合は新しく作成します
+     */
+    static final int FRAME_POOL_SIZE = 8;
+
+    /**
+     * 遅らせて処理を実行します。
+     */
+    interface Scheduler {
+        /**
+         * [delayMillis]後に[runnable]を実行します。
+         *
+         * @param runnable 実行する処理
+         * @param delayMillis 遅らせる時間（ミリ秒）
+         */
+        void schedule(@NonNull Runnable runnable, long delayMillis);
+    }
+
+    private final Decoder<T> mDecoder;
+    private final Listener<T> mListener;
+    private final OrpheLatencyStats mLatencyStats = new OrpheLatencyStats();
+    private final OrpheNotificationRingBuffer mRingBuffer = new OrpheNotificationRingBuffer();
+    private final byte[] mScratch = new byte[mRingBuffer.slotSize()];
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean();
+    private final Runnable mDrain = this::drain;
+    private volatile Executor mDecodeExecutor;
+    private volatile Executor mCallbackExecutor;
+    @Nullable
+    private volatile OrpheSerialGapTracker mGapTracker;
+    private long mLastBackfillNanos;
+    @Nullable
+    private volatile OrpheReorderBuffer<T> mReorderBuffer;
+    private final OrpheReorderBuffer.Emitter<T> mReorderEmitter = this::deliverReordered;
+    @Nullable
+    private volatile Scheduler mHoldScheduler;
+    private final AtomicBoolean mHoldTimerScheduled = new AtomicBoolean();
+    private final Runnable mExpireHeld = this::expireHeld;
+    private final Runnable mHoldTimer = () -> mDecodeExecutor.execute(mExpireHeld);
+    @Nullable
+    private volatile OrpheSessionRecorder mRecorder;
+    @Nullable
+    private volatile OrpheBulkDownloader mDownloader;
+    @Nullable
+    private volatile OrpheSerialClock mSerialClock;
+    @Nullable
+    private volatile OrpheRequestPlanner mRequestPlanner;
+    private final OrpheThroughputMeter mReplayThroughput = new OrpheThroughputMeter();
+    @Nullable
+    private volatile OrpheValueRequest[] mReplayRanges;
+    private volatile boolean mFramesEnabled;
+    /// [Listener.onFrames]から戻った[SensorFrameBatch]。デコードするスレッドと配信するスレッドから使う
+    private final ArrayDeque<SensorFrameBatch> mFramePool = new ArrayDeque<>();
+
+    /**
+     * Notifyで受け取った生データのデコードとコールバックへの配信を管理します。
+     *
+     * @param decoder 生データのデコーダー
+     * @param listener デコードされた値を受け取るリスナー
+     * @param decodeExecutor デコードを行う[Executor]
+     * @param callbackExecutor コールバックを行う[Executor]。nullの場合はデコードしたスレッドで呼び出します。
+     */
+    OrpheNotificationPipeline(@NonNull Decoder<T> decoder, @NonNull Listener<T> listener,
+                              @NonNull Executor decodeExecutor, @Nullable Executor callbackExecutor) {
+        mDecoder = decoder;
+        mListener = listener;
+        mDecodeExecutor = decodeExecutor;
+        mCallbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * デコードと配信を行う[Executor]を変更します。
+     *
+     * @param decodeExecutor デコードを行う[Executor]
+     * @param callbackExecutor コールバックを行う[Executor]。nullの場合はデコードしたスレッドで呼び出します。
+     */
+    void setExecutors(@NonNull Executor decodeExecutor, @Nullable Executor callbackExecutor) {
+        mDecodeExecutor = decodeExecutor;
+        mCallbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * シリアルナンバーの欠落を検出する[OrpheSerialGapTracker]を設定します。
+     * 設定すると重複したシリアルナンバーのデータは破棄され、欠落したデータは[Listener.onRequestValues]で再取得をリクエストします。
+     *
+     * @param gapTracker 欠落を検出する[OrpheSerialGapTracker]。nullの場合は検出しません。
+     */
+    void setGapTracker(@Nullable OrpheSerialGapTracker gapTracker) {
+        mGapTracker = gapTracker;
+    }
+
+    /**
+     * シリアルナンバーの欠落を検出する[OrpheSerialGapTracker]を返します。
+     *
+     * @return 設定されている[OrpheSerialGapTracker]。設定されていない場合はnull
+     */
+    @Nullable
+    OrpheSerialGapTracker gapTracker() {
+        return mGapTracker;
+    }
+
+    /**
+     * 蓄積されたセンサー値をまとめて取得する[OrpheBulkDownloader]を設定します。
+     * 設定すると受け取ったシリアルナンバーを[OrpheBulkDownloader]に渡します。
+     *
+     * @param downloader 取得を行う[OrpheBulkDownloader]。nullの場合は渡しません。
+     */
+    void setDownloader(@Nullable OrpheBulkDownloader downloader) {
+        mDownloader = downloader;
+    }
+
+    /**
+     * 蓄積されたセンサー値をまとめて取得している[OrpheBulkDownloader]を返します。
+     *
+     * @return 設定されている[OrpheBulkDownloader]。設定されていない場合はnull
+     */
+    @Nullable
+    OrpheBulkDownloader downloader() {
+        return mDownloader;
+    }
+
+    /**
+     * シリアルナンバーと受信時刻を対応付ける[OrpheSerialClock]を設定します。
+     * 設定すると現在のシリアルナンバーの通知とセンサー値のシリアルナンバーを受信時刻とともに渡します。
+     *
+     * @param serialClock 対応付けを行う[OrpheSerialClock]。nullの場合は渡しません。
+     */
+    void setSerialClock(@Nullable OrpheSerialClock serialClock) {
+        mSerialClock = serialClock;
+    }
+
+    /**
+     * シリアルナンバーと受信時刻を対応付ける[OrpheSerialClock]を返します。
+     *
+     * @return 設定されている[OrpheSerialClock]。設定されていない場合はnull
+     */
+    @Nullable
+    OrpheSerialClock serialClock() {
+        return mSerialClock;
+    }
+
+    /**
+     * 分割したリクエストを順に書き込む[OrpheRequestPlanner]を設定します。
+     * 設定すると受け取ったシリアルナンバーと見つからなかった範囲を渡し、前の書き込みが終わったら次を書き込みます。
+     *
+     * @param requestPlanner 書き込みを行う[OrpheRequestPlanner]。nullの場合は渡しません。
+     */
+    void setRequestPlanner(@Nullable OrpheRequestPlanner requestPlanner) {
+        mRequestPlanner = requestPlanner;
+    }
+
+    /**
+     * 分割したリクエストを順に書き込む[OrpheRequestPlanner]を返します。
+     *
+     * @return 設定されている[OrpheRequestPlanner]。設定されていない場合はnull
+     */
+    @Nullable
+    OrpheRequestPlanner requestPlanner() {
+        return mRequestPlanner;
+    }
+
+    /**
+     * アプリが始めた取得の範囲を設定し、[replayThroughput]の集計をやり直します。
+     * 以降はこの範囲のシリアルナンバーのセンサー値だけを集計し、欠落の再取得やリアルタイムのセンサー値は含めません。
+     *
+     * @param requests 取得する範囲
+     */
+    void startReplay(@NonNull OrpheValueRequest[] requests) {
+        mReplayThroughput.reset();
+        mReplayRanges = requests.clone();
+    }
+
+    /**
+     * [startReplay]で設定した範囲のセンサー値を受け取ったときのスループットの集計を返します。
+     *
+     * @return スループットの集計
+     */
+    @NonNull
+    OrpheThroughputMeter replayThroughput() {
+        return mReplayThroughput;
+    }
+
+    /**
+     * センサー値を並べ替える[OrpheReorderBuffer]を設定します。
+     * 設定するとセンサー値はシリアルナンバーの順に並べ替えられ、重複は取り除かれます。
+     *
+     * @param reorderBuffer 並べ替えを行う[OrpheReorderBuffer]。nullの場合は受け取った順に配信します。
+     */
+    void setReorderBuffer(@Nullable OrpheReorderBuffer<T> reorderBuffer) {
+        final OrpheReorderBuffer<T> previous = mReorderBuffer;
+        mReorderBuffer = reorderBuffer;
+        if (previous != null && previous != reorderBuffer) {
+            // 保持していたセンサー値は捨てずに配信する
+            mDecodeExecutor.execute(() -> previous.flush(mReorderEmitter));
+        }
+    }
+
+    /**
+     * [OrpheReorderBuffer]が保持しているセンサー値を保持時間に関係なくすべて配信します。
+     * 切断した場合など、続きのセンサー値が届かない場合に呼び出します。
+     */
+    void flushReorderBuffer() {
+        mDecodeExecutor.execute(() -> {
+            final OrpheReorderBuffer<T> reorderBuffer = mReorderBuffer;
+            if (reorderBuffer != null) {
+                reorderBuffer.flush(mReorderEmitter);
+            }
+        });
+    }
+
+    /**
+     * [OrpheReorderBuffer]の保持時間を過ぎたセンサー値を配信するタイマーを設定します。
+     * 設定しない場合、保持しているセンサー値は次のセンサー値が届いたときにだけ配信されます。
+     *
+     * @param holdScheduler タイマーを実行する[Scheduler]。nullの場合はタイマーを使いません。
+     */
+    void setHoldScheduler(@Nullable Scheduler holdScheduler) {
+        mHoldScheduler = holdScheduler;
+    }
+
+    /**
+     * センサー値を並べ替える[OrpheReorderBuffer]を返します。
+     *
+     * @return 設定されている[OrpheReorderBuffer]。設定されていない場合はnull
+     */
+    @Nullable
+    OrpheReorderBuffer<T> reorderBuffer() {
+        return mReorderBuffer;
+    }
+
+    /**
+     * センサー値を[SensorFrameBatch]に書き込んで[Listener.onFrames]に配信するかを設定します。デフォルトは無効です。
+     * 無効の場合は書き込みを行わないため、[Listener.onFrames]を使わないときにデコードとメモリ確保が増えません。
+     *
+     * @param enabled 配信する場合はtrue
+     */
+    void setFramesEnabled(boolean enabled) {
+        mFramesEnabled = enabled;
+    }
+
+    /**
+     * センサー値を[SensorFrameBatch]に書き込んで配信するかを返します。
+     *
+     * @return 配信する場合はtrue
+     */
+    boolean isFramesEnabled() {
+        return mFramesEnabled;
+    }
+
+    /**
+     * 生データを記録する[OrpheSessionRecorder]を設定します。
+     *
+     * @param recorder 生データを記録する[OrpheSessionRecorder]。nullの場合は記録しません。
+     */
+    void setRecorder(@Nullable OrpheSessionRecorder recorder) {
+        mRecorder = recorder;
+    }
+
+    /**
+     * 生データを記録する[OrpheSessionRecorder]を返します。
+     *
+     * @return 設定されている[OrpheSessionRecorder]。設定されていない場合はnull
+     */
+    @Nullable
+    OrpheSessionRecorder recorder() {
+        return mRecorder;
+    }
+
+    /**
+     * Notifyを受け取ってからコールバックが呼ばれるまでの遅延の集計を返します。
+     *
+     * @return 遅延の集計
+     */
+    @NonNull
+    OrpheLatencyStats latencyStats() {
+        return mLatencyStats;
+    }
+
+    /**
+     * Notifyの生データを受け渡すリングバッファを返します。
+     *
+     * @return リングバッファ
+     */
+    @NonNull
+    OrpheNotificationRingBuffer ringBuffer() {
+        return mRingBuffer;
+    }
+
+    /**
+     * Notifyで受け取った生データを渡します。BLEのスレッドから呼ばれることを想定しており、
+     * 同時に複数のスレッドから呼び出さないでください。
+     *
+     * @param value Notifyで受け取ったバイト配列
+     */
+    void onNotified(@NonNull final byte[] value) {
+        mRingBuffer.offer(value, value.length, System.nanoTime());
+        if (mDrainScheduled.compareAndSet(false, true)) {
+            mDecodeExecutor.execute(mDrain);
+        }
+    }
+
+    /**
+     * リングバッファに溜まった生データをデコードします。
+     * 1回で処理する件数はバッファの格納数までとし、残りは再度スケジュールします。
+     */
+    private void drain() {
+        try {
+            final int limit = mRingBuffer.capacity();
+            for (int i = 0; i < limit; i++) {
+                final int length = mRingBuffer.poll(mScratch);
+                if (length < 0) {
+                    break;
+                }
+                process(mScratch, length, mRingBuffer.polledNanos());
+            }
+        } finally {
+            mDrainScheduled.set(false);
+        }
+        if (mRingBuffer.occupancy() > 0 && mDrainScheduled.compareAndSet(false, true)) {
+            mDecodeExecutor.execute(mDrain);
+        }
+    }
+
+    /**
+     * 生データをデコードしてリスナーに配信します。
+     *
+     * @param value Notifyで受け取ったバイト配列
+     * @param receivedNanos 受信時刻（[System.nanoTime]）
+     */
+    void process(@NonNull final byte[] value, final long receivedNanos) {
+        process(value, value.length, receivedNanos);
+    }
+
+    /**
+     * 生データをデコードしてリスナーに配信します。
+     *
+     * @param value Notifyで受け取ったバイト配列（再利用される領域のため、[valueLength]より長い場合があります）
+     * @param valueLength 生データのバイト数
+     * @param receivedNanos 受信時刻（[System.nanoTime]）
+     */
+    void process(@NonNull final byte[] value, final int valueLength, final long receivedNanos) {
+        final OrpheSerialGapTracker gapTracker = mGapTracker;
+        final OrpheSerialClock serialClock = mSerialClock;
+        final OrpheRequestPlanner requestPlanner = mRequestPlanner;
+        switch (value[0]) {
+            case 53:
+                switch (value[1]) {
+                    case 1: {
+                        final int currentSerialNumber = ((value[2] & 0xFF) << 8) | (value[3] & 0xFF);
+                        if (serialClock != null) {
+                            serialClock.observe(currentSerialNumber, receivedNanos);
+                        }
+                        deliver(() -> mListener.onCurrentSerialNumber(currentSerialNumber), receivedNanos);
+                        break;
+                    }
+                    case 2: {
+                        final int serialNumber = ((value[2] & 0xFF) << 8) | (value[3] & 0xFF);
+                        final int length = ((value[4] & 0xFF) << 8) | (value[5] & 0xFF);
+                        if (gapTracker != null) {
+                            gapTracker.onNotFound(serialNumber, length);
+                        }
+                        final OrpheBulkDownloader downloader = mDownloader;
+                        if (downloader != null) {
+                            downloader.onNotFound(serialNumber, length, receivedNanos);
+                        }
+                        if (requestPlanner != null) {
+                            requestPlanner.onNotFound(serialNumber, length, receivedNanos);
+                        }
+                        deliver(() -> mListener.onValueNotFound(serialNumber, length), receivedNanos);
+                        break;
+                    }
+                }
+                break;
+            case 54:
+            case 55:
+            case 56: {
+                final OrpheSessionRecorder recorder = mRecorder;
+                if (recorder != null) {
+                    recorder.append(value, valueLength, receivedNanos);
+                }
+                final int serialNumber = ((value[1] & 0xFF) << 8) | (value[2] & 0xFF);
+                final OrpheValueRequest[] replayRanges = mReplayRanges;
+                if (replayRanges != null && contains(replayRanges, serialNumber)) {
+                    mReplayThroughput.record(valueLength, receivedNanos);
+                }
+                // 時計を設定していない場合は、すべて受信した時点のデータとして扱う
+                final boolean advanced = serialClock == null || serialClock.observe(serialNumber, receivedNanos);
+                final OrpheBulkDownloader downloader = mDownloader;
+                if (downloader != null) {
+                    downloader.onSerialNumber(serialNumber, valueLength, receivedNanos);
+                }
+                if (requestPlanner != null) {
+                    requestPlanner.onSerialNumber(serialNumber, receivedNanos);
+                }
+                final int result = gapTracker != null ? gapTracker.onSerialNumber(serialNumber) : OrpheSerialGapTracker.RESULT_NEW;
+                if (result == OrpheSerialGapTracker.RESULT_DUPLICATE) {
+                    break;
+                }
+                // 欠落の再取得やアプリのリクエストによる再送はリアルタイムのセンサー値として扱わない
+                final boolean live = advanced && result == OrpheSerialGapTracker.RESULT_NEW;
+                final OrpheReorderBuffer<T> reorderBuffer = mReorderBuffer;
+                final T[] values;
+                final SensorFrameBatch frames;
+                try {
+                    values = mDecoder.decode(value, receivedNanos, live);
+                    // 並べ替える場合は出力するときに値から書き込む
+                    frames = reorderBuffer == null && values.length > 0 && mFramesEnabled ? decodeFrames(value) : null;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                if (reorderBuffer != null) {
+                    reorderBuffer.offer(serialNumber, values, receivedNanos, live, mReorderEmitter);
+                    scheduleHoldTimer(reorderBuffer, receivedNanos);
+                } else if (values.length > 0) {
+                    deliverValues(values, frames, receivedNanos, live);
+                }
+                if (gapTracker != null) {
+                    requestMissingValues(gapTracker, receivedNanos);
+                }
+                break;
+            }
+        }
+    }
+
+    private static boolean contains(@NonNull OrpheValueRequest[] requests, int serialNumber) {
+        for (OrpheValueRequest request : requests) {
+            if (((serialNumber - request.startSerialNumber) & (OrpheSerialNumber.MODULUS - 1)) < request.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void requestMissingValues(@NonNull OrpheSerialGapTracker gapTracker, long receivedNanos) {
+        if (gapTracker.pendingCount() == 0 || receivedNanos - mLastBackfillNanos < BACKFILL_INTERVAL_NANOS) {
+            return;
+        }
+        mLastBackfillNanos = receivedNanos;
+        final OrpheValueRequest[] requests = gapTracker.takeRequests();
+        if (requests.length > 0) {
+            mListener.onRequestValues(requests);
+        }
+    }
+
+    private void scheduleHoldTimer(@NonNull OrpheReorderBuffer<T> reorderBuffer, long nowNanos) {
+        final Scheduler scheduler = mHoldScheduler;
+        final long expiryNanos = reorderBuffer.expiryNanos();
+        if (scheduler == null || expiryNanos == Long.MAX_VALUE || !mHoldTimerScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        // 保持時間を過ぎてから実行されるように切り上げる
+        final long delayMillis = Math.max(0, (expiryNanos - nowNanos + 999_999) / 1_000_000);
+        scheduler.schedule(mHoldTimer, delayMillis);
+    }
+
+    /// タイマーからデコードするスレッドで呼ばれ、保持時間を過ぎたセンサー値を配信する
+    private void expireHeld() {
+        mHoldTimerScheduled.set(false);
+        final OrpheReorderBuffer<T> reorderBuffer = mReorderBuffer;
+        if (reorderBuffer == null) {
+            return;
+        }
+        final long nowNanos = System.nanoTime();
+        reorderBuffer.expire(nowNanos, mReorderEmitter);
+        scheduleHoldTimer(reorderBuffer, nowNanos);
+    }
+
+    @Nullable
+    private SensorFrameBatch decodeFrames(@NonNull byte[] value) throws Exception {
+        final SensorFrameBatch frames = acquireFrames(SensorFrameBatch.MAX_SAMPLES_PER_PACKET);
+        if (mDecoder.decodeFrames(value, frames)) {
+            return frames;
+        }
+        releaseFrames(frames);
+        return null;
+    }
+
+    private void deliverReordered(@NonNull final T[] values, final long receivedNanos, final boolean live) {
+        SensorFrameBatch frames = null;
+        if (mFramesEnabled) {
+            frames = acquireFrames(values.length);
+            if (!mDecoder.toFrames(values, frames)) {
+                releaseFrames(frames);
+                frames = null;
+            }
+        }
+        deliverValues(values, frames, receivedNanos, live);
+    }
+
+    @NonNull
+    private SensorFrameBatch acquireFrames(int capacity) {
+        final SensorFrameBatch frames;
+        synchronized (mFramePool) {
+            frames = mFramePool.poll();
+        }
+        if (frames == null || frames.capacity < capacity) {
+            // 足りない場合は作り直し、小さいものは捨てる
+            return new SensorFrameBatch(Math.max(capacity, SensorFrameBatch.MAX_SAMPLES_PER_PACKET));
+        }
+        frames.clear();
+        return frames;
+    }
+
+    private void releaseFrames(@NonNull SensorFrameBatch frames) {
+        synchronized (mFramePool) {
+            if (mFramePool.size() < FRAME_POOL_SIZE) {
+                mFramePool.add(frames);
+            }
+        }
+    }
+
+    private void deliverValues(@NonNull final T[] values, @Nullable final SensorFrameBatch frames,
+                               final long receivedNanos, final boolean live) {
+        deliver(() -> {
+            mListener.onValues(values, live);
+            if (frames != null) {
+                try {
+                    mListener.onFrames(frames);
+                } finally {
+                    releaseFrames(frames);
+                }
+            }
+        }, receivedNanos);
+    }
+
+    private void deliver(@NonNull final Runnable runnable, final long receivedNanos) {
+        final Executor callbackExecutor = mCallbackExecutor;
+        if (callbackExecutor == null) {
+            runnable.run();
+            mLatencyStats.record(System.nanoTime() - receivedNanos);
+            return;
+        }
+        callbackExecutor.execute(() -> {
+            runnable.run();
+            mLatencyStats.record(System.nanoTime() - receivedNanos);
+        });
+    }
+}
@@ -0,0 +1,247 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * BLEのスレッドとデコードするスレッドの間でNotifyの生データを受け渡すリングバッファ。
+ * 書き込みは1つのスレッド、読み込みは1つのスレッドから行うことを前提としており、ロックを使いません。
+ * 領域はすべて作成時に確保されるため、受信ごとのメモリ確保は発生せず、バッファ以上にメモリが増えることもありません。
+ */
+public class OrpheNotificationRingBuffer {
+    /**
+     * デフォルトの格納数
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * デフォルトの1件あたりの最大バイト数
+     */
+    public static final int DEFAULT_SLOT_SIZE = 512;
+
+    private static final long BLOCK_PARK_NANOS = 50_000;
+
+    private final int mCapacity;
+    private final int mMask;
+    private final int mSlotSize;
+    private final byte[] mData;
+    private final int[] mLengths;
+    private final long[] mTimestamps;
+
+    /// 次に読み込む位置（読み込み側と[OrpheOverflowPolicy.dropOldest]の書き込み側が更新）
+    private final AtomicLong mHead = new AtomicLong();
+    /// 次に書き込む位置（書き込み側のみが更新）
+    private final AtomicLong mTail = new AtomicLong();
+
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mBlockedCount = new AtomicLong();
+    private volatile long mHighWaterMark;
+    private volatile OrpheOverflowPolicy mOverflowPolicy;
+
+    private long mPolledNanos;
+
+    /**
+     * BLEのスレッドとデコードするスレッドの間でNotifyの生データを受け渡すリングバッファ。
+     *
+     * @param capacity 格納数（2のべき乗に切り上げられます）
+     * @param slotSize 1件あたりの最大バイト数
+     * @param overflowPolicy バッファがいっぱいになったときの動作
+     */
+    OrpheNotificationRingBuffer(int capacity, int slotSize, @NonNull OrpheOverflowPolicy overflowPolicy) {
+        if (capacity < 2 || slotSize < 1) {
+            throw new IllegalArgumentException("capacity must be at least 2 and slotSize at least 1");
+        }
+        mCapacity = Integer.highestOneBit(capacity - 1) << 1;
+        mMask = mCapacity - 1;
+        mSlotSize = slotSize;
+        mData = new byte[mCapacity * slotSize];
+        mLengths = new int[mCapacity];
+        mTimestamps = new long[mCapacity];
+        mOverflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * BLEのスレッドとデコードするスレッドの間でNotifyの生データを受け渡すリングバッファ。
+     */
+    OrpheNotificationRingBuffer() {
+        this(DEFAULT_CAPACITY, DEFAULT_SLOT_SIZE, OrpheOverflowPolicy.dropOldest);
+    }
+
+    /**
+     * 生データを書き込みます。書き込み側のスレッドからのみ呼び出してください。
+     *
+     * @param value 生データ
+     * @param length 生データのバイト数
+     * @param receivedNanos 受信時刻
+     * @return 格納された場合はtrue
+     */
+    boolean offer(@NonNull byte[] value, int length, long receivedNanos) {
+        if (length > mSlotSize) {
+            mDroppedCount.incrementAndGet();
+            return false;
+        }
+        final long tail = mTail.get();
+        boolean blocked = false;
+        while (true) {
+            final long head = mHead.get();
+            if (tail - head < mCapacity) {
+                final int slot = (int) (tail & mMask);
+                System.arraycopy(value, 0, mData, slot * mSlotSize, length);
+                mLengths[slot] = length;
+                mTimestamps[slot] = receivedNanos;
+                mTail.lazySet(tail + 1);
+                final long occupancy = tail + 1 - head;
+                if (occupancy > mHighWaterMark) {
+                    mHighWaterMark = occupancy;
+                }
+                return true;
+            }
+            switch (mOverflowPolicy) {
+                case dropNewest:
+                    mDroppedCount.incrementAndGet();
+                    return false;
+                case dropOldest:
+                    if (mHead.compareAndSet(head, head + 1)) {
+                        mDroppedCount.incrementAndGet();
+                    }
+                    break;
+                case blockAndCount:
+                    if (!blocked) {
+                        blocked = true;
+                        mBlockedCount.incrementAndGet();
+                    }
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 最も古い生データを読み込みます。読み込み側のスレッドからのみ呼び出してください。
+     * 受信時刻は[polledNanos]で取得できます。
+     *
+     * @param destination 書き込み先の配列（[slotSize]以上の長さが必要）
+     * @return 読み込んだバイト数。空の場合は-1
+     */
+    int poll(@NonNull byte[] destination) {
+        while (true) {
+            final long head = mHead.get();
+            if (head >= mTail.get()) {
+                return -1;
+            }
+            final int slot = (int) (head & mMask);
+            final int length = mLengths[slot];
+            final long receivedNanos = mTimestamps[slot];
+            System.arraycopy(mData, slot * mSlotSize, destination, 0, length);
+            // 読み込み中に書き込み側が破棄した場合は読み直す
+            if (mHead.compareAndSet(head, head + 1)) {
+                mPolledNanos = receivedNanos;
+                return length;
+            }
+        }
+    }
+
+    /**
+     * 直前に[poll]で読み込んだ生データの受信時刻を返します。
+     *
+     * @return 受信時刻
+     */
+    long polledNanos() {
+        return mPolledNanos;
+    }
+
+    /**
+     * バッファがいっぱいになったときの動作を設定します。
+     *
+     * @param overflowPolicy バッファがいっぱいになったときの動作
+     */
+    void setOverflowPolicy(@NonNull OrpheOverflowPolicy overflowPolicy) {
+        mOverflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * バッファがいっぱいになったときの動作を返します。
+     *
+     * @return バッファがいっぱいになったときの動作
+     */
+    @NonNull
+    public OrpheOverflowPolicy overflowPolicy() {
+        return mOverflowPolicy;
+    }
+
+    /**
+     * 格納数を返します。
+     *
+     * @return 格納数
+     */
+    public int capacity() {
+        return mCapacity;
+    }
+
+    /**
+     * 1件あたりの最大バイト数を返します。
+     *
+     * @return 1件あたりの最大バイト数
+     */
+    public int slotSize() {
+        return mSlotSize;
+    }
+
+    /**
+     * 現在格納されている件数を返します。
+     *
+     * @return 現在格納されている件数
+     */
+    public int occupancy() {
+        final long head = mHead.get();
+        return (int) Math.max(0, mTail.get() - head);
+    }
+
+    /**
+     * これまでに同時に格納された最大の件数を返します。
+     *
+     * @return 最大の格納件数
+     */
+    public long highWaterMark() {
+        return mHighWaterMark;
+    }
+
+    /**
+     * 破棄された件数を返します。
+     *
+     * @return 破棄された件数
+     */
+    public long droppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * 空きを待機した回数を返します。
+     *
+     * @return 待機した回数
+     */
+    public long blockedCount() {
+        return mBlockedCount.get();
+    }
+
+    /**
+     * 最大の格納件数と破棄件数、待機回数をリセットします。
+     */
+    public void resetCounters() {
+        mHighWaterMark = occupancy();
+        mDroppedCount.set(0);
+        mBlockedCount.set(0);
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public String toString() {
+        return String.format("buffer:(%d/%d, highWaterMark=%d, dropped=%d, blocked=%d, policy=%s)",
+                occupancy(), mCapacity, highWaterMark(), droppedCount(), blockedCount(), mOverflowPolicy.name());
+    }
+}
@@ -0,0 +1,15 @@
+package io.orphe.orphecoresdk;
+
+/**
+ * Notifyの受信バッファがいっぱいになったときの動作の設定
+ */
+public enum OrpheOverflowPolicy {
+    /// 最も古いデータを破棄して新しいデータを格納
+    dropOldest,
+
+    /// 新しいデータを破棄
+    dropNewest,
+
+    /// 空きができるまで待機し、待機した回数を記録
+    blockAndCount;
+}
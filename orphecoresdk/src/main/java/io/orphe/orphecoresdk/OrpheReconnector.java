@@ -0,0 +1,183 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 接続が切れたときに、スキャンせずに同じデバイスに接続し直すための状態を管理します。
+ * 接続し直すかどうかとその待ち時間、前回見つけたサービスを使い回せるかどうか、前回接続したデバイスのアドレスの記録を扱い、
+ * Bluetoothの操作は[Orphe]や[OrpheInsole]が戻り値に従って行います。
+ * サービスに関するメソッドはGATTのコールバックのスレッドから、それ以外はメインスレッドから呼んでください。
+ */
+class OrpheReconnector {
+    /**
+     * 切断後にスキャンせずに接続し直すのを待つデフォルトの期間（ミリ秒）
+     */
+    static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    @NonNull
+    private final OrpheKnownDevices mKnownDevices;
+    @NonNull
+    private final String mKey;
+    @NonNull
+    private final OrpheGattOperationQueue.Scheduler mScheduler;
+    private final long mTimeoutMillis;
+    @NonNull
+    private final Runnable mOnTimeout;
+    private final Runnable mTimeout = this::onTimeout;
+
+    private boolean mEnabled;
+    /// スキャンせずに接続し直している間はtrue
+    private boolean mReconnecting;
+    /// 今の[BluetoothGatt]で見つけたサービスが使えることを確認済みの場合はtrue
+    private volatile boolean mServicesValid;
+    /// 接続し直したときにサービスの探索を省いた場合はtrue
+    private volatile boolean mUsingCachedServices;
+
+    /**
+     * 接続が切れたときに、スキャンせずに同じデバイスに接続し直すための状態を管理します。
+     *
+     * @param knownDevices 接続したデバイスのアドレスの記録
+     * @param key [OrpheKnownDevices.key]で作成したキー
+     * @param scheduler 待ち時間を数える[OrpheGattOperationQueue.Scheduler]
+     * @param timeoutMillis 接続し直すのを待つ期間（ミリ秒）
+     * @param onTimeout 待ち時間内に接続できなかったときに、メインスレッドで呼ばれる処理
+     */
+    OrpheReconnector(@NonNull OrpheKnownDevices knownDevices, @NonNull String key, @NonNull OrpheGattOperationQueue.Scheduler scheduler,
+                     long timeoutMillis, @NonNull Runnable onTimeout) {
+        mKnownDevices = knownDevices;
+        mKey = key;
+        mScheduler = scheduler;
+        mTimeoutMillis = timeoutMillis;
+        mOnTimeout = onTimeout;
+    }
+
+    /**
+     * 接続が切れたときに、スキャンせずに接続し直すかを設定します。
+     *
+     * @param enabled 接続し直す場合はtrue
+     */
+    void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * 接続が切れたときに、スキャンせずに接続し直すかを返します。
+     *
+     * @return 接続し直す場合はtrue
+     */
+    boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * スキャンせずに接続し直している途中かどうかを返します。
+     *
+     * @return 接続し直している場合はtrue
+     */
+    boolean isReconnecting() {
+        return mReconnecting;
+    }
+
+    /**
+     * 接続が切れたときに、スキャンせずに接続し直すかどうかを返します。
+     *
+     * @param dropped 切断を依頼していないのに切れた場合か、接続し直している途中の場合はtrue
+     * @param currentGatt 切れたのが今使っている[BluetoothGatt]の場合はtrue
+     * @return 接続し直す場合はtrue
+     */
+    boolean shouldReconnect(boolean dropped, boolean currentGatt) {
+        return mEnabled && dropped && currentGatt;
+    }
+
+    /**
+     * 接続し直し始めたことを記録します。最初に呼ばれてから待ち時間内に[onConnected]が呼ばれない場合は、タイムアウトの処理を呼びます。
+     */
+    void onReconnecting() {
+        if (!mReconnecting) {
+            mReconnecting = true;
+            mScheduler.schedule(mTimeout, mTimeoutMillis);
+        }
+    }
+
+    /**
+     * 接続し直すのをやめます。タイムアウトの処理は呼ばれません。
+     */
+    void cancel() {
+        mReconnecting = false;
+        mScheduler.cancel(mTimeout);
+    }
+
+    /**
+     * 接続できたことを記録し、デバイスのアドレスを保存します。
+     *
+     * @param address 接続したデバイスのアドレス
+     */
+    void onConnected(@NonNull String address) {
+        cancel();
+        mKnownDevices.save(mKey, address);
+    }
+
+    private void onTimeout() {
+        if (!mReconnecting) {
+            return;
+        }
+        mReconnecting = false;
+        mOnTimeout.run();
+    }
+
+    /**
+     * 新しい[BluetoothGatt]で接続するときに呼びます。前回見つけたサービスは使えなくなります。
+     */
+    void onNewGatt() {
+        mServicesValid = false;
+        mUsingCachedServices = false;
+    }
+
+    /**
+     * 接続したときに、前回見つけたサービスを使ってサービスの探索を省けるかを返します。
+     *
+     * @param serviceFound [BluetoothGatt]に前回見つけたサービスが残っている場合はtrue
+     * @return 探索を省く場合はtrue
+     */
+    boolean useCachedServices(boolean serviceFound) {
+        mUsingCachedServices = mServicesValid && serviceFound;
+        return mUsingCachedServices;
+    }
+
+    /**
+     * 通知の有効化の結果を渡します。成功した場合は、次に接続し直したときにサービスを使い回せます。
+     *
+     * @param success 通知を有効にできた場合はtrue
+     * @return 使い回したサービスが使えなかったため、切断して探索からやり直す場合はtrue
+     */
+    boolean onNotificationEnabled(boolean success) {
+        if (success) {
+            mServicesValid = true;
+            return false;
+        }
+        if (!mUsingCachedServices) {
+            return false;
+        }
+        mServicesValid = false;
+        mUsingCachedServices = false;
+        return true;
+    }
+
+    /**
+     * 前回接続したデバイスのアドレスを返します。
+     *
+     * @return アドレス。接続したことがない場合はnull
+     */
+    @Nullable
+    String knownAddress() {
+        return mKnownDevices.load(mKey);
+    }
+
+    /**
+     * 記録した前回接続したデバイスのアドレスを削除します。
+     */
+    void forget() {
+        mKnownDevices.remove(mKey);
+    }
+}
@@ -0,0 +1,306 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * シリアルナンバーとデータ中の位置をキーにセンサー値を並べ替え、重複を取り除くバッファ。
+ * 欠けているシリアルナンバーがある場合は、後続のセンサー値を最大で[maxHoldMillis]だけ保持して到着を待ちます。
+ * 保持時間を過ぎたら欠けているシリアルナンバーを飛ばし、その後に届いたものは遅延として破棄します。
+ * 保持できる範囲より離れた再取得したデータは、並べ替えずにそのまま出力します。
+ * デコードするスレッドからのみ更新され、集計値は他のスレッドから読み取れます。
+ *
+ * @param <T> センサー値の型
+ */
+public class OrpheReorderBuffer<T> {
+    /**
+     * デフォルトの最大保持時間（ミリ秒）
+     */
+    public static final long DEFAULT_MAX_HOLD_MILLIS = 200;
+
+    /**
+     * 保持できるシリアルナンバーの数。これより離れたリアルタイムのシリアルナンバーが届いた場合は不連続として保持中のものをすべて出力します。
+     */
+    static final int CAPACITY = 256;
+
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * センサー値からデータ中の位置を取り出します。
+     *
+     * @param <T> センサー値の型
+     */
+    interface KeyExtractor<T> {
+        /**
+         * データ中の位置を返します。
+         *
+         * @param value センサー値
+         * @return データ中の位置（0〜31）
+         */
+        int dataPosition(@NonNull T value);
+    }
+
+    /**
+     * 並べ替えたセンサー値を受け取ります。
+     *
+     * @param <T> センサー値の型
+     */
+    interface Emitter<T> {
+        /**
+         * 1つのシリアルナンバーのセンサー値を受け取ります。
+         *
+         * @param values データ中の位置の降順（時系列順）に並んだセンサー値
+         * @param receivedNanos 最初に受信した時刻（[System.nanoTime]）
+         * @param live 最初に受け取ったものがリアルタイムのセンサー値の場合はtrue
+         */
+        void emit(@NonNull T[] values, long receivedNanos, boolean live);
+    }
+
+    private final KeyExtractor<T> mKeyExtractor;
+    private final long mMaxHoldMillis;
+    private final long mMaxHoldNanos;
+    private final Object[] mSlots = new Object[CAPACITY];
+    private final int[] mPositions = new int[CAPACITY];
+    private final long[] mArrivals = new long[CAPACITY];
+    private final boolean[] mLive = new boolean[CAPACITY];
+
+    /// 次に出力するシリアルナンバー（まだ何も受け取っていない場合は-1）
+    private int mNext = -1;
+
+    private volatile int mHeldCount;
+    private volatile long mLateDropCount;
+    private volatile long mDuplicateCount;
+    private volatile long mSkippedCount;
+    private volatile long mPassedCount;
+
+    /**
+     * シリアルナンバーとデータ中の位置をキーにセンサー値を並べ替え、重複を取り除くバッファ。
+     *
+     * @param keyExtractor センサー値からデータ中の位置を取り出す[KeyExtractor]
+     * @param maxHoldMillis 欠けているシリアルナンバーを待つ最大時間（ミリ秒）
+     */
+    OrpheReorderBuffer(@NonNull KeyExtractor<T> keyExtractor, long maxHoldMillis) {
+        if (maxHoldMillis < 0) {
+            throw new IllegalArgumentException("maxHoldMillis must not be negative");
+        }
+        mKeyExtractor = keyExtractor;
+        mMaxHoldMillis = maxHoldMillis;
+        mMaxHoldNanos = maxHoldMillis * 1_000_000L;
+    }
+
+    /**
+     * 1つのシリアルナンバーのセンサー値を追加し、出力できるものを[emitter]に渡します。
+     *
+     * @param serialNumber シリアルナンバー
+     * @param values センサー値
+     * @param receivedNanos 受信時刻（[System.nanoTime]）
+     * @param live リアルタイムのセンサー値の場合はtrue。再取得したデータの場合はfalse
+     * @param emitter 並べ替えたセンサー値を受け取る[Emitter]
+     */
+    void offer(int serialNumber, @NonNull T[] values, long receivedNanos, boolean live, @NonNull Emitter<T> emitter) {
+        if (values.length == 0) {
+            return;
+        }
+        if (mNext < 0) {
+            mNext = serialNumber;
+        }
+        int distance = OrpheSerialNumber.distance(mNext, serialNumber);
+        if ((distance < -CAPACITY || distance >= CAPACITY) && !live) {
+            // 蓄積されたデータの再取得などは、リアルタイムのセンサー値の並べ替えを妨げないように次の位置を動かさない
+            mPassedCount += values.length;
+            emitter.emit(values, receivedNanos, false);
+            return;
+        }
+        if (distance < -CAPACITY || distance >= CAPACITY) {
+            // 再接続などで大きく飛んだ場合は保持中のものを出力してから受け付け直す
+            drain(receivedNanos, emitter, true);
+            mNext = serialNumber;
+            distance = 0;
+        }
+        if (distance < 0) {
+            mLateDropCount += values.length;
+            return;
+        }
+        final int slot = serialNumber & MASK;
+        final int positions = positionsOf(values);
+        if (mSlots[slot] == null) {
+            mSlots[slot] = values;
+            mPositions[slot] = positions;
+            mArrivals[slot] = receivedNanos;
+            mLive[slot] = live;
+            mHeldCount++;
+        } else {
+            merge(slot, values, positions);
+        }
+        drain(receivedNanos, emitter, false);
+    }
+
+    /**
+     * 保持時間に関係なく、保持しているセンサー値をすべて出力します。
+     *
+     * @param emitter 並べ替えたセンサー値を受け取る[Emitter]
+     */
+    void flush(@NonNull Emitter<T> emitter) {
+        drain(0, emitter, true);
+    }
+
+    /**
+     * 保持時間を過ぎたセンサー値を出力します。次のセンサー値が届かない場合でも保持し続けないように、タイマーから呼び出します。
+     *
+     * @param nowNanos 現在時刻（[System.nanoTime]）
+     * @param emitter 並べ替えたセンサー値を受け取る[Emitter]
+     */
+    void expire(long nowNanos, @NonNull Emitter<T> emitter) {
+        drain(nowNanos, emitter, false);
+    }
+
+    /**
+     * 保持しているセンサー値が次に出力できるようになる時刻を返します。
+     *
+     * @return 時刻（[System.nanoTime]）。保持していない場合は[Long.MAX_VALUE]
+     */
+    long expiryNanos() {
+        if (mHeldCount == 0) {
+            return Long.MAX_VALUE;
+        }
+        int skip = 0;
+        while (mSlots[(mNext + skip) & MASK] == null) {
+            skip++;
+        }
+        return mArrivals[(mNext + skip) & MASK] + mMaxHoldNanos;
+    }
+
+    private void drain(long nowNanos, @NonNull Emitter<T> emitter, boolean force) {
+        while (mHeldCount > 0) {
+            final int slot = mNext & MASK;
+            if (mSlots[slot] != null) {
+                @SuppressWarnings("unchecked") final T[] values = (T[]) mSlots[slot];
+                final long receivedNanos = mArrivals[slot];
+                final boolean live = mLive[slot];
+                mSlots[slot] = null;
+                mPositions[slot] = 0;
+                mHeldCount--;
+                mNext = OrpheSerialNumber.add(mNext, 1);
+                emitter.emit(values, receivedNanos, live);
+                continue;
+            }
+            // 欠けている場合は、次に届いているシリアルナンバーが保持時間を過ぎていれば飛ばす
+            int skip = 1;
+            while (mSlots[(mNext + skip) & MASK] == null) {
+                skip++;
+            }
+            if (!force && nowNanos - mArrivals[(mNext + skip) & MASK] < mMaxHoldNanos) {
+                return;
+            }
+            mSkippedCount += skip;
+            mNext = OrpheSerialNumber.add(mNext, skip);
+        }
+    }
+
+    private void merge(int slot, @NonNull T[] values, int positions) {
+        final int added = positions & ~mPositions[slot];
+        if (added == 0) {
+            mDuplicateCount += values.length;
+            return;
+        }
+        @SuppressWarnings("unchecked") final T[] held = (T[]) mSlots[slot];
+        final T[] merged = Arrays.copyOf(held, held.length + Integer.bitCount(added));
+        int count = held.length;
+        int remaining = added;
+        for (T value : values) {
+            final int bit = 1 << (mKeyExtractor.dataPosition(value) & 31);
+            if ((remaining & bit) != 0) {
+                merged[count++] = value;
+                remaining &= ~bit;
+            } else {
+                mDuplicateCount++;
+            }
+        }
+        // データ中の位置の降順に並べる
+        for (int i = 1; i < merged.length; i++) {
+            final T value = merged[i];
+            final int position = mKeyExtractor.dataPosition(value);
+            int j = i - 1;
+            while (j >= 0 && mKeyExtractor.dataPosition(merged[j]) < position) {
+                merged[j + 1] = merged[j];
+                j--;
+            }
+            merged[j + 1] = value;
+        }
+        mSlots[slot] = merged;
+        mPositions[slot] |= added;
+    }
+
+    private int positionsOf(@NonNull T[] values) {
+        int positions = 0;
+        for (T value : values) {
+            positions |= 1 << (mKeyExtractor.dataPosition(value) & 31);
+        }
+        return positions;
+    }
+
+    /**
+     * 欠けているシリアルナンバーを待つ最大時間を返します。
+     *
+     * @return 最大保持時間（ミリ秒）
+     */
+    public long maxHoldMillis() {
+        return mMaxHoldMillis;
+    }
+
+    /**
+     * 現在保持しているシリアルナンバーの数を返します。
+     *
+     * @return 保持している数
+     */
+    public int heldCount() {
+        return mHeldCount;
+    }
+
+    /**
+     * 出力済みの位置より前に届いたため破棄したセンサー値の数を返します。
+     *
+     * @return 遅延で破棄した数
+     */
+    public long lateDropCount() {
+        return mLateDropCount;
+    }
+
+    /**
+     * 重複して届いたため破棄したセンサー値の数を返します。
+     *
+     * @return 重複した数
+     */
+    public long duplicateCount() {
+        return mDuplicateCount;
+    }
+
+    /**
+     * 保持時間を過ぎても届かず飛ばしたシリアルナンバーの数を返します。
+     *
+     * @return 飛ばした数
+     */
+    public long skippedCount() {
+        return mSkippedCount;
+    }
+
+    /**
+     * 保持できる範囲より離れていたため、並べ替えずに出力した再取得したセンサー値の数を返します。
+     *
+     * @return 並べ替えずに出力した数
+     */
+    public long passedCount() {
+        return mPassedCount;
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public String toString() {
+        return String.format("reorder:(held=%d, lateDrop=%d, duplicate=%d, skipped=%d, passed=%d, maxHold=%dms)",
+                heldCount(), lateDropCount(), duplicateCount(), skippedCount(), passedCount(), mMaxHoldMillis);
+    }
+}
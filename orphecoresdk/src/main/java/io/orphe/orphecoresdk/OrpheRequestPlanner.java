@@ -0,0 +1,277 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * センサー値の取得のリクエストを、デバイスへの書き込みに変換します。
+ * 重なっているか隣り合っている範囲はまとめ、1回の書き込みは必要な長さだけにします。
+ * 範囲が[MAX_RANGES_PER_WRITE]を超える場合は複数回の書き込みに分け、
+ * 新しい書き込みは前のリクエストを置き換えてしまうため、前の書き込みの最後の範囲を受け取ってから次を書き込みます。
+ * 欠落の再取得とまとめて取得のように複数の呼び出し元から届いたリクエストは、まだ書き込んでいないものとまとめて順に書き込みます。
+ * 書き込みはデコードするスレッドと呼び出したスレッドの両方から行われます。
+ */
+class OrpheRequestPlanner {
+    /**
+     * 書き込みを行います。
+     */
+    interface Writer {
+        /**
+         * デバイスに書き込みます。
+         *
+         * @param payload 書き込むバイト配列
+         */
+        void write(@NonNull byte[] payload);
+    }
+
+    /**
+     * 1回の書き込みでリクエストできる範囲の最大数
+     */
+    static final int MAX_RANGES_PER_WRITE = OrpheSerialGapTracker.MAX_REQUESTS_PER_WRITE;
+
+    /**
+     * 1つの範囲でリクエストできる最大の件数
+     */
+    static final int MAX_LENGTH = 0xFFFF;
+
+    /**
+     * 書き込みの先頭のバイト数
+     */
+    static final int HEADER_SIZE = 2;
+
+    /**
+     * 1つの範囲のバイト数
+     */
+    static final int RANGE_SIZE = 4;
+
+    /**
+     * 次の書き込みまで待つ時間（ナノ秒）。この間リクエストした範囲を何も受け取らなかった場合は、前の書き込みが終わったとみなします。
+     */
+    static final long IDLE_TIMEOUT_NANOS = 1_000_000_000L;
+
+    @NonNull
+    private final Writer mWriter;
+    private final ArrayDeque<OrpheValueRequest[]> mPending = new ArrayDeque<>();
+    private OrpheValueRequest[] mInFlight;
+    private long mLastActivityNanos;
+    private long mWriteCount;
+
+    /**
+     * センサー値の取得のリクエストを、デバイスへの書き込みに変換します。
+     *
+     * @param writer 書き込みを行う[Writer]
+     */
+    OrpheRequestPlanner(@NonNull Writer writer) {
+        mWriter = writer;
+    }
+
+    /**
+     * 重なっているか隣り合っている範囲をまとめます。
+     * まとめた範囲は、元の範囲のうち最初に指定されたものの順に並べます。長さが0以下の範囲は取り除きます。
+     *
+     * @param requests リクエストする範囲
+     * @return まとめた範囲（1つの範囲は最大[MAX_LENGTH]件）
+     */
+    @NonNull
+    static OrpheValueRequest[] merge(@NonNull OrpheValueRequest[] requests) {
+        // 開始位置と元の順番を1つの値にして並べ替える
+        final long[] keys = new long[requests.length];
+        int count = 0;
+        for (int i = 0; i < requests.length; i++) {
+            if (requests[i].length > 0) {
+                keys[count++] = ((long) (requests[i].startSerialNumber & (OrpheSerialNumber.MODULUS - 1)) << 32) | i;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        // 範囲の終わりは65536を超えることがある
+        final long[] starts = new long[count];
+        final long[] ends = new long[count];
+        final int[] orders = new int[count];
+        int merged = 0;
+        for (int k = 0; k < count; k++) {
+            final int index = (int) keys[k];
+            final long start = keys[k] >>> 32;
+            final long end = start + Math.min(requests[index].length, OrpheSerialNumber.MODULUS);
+            if (merged > 0 && start <= ends[merged - 1]) {
+                ends[merged - 1] = Math.max(ends[merged - 1], end);
+                orders[merged - 1] = Math.min(orders[merged - 1], index);
+                continue;
+            }
+            starts[merged] = start;
+            ends[merged] = end;
+            orders[merged] = index;
+            merged++;
+        }
+        // 65535から0に折り返した範囲が、先頭の範囲と重なる場合
+        int first = 0;
+        final int last = merged - 1;
+        while (first < last && starts[first] + OrpheSerialNumber.MODULUS <= ends[last]) {
+            ends[last] = Math.max(ends[last], ends[first] + OrpheSerialNumber.MODULUS);
+            orders[last] = Math.min(orders[last], orders[first]);
+            first++;
+        }
+        final long[] ranges = new long[merged - first];
+        for (int m = first; m < merged; m++) {
+            ranges[m - first] = ((long) orders[m] << 32) | m;
+        }
+        Arrays.sort(ranges);
+        final List<OrpheValueRequest> result = new ArrayList<>(ranges.length);
+        for (long range : ranges) {
+            final int m = (int) range;
+            int start = (int) starts[m];
+            int remaining = (int) Math.min(ends[m] - starts[m], OrpheSerialNumber.MODULUS);
+            while (remaining > 0) {
+                final int length = Math.min(remaining, MAX_LENGTH);
+                result.add(new OrpheValueRequest(start & (OrpheSerialNumber.MODULUS - 1), length));
+                start += length;
+                remaining -= length;
+            }
+        }
+        return result.toArray(new OrpheValueRequest[0]);
+    }
+
+    /**
+     * 範囲を書き込むバイト配列を作成します。
+     *
+     * @param requests リクエストする範囲
+     * @param from 最初の範囲の位置
+     * @param to 最後の範囲の次の位置（[from]から最大[MAX_RANGES_PER_WRITE]件）
+     * @return 書き込むバイト配列
+     */
+    @NonNull
+    static byte[] payload(@NonNull OrpheValueRequest[] requests, int from, int to) {
+        final byte[] payload = new byte[HEADER_SIZE + (to - from) * RANGE_SIZE];
+        payload[0] = 11;
+        payload[1] = 2;
+        int i = HEADER_SIZE;
+        for (int r = from; r < to; r++) {
+            final int start = requests[r].startSerialNumber;
+            final int length = requests[r].length;
+            payload[i++] = (byte) (start >> 8);
+            payload[i++] = (byte) start;
+            payload[i++] = (byte) (length >> 8);
+            payload[i++] = (byte) length;
+        }
+        return payload;
+    }
+
+    /**
+     * リクエストを書き込みます。まだ書き込んでいない前のリクエストとまとめ、
+     * 前の書き込みの範囲を受け取っている途中の場合はそれが終わってから書き込みます。
+     *
+     * @param requests [merge]でまとめた範囲
+     * @param nowNanos 現在の時刻（[System.nanoTime]）
+     */
+    synchronized void plan(@NonNull OrpheValueRequest[] requests, long nowNanos) {
+        final List<OrpheValueRequest> outstanding = new ArrayList<>();
+        for (OrpheValueRequest[] pending : mPending) {
+            outstanding.addAll(Arrays.asList(pending));
+        }
+        outstanding.addAll(Arrays.asList(requests));
+        final OrpheValueRequest[] merged = merge(outstanding.toArray(new OrpheValueRequest[0]));
+        mPending.clear();
+        for (int from = 0; from < merged.length; from += MAX_RANGES_PER_WRITE) {
+            mPending.add(Arrays.copyOfRange(merged, from, Math.min(merged.length, from + MAX_RANGES_PER_WRITE)));
+        }
+        if (mInFlight == null) {
+            writeNext(nowNanos);
+        }
+    }
+
+    /**
+     * 受け取ったシリアルナンバーを渡します。書き込んだ最後の範囲の最後のシリアルナンバーを受け取った場合は、次を書き込みます。
+     *
+     * @param serialNumber シリアルナンバー
+     * @param receivedNanos 受信時刻（[System.nanoTime]）
+     */
+    synchronized void onSerialNumber(int serialNumber, long receivedNanos) {
+        onReceived(serialNumber, 1, receivedNanos);
+    }
+
+    /**
+     * リクエストしたシリアルナンバーが見つからなかったことを渡します。
+     *
+     * @param serialNumber 見つからなかった最初のシリアルナンバー
+     * @param length 見つからなかった件数
+     * @param receivedNanos 受信時刻（[System.nanoTime]）
+     */
+    synchronized void onNotFound(int serialNumber, int length, long receivedNanos) {
+        onReceived(serialNumber, length, receivedNanos);
+    }
+
+    /**
+     * 前の書き込みの範囲を[IDLE_TIMEOUT_NANOS]の間何も受け取っていない場合は、次を書き込みます。
+     *
+     * @param nowNanos 現在の時刻（[System.nanoTime]）
+     */
+    synchronized void tick(long nowNanos) {
+        if (mInFlight != null && nowNanos - mLastActivityNanos >= IDLE_TIMEOUT_NANOS) {
+            writeNext(nowNanos);
+        }
+    }
+
+    /**
+     * まだ書き込んでいないリクエストを破棄します。
+     */
+    synchronized void clear() {
+        mPending.clear();
+        mInFlight = null;
+    }
+
+    /**
+     * まだ書き込んでいないリクエストか、範囲を受け取っている途中の書き込みがあるかどうかを返します。
+     *
+     * @return ある場合はtrue
+     */
+    synchronized boolean hasPending() {
+        return mInFlight != null || !mPending.isEmpty();
+    }
+
+    /**
+     * 書き込んだ回数を返します。
+     *
+     * @return 書き込んだ回数
+     */
+    synchronized long writeCount() {
+        return mWriteCount;
+    }
+
+    private void onReceived(int serialNumber, int length, long receivedNanos) {
+        final OrpheValueRequest[] inFlight = mInFlight;
+        if (inFlight == null) {
+            return;
+        }
+        for (OrpheValueRequest request : inFlight) {
+            if (overlaps(request.startSerialNumber, request.length, serialNumber, length)) {
+                mLastActivityNanos = receivedNanos;
+                break;
+            }
+        }
+        final OrpheValueRequest last = inFlight[inFlight.length - 1];
+        final int lastSerialNumber = OrpheSerialNumber.add(last.startSerialNumber, last.length - 1);
+        if (overlaps(lastSerialNumber, 1, serialNumber, length)) {
+            writeNext(receivedNanos);
+        }
+    }
+
+    private static boolean overlaps(int start, int length, int otherStart, int otherLength) {
+        final int offset = (otherStart - start) & (OrpheSerialNumber.MODULUS - 1);
+        return offset < length || OrpheSerialNumber.MODULUS - offset < otherLength;
+    }
+
+    private void writeNext(long nowNanos) {
+        final OrpheValueRequest[] next = mPending.poll();
+        // 最後の書き込みも、後から別のリクエストが届いた場合に置き換えないように受け取り終わるまで待つ
+        mInFlight = next;
+        mLastActivityNanos = nowNanos;
+        if (next == null) {
+            return;
+        }
+        mWriteCount++;
+        mWriter.write(payload(next, 0, next.length));
+    }
+}
@@ -0,0 +1,39 @@
+package io.orphe.orphecoresdk;
+
+/**
+ * [OrpheSampleWindow]で保持するセンサー値の種類
+ */
+public enum OrpheSampleChannel {
+    /// クオータニオン
+    quatW,
+    quatX,
+    quatY,
+    quatZ,
+
+    /// ジャイロ
+    gyroX,
+    gyroY,
+    gyroZ,
+
+    /// 加速度
+    accX,
+    accY,
+    accZ,
+
+    /// 圧力（ORPHE INSOLEのみ）
+    pressureToeOutside,
+    pressureMidOutside,
+    pressureToeInside,
+    pressureCenter,
+    pressureMidInside,
+    pressureHeel;
+
+    /**
+     * 圧力の値かどうかを返します。
+     *
+     * @return 圧力の場合はtrue
+     */
+    boolean isPressure() {
+        return ordinal() >= pressureToeOutside.ordinal();
+    }
+}
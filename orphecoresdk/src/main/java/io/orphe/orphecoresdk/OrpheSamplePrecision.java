@@ -0,0 +1,12 @@
+package io.orphe.orphecoresdk;
+
+/**
+ * [OrpheSampleWindow]でセンサー値を保持する精度の設定
+ */
+public enum OrpheSamplePrecision {
+    /// floatで保持（1チャンネルあたり4バイト）
+    floatPrecision,
+
+    /// 送られてきた16ビットの値とスケールで保持（1チャンネルあたり2バイト）
+    fixedPoint;
+}
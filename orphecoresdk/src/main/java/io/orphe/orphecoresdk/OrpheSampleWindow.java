@@ -0,0 +1,386 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 直近のセンサー値を一定数だけ保持するリングバッファ。
+ * [OrpheSensorValue]や[OrpheInsoleValue]のdoubleの代わりに、[OrpheSamplePrecision]で指定した精度で保持します。
+ * [OrpheSamplePrecision.fixedPoint]では送られてきた16ビットの値をそのまま保持し、読み出すときに[scale]を掛けて変換します。
+ * 圧力は[SensorFrameBatch.calibration]でセンサーのAD変換値に戻して保持し、最後に追加したものと同じキャリブレーションで読み出します。
+ * 容量を超えると古いものから上書きします。インデックス0が最も古いサンプルです。
+ * 追加と読み出しは別々のスレッドから行えます。
+ */
+public class OrpheSampleWindow {
+    private static final int CHANNEL_COUNT = OrpheSampleChannel.values().length;
+    private static final OrpheSampleChannel[] CHANNELS = OrpheSampleChannel.values();
+
+    /// 圧力がない（ORPHE COREの）サンプルを表す値
+    private static final short NO_PRESSURE = -1;
+
+    /**
+     * 保持できるサンプル数
+     */
+    public final int capacity;
+
+    /**
+     * 保持する精度
+     */
+    @NonNull
+    public final OrpheSamplePrecision precision;
+
+    /**
+     * 加速度レンジ
+     */
+    @NonNull
+    public final OrpheAccRange accRange;
+
+    /**
+     * ジャイロレンジ
+     */
+    @NonNull
+    public final OrpheGyroRange gyroRange;
+
+    private final long[] mTimestamp;
+    private final long[] mDeviceTime;
+    private final short[] mSerialNumber;
+    private final byte[] mDataPosition;
+    @NonNull
+    private final float[][] mFloatChannels;
+    @NonNull
+    private final short[][] mFixedChannels;
+    private final float[] mScales = new float[CHANNEL_COUNT];
+    @NonNull
+    private OrpheInsoleCalibration mCalibration;
+
+    private int mHead;
+    private int mSize;
+    private long mAddedCount;
+
+    /**
+     * 直近のセンサー値を一定数だけ保持するリングバッファ。
+     *
+     * @param capacity 保持できるサンプル数
+     * @param precision 保持する精度
+     * @param accRange 加速度レンジ。[OrpheSamplePrecision.fixedPoint]で元の値に戻すために使います。
+     * @param gyroRange ジャイロレンジ。[OrpheSamplePrecision.fixedPoint]で元の値に戻すために使います。
+     */
+    public OrpheSampleWindow(int capacity, @NonNull OrpheSamplePrecision precision,
+                             @NonNull OrpheAccRange accRange, @NonNull OrpheGyroRange gyroRange) {
+        this(capacity, precision, accRange, gyroRange, OrpheInsoleCalibration.DEFAULT);
+    }
+
+    /**
+     * 直近のセンサー値を一定数だけ保持するリングバッファ。
+     *
+     * @param capacity 保持できるサンプル数
+     * @param precision 保持する精度
+     * @param accRange 加速度レンジ。[OrpheSamplePrecision.fixedPoint]で元の値に戻すために使います。
+     * @param gyroRange ジャイロレンジ。[OrpheSamplePrecision.fixedPoint]で元の値に戻すために使います。
+     * @param calibration 圧力の変換に使っている[OrpheInsoleCalibration]。[OrpheSamplePrecision.fixedPoint]で元の値に戻すために使います。
+     *                    [SensorFrameBatch.calibration]が記録されている場合は、追加したときにそちらに置き換えます。
+     */
+    public OrpheSampleWindow(int capacity, @NonNull OrpheSamplePrecision precision,
+                             @NonNull OrpheAccRange accRange, @NonNull OrpheGyroRange gyroRange,
+                             @NonNull OrpheInsoleCalibration calibration) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.precision = precision;
+        this.accRange = accRange;
+        this.gyroRange = gyroRange;
+        mCalibration = calibration;
+        mTimestamp = new long[capacity];
+        mDeviceTime = new long[capacity];
+        mSerialNumber = new short[capacity];
+        mDataPosition = new byte[capacity];
+        final boolean fixed = precision == OrpheSamplePrecision.fixedPoint;
+        mFloatChannels = new float[fixed ? 0 : CHANNEL_COUNT][];
+        mFixedChannels = new short[fixed ? CHANNEL_COUNT : 0][];
+        for (int c = 0; c < CHANNEL_COUNT; c++) {
+            if (fixed) {
+                mFixedChannels[c] = new short[capacity];
+            } else {
+                mFloatChannels[c] = new float[capacity];
+            }
+            mScales[c] = computeScale(CHANNELS[c], accRange, gyroRange);
+        }
+    }
+
+    private static float computeScale(@NonNull OrpheSampleChannel channel,
+                                      @NonNull OrpheAccRange accRange, @NonNull OrpheGyroRange gyroRange) {
+        switch (channel) {
+            case quatW:
+            case quatX:
+            case quatY:
+            case quatZ:
+                return (float) (1 / 16384.0);
+            case gyroX:
+            case gyroY:
+            case gyroZ:
+                return (float) (gyroRange.value / (double) (1 << 15));
+            case accX:
+            case accY:
+            case accZ:
+                return (float) (accRange.value / (double) (1 << 15));
+        }
+        return Float.NaN;
+    }
+
+    /**
+     * [SensorFrameBatch]のサンプルをすべて追加します。
+     * [OrpheCoreCallback.gotSensorFrames]や[OrpheInsoleCallback.gotSensorFrames]から呼び出します。
+     *
+     * @param frames 追加するセンサー値
+     */
+    public synchronized void add(@NonNull SensorFrameBatch frames) {
+        // 接続時や風袋の計測後にキャリブレーションが変わっても、変換に使われたものでAD変換値に戻す
+        final OrpheInsoleCalibration calibration = frames.calibration();
+        if (calibration != null) {
+            mCalibration = calibration;
+        }
+        for (int i = 0; i < frames.size(); i++) {
+            final int slot = (mHead + mSize) % capacity;
+            if (mSize < capacity) {
+                mSize++;
+            } else {
+                mHead = (mHead + 1) % capacity;
+            }
+            mTimestamp[slot] = frames.timestamp[i];
+            mDeviceTime[slot] = frames.deviceTime[i];
+            mSerialNumber[slot] = (short) frames.serialNumber[i];
+            mDataPosition[slot] = (byte) frames.dataPosition[i];
+            for (int c = 0; c < CHANNEL_COUNT; c++) {
+                final float value = column(frames, CHANNELS[c])[i];
+                if (mFixedChannels.length > 0) {
+                    mFixedChannels[c][slot] = CHANNELS[c].isPressure() ? toPressureCode(value, cell(c), mCalibration) : toFixed(value, mScales[c]);
+                } else {
+                    mFloatChannels[c][slot] = value;
+                }
+            }
+            mAddedCount++;
+        }
+    }
+
+    /**
+     * 圧力の変換に使っている[OrpheInsoleCalibration]を返します。
+     *
+     * @return 最後に追加した[SensorFrameBatch]のキャリブレーション。記録されていない場合はコンストラクタで指定したもの
+     */
+    @NonNull
+    public synchronized OrpheInsoleCalibration calibration() {
+        return mCalibration;
+    }
+
+    /**
+     * 保持しているサンプルを破棄します。
+     */
+    public synchronized void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+
+    /**
+     * 保持しているサンプル数を返します。
+     *
+     * @return 保持しているサンプル数
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * これまでに追加したサンプル数を返します。上書きされたものも含みます。
+     *
+     * @return 追加したサンプル数
+     */
+    public synchronized long addedCount() {
+        return mAddedCount;
+    }
+
+    /**
+     * タイムスタンプ（エポックミリ秒）を返します。
+     *
+     * @param index 0が最も古いサンプル
+     * @return タイムスタンプ
+     */
+    public synchronized long timestamp(int index) {
+        return mTimestamp[slot(index)];
+    }
+
+    /**
+     * デバイスの時刻（その日の0時からのミリ秒）を返します。
+     *
+     * @param index 0が最も古いサンプル
+     * @return デバイスの時刻
+     */
+    public synchronized long deviceTime(int index) {
+        return mDeviceTime[slot(index)];
+    }
+
+    /**
+     * シリアルナンバーを返します。
+     *
+     * @param index 0が最も古いサンプル
+     * @return シリアルナンバー
+     */
+    public synchronized int serialNumber(int index) {
+        return mSerialNumber[slot(index)] & 0xFFFF;
+    }
+
+    /**
+     * 同じデータ中の位置を返します。
+     *
+     * @param index 0が最も古いサンプル
+     * @return 同じデータ中の位置
+     */
+    public synchronized int dataPosition(int index) {
+        return mDataPosition[slot(index)];
+    }
+
+    /**
+     * センサー値を返します。
+     *
+     * @param channel センサー値の種類
+     * @param index 0が最も古いサンプル
+     * @return センサー値
+     */
+    public synchronized float get(@NonNull OrpheSampleChannel channel, int index) {
+        return read(channel.ordinal(), slot(index));
+    }
+
+    /**
+     * [OrpheSamplePrecision.fixedPoint]で保持している16ビットの値を返します。
+     * 加速度、ジャイロ、クオータニオンは[scale]を掛けると元の値になります。
+     * 圧力はセンサーのAD変換値で、[calibration]の[OrpheInsoleCalibration.toNewton]で元の値になります。圧力がない場合は-1です。
+     *
+     * @param channel センサー値の種類
+     * @param index 0が最も古いサンプル
+     * @return 16ビットの値
+     */
+    public synchronized short raw(@NonNull OrpheSampleChannel channel, int index) {
+        if (mFixedChannels.length == 0) {
+            throw new IllegalStateException("raw values are only kept in fixedPoint precision");
+        }
+        return mFixedChannels[channel.ordinal()][slot(index)];
+    }
+
+    /**
+     * 16ビットの値から元の値に戻すためのスケールを返します。
+     *
+     * @param channel センサー値の種類
+     * @return スケール。圧力は線形に変換できないためNaN
+     */
+    public float scale(@NonNull OrpheSampleChannel channel) {
+        return mScales[channel.ordinal()];
+    }
+
+    /**
+     * 1種類のセンサー値を古い順に配列にコピーします。
+     *
+     * @param channel センサー値の種類
+     * @param dest コピー先の配列
+     * @return コピーした数
+     */
+    public synchronized int copy(@NonNull OrpheSampleChannel channel, @NonNull float[] dest) {
+        final int count = Math.min(mSize, dest.length);
+        final int c = channel.ordinal();
+        final int first = Math.min(count, capacity - mHead);
+        if (mFixedChannels.length == 0) {
+            System.arraycopy(mFloatChannels[c], mHead, dest, 0, first);
+            System.arraycopy(mFloatChannels[c], 0, dest, first, count - first);
+            return count;
+        }
+        for (int i = 0; i < count; i++) {
+            dest[i] = read(c, (mHead + i) % capacity);
+        }
+        return count;
+    }
+
+    /**
+     * 1サンプルあたりのメモリ使用量を返します。
+     *
+     * @return バイト数
+     */
+    public int bytesPerSample() {
+        final int channelBytes = precision == OrpheSamplePrecision.fixedPoint ? 2 : 4;
+        // タイムスタンプ、デバイスの時刻、シリアルナンバー、データ中の位置
+        return CHANNEL_COUNT * channelBytes + 8 + 8 + 2 + 1;
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index " + index + " is out of [0, " + mSize + ")");
+        }
+        return (mHead + index) % capacity;
+    }
+
+    private float read(int channel, int slot) {
+        if (mFixedChannels.length == 0) {
+            return mFloatChannels[channel][slot];
+        }
+        final short raw = mFixedChannels[channel][slot];
+        if (CHANNELS[channel].isPressure()) {
+            return raw == NO_PRESSURE ? 0 : (float) mCalibration.toNewton(cell(channel), raw);
+        }
+        return raw * mScales[channel];
+    }
+
+    /// スケールで割って16ビットに丸める。範囲外の値は端に寄せる
+    private static short toFixed(float value, float scale) {
+        final long raw = Math.round(value / (double) scale);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, raw));
+    }
+
+    @NonNull
+    private static OrpheInsoleCell cell(int channel) {
+        return OrpheInsoleCell.VALUES[channel - OrpheSampleChannel.pressureToeOutside.ordinal()];
+    }
+
+    /// [OrpheInsoleCalibration.toCode]でAD変換値に戻す
+    private static short toPressureCode(float newton, @NonNull OrpheInsoleCell cell, @NonNull OrpheInsoleCalibration calibration) {
+        final int code = calibration.toCode(cell, newton);
+        if (code < 0) {
+            return NO_PRESSURE;
+        }
+        return (short) Math.min(Short.MAX_VALUE, code);
+    }
+
+    @NonNull
+    private static float[] column(@NonNull SensorFrameBatch frames, @NonNull OrpheSampleChannel channel) {
+        switch (channel) {
+            case quatW:
+                return frames.quatW;
+            case quatX:
+                return frames.quatX;
+            case quatY:
+                return frames.quatY;
+            case quatZ:
+                return frames.quatZ;
+            case gyroX:
+                return frames.gyroX;
+            case gyroY:
+                return frames.gyroY;
+            case gyroZ:
+                return frames.gyroZ;
+            case accX:
+                return frames.accX;
+            case accY:
+                return frames.accY;
+            case accZ:
+                return frames.accZ;
+            case pressureToeOutside:
+                return frames.pressureToeOutside;
+            case pressureMidOutside:
+                return frames.pressureMidOutside;
+            case pressureToeInside:
+                return frames.pressureToeInside;
+            case pressureCenter:
+                return frames.pressureCenter;
+            case pressureMidInside:
+                return frames.pressureMidInside;
+            default:
+                return frames.pressureHeel;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.orphe.orphecoresdk;
+
+import android.bluetooth.le.ScanSettings;
+
+import androidx.annotation.NonNull;
+
+/**
+ * スキャンの設定。
+ * [Orphe.setScanPolicy]や[OrpheInsole.setScanPolicy]で設定し、次の[Orphe.startScan]から使われます。
+ * [targetDeviceCount]台のデバイスが見つかった時点で、[timeoutMillis]を待たずにスキャンを停止します。
+ */
+public class OrpheScanPolicy {
+    /**
+     * これまでと同じ、省電力でスキャンし、20秒でタイムアウトする設定。
+     * 見つかったデバイスの数ではスキャンを停止しません。
+     */
+    public static final OrpheScanPolicy DEFAULT = new OrpheScanPolicy(
+            ScanSettings.SCAN_MODE_LOW_POWER, 0, ScanSettings.MATCH_MODE_AGGRESSIVE, 0, 20000);
+
+    /**
+     * 最初のデバイスをできるだけ早く見つけ、1台見つかった時点でスキャンを停止する設定。
+     * 消費電力が大きいため、接続するときにのみ使ってください。
+     */
+    public static final OrpheScanPolicy LOW_LATENCY = new OrpheScanPolicy(
+            ScanSettings.SCAN_MODE_LOW_LATENCY, 0, ScanSettings.MATCH_MODE_AGGRESSIVE, 1, 10000);
+
+    /**
+     * スキャンの設定。
+     *
+     * @param scanMode [ScanSettings.SCAN_MODE_LOW_POWER]などのスキャンモード
+     * @param reportDelayMillis スキャン結果をまとめて受け取る間隔（ミリ秒）。0の場合は見つかるたびに受け取ります
+     * @param matchMode [ScanSettings.MATCH_MODE_AGGRESSIVE]などのマッチモード
+     * @param targetDeviceCount この数のデバイスが見つかった時点でスキャンを停止します。0の場合はタイムアウトまで続けます
+     * @param timeoutMillis スキャンを続ける最大の期間（ミリ秒）
+     */
+    public OrpheScanPolicy(
+            final int scanMode,
+            final long reportDelayMillis,
+            final int matchMode,
+            final int targetDeviceCount,
+            final long timeoutMillis
+    ) {
+        if (reportDelayMillis < 0) {
+            throw new IllegalArgumentException("reportDelayMillis must not be negative");
+        }
+        if (targetDeviceCount < 0) {
+            throw new IllegalArgumentException("targetDeviceCount must not be negative");
+        }
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeoutMillis must be positive");
+        }
+        this.scanMode = scanMode;
+        this.reportDelayMillis = reportDelayMillis;
+        this.matchMode = matchMode;
+        this.targetDeviceCount = targetDeviceCount;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * スキャンモード
+     */
+    public final int scanMode;
+
+    /**
+     * スキャン結果をまとめて受け取る間隔（ミリ秒）
+     */
+    public final long reportDelayMillis;
+
+    /**
+     * マッチモード
+     */
+    public final int matchMode;
+
+    /**
+     * スキャンを停止するデバイスの数。0の場合はタイムアウトまで続けます
+     */
+    public final int targetDeviceCount;
+
+    /**
+     * スキャンを続ける最大の期間（ミリ秒）
+     */
+    public final long timeoutMillis;
+
+    /**
+     * 見つかったデバイスの数でスキャンを停止できるかどうかを返します。
+     *
+     * @param foundDeviceCount 見つかったデバイスの数
+     * @return 停止できる場合はtrue
+     */
+    public boolean isSatisfied(int foundDeviceCount) {
+        return targetDeviceCount > 0 && foundDeviceCount >= targetDeviceCount;
+    }
+
+    /**
+     * [BluetoothLeScanner.startScan]に渡す設定を作成します。
+     *
+     * @return スキャンの設定
+     */
+    @NonNull
+    ScanSettings toScanSettings() {
+        return new ScanSettings.Builder()
+                .setScanMode(scanMode)
+                .setReportDelay(reportDelayMillis)
+                .setMatchMode(matchMode)
+                .build();
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public String toString() {
+        return String.format("scanPolicy:(mode=%d, reportDelay=%d, match=%d, target=%d, timeout=%d)",
+                scanMode, reportDelayMillis, matchMode, targetDeviceCount, timeoutMillis);
+    }
+}
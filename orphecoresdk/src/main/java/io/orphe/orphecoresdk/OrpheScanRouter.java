@@ -0,0 +1,310 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * [OrpheSessionManager]のスキャン結果を、デバイスを待っている枠に振り分けます。
+ * 枠はアドレスを指定したものと、左右で振り分けるものがあります。
+ * 左右が分からないデバイスはひとまず空いている枠に割り当て、接続後に[onDeviceInfo]で確認します。
+ * Androidに依存しないようにデバイスはアドレスで扱い、メインスレッドからのみ呼ばれることを前提としています。
+ *
+ * @param <T> 枠に対応する接続先
+ */
+class OrpheScanRouter<T> {
+    private static class Slot<T> {
+        final T target;
+        final OrpheSide side;
+        final boolean insole;
+        @Nullable
+        final String address;
+        /// デバイスを待っているかどうか
+        boolean waiting;
+        /// 割り当てたデバイスのアドレス
+        @Nullable
+        String assigned;
+
+        Slot(@NonNull T target, @NonNull OrpheSide side, boolean insole, @Nullable String address) {
+            this.target = target;
+            this.side = side;
+            this.insole = insole;
+            this.address = address;
+        }
+    }
+
+    private static class Found {
+        boolean core;
+        boolean insole;
+    }
+
+    private final List<Slot<T>> mSlots = new ArrayList<>();
+    /// 見つかったデバイスの種類。見つかった順
+    private final Map<String, Found> mFound = new LinkedHashMap<>();
+    /// アドバタイズや設定情報から分かったデバイスの左右
+    private final Map<String, OrpheSide> mSides = new HashMap<>();
+
+    /**
+     * 枠を追加します。
+     *
+     * @param target 接続先
+     * @param side 接続先の左右
+     * @param insole ORPHE INSOLEの場合はtrue、ORPHE COREの場合はfalse
+     * @param address 接続するデバイスのアドレス。左右で振り分ける場合はnull
+     */
+    void add(@NonNull T target, @NonNull OrpheSide side, boolean insole, @Nullable String address) {
+        if (find(target) != null) {
+            throw new IllegalArgumentException("target is already added");
+        }
+        mSlots.add(new Slot<>(target, side, insole, address));
+    }
+
+    /**
+     * 枠を削除します。
+     *
+     * @param target 接続先
+     */
+    void remove(@NonNull T target) {
+        final Slot<T> slot = find(target);
+        if (slot != null) {
+            mSlots.remove(slot);
+        }
+    }
+
+    /**
+     * 枠をデバイスを待っている状態にします。割り当てていたデバイスは解放します。
+     *
+     * @param target 接続先
+     * @return すでに見つかっているデバイスを割り当てた場合はそのアドレス。ない場合はnull
+     */
+    @Nullable
+    String request(@NonNull T target) {
+        final Slot<T> slot = find(target);
+        if (slot == null) {
+            return null;
+        }
+        slot.assigned = null;
+        slot.waiting = true;
+        // 左右が分かっているデバイスを優先する
+        for (int pass = 0; pass < 2; pass++) {
+            for (Map.Entry<String, Found> entry : mFound.entrySet()) {
+                final String address = entry.getKey();
+                if ((pass == 0) == mSides.containsKey(address) && !isAssigned(address) && accepts(slot, address, entry.getValue())) {
+                    assign(slot, address);
+                    return address;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 枠がデバイスを待たない状態にします。割り当てていたデバイスは解放します。
+     *
+     * @param target 接続先
+     */
+    void cancel(@NonNull T target) {
+        final Slot<T> slot = find(target);
+        if (slot != null) {
+            slot.waiting = false;
+            slot.assigned = null;
+        }
+    }
+
+    /**
+     * スキャンで見つかったデバイスを振り分けます。
+     *
+     * @param address デバイスのアドレス
+     * @param core ORPHE COREの枠に割り当てられる場合はtrue
+     * @param insole ORPHE INSOLEの枠に割り当てられる場合はtrue
+     * @param advertisedSide アドバタイズに含まれていた左右。ない場合はnull
+     * @return デバイスを割り当てた接続先。割り当てなかった場合はnull
+     */
+    @Nullable
+    T route(@NonNull String address, boolean core, boolean insole, @Nullable OrpheSide advertisedSide) {
+        Found found = mFound.get(address);
+        if (found == null) {
+            found = new Found();
+            mFound.put(address, found);
+        }
+        found.core |= core;
+        found.insole |= insole;
+        if (advertisedSide != null) {
+            mSides.put(address, advertisedSide);
+        }
+        return assign(address);
+    }
+
+    /**
+     * 見つかっているデバイスを、待っている枠に割り当てます。
+     *
+     * @param address デバイスのアドレス
+     * @return デバイスを割り当てた接続先。割り当てなかった場合はnull
+     */
+    @Nullable
+    T assign(@NonNull String address) {
+        final Found found = mFound.get(address);
+        if (found == null || isAssigned(address)) {
+            return null;
+        }
+        // アドレスを指定した枠、左右が一致する枠、左右が分からない場合は空いている枠の順に探す
+        for (Slot<T> slot : mSlots) {
+            if (slot.waiting && address.equals(slot.address) && accepts(slot, address, found)) {
+                return assign(slot, address);
+            }
+        }
+        for (Slot<T> slot : mSlots) {
+            if (slot.waiting && slot.address == null && accepts(slot, address, found)) {
+                return assign(slot, address);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 接続したデバイスの設定情報から左右を確認します。
+     * 一致しない場合は割り当てを解除し、枠は[request]されるまで待たない状態にします。
+     *
+     * @param target 接続先
+     * @param address 接続したデバイスのアドレス
+     * @param side 設定情報の左右
+     * @return 枠と一致した場合はtrue。一致しない場合はfalse
+     */
+    boolean onDeviceInfo(@NonNull T target, @NonNull String address, @NonNull OrpheSide side) {
+        mSides.put(address, side);
+        final Slot<T> slot = find(target);
+        if (slot == null || !address.equals(slot.assigned) || slot.address != null || matches(slot.side, side)) {
+            return true;
+        }
+        slot.assigned = null;
+        slot.waiting = false;
+        return false;
+    }
+
+    /**
+     * デバイスを待っている枠があるかどうかを返します。
+     *
+     * @return ある場合はtrue
+     */
+    boolean isWaiting() {
+        for (Slot<T> slot : mSlots) {
+            if (slot.waiting) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * デバイスを待っている接続先を返します。
+     *
+     * @return 待っている接続先
+     */
+    @NonNull
+    List<T> waitingTargets() {
+        final List<T> targets = new ArrayList<>();
+        for (Slot<T> slot : mSlots) {
+            if (slot.waiting) {
+                targets.add(slot.target);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * ORPHE INSOLEの枠があるかどうかを返します。
+     *
+     * @return ある場合はtrue
+     */
+    boolean hasInsole() {
+        for (Slot<T> slot : mSlots) {
+            if (slot.insole) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 割り当てたデバイスのアドレスを返します。
+     *
+     * @param target 接続先
+     * @return 割り当てていない場合はnull
+     */
+    @Nullable
+    String assigned(@NonNull T target) {
+        final Slot<T> slot = find(target);
+        return slot != null ? slot.assigned : null;
+    }
+
+    /**
+     * ORPHE INSOLEのアドバタイズに含まれる左右を返します。
+     *
+     * @param manufacturerData ManufacturerSpecificData
+     * @return 左右。含まれない場合はnull
+     */
+    @Nullable
+    static OrpheSide advertisedSide(@Nullable byte[] manufacturerData) {
+        if (manufacturerData == null || manufacturerData.length < 7) {
+            return null;
+        }
+        if (manufacturerData[6] == 0) {
+            return OrpheSide.left;
+        } else if (manufacturerData[6] == 1) {
+            return OrpheSide.right;
+        }
+        return null;
+    }
+
+    @Nullable
+    private Slot<T> find(@NonNull T target) {
+        for (Slot<T> slot : mSlots) {
+            if (slot.target == target) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    @NonNull
+    private T assign(@NonNull Slot<T> slot, @NonNull String address) {
+        slot.assigned = address;
+        slot.waiting = false;
+        return slot.target;
+    }
+
+    private boolean isAssigned(@NonNull String address) {
+        for (Slot<T> slot : mSlots) {
+            if (address.equals(slot.assigned)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean accepts(@NonNull Slot<T> slot, @NonNull String address, @NonNull Found found) {
+        if (slot.insole ? !found.insole : !found.core) {
+            return false;
+        }
+        if (slot.address != null) {
+            return slot.address.equals(address);
+        }
+        // 他の枠がアドレスで指定しているデバイスは割り当てない
+        for (Slot<T> other : mSlots) {
+            if (other != slot && address.equals(other.address)) {
+                return false;
+            }
+        }
+        final OrpheSide side = mSides.get(address);
+        return side == null || matches(slot.side, side);
+    }
+
+    private static boolean matches(@NonNull OrpheSide expected, @NonNull OrpheSide actual) {
+        return expected == OrpheSide.both || actual == OrpheSide.both || expected == actual;
+    }
+}
@@ -0,0 +1,472 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * ORPHE COREのセンサー値を生の値のまま保持する軽量なクラス。
+ * 加速度やジャイロは読み出したときに単位を変換し、オイラー角や重力方向、正規化された値は必要になったときにだけ計算します。
+ * オイラー角は最初に読み出したときに3軸まとめて計算し、以降はその値を返します。
+ * すべての値が必要な場合は[toSensorValue]で[OrpheSensorValue]に変換できます。
+ */
+public class OrpheSensorSample {
+    private static final double QUATERNION_SCALE = 16384.0;
+    private static final double SENSOR_SCALE = 1 << 15;
+
+    /**
+     * 取り付け位置。
+     */
+    @NonNull
+    public final OrpheSidePosition sidePosition;
+
+    /**
+     * シリアルナンバー
+     */
+    public final int serialNumber;
+
+    /**
+     * 同じデータ中の位置
+     */
+    public final int dataPosition;
+
+    /**
+     * タイムスタンプ（エポックミリ秒）
+     */
+    public final long timestamp;
+
+    /// デバイスの時刻（その日の0時からのミリ秒）
+    final long deviceTime;
+
+    /**
+     * 加速度レンジ
+     */
+    @NonNull
+    public final OrpheAccRange accRange;
+
+    /**
+     * ジャイロレンジ
+     */
+    @NonNull
+    public final OrpheGyroRange gyroRange;
+
+    private final int mQuatW;
+    private final int mQuatX;
+    private final int mQuatY;
+    private final int mQuatZ;
+    private final int mGyroX;
+    private final int mGyroY;
+    private final int mGyroZ;
+    private final int mAccX;
+    private final int mAccY;
+    private final int mAccZ;
+
+    private double mEulerX;
+    private double mEulerY;
+    private double mEulerZ;
+    /// オイラー角の書き込みを他のスレッドから見えるようにするため、書き込んだ後にtrueにする
+    private volatile boolean mEulerComputed;
+
+    OrpheSensorSample(@NonNull OrpheSidePosition sidePosition, int serialNumber, int dataPosition, long timestamp, long deviceTime,
+                      @NonNull OrpheAccRange accRange, @NonNull OrpheGyroRange gyroRange,
+                      int quatW, int quatX, int quatY, int quatZ,
+                      int gyroX, int gyroY, int gyroZ,
+                      int accX, int accY, int accZ) {
+        this.sidePosition = sidePosition;
+        this.serialNumber = serialNumber;
+        this.dataPosition = dataPosition;
+        this.timestamp = timestamp;
+        this.deviceTime = deviceTime;
+        this.accRange = accRange;
+        this.gyroRange = gyroRange;
+        mQuatW = quatW;
+        mQuatX = quatX;
+        mQuatY = quatY;
+        mQuatZ = quatZ;
+        mGyroX = gyroX;
+        mGyroY = gyroY;
+        mGyroZ = gyroZ;
+        mAccX = accX;
+        mAccY = accY;
+        mAccZ = accZ;
+    }
+
+    /**
+     * バイト配列から[OrpheSensorSample]を取得します。三角関数の計算は行いません。
+     *
+     * @param bytes ORPHECOREから送られたバイト配列
+     * @param sidePosition 取り付け位置
+     * @param accRange 加速度レンジ
+     * @param gyroRange ジャイロレンジ
+     * @param clock 接続中のデバイスの[OrpheDeviceClock]。nullの場合は端末のタイムゾーンの今日の日付として変換します。
+     * @return OrpheSensorSampleの配列
+     */
+    @NonNull
+    public static OrpheSensorSample[] fromBytes(
+            @NonNull byte[] bytes, @NonNull OrpheSidePosition sidePosition, @NonNull OrpheAccRange accRange,
+            @NonNull OrpheGyroRange gyroRange, @Nullable OrpheDeviceClock clock) {
+        switch (bytes[0]) {
+            case 50: {
+                final int serialNumber = parseInt(bytes, 1);
+                final long baseTime = OrpheSensorValue.deviceTimeOfDay(bytes, bytes[6] & 0xFF);
+                final long baseTimestamp = OrpheSensorValue.toEpochMillis(baseTime, clock);
+                final OrpheSensorSample[] samples = new OrpheSensorSample[4];
+                for (int s = 3; s >= 0; s--) {
+                    final int index = s * 21 + 8;
+                    final int offset = s == 0 ? 0 : bytes[index - 1] & 0xFF;
+                    samples[3 - s] = new OrpheSensorSample(sidePosition, serialNumber, s,
+                            baseTimestamp + offset, baseTime + offset, accRange, gyroRange,
+                            parseInt(bytes, index), parseInt(bytes, index + 2), parseInt(bytes, index + 4), parseInt(bytes, index + 6),
+                            parseInt(bytes, index + 8), parseInt(bytes, index + 10), parseInt(bytes, index + 12),
+                            parseInt(bytes, index + 14), parseInt(bytes, index + 16), parseInt(bytes, index + 18));
+                }
+                return samples;
+            }
+            case 54: {
+                final int serialNumber = getUint16(bytes, 1);
+                final long baseTime = OrpheSensorValue.deviceTimeOfDay(bytes, getUint16(bytes, 6));
+                final long baseTimestamp = OrpheSensorValue.toEpochMillis(baseTime, clock);
+                final OrpheSensorSample[] samples = new OrpheSensorSample[8];
+                for (int s = 7; s >= 0; s--) {
+                    final int index = s * 12 + 8;
+                    // 54には姿勢が含まれない
+                    samples[7 - s] = new OrpheSensorSample(sidePosition, serialNumber, s,
+                            baseTimestamp - s * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS,
+                            baseTime - s * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS, accRange, gyroRange,
+                            0, 0, 0, 0,
+                            parseInt(bytes, index), parseInt(bytes, index + 2), parseInt(bytes, index + 4),
+                            parseInt(bytes, index + 6), parseInt(bytes, index + 8), parseInt(bytes, index + 10));
+                }
+                return samples;
+            }
+        }
+        return new OrpheSensorSample[0];
+    }
+
+    /// [OrpheSensorValue.fromBytes]と同じ値になるように同じ方法で読み出す
+    private static int parseInt(@NonNull byte[] bytes, int index) {
+        return (bytes[index] << 8) + bytes[index + 1];
+    }
+
+    private static int getUint16(@NonNull byte[] bytes, int index) {
+        return ((bytes[index] & 0xFF) << 8) | (bytes[index + 1] & 0xFF);
+    }
+
+    /**
+     * クオータニオンW
+     *
+     * @return クオータニオンW
+     */
+    public double quatW() {
+        return mQuatW / QUATERNION_SCALE;
+    }
+
+    /**
+     * クオータニオンX
+     *
+     * @return クオータニオンX
+     */
+    public double quatX() {
+        return mQuatX / QUATERNION_SCALE;
+    }
+
+    /**
+     * クオータニオンY
+     *
+     * @return クオータニオンY
+     */
+    public double quatY() {
+        return mQuatY / QUATERNION_SCALE;
+    }
+
+    /**
+     * クオータニオンZ
+     *
+     * @return クオータニオンZ
+     */
+    public double quatZ() {
+        return mQuatZ / QUATERNION_SCALE;
+    }
+
+    /**
+     * 加速度X
+     *
+     * @return 加速度X
+     */
+    public double accX() {
+        return mAccX / SENSOR_SCALE * accRange.value;
+    }
+
+    /**
+     * 加速度Y
+     *
+     * @return 加速度Y
+     */
+    public double accY() {
+        return mAccY / SENSOR_SCALE * accRange.value;
+    }
+
+    /**
+     * 加速度Z
+     *
+     * @return 加速度Z
+     */
+    public double accZ() {
+        return mAccZ / SENSOR_SCALE * accRange.value;
+    }
+
+    /**
+     * ジャイロX
+     *
+     * @return ジャイロX
+     */
+    public double gyroX() {
+        return mGyroX / SENSOR_SCALE * gyroRange.value;
+    }
+
+    /**
+     * ジャイロY
+     *
+     * @return ジャイロY
+     */
+    public double gyroY() {
+        return mGyroY / SENSOR_SCALE * gyroRange.value;
+    }
+
+    /**
+     * ジャイロZ
+     *
+     * @return ジャイロZ
+     */
+    public double gyroZ() {
+        return mGyroZ / SENSOR_SCALE * gyroRange.value;
+    }
+
+    /**
+     * オイラー角X。最初に読み出したときに計算します。
+     *
+     * @return オイラー角X
+     */
+    public double eulerX() {
+        computeEuler();
+        return mEulerX;
+    }
+
+    /**
+     * オイラー角Y。最初に読み出したときに計算します。
+     *
+     * @return オイラー角Y
+     */
+    public double eulerY() {
+        computeEuler();
+        return mEulerY;
+    }
+
+    /**
+     * オイラー角Z。最初に読み出したときに計算します。
+     *
+     * @return オイラー角Z
+     */
+    public double eulerZ() {
+        computeEuler();
+        return mEulerZ;
+    }
+
+    /**
+     * 重力加速度X
+     *
+     * @return 重力加速度X
+     */
+    public double accOfGravityX() {
+        return OrpheSensorValue.toGravityX(quatW(), quatX(), quatY(), quatZ());
+    }
+
+    /**
+     * 重力加速度Y
+     *
+     * @return 重力加速度Y
+     */
+    public double accOfGravityY() {
+        return OrpheSensorValue.toGravityY(quatW(), quatX(), quatY(), quatZ());
+    }
+
+    /**
+     * 重力加速度Z
+     *
+     * @return 重力加速度Z
+     */
+    public double accOfGravityZ() {
+        return OrpheSensorValue.toGravityZ(quatW(), quatX(), quatY(), quatZ());
+    }
+
+    /**
+     * 正規化されたオイラー角X
+     *
+     * @return 正規化されたオイラー角X
+     */
+    public double normalizedEulerX() {
+        return eulerX() / 180.0;
+    }
+
+    /**
+     * 正規化されたオイラー角Y
+     *
+     * @return 正規化されたオイラー角Y
+     */
+    public double normalizedEulerY() {
+        return eulerY() / 180.0;
+    }
+
+    /**
+     * 正規化されたオイラー角Z
+     *
+     * @return 正規化されたオイラー角Z
+     */
+    public double normalizedEulerZ() {
+        return eulerZ() / 180.0;
+    }
+
+    /**
+     * 正規化された加速度X
+     *
+     * @return 正規化された加速度X
+     */
+    public double normalizedAccX() {
+        return accX() / accRange.value;
+    }
+
+    /**
+     * 正規化された加速度Y
+     *
+     * @return 正規化された加速度Y
+     */
+    public double normalizedAccY() {
+        return accY() / accRange.value;
+    }
+
+    /**
+     * 正規化された加速度Z
+     *
+     * @return 正規化された加速度Z
+     */
+    public double normalizedAccZ() {
+        return accZ() / accRange.value;
+    }
+
+    /**
+     * 正規化されたジャイロX
+     *
+     * @return 正規化されたジャイロX
+     */
+    public double normalizedGyroX() {
+        return gyroX() / gyroRange.value;
+    }
+
+    /**
+     * 正規化されたジャイロY
+     *
+     * @return 正規化されたジャイロY
+     */
+    public double normalizedGyroY() {
+        return gyroY() / gyroRange.value;
+    }
+
+    /**
+     * 正規化されたジャイロZ
+     *
+     * @return 正規化されたジャイロZ
+     */
+    public double normalizedGyroZ() {
+        return gyroZ() / gyroRange.value;
+    }
+
+    /**
+     * [OrpheSensorValue.toEulerX]、[OrpheSensorValue.toEulerY]、[OrpheSensorValue.toEulerZ]と同じ計算を
+     * asin1回とatan2の2回でまとめて行います。
+     */
+    private void computeEuler() {
+        if (mEulerComputed) {
+            return;
+        }
+        final double w = quatY();
+        final double x = quatZ();
+        final double y = quatW();
+        final double z = quatX();
+        final double theta = Math.asin(-2.0 * (x * z - w * y)) / (2.0 * Math.PI) * 360.0;
+        double phi = Math.atan2(2.0 * (y * z + w * x), w * w - x * x - y * y + z * z) /
+                (2.0 * Math.PI) *
+                360.0;
+        final double psi = Math.atan2(2.0 * (x * y + w * z), w * w + x * x - y * y - z * z) /
+                (2.0 * Math.PI) *
+                360.0;
+        if (phi > 0) {
+            phi = 180.0 - phi;
+        } else {
+            phi = -180.0 - phi;
+        }
+        mEulerX = -theta;
+        mEulerY = phi;
+        mEulerZ = -psi;
+        mEulerComputed = true;
+    }
+
+    /**
+     * すべての値を計算して[OrpheSensorValue]に変換します。
+     *
+     * @return 変換した[OrpheSensorValue]
+     */
+    @NonNull
+    public OrpheSensorValue toSensorValue() {
+        return new OrpheSensorValue(
+                sidePosition,
+                serialNumber,
+                dataPosition,
+                timestamp,
+                timestamp,
+                quatX(),
+                quatY(),
+                quatZ(),
+                quatW(),
+                eulerX(),
+                eulerY(),
+                eulerZ(),
+                accX(),
+                accY(),
+                accZ(),
+                gyroX(),
+                gyroY(),
+                gyroZ(),
+                accOfGravityX(),
+                accOfGravityY(),
+                accOfGravityZ(),
+                normalizedEulerX(),
+                normalizedEulerY(),
+                normalizedEulerZ(),
+                normalizedAccX(),
+                normalizedAccY(),
+                normalizedAccZ(),
+                normalizedGyroX(),
+                normalizedGyroY(),
+                normalizedGyroZ(),
+                0,
+                0,
+                0,
+                0,
+                0,
+                0,
+                0,
+                false,
+                0,
+                false
+        );
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public String toString() {
+        return String.format("sample:(serial=%d, position=%d, acc=(%.2f,%.2f,%.2f), gyro=(%.2f,%.2f,%.2f))",
+                serialNumber, dataPosition, accX(), accY(), accZ(), gyroX(), gyroY(), gyroZ());
+    }
+}
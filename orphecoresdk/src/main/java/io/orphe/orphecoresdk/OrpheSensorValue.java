@@ -3,11 +3,10 @@ package io.orphe.orphecoresdk;
 import android.os.Build;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
-import java.time.ZoneOffset;
 import java.util.ArrayList;
-import java.time.LocalDateTime;
 
 /**
  * ORPHEのセンサー値を格納するためのクラス。
@@ -192,6 +191,24 @@ public class OrpheSensorValue {
     @RequiresApi(api = Build.VERSION_CODES.O)
     public static OrpheSensorValue[] fromBytes(
             byte[] bytes, OrpheSidePosition sidePosition, OrpheAccRange accRange, OrpheGyroRange gyroRange) throws Exception {
+        return fromBytes(bytes, sidePosition, accRange, gyroRange, null);
+    }
+
+    /**
+     * バイト配列から[OrpheSensorValue]を取得します。
+     * タイムスタンプは[clock]でデバイスの時刻からエポックミリ秒に変換します。
+     *
+     * @param bytes ORPHECOREから送られたバイト配列
+     * @param sidePosition 取り付け位置
+     * @param accRange 加速度レンジ
+     * @param gyroRange ジャイロレンジ
+     * @param clock 接続中のデバイスの[OrpheDeviceClock]。nullの場合は端末のタイムゾーンの今日の日付として変換します。
+     * @return OrpheSensorValueの配列
+     */
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    public static OrpheSensorValue[] fromBytes(
+            byte[] bytes, OrpheSidePosition sidePosition, OrpheAccRange accRange, OrpheGyroRange gyroRange,
+            @Nullable OrpheDeviceClock clock) throws Exception {
         final ArrayList<OrpheSensorValue> res = new ArrayList();
         int index = 0;
         boolean isResend = false;
@@ -205,22 +222,12 @@ public class OrpheSensorValue {
                 index = 2;
 
                 final int serialNumber = parseInt(bytes, 1);
-                final LocalDateTime now = LocalDateTime.now();
-                final LocalDateTime baseTimestamp = LocalDateTime.of(
-                        now.getYear(),
-                        now.getMonth(),
-                        now.getDayOfMonth(),
-                        getUint8(bytes, 3),
-                        getUint8(bytes, 4),
-                        getUint8(bytes, 5),
-                        getUint8(bytes, 6) * 1000
-                );
+                final long baseTimestamp = toEpochMillis(deviceTimeOfDay(bytes, bytes[6] & 0xFF), clock);
                 for (int s = 3; s >= 0; s--) {
                     index = s * 21 + 8;
-                    final long duration = s == 0
-                            ? 0
-                            : getUint8(bytes, index - 1) * 1000;
-                    final LocalDateTime timestamp = baseTimestamp.plusNanos(duration);
+                    final long timestamp = s == 0
+                            ? baseTimestamp
+                            : baseTimestamp + (bytes[index - 1] & 0xFF);
                     final double quatW = parseInt(bytes, index) / 16384.0;
                     final double quatX = parseInt(bytes, index + 2) / 16384.0;
                     final double quatY = parseInt(bytes, index + 4) / 16384.0;
@@ -242,8 +249,8 @@ public class OrpheSensorValue {
                                     sidePosition,
                                     serialNumber,
                                     s,
-                                    timestamp.toInstant(ZoneOffset.UTC).toEpochMilli(),
-                                    timestamp.toInstant(ZoneOffset.UTC).toEpochMilli(),
+                                    timestamp,
+                                    timestamp,
                                     quatX,
                                     quatY,
                                     quatZ,
@@ -288,22 +295,10 @@ public class OrpheSensorValue {
                 index = 2;
 
                 final int serialNumber = getUint16(bytes, 1);
-                final LocalDateTime now = LocalDateTime.now();
-                final LocalDateTime baseTimestamp = LocalDateTime.of(
-                        now.getYear(),
-                        now.getMonth(),
-                        now.getDayOfMonth(),
-                        getUint8(bytes, 3),
-                        getUint8(bytes, 4),
-                        getUint8(bytes, 5),
-                        getUint16(bytes, 6) * 1000
-                );
+                final long baseTimestamp = toEpochMillis(deviceTimeOfDay(bytes, getUint16(bytes, 6) & 0xFFFF), clock);
                 for (int s = 7; s >= 0; s--) {
                     index = s * 12 + 8;
-                    final long duration = s == 0
-                            ? 0
-                            : 5 * 1000;
-                    final LocalDateTime timestamp = baseTimestamp.minusNanos(duration);
+                    final long timestamp = baseTimestamp - s * SAMPLE_INTERVAL_MILLIS;
                     // TODO: 計算で出力
                     final double quatW = 0;
                     final double quatX = 0;
@@ -326,8 +321,8 @@ public class OrpheSensorValue {
                                     sidePosition,
                                     serialNumber,
                                     s,
-                                    timestamp.toInstant(ZoneOffset.UTC).toEpochMilli(),
-                                    timestamp.toInstant(ZoneOffset.UTC).toEpochMilli(),
+                                    timestamp,
+                                    timestamp,
                                     quatX,
                                     quatY,
                                     quatZ,
@@ -373,6 +368,130 @@ public class OrpheSensorValue {
         return res.toArray(array);
     }
 
+    /**
+     * バイト配列から[SensorFrameBatch]にセンサー値を書き込みます。
+     * オブジェクトを生成しないため、Notifyごとのメモリ確保が発生しません。
+     * タイムスタンプは[SensorFrameBatch.deviceTime]にデバイスの時刻として格納されます。
+     *
+     * @param bytes ORPHECOREから送られたバイト配列
+     * @param accRange 加速度レンジ
+     * @param gyroRange ジャイロレンジ
+     * @param batch 書き込み先のバッファ
+     * @return 書き込んだサンプル数
+     */
+    public static int fromBytes(
+            @NonNull byte[] bytes, @NonNull OrpheAccRange accRange, @NonNull OrpheGyroRange gyroRange, @NonNull SensorFrameBatch batch) {
+        return fromBytes(bytes, accRange, gyroRange, batch, null);
+    }
+
+    /**
+     * バイト配列から[SensorFrameBatch]にセンサー値を書き込みます。
+     * [clock]を指定すると[SensorFrameBatch.timestamp]にエポックミリ秒も格納します。
+     *
+     * @param bytes ORPHECOREから送られたバイト配列
+     * @param accRange 加速度レンジ
+     * @param gyroRange ジャイロレンジ
+     * @param batch 書き込み先のバッファ
+     * @param clock 接続中のデバイスの[OrpheDeviceClock]。nullの場合は[SensorFrameBatch.timestamp]に0を格納します。
+     * @return 書き込んだサンプル数
+     */
+    public static int fromBytes(
+            @NonNull byte[] bytes, @NonNull OrpheAccRange accRange, @NonNull OrpheGyroRange gyroRange, @NonNull SensorFrameBatch batch,
+            @Nullable OrpheDeviceClock clock) {
+        switch (getUint8(bytes, 0)) {
+            case 50: {
+                batch.ensureRemaining(4);
+                final int serialNumber = parseInt(bytes, 1);
+                final long baseTime = deviceTimeOfDay(bytes, bytes[6] & 0xFF);
+                final long baseTimestamp = clock != null ? clock.toEpochMillis(baseTime) : 0;
+                for (int s = 3; s >= 0; s--) {
+                    final int index = s * 21 + 8;
+                    final int i = batch.append();
+                    batch.serialNumber[i] = serialNumber;
+                    batch.dataPosition[i] = s;
+                    final int offset = s == 0 ? 0 : bytes[index - 1] & 0xFF;
+                    batch.deviceTime[i] = baseTime + offset;
+                    batch.timestamp[i] = clock != null ? baseTimestamp + offset : 0;
+                    batch.quatW[i] = (float) (parseInt(bytes, index) / 16384.0);
+                    batch.quatX[i] = (float) (parseInt(bytes, index + 2) / 16384.0);
+                    batch.quatY[i] = (float) (parseInt(bytes, index + 4) / 16384.0);
+                    batch.quatZ[i] = (float) (parseInt(bytes, index + 6) / 16384.0);
+                    batch.gyroX[i] = (float) (parseInt(bytes, index + 8) / (double) (1 << 15) * gyroRange.value);
+                    batch.gyroY[i] = (float) (parseInt(bytes, index + 10) / (double) (1 << 15) * gyroRange.value);
+                    batch.gyroZ[i] = (float) (parseInt(bytes, index + 12) / (double) (1 << 15) * gyroRange.value);
+                    batch.accX[i] = (float) (parseInt(bytes, index + 14) / (double) (1 << 15) * accRange.value);
+                    batch.accY[i] = (float) (parseInt(bytes, index + 16) / (double) (1 << 15) * accRange.value);
+                    batch.accZ[i] = (float) (parseInt(bytes, index + 18) / (double) (1 << 15) * accRange.value);
+                    clearPressure(batch, i);
+                }
+                return 4;
+            }
+            case 54: {
+                batch.ensureRemaining(8);
+                final int serialNumber = getUint16(bytes, 1) & 0xFFFF;
+                final long baseTime = deviceTimeOfDay(bytes, getUint16(bytes, 6) & 0xFFFF);
+                final long baseTimestamp = clock != null ? clock.toEpochMillis(baseTime) : 0;
+                for (int s = 7; s >= 0; s--) {
+                    final int index = s * 12 + 8;
+                    final int i = batch.append();
+                    batch.serialNumber[i] = serialNumber;
+                    batch.dataPosition[i] = s;
+                    batch.deviceTime[i] = baseTime - s * SAMPLE_INTERVAL_MILLIS;
+                    batch.timestamp[i] = clock != null ? baseTimestamp - s * SAMPLE_INTERVAL_MILLIS : 0;
+                    batch.quatW[i] = 0;
+                    batch.quatX[i] = 0;
+                    batch.quatY[i] = 0;
+                    batch.quatZ[i] = 0;
+                    batch.gyroX[i] = (float) (parseInt(bytes, index) / (double) (1 << 15) * gyroRange.value);
+                    batch.gyroY[i] = (float) (parseInt(bytes, index + 2) / (double) (1 << 15) * gyroRange.value);
+                    batch.gyroZ[i] = (float) (parseInt(bytes, index + 4) / (double) (1 << 15) * gyroRange.value);
+                    batch.accX[i] = (float) (parseInt(bytes, index + 6) / (double) (1 << 15) * accRange.value);
+                    batch.accY[i] = (float) (parseInt(bytes, index + 8) / (double) (1 << 15) * accRange.value);
+                    batch.accZ[i] = (float) (parseInt(bytes, index + 10) / (double) (1 << 15) * accRange.value);
+                    clearPressure(batch, i);
+                }
+                return 8;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 1サンプルあたりの間隔（ミリ秒）
+     */
+    static final int SAMPLE_INTERVAL_MILLIS = 5;
+
+    /**
+     * デバイスの時刻をエポックミリ秒に変換します。
+     *
+     * @param timeOfDayMillis デバイスの時刻（その日の0時からのミリ秒）
+     * @param clock 接続中のデバイスの[OrpheDeviceClock]。nullの場合は端末のタイムゾーンの今日の日付として変換します。
+     * @return エポックミリ秒
+     */
+    static long toEpochMillis(long timeOfDayMillis, @Nullable OrpheDeviceClock clock) {
+        return clock != null ? clock.toEpochMillis(timeOfDayMillis) : OrpheDeviceClock.wallClockMillis(timeOfDayMillis);
+    }
+
+    /**
+     * パケットの時刻部分からその日の0時からのミリ秒を計算します。
+     *
+     * @param bytes ORPHEから送られたバイト配列
+     * @param millis ミリ秒部分
+     * @return その日の0時からのミリ秒
+     */
+    static long deviceTimeOfDay(@NonNull byte[] bytes, int millis) {
+        return (((bytes[3] & 0xFF) * 60L + (bytes[4] & 0xFF)) * 60L + (bytes[5] & 0xFF)) * 1000L + millis;
+    }
+
+    private static void clearPressure(@NonNull SensorFrameBatch batch, int i) {
+        batch.pressureToeOutside[i] = 0;
+        batch.pressureMidOutside[i] = 0;
+        batch.pressureToeInside[i] = 0;
+        batch.pressureCenter[i] = 0;
+        batch.pressureMidInside[i] = 0;
+        batch.pressureHeel[i] = 0;
+    }
+
     /**
      *  取り付け位置。
      */
@@ -559,21 +678,21 @@ public class OrpheSensorValue {
     @NonNull public final boolean isStoredData;
 
 
-    private static double toGravityX(
+    static double toGravityX(
       double quatW, double quatX, double quatY, double quatZ) {
         return (quatW * quatX + quatY * quatZ) * (-2.0);
     }
-    private static double toGravityY(
+    static double toGravityY(
             double quatW, double quatX, double quatY, double quatZ) {
         return (quatX * quatZ - quatW * quatY) * 2.0;
     }
 
-    private static double toGravityZ(
+    static double toGravityZ(
             double quatW, double quatX, double quatY, double quatZ) {
         return  quatW * quatW - quatX * quatX - quatY * quatY + quatZ * quatZ;
     }
 
-    private static double toEulerX(
+    static double toEulerX(
             double quatW, double quatX, double quatY, double quatZ) {
         final double w = quatY;
         final double x = quatZ;
@@ -603,7 +722,7 @@ public class OrpheSensorValue {
     }
 
 
-    private static double toEulerY(
+    static double toEulerY(
             double quatW, double quatX, double quatY, double quatZ) {
         final double w = quatY;
         final double x = quatZ;
@@ -633,7 +752,7 @@ public class OrpheSensorValue {
     }
 
 
-    private static double toEulerZ(
+    static double toEulerZ(
             double quatW, double quatX, double quatY, double quatZ) {
         final double w = quatY;
         final double x = quatZ;
@@ -0,0 +1,317 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.Nullable;
+
+/**
+ * シリアルナンバーと受信時刻（[System.nanoTime]）を対応付ける時計のモデル。
+ * 受け取ったシリアルナンバーと受信時刻の組から実際のフレームの周期を推定し、時刻とシリアルナンバーを相互に変換します。
+ * 推定の方法は[OrpheDeviceClock]と同じで、一定のフレーム数の区間ごとに最も早く届いた組を基準にします。
+ * 65535から0への折り返しは内部で連続した値に展開して扱うため、変換はいずれも定数時間で行えます。
+ * 接続ごとに作成し、更新はデコードするスレッドから行います。
+ */
+public class OrpheSerialClock {
+    /**
+     * ORPHE COREのフレームの周期の目安（ナノ秒）
+     */
+    public static final long CORE_PERIOD_NANOS = 40_000_000L;
+
+    /**
+     * ORPHE INSOLEのフレームの周期の目安（ナノ秒）
+     */
+    public static final long INSOLE_PERIOD_NANOS = 20_000_000L;
+
+    /**
+     * 周期を推定する区間の長さ（フレーム数）
+     */
+    static final int WINDOW_FRAMES = 128;
+
+    /**
+     * 受信までの遅延の上限（ナノ秒）。前に受け取ってからの時間とこの遅延の間に進み得るより大きく進んだシリアルナンバーは、
+     * 32768件以上前のものを再取得したデータとみなして無視します。
+     */
+    static final long MAX_DELAY_NANOS = 2_000_000_000L;
+
+    /**
+     * 無視したシリアルナンバーがこの時間続けて目安の周期で進んだ場合は、対応付けに使っていたものが再取得したデータだったか、
+     * カウンターが戻ったとみなしてやり直します（ナノ秒）。
+     */
+    static final long RESYNC_NANOS = 2_000_000_000L;
+
+    /**
+     * やり直すかを判断するときに許容する受信時刻のばらつき（ナノ秒）
+     */
+    static final long RESYNC_JITTER_NANOS = 200_000_000L;
+
+    private final long mNominalPeriodNanos;
+
+    /// 最初に受け取ったシリアルナンバー。展開した値はここからの差で表す
+    private int mBaseSerialNumber;
+    private long mLatestFrame;
+    private long mLatestNanos;
+    private boolean mSynchronized;
+    private long mObservedCount;
+    private long mRejectedCount;
+    private long mResyncCount;
+    private long mPeriodNanos;
+
+    /// 受信時刻 ≒ mAnchorNanos + (展開したシリアルナンバー - mAnchorFrame) * mPeriodNanos
+    private long mAnchorFrame;
+    private long mAnchorNanos;
+
+    private long mWindowStartFrame;
+    private long mWindowMinFrame;
+    private long mWindowMinNanos;
+    private boolean mHasPreviousWindow;
+    private long mPreviousMinFrame;
+    private long mPreviousMinNanos;
+
+    /// 無視したシリアルナンバーのうち、連続して進んでいるものの最初
+    private boolean mHasCandidate;
+    private int mCandidateSerialNumber;
+    private long mCandidateNanos;
+
+    /**
+     * シリアルナンバーと受信時刻を対応付ける時計のモデル。
+     *
+     * @param nominalPeriodNanos 推定できるまで使うフレームの周期（ナノ秒）
+     */
+    public OrpheSerialClock(long nominalPeriodNanos) {
+        if (nominalPeriodNanos <= 0) {
+            throw new IllegalArgumentException("nominalPeriodNanos must be positive");
+        }
+        mNominalPeriodNanos = nominalPeriodNanos;
+        mPeriodNanos = nominalPeriodNanos;
+    }
+
+    /**
+     * シリアルナンバーを受け取った時刻を記録し、対応付けと周期の推定を更新します。
+     * 最新のものより古いシリアルナンバー（再取得したデータなど）はいつ生成されたかわからないため無視します。
+     * 32768件以上前のものを再取得すると新しいシリアルナンバーに見えるため、受信時刻の差で進み得るより大きく進んだものも無視します。
+     * 無視したものだけが[RESYNC_NANOS]の間目安の周期で進み続けた場合は、対応付けをやり直します。
+     *
+     * @param serialNumber シリアルナンバー
+     * @param receivedNanos 受信時刻（[System.nanoTime]）
+     * @return 最新のシリアルナンバーを進めた場合はtrue。再取得したデータなど、無視した場合はfalse
+     */
+    synchronized boolean observe(int serialNumber, long receivedNanos) {
+        if (!mSynchronized) {
+            synchronize(serialNumber, receivedNanos);
+            return true;
+        }
+        final int delta = OrpheSerialNumber.distance(serialNumberOf(mLatestFrame), serialNumber);
+        if (delta <= 0 || delta > maxFrames(receivedNanos - mLatestNanos)) {
+            if (delta > 0) {
+                mRejectedCount++;
+            }
+            return trackCandidate(serialNumber, receivedNanos);
+        }
+        mHasCandidate = false;
+        mObservedCount++;
+        final long frame = mLatestFrame + delta;
+        mLatestFrame = frame;
+        mLatestNanos = receivedNanos;
+        // 受信までの遅延は必ず正なので、予測より早く届いた場合は予測が遅れている
+        if (receivedNanos < predictNanos(frame)) {
+            mAnchorFrame = frame;
+            mAnchorNanos = receivedNanos;
+        }
+        if (receivedNanos - predictNanos(frame) < mWindowMinNanos - predictNanos(mWindowMinFrame)) {
+            mWindowMinFrame = frame;
+            mWindowMinNanos = receivedNanos;
+        }
+        if (frame - mWindowStartFrame < WINDOW_FRAMES) {
+            return true;
+        }
+        final long frames = mWindowMinFrame - mPreviousMinFrame;
+        if (mHasPreviousWindow && frames > 0) {
+            final long period = (mWindowMinNanos - mPreviousMinNanos) / frames;
+            // 接続が止まっていた場合などのあり得ない周期は無視する
+            if (period >= mNominalPeriodNanos / 2 && period <= mNominalPeriodNanos * 2) {
+                mPeriodNanos = period;
+                mAnchorFrame = mWindowMinFrame;
+                mAnchorNanos = mWindowMinNanos;
+            }
+        }
+        mHasPreviousWindow = true;
+        mPreviousMinFrame = mWindowMinFrame;
+        mPreviousMinNanos = mWindowMinNanos;
+        startWindow(frame, receivedNanos);
+        return true;
+    }
+
+    /**
+     * 指定した時刻に最新だったシリアルナンバーを返します。受け取ったものより古いシリアルナンバーは返しません。
+     *
+     * @param nanos 時刻（[System.nanoTime]）
+     * @return シリアルナンバー。まだ何も受け取っていない場合は-1
+     */
+    public synchronized int serialNumberAt(long nanos) {
+        if (!mSynchronized) {
+            return -1;
+        }
+        final long frame = mAnchorFrame + Math.floorDiv(nanos - mAnchorNanos, mPeriodNanos);
+        return serialNumberOf(Math.max(frame, mLatestFrame));
+    }
+
+    /**
+     * シリアルナンバーのフレームを受信すると予測される時刻を返します。
+     * 最新のシリアルナンバーから-32768〜32767の範囲にあるものとして扱います。
+     *
+     * @param serialNumber シリアルナンバー
+     * @return 時刻（[System.nanoTime]）。まだ何も受け取っていない場合は[Long.MIN_VALUE]
+     */
+    public synchronized long nanosOf(int serialNumber) {
+        if (!mSynchronized) {
+            return Long.MIN_VALUE;
+        }
+        return predictNanos(mLatestFrame + OrpheSerialNumber.distance(serialNumberOf(mLatestFrame), serialNumber));
+    }
+
+    /**
+     * 指定した時刻までの最新の[length]件を取得するリクエストを返します。
+     *
+     * @param length 取得する件数（1〜32768）
+     * @param nanos 時刻（[System.nanoTime]）
+     * @return リクエスト。まだ何も受け取っていない場合はnull
+     */
+    @Nullable
+    public OrpheValueRequest latestRequest(int length, long nanos) {
+        if (length < 1 || length > OrpheSerialNumber.MODULUS / 2) {
+            throw new IllegalArgumentException("length must be between 1 and 32768");
+        }
+        final int latest = serialNumberAt(nanos);
+        if (latest < 0) {
+            return null;
+        }
+        return new OrpheValueRequest(OrpheSerialNumber.add(latest, 1 - length), length);
+    }
+
+    /**
+     * [serialNumber]の次から指定した時刻までに生成されたものを取得するリクエストを返します。
+     *
+     * @param serialNumber すでに受け取っている最後のシリアルナンバー
+     * @param nanos 時刻（[System.nanoTime]）
+     * @return リクエスト。まだ何も受け取っていない場合や、新しいものがない場合はnull
+     */
+    @Nullable
+    public OrpheValueRequest requestSince(int serialNumber, long nanos) {
+        final int latest = serialNumberAt(nanos);
+        if (latest < 0) {
+            return null;
+        }
+        final int length = OrpheSerialNumber.distance(serialNumber, latest);
+        if (length <= 0) {
+            return null;
+        }
+        return new OrpheValueRequest(OrpheSerialNumber.add(serialNumber, 1), length);
+    }
+
+    private void synchronize(int serialNumber, long receivedNanos) {
+        mSynchronized = true;
+        mObservedCount++;
+        mBaseSerialNumber = serialNumber & (OrpheSerialNumber.MODULUS - 1);
+        mLatestFrame = 0;
+        mLatestNanos = receivedNanos;
+        mAnchorFrame = 0;
+        mAnchorNanos = receivedNanos;
+        mHasPreviousWindow = false;
+        mHasCandidate = false;
+        startWindow(0, receivedNanos);
+    }
+
+    /// 対応付けをやり直した場合はtrue
+    private boolean trackCandidate(int serialNumber, long receivedNanos) {
+        final long elapsedNanos = receivedNanos - mCandidateNanos;
+        final int advance = mHasCandidate ? OrpheSerialNumber.distance(mCandidateSerialNumber, serialNumber) : -1;
+        // 再取得したデータはまとめて速く届くため、目安の周期の3/4〜3/2で進んでいるものだけを続きとみなす
+        if (advance < 0
+                || advance > (elapsedNanos + RESYNC_JITTER_NANOS) / (mNominalPeriodNanos * 3 / 4)
+                || advance < (elapsedNanos - RESYNC_JITTER_NANOS) / (mNominalPeriodNanos * 3 / 2)) {
+            mHasCandidate = true;
+            mCandidateSerialNumber = serialNumber;
+            mCandidateNanos = receivedNanos;
+            return false;
+        }
+        // 無視したものだけが受信時刻の通りに進み続けている場合は、対応付けに使っていたものが再取得したデータだったか、カウンターが戻った
+        if (elapsedNanos >= RESYNC_NANOS) {
+            mResyncCount++;
+            synchronize(serialNumber, receivedNanos);
+            return true;
+        }
+        return false;
+    }
+
+    /// [elapsedNanos]の間に進み得る最大のフレーム数。周期の推定と同じく、目安の半分の周期まで許容する
+    private long maxFrames(long elapsedNanos) {
+        return (Math.max(0, elapsedNanos) + MAX_DELAY_NANOS) / (mNominalPeriodNanos / 2);
+    }
+
+    private long predictNanos(long frame) {
+        return mAnchorNanos + (frame - mAnchorFrame) * mPeriodNanos;
+    }
+
+    private int serialNumberOf(long frame) {
+        return (int) ((mBaseSerialNumber + frame) & (OrpheSerialNumber.MODULUS - 1));
+    }
+
+    private void startWindow(long frame, long nanos) {
+        mWindowStartFrame = frame;
+        mWindowMinFrame = frame;
+        mWindowMinNanos = nanos;
+    }
+
+    /**
+     * シリアルナンバーを受け取ったかどうかを返します。
+     *
+     * @return 受け取った場合はtrue
+     */
+    public synchronized boolean isSynchronized() {
+        return mSynchronized;
+    }
+
+    /**
+     * 推定したフレームの周期を返します。推定できるまでは作成したときに指定した値を返します。
+     *
+     * @return フレームの周期（ナノ秒）
+     */
+    public synchronized long periodNanos() {
+        return mPeriodNanos;
+    }
+
+    /**
+     * 記録したシリアルナンバーの数を返します。
+     *
+     * @return 記録した数
+     */
+    public synchronized long observedCount() {
+        return mObservedCount;
+    }
+
+    /**
+     * 受信時刻の差で進み得るより大きく進んでいたため無視したシリアルナンバーの数を返します。
+     *
+     * @return 無視した数
+     */
+    public synchronized long rejectedCount() {
+        return mRejectedCount;
+    }
+
+    /**
+     * 対応付けをやり直した回数を返します。
+     *
+     * @return やり直した回数
+     */
+    public synchronized long resyncCount() {
+        return mResyncCount;
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public String toString() {
+        return String.format("serialClock:(observed=%d, rejected=%d, resync=%d, period=%dus)",
+                observedCount(), rejectedCount(), resyncCount(), periodNanos() / 1000);
+    }
+}
@@ -0,0 +1,362 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * リアルタイムで受け取ったシリアルナンバーの欠落を検出し、再取得のリクエストを作成します。
+ * 最新のシリアルナンバーから[HORIZON]件前までを管理し、それより古いものは忘れます。
+ * アプリや[OrpheBulkDownloader]がリクエストした範囲は[onRequested]で渡され、その範囲の再送は重複として破棄しません。
+ * リクエストしていないシリアルナンバーが[MAX_GAP]件より前に戻った場合は、デバイスのカウンターが戻ったものとして管理をやり直します。
+ * デコードするスレッドからのみ更新され、集計値は他のスレッドから読み取れます。
+ */
+public class OrpheSerialGapTracker {
+    /**
+     * 管理するシリアルナンバーの件数（65536の約数）
+     */
+    static final int HORIZON = 4096;
+
+    /**
+     * 再送を通すために覚えておく、リクエストされた範囲の数
+     */
+    static final int MAX_REQUESTED_RANGES = 64;
+
+    /**
+     * 欠落として扱う最大の件数。これより大きく飛んだ場合は再接続などによる不連続として扱います。
+     */
+    static final int MAX_GAP = 512;
+
+    /**
+     * 1回の書き込みでリクエストできる範囲の最大数
+     */
+    static final int MAX_REQUESTS_PER_WRITE = 30;
+
+    /// 新しいシリアルナンバー
+    static final int RESULT_NEW = 0;
+    /// 欠落していたシリアルナンバーを受け取った
+    static final int RESULT_RECOVERED = 1;
+    /// すでに受け取ったシリアルナンバー
+    static final int RESULT_DUPLICATE = 2;
+    /// 管理範囲外のシリアルナンバー
+    static final int RESULT_UNTRACKED = 3;
+    /// リクエストされた範囲の再送
+    static final int RESULT_REPLAYED = 4;
+
+    private static final byte UNKNOWN = 0;
+    private static final byte RECEIVED = 1;
+    private static final byte MISSING = 2;
+    private static final byte REQUESTED = 3;
+    private static final byte LOST = 4;
+
+    private static final OrpheValueRequest[] NO_REQUESTS = new OrpheValueRequest[0];
+
+    /// シリアルナンバーの下位ビットで参照する、最新から[HORIZON]件前までの状態
+    private final byte[] mStates = new byte[HORIZON];
+    private int mNewest = -1;
+    private volatile boolean mResetRequested;
+
+    /// リクエストされた範囲の最初のシリアルナンバーと件数。古いものから上書きする
+    private final int[] mRequestedStarts = new int[MAX_REQUESTED_RANGES];
+    private final int[] mRequestedLengths = new int[MAX_REQUESTED_RANGES];
+    private int mNextRequested;
+
+    private volatile int mPendingCount;
+    private volatile long mMissingCount;
+    private volatile long mRequestedCount;
+    private volatile long mRecoveredCount;
+    private volatile long mLostCount;
+    private volatile long mExpiredCount;
+    private volatile long mDuplicateCount;
+    private volatile long mRestartCount;
+
+    /**
+     * 受け取ったシリアルナンバーを記録します。
+     *
+     * @param serialNumber 受け取ったシリアルナンバー
+     * @return [RESULT_NEW]、[RESULT_RECOVERED]、[RESULT_DUPLICATE]、[RESULT_UNTRACKED]、[RESULT_REPLAYED]のいずれか
+     */
+    int onSerialNumber(int serialNumber) {
+        applyReset();
+        if (mNewest < 0) {
+            mNewest = serialNumber;
+            mStates[index(serialNumber)] = RECEIVED;
+            return RESULT_NEW;
+        }
+        final int distance = OrpheSerialNumber.distance(mNewest, serialNumber);
+        if (distance > 0) {
+            advance(serialNumber, distance);
+            return RESULT_NEW;
+        }
+        if (distance > -HORIZON) {
+            final int index = index(serialNumber);
+            switch (mStates[index]) {
+                case MISSING:
+                    mPendingCount--;
+                    mStates[index] = RECEIVED;
+                    mRecoveredCount++;
+                    return RESULT_RECOVERED;
+                case REQUESTED:
+                    mStates[index] = RECEIVED;
+                    mRecoveredCount++;
+                    return RESULT_RECOVERED;
+                case LOST:
+                    mLostCount--;
+                    mStates[index] = RECEIVED;
+                    mRecoveredCount++;
+                    return RESULT_RECOVERED;
+            }
+        }
+        if (isRequested(serialNumber)) {
+            return RESULT_REPLAYED;
+        }
+        if (distance < -MAX_GAP) {
+            // リクエストしていないのに大きく戻った場合は、デバイスのカウンターが戻った
+            clear();
+            mRestartCount++;
+            mNewest = serialNumber;
+            mStates[index(serialNumber)] = RECEIVED;
+            return RESULT_NEW;
+        }
+        final int index = index(serialNumber);
+        if (mStates[index] == RECEIVED) {
+            mDuplicateCount++;
+            return RESULT_DUPLICATE;
+        }
+        mStates[index] = RECEIVED;
+        return RESULT_UNTRACKED;
+    }
+
+    /**
+     * アプリや[OrpheBulkDownloader]がリクエストした範囲を記録します。この範囲の再送は重複として破棄しません。
+     * 覚えておくのは直近の[MAX_REQUESTED_RANGES]件までです。
+     *
+     * @param requests リクエストした範囲
+     */
+    synchronized void onRequested(@NonNull OrpheValueRequest[] requests) {
+        for (OrpheValueRequest request : requests) {
+            mRequestedStarts[mNextRequested] = request.startSerialNumber & (OrpheSerialNumber.MODULUS - 1);
+            mRequestedLengths[mNextRequested] = request.length;
+            mNextRequested = (mNextRequested + 1) % MAX_REQUESTED_RANGES;
+        }
+    }
+
+    private synchronized boolean isRequested(int serialNumber) {
+        for (int i = 0; i < MAX_REQUESTED_RANGES; i++) {
+            if (((serialNumber - mRequestedStarts[i]) & (OrpheSerialNumber.MODULUS - 1)) < mRequestedLengths[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 管理している状態を破棄します。再接続したときに呼んでください。
+     * 集計値はそのまま残ります。どのスレッドから呼んでも、次にデコードするスレッドで更新するときに破棄されます。
+     */
+    void reset() {
+        mResetRequested = true;
+    }
+
+    private void applyReset() {
+        if (!mResetRequested) {
+            return;
+        }
+        mResetRequested = false;
+        clear();
+        synchronized (this) {
+            Arrays.fill(mRequestedLengths, 0);
+        }
+    }
+
+    /// まだ再取得できていない欠落は管理範囲から外れたものとして数える
+    private void clear() {
+        for (int i = 0; i < HORIZON; i++) {
+            if (mStates[i] == MISSING || mStates[i] == REQUESTED) {
+                mExpiredCount++;
+            }
+        }
+        Arrays.fill(mStates, UNKNOWN);
+        mPendingCount = 0;
+        mNewest = -1;
+    }
+
+    private static int index(int serialNumber) {
+        return serialNumber & (HORIZON - 1);
+    }
+
+    /**
+     * デバイスに見つからなかったシリアルナンバーを記録します。記録されたシリアルナンバーは再度リクエストしません。
+     *
+     * @param serialNumber 見つからなかった最初のシリアルナンバー
+     * @param length 見つからなかった件数
+     */
+    void onNotFound(int serialNumber, int length) {
+        applyReset();
+        if (mNewest < 0) {
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            final int target = OrpheSerialNumber.add(serialNumber, i);
+            final int distance = OrpheSerialNumber.distance(mNewest, target);
+            if (distance > 0 || distance <= -HORIZON) {
+                continue;
+            }
+            final byte state = mStates[index(target)];
+            if (state != MISSING && state != REQUESTED) {
+                continue;
+            }
+            if (state == MISSING) {
+                mPendingCount--;
+            }
+            mStates[index(target)] = LOST;
+            mLostCount++;
+        }
+    }
+
+    /**
+     * まだリクエストしていない欠落を連続した範囲にまとめ、リクエスト済みとして返します。
+     * 1回で返す範囲は[MAX_REQUESTS_PER_WRITE]までで、残りは次回以降に返します。
+     *
+     * @return 古い順に並んだリクエスト。欠落がない場合は空の配列
+     */
+    @NonNull
+    OrpheValueRequest[] takeRequests() {
+        applyReset();
+        if (mPendingCount == 0) {
+            return NO_REQUESTS;
+        }
+        final ArrayList<OrpheValueRequest> requests = new ArrayList<>();
+        int start = 0;
+        int length = 0;
+        for (int i = HORIZON - 1; i >= 0 && requests.size() < MAX_REQUESTS_PER_WRITE; i--) {
+            final int serialNumber = OrpheSerialNumber.add(mNewest, -i);
+            if (mStates[index(serialNumber)] == MISSING) {
+                mStates[index(serialNumber)] = REQUESTED;
+                mPendingCount--;
+                mRequestedCount++;
+                if (length == 0) {
+                    start = serialNumber;
+                }
+                length++;
+            } else if (length > 0) {
+                requests.add(new OrpheValueRequest(start, length));
+                length = 0;
+            }
+        }
+        if (length > 0) {
+            requests.add(new OrpheValueRequest(start, length));
+        }
+        return requests.toArray(NO_REQUESTS);
+    }
+
+    private void advance(int serialNumber, int distance) {
+        // 管理範囲から外れるシリアルナンバーを忘れる
+        final int leaving = Math.min(distance, HORIZON);
+        for (int i = 1; i <= leaving; i++) {
+            final int old = OrpheSerialNumber.add(mNewest, i - HORIZON);
+            switch (mStates[index(old)]) {
+                case MISSING:
+                    mPendingCount--;
+                    mExpiredCount++;
+                    break;
+                case REQUESTED:
+                    mExpiredCount++;
+                    break;
+            }
+            mStates[index(old)] = UNKNOWN;
+        }
+        if (distance <= MAX_GAP) {
+            for (int i = 1; i < distance; i++) {
+                mStates[index(OrpheSerialNumber.add(mNewest, i))] = MISSING;
+            }
+            mPendingCount += distance - 1;
+            mMissingCount += distance - 1;
+        }
+        mNewest = serialNumber;
+        mStates[index(serialNumber)] = RECEIVED;
+    }
+
+    /**
+     * まだリクエストしていない欠落の件数を返します。
+     *
+     * @return 欠落の件数
+     */
+    public int pendingCount() {
+        return mPendingCount;
+    }
+
+    /**
+     * 検出した欠落の件数を返します。
+     *
+     * @return 欠落の件数
+     */
+    public long missingCount() {
+        return mMissingCount;
+    }
+
+    /**
+     * 再取得をリクエストした件数を返します。
+     *
+     * @return リクエストした件数
+     */
+    public long requestedCount() {
+        return mRequestedCount;
+    }
+
+    /**
+     * 再取得できた件数を返します。
+     *
+     * @return 再取得できた件数
+     */
+    public long recoveredCount() {
+        return mRecoveredCount;
+    }
+
+    /**
+     * デバイスに見つからず失われた件数を返します。
+     *
+     * @return 失われた件数
+     */
+    public long lostCount() {
+        return mLostCount;
+    }
+
+    /**
+     * 再取得できないまま管理範囲から外れた件数を返します。
+     *
+     * @return 管理範囲から外れた件数
+     */
+    public long expiredCount() {
+        return mExpiredCount;
+    }
+
+    /**
+     * 重複して受け取り破棄した件数を返します。
+     *
+     * @return 重複した件数
+     */
+    public long duplicateCount() {
+        return mDuplicateCount;
+    }
+
+    /**
+     * デバイスのカウンターが戻ったとして管理をやり直した回数を返します。
+     *
+     * @return やり直した回数
+     */
+    public long restartCount() {
+        return mRestartCount;
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public String toString() {
+        return String.format("gap:(missing=%d, pending=%d, requested=%d, recovered=%d, lost=%d, expired=%d, duplicate=%d, restart=%d)",
+                missingCount(), pendingCount(), requestedCount(), recoveredCount(), lostCount(), expiredCount(), duplicateCount(), restartCount());
+    }
+}
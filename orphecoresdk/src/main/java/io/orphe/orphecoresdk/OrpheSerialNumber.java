@@ -0,0 +1,36 @@
+package io.orphe.orphecoresdk;
+
+/**
+ * 16bitのシリアルナンバーの計算を行います。シリアルナンバーは65535の次は0に戻ります。
+ */
+final class OrpheSerialNumber {
+    /**
+     * シリアルナンバーの取りうる値の数
+     */
+    static final int MODULUS = 1 << 16;
+
+    private OrpheSerialNumber() {
+    }
+
+    /**
+     * [from]から[to]までの差を返します。65535から0への折り返しを考慮し、-32768〜32767の範囲で返します。
+     *
+     * @param from 基準のシリアルナンバー
+     * @param to 比較するシリアルナンバー
+     * @return [to]が[from]より新しい場合は正の値
+     */
+    static int distance(int from, int to) {
+        return (short) (to - from);
+    }
+
+    /**
+     * シリアルナンバーに値を加えます。
+     *
+     * @param serialNumber シリアルナンバー
+     * @param delta 加える値（負の値も可）
+     * @return 0〜65535のシリアルナンバー
+     */
+    static int add(int serialNumber, int delta) {
+        return (serialNumber + delta) & (MODULUS - 1);
+    }
+}
@@ -0,0 +1,355 @@
+package io.orphe.orphecoresdk;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelUuid;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 複数の[Orphe]や[OrpheInsole]のスキャンを1つにまとめます。
+ * 追加したインスタンスの[Orphe.startScan]は、それぞれスキャンを行う代わりにこのクラスのスキャンを使います。
+ * 見つかったデバイスはアドレスか左右で振り分けて自動で接続し、すべてのインスタンスにデバイスが割り当てられるとスキャンを停止します。
+ * 左右がアドバタイズから分からないデバイスは、接続後に[DeviceInfoValue.sidePosition]で確認し、一致しない場合は接続し直します。
+ * 確認した左右はアドレスごとに記録されるため、次回からは接続し直すことはありません。
+ * メインスレッドから呼んでください。
+ */
+public class OrpheSessionManager {
+    private static final String TAG = OrpheSessionManager.class.getSimpleName();
+
+    /**
+     * スキャン結果を受け取る[Orphe]や[OrpheInsole]。
+     */
+    interface Target {
+        /**
+         * デバイスが割り当てられたときに呼ばれます。デバイスに接続してください。
+         *
+         * @param device 割り当てられたデバイス
+         */
+        void onScanned(@NonNull BluetoothDevice device);
+
+        /**
+         * デバイスが見つからないままスキャンが終わったときに呼ばれます。
+         */
+        void onScanTimeout();
+
+        /**
+         * 左右が一致しなかったときに呼ばれます。切断してください。
+         */
+        void release();
+    }
+
+    private final OrpheScanRouter<Target> mRouter = new OrpheScanRouter<>();
+    private final Map<String, BluetoothDevice> mDevices = new HashMap<>();
+    private final List<Object> mInstances = new ArrayList<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private BluetoothLeScanner mBluetoothLeScanner;
+    private boolean mScanning;
+    @NonNull
+    private OrpheScanPolicy mScanPolicy = OrpheScanPolicy.DEFAULT;
+    private final OrpheLatencyStats mScanLatencyStats = new OrpheLatencyStats();
+    /// スキャンを開始した時刻（[SystemClock.elapsedRealtimeNanos]）
+    private long mScanStartNanos;
+    /// 今回のスキャンでデバイスが見つかった場合はtrue
+    private boolean mFoundInScan;
+
+    private final Runnable mScanTimeout = () -> {
+        stopScanning();
+        for (Target target : mRouter.waitingTargets()) {
+            mRouter.cancel(target);
+            target.onScanTimeout();
+        }
+    };
+
+    /**
+     * 複数の[Orphe]や[OrpheInsole]のスキャンを1つにまとめます。
+     */
+    public OrpheSessionManager() {
+        final BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        if (bluetoothAdapter == null) {
+            Log.e(TAG, "Unable to obtain a BluetoothAdapter.");
+        } else {
+            mBluetoothLeScanner = bluetoothAdapter.getBluetoothLeScanner();
+            if (mBluetoothLeScanner == null) {
+                Log.e(TAG, "Unable to obtain a BluetoothLeScanner.");
+            }
+        }
+    }
+
+    /**
+     * [Orphe]を追加します。[Orphe.sidePosition]の左右と一致するデバイスに接続します。
+     *
+     * @param orphe 追加する[Orphe]
+     */
+    public void add(@NonNull Orphe orphe) {
+        add(orphe, null);
+    }
+
+    /**
+     * [Orphe]を追加します。
+     *
+     * @param orphe 追加する[Orphe]
+     * @param address 接続するデバイスのアドレス。左右で振り分ける場合はnull
+     */
+    public void add(@NonNull Orphe orphe, @Nullable String address) {
+        if (mInstances.contains(orphe)) {
+            throw new IllegalArgumentException("orphe is already added");
+        }
+        mRouter.add(orphe.attach(this), orphe.sidePosition.side, false, address);
+        mInstances.add(orphe);
+    }
+
+    /**
+     * [OrpheInsole]を追加します。[OrpheInsole.sidePosition]の左右と一致するデバイスに接続します。
+     *
+     * @param insole 追加する[OrpheInsole]
+     */
+    public void add(@NonNull OrpheInsole insole) {
+        add(insole, null);
+    }
+
+    /**
+     * [OrpheInsole]を追加します。
+     *
+     * @param insole 追加する[OrpheInsole]
+     * @param address 接続するデバイスのアドレス。左右で振り分ける場合はnull
+     */
+    public void add(@NonNull OrpheInsole insole, @Nullable String address) {
+        if (mInstances.contains(insole)) {
+            throw new IllegalArgumentException("insole is already added");
+        }
+        mRouter.add(insole.attach(this), insole.sidePosition.side, true, address);
+        mInstances.add(insole);
+    }
+
+    /**
+     * [Orphe]を削除します。削除した後の[Orphe.startScan]はそれぞれスキャンを行います。
+     *
+     * @param orphe 削除する[Orphe]
+     */
+    public void remove(@NonNull Orphe orphe) {
+        if (mInstances.remove(orphe)) {
+            mRouter.remove(orphe.attach(null));
+            updateScan();
+        }
+    }
+
+    /**
+     * [OrpheInsole]を削除します。削除した後の[OrpheInsole.startScan]はそれぞれスキャンを行います。
+     *
+     * @param insole 削除する[OrpheInsole]
+     */
+    public void remove(@NonNull OrpheInsole insole) {
+        if (mInstances.remove(insole)) {
+            mRouter.remove(insole.attach(null));
+            updateScan();
+        }
+    }
+
+    /**
+     * 追加したすべてのインスタンスのスキャンを開始します。
+     */
+    public void startScan() {
+        for (Object instance : new ArrayList<>(mInstances)) {
+            if (instance instanceof Orphe) {
+                ((Orphe) instance).startScan();
+            } else {
+                ((OrpheInsole) instance).startScan();
+            }
+        }
+    }
+
+    /**
+     * 追加したすべてのインスタンスのスキャンを停止します。
+     */
+    public void stopScan() {
+        for (Object instance : new ArrayList<>(mInstances)) {
+            if (instance instanceof Orphe) {
+                ((Orphe) instance).stopScan();
+            } else {
+                ((OrpheInsole) instance).stopScan();
+            }
+        }
+    }
+
+    /**
+     * スキャンの設定を変更します。次にスキャンを開始したときから使われます。
+     * 追加したすべてのインスタンスにデバイスが割り当てられるとスキャンを停止するため、[OrpheScanPolicy.targetDeviceCount]は使いません。
+     *
+     * @param policy スキャンの設定。デフォルトは[OrpheScanPolicy.DEFAULT]
+     */
+    public void setScanPolicy(@NonNull OrpheScanPolicy policy) {
+        mScanPolicy = policy;
+    }
+
+    /**
+     * スキャンの設定を返します。
+     *
+     * @return スキャンの設定
+     */
+    @NonNull
+    public OrpheScanPolicy getScanPolicy() {
+        return mScanPolicy;
+    }
+
+    /**
+     * スキャンを開始してから最初のデバイスが見つかるまでの時間の集計を返します。
+     * [OrpheLatencyStats.setListener]を設定すると、デバイスが見つかるたびにメインスレッドで時間を受け取れます。
+     *
+     * @return 最初のデバイスが見つかるまでの時間の集計
+     */
+    @NonNull
+    public OrpheLatencyStats getScanLatencyStats() {
+        return mScanLatencyStats;
+    }
+
+    /**
+     * スキャン中かどうかを返します。
+     *
+     * @return スキャン中の場合はtrue
+     */
+    public boolean isScanning() {
+        return mScanning;
+    }
+
+    /**
+     * デバイスを待ち始めます。[Orphe.startScan]から呼ばれます。
+     *
+     * @param target 待ち始める[Target]
+     */
+    void request(@NonNull Target target) {
+        final String address = mRouter.request(target);
+        if (address != null) {
+            target.onScanned(mDevices.get(address));
+        }
+        updateScan();
+    }
+
+    /**
+     * デバイスを待つのをやめます。[Orphe.stopScan]から呼ばれます。
+     *
+     * @param target やめる[Target]
+     */
+    void cancel(@NonNull Target target) {
+        mRouter.cancel(target);
+        updateScan();
+    }
+
+    /**
+     * 接続したデバイスの設定情報を受け取ったときに呼ばれます。
+     * 左右が一致しない場合は切断し、一致する[Target]が待っていればそちらに割り当てます。
+     *
+     * @param target 設定情報を受け取った[Target]
+     * @param device 接続しているデバイス
+     * @param sidePosition 設定情報の取り付け位置
+     */
+    void onDeviceInfo(@NonNull Target target, @NonNull BluetoothDevice device, @NonNull OrpheSidePosition sidePosition) {
+        final String address = device.getAddress();
+        if (mRouter.onDeviceInfo(target, address, sidePosition.side)) {
+            return;
+        }
+        Log.d(TAG, "side mismatch:" + address + " " + sidePosition);
+        target.release();
+        final Target other = mRouter.assign(address);
+        if (other != null) {
+            other.onScanned(device);
+        }
+        updateScan();
+    }
+
+    @SuppressLint("MissingPermission")
+    private void updateScan() {
+        final boolean waiting = mRouter.isWaiting();
+        if (waiting && !mScanning && mBluetoothLeScanner != null) {
+            Log.d(TAG, "begin startScan:" + mScanPolicy);
+            mScanning = true;
+            mFoundInScan = false;
+            mScanStartNanos = SystemClock.elapsedRealtimeNanos();
+            mHandler.postDelayed(mScanTimeout, mScanPolicy.timeoutMillis);
+            mBluetoothLeScanner.startScan(scanFilters(), mScanPolicy.toScanSettings(), mScanCallback);
+        } else if (!waiting && mScanning) {
+            Log.d(TAG, "all devices are assigned");
+            stopScanning();
+        }
+    }
+
+    @SuppressLint("MissingPermission")
+    private void stopScanning() {
+        mHandler.removeCallbacks(mScanTimeout);
+        if (mScanning) {
+            mScanning = false;
+            mBluetoothLeScanner.stopScan(mScanCallback);
+        }
+    }
+
+    @NonNull
+    private List<ScanFilter> scanFilters() {
+        // ORPHE INSOLEはサービスUUIDによるフィルタをスキップしているため、含む場合はフィルタしない
+        if (mRouter.hasInsole()) {
+            return new ArrayList<>();
+        }
+        return Arrays.asList(
+                new ScanFilter.Builder()
+                        .setServiceUuid(ParcelUuid.fromString(GattUUIDDefine.UUID_SERVICE_ORPHE_OTHER_SERVICE.toString()))
+                        .build(),
+                new ScanFilter.Builder()
+                        .setServiceUuid(ParcelUuid.fromString(GattUUIDDefine.UUID_SERVICE_ORPHE_INFORMATION.toString()))
+                        .build());
+    }
+
+    private final ScanCallback mScanCallback = new ScanCallback() {
+        @SuppressLint("MissingPermission")
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            final BluetoothDevice device = result.getDevice();
+            final String deviceName = device.getName();
+            final ScanRecord record = result.getScanRecord();
+            final byte[] manufacturerData = record != null ? record.getManufacturerSpecificData(0) : null;
+            final boolean core = deviceName != null && deviceName.contains(DeviceNameDefine.ORPHE_CORE);
+            final OrpheSide side = OrpheScanRouter.advertisedSide(manufacturerData);
+            // ORPHE INSOLEは左右を含むアドバタイズで見分ける
+            final boolean insole = side != null && (core || (manufacturerData[0] == 1 && manufacturerData[5] == 1));
+            if (!core && !insole) {
+                return;
+            }
+            Log.d(TAG, "onScanResult:" + deviceName);
+            if (mScanning && !mFoundInScan) {
+                mFoundInScan = true;
+                mScanLatencyStats.record(result.getTimestampNanos() - mScanStartNanos);
+            }
+            final String address = device.getAddress();
+            mDevices.put(address, device);
+            final Target target = mRouter.route(address, core, insole, insole ? side : null);
+            if (target != null) {
+                target.onScanned(device);
+            }
+            updateScan();
+        }
+
+        @Override
+        public void onBatchScanResults(List<ScanResult> results) {
+            // [OrpheScanPolicy.reportDelayMillis]を指定した場合はまとめて届く
+            for (ScanResult result : results) {
+                onScanResult(ScanSettings.CALLBACK_TYPE_ALL_MATCHES, result);
+            }
+        }
+    };
+}
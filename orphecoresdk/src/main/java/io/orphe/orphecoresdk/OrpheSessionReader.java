@@ -0,0 +1,614 @@
+package io.orphe.orphecoresdk;
+
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * [OrpheSessionRecorder]で記録したファイルを読み込みます。
+ * ファイルはメモリマップされ、チャンクのインデックスだけを読み込んで時刻やシリアルナンバーの位置に移動します。
+ * 圧縮されたレコードは[Cursor]が読み込むチャンクだけを展開し、センサー値はレコードごとに必要になったときだけデコードします。
+ * 記録中に終了したなどでインデックスが壊れている場合は、先頭から読み込めるところまでを対象にします。
+ */
+public class OrpheSessionReader implements Closeable {
+    /// Deflateで圧縮できる最大の比率
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    private final RandomAccessFile mFile;
+    private final ByteBuffer mBuffer;
+
+    /**
+     * 加速度レンジ
+     */
+    @NonNull
+    public final OrpheAccRange accRange;
+
+    /**
+     * ジャイロレンジ
+     */
+    @NonNull
+    public final OrpheGyroRange gyroRange;
+
+    /**
+     * 取り付け位置
+     */
+    @NonNull
+    public final OrpheSidePosition sidePosition;
+
+    /**
+     * 記録を開始した時刻（エポックミリ秒）
+     */
+    public final long startEpochMillis;
+
+    private final int mChunkCount;
+    private final int[] mChunkStarts;
+    /// 圧縮したレコードのバイト数（途中で切れている場合は読み込めるバイト数）
+    private final int[] mCompressedLengths;
+    /// 展開したレコードの終わりの位置
+    private final int[] mRecordsEnds;
+    private final long[] mFirstMicros;
+    private final long[] mLastMicros;
+    /// チャンクのシリアルナンバーの範囲。折り返しを含む場合は最小が最大より大きい
+    private final int[] mMinSerialNumbers;
+    private final int[] mMaxSerialNumbers;
+    private final long mRecordCount;
+
+    /**
+     * [OrpheSessionRecorder]で記録したファイルを読み込みます。
+     *
+     * @param file 読み込むファイル
+     * @throws IOException ファイルを開けなかった場合や形式が異なる場合
+     */
+    public OrpheSessionReader(@NonNull File file) throws IOException {
+        mFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = mFile.getChannel();
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large: " + size);
+            }
+            if (size < OrpheSessionRecorder.HEADER_SIZE) {
+                throw new IOException("File is too short: " + size);
+            }
+            mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (mBuffer.getInt(0) != OrpheSessionRecorder.MAGIC) {
+                throw new IOException("Not an ORPHE session file");
+            }
+            final int version = mBuffer.getShort(4) & 0xFFFF;
+            if (version != OrpheSessionRecorder.VERSION) {
+                throw new IOException("Unsupported version: " + version);
+            }
+            accRange = OrpheAccRange.fromValue(mBuffer.get(6));
+            gyroRange = OrpheGyroRange.fromValue(mBuffer.get(7));
+            sidePosition = OrpheSidePosition.fromValue(mBuffer.get(8));
+            startEpochMillis = mBuffer.getLong(12);
+
+            ArrayList<int[]> chunks = indexFromFooters();
+            if (chunks == null) {
+                chunks = indexByScanning();
+            }
+            mChunkCount = chunks.size();
+            mChunkStarts = new int[mChunkCount];
+            mCompressedLengths = new int[mChunkCount];
+            mRecordsEnds = new int[mChunkCount];
+            mFirstMicros = new long[mChunkCount];
+            mLastMicros = new long[mChunkCount];
+            mMinSerialNumbers = new int[mChunkCount];
+            mMaxSerialNumbers = new int[mChunkCount];
+            long recordCount = 0;
+            for (int i = 0; i < mChunkCount; i++) {
+                final int[] chunk = chunks.get(i);
+                mChunkStarts[i] = chunk[0];
+                mCompressedLengths[i] = chunk[1];
+                mRecordsEnds[i] = chunk[2];
+                recordCount += chunk[3];
+            }
+            for (int i = 0; i < mChunkCount; i++) {
+                final int[] chunk = chunks.get(i);
+                if (chunk[4] >= 0) {
+                    // フッターから読み込む
+                    final int footer = chunk[4];
+                    mFirstMicros[i] = mBuffer.getLong(footer + 18);
+                    mLastMicros[i] = mBuffer.getLong(footer + 26);
+                    mMinSerialNumbers[i] = mBuffer.getShort(footer + 34) & 0xFFFF;
+                    mMaxSerialNumbers[i] = mBuffer.getShort(footer + 36) & 0xFFFF;
+                } else {
+                    fillFromRecords(i);
+                }
+            }
+            mRecordCount = recordCount;
+        } catch (IOException | RuntimeException e) {
+            mFile.close();
+            throw e;
+        }
+    }
+
+    /// フッターを末尾からたどってチャンクを探す。壊れている場合はnull
+    @Nullable
+    private ArrayList<int[]> indexFromFooters() {
+        final ArrayList<int[]> chunks = new ArrayList<>();
+        int end = mBuffer.limit();
+        while (end > OrpheSessionRecorder.HEADER_SIZE) {
+            final int footer = end - OrpheSessionRecorder.FOOTER_SIZE;
+            if (footer < OrpheSessionRecorder.HEADER_SIZE + OrpheSessionRecorder.CHUNK_HEADER_SIZE
+                    || (mBuffer.getShort(footer) & 0xFFFF) != OrpheSessionRecorder.FOOTER_MARKER
+                    || mBuffer.getInt(footer + 2) != OrpheSessionRecorder.FOOTER_MAGIC) {
+                return null;
+            }
+            final long start = mBuffer.getLong(footer + 10);
+            if (start < OrpheSessionRecorder.HEADER_SIZE || start > footer - OrpheSessionRecorder.CHUNK_HEADER_SIZE
+                    || (mBuffer.getShort((int) start) & 0xFFFF) != OrpheSessionRecorder.CHUNK_HEADER_MARKER) {
+                return null;
+            }
+            final int rawLength = mBuffer.getInt((int) start + 10);
+            final int compressedLength = mBuffer.getInt((int) start + 14);
+            if (!isValidLength(rawLength, compressedLength)
+                    || compressedLength != footer - start - OrpheSessionRecorder.CHUNK_HEADER_SIZE) {
+                return null;
+            }
+            chunks.add(0, new int[]{(int) start, compressedLength, rawLength, mBuffer.getInt(footer + 6), footer});
+            end = (int) start;
+        }
+        return chunks;
+    }
+
+    /// 先頭からチャンクのヘッダーをたどってチャンクを探す。途中で切れている場合は展開できるレコードまでを対象にする
+    @NonNull
+    private ArrayList<int[]> indexByScanning() {
+        final ArrayList<int[]> chunks = new ArrayList<>();
+        final int limit = mBuffer.limit();
+        int position = OrpheSessionRecorder.HEADER_SIZE;
+        while (position + OrpheSessionRecorder.CHUNK_HEADER_SIZE <= limit
+                && (mBuffer.getShort(position) & 0xFFFF) == OrpheSessionRecorder.CHUNK_HEADER_MARKER) {
+            final int start = position;
+            final int rawLength = mBuffer.getInt(start + 10);
+            final int compressedLength = mBuffer.getInt(start + 14);
+            if (!isValidLength(rawLength, compressedLength)) {
+                break;
+            }
+            final long footer = (long) start + OrpheSessionRecorder.CHUNK_HEADER_SIZE + compressedLength;
+            if (footer + OrpheSessionRecorder.FOOTER_SIZE <= limit
+                    && (mBuffer.getShort((int) footer) & 0xFFFF) == OrpheSessionRecorder.FOOTER_MARKER
+                    && mBuffer.getInt((int) footer + 2) == OrpheSessionRecorder.FOOTER_MAGIC) {
+                chunks.add(new int[]{start, compressedLength, rawLength, mBuffer.getInt((int) footer + 6), (int) footer});
+                position = (int) footer + OrpheSessionRecorder.FOOTER_SIZE;
+                continue;
+            }
+            // 書き込みの途中で終了したチャンクは、読み込めるところまで展開して完全なレコードを数える
+            final int available = Math.min(compressedLength, limit - start - OrpheSessionRecorder.CHUNK_HEADER_SIZE);
+            final byte[] records = new byte[rawLength];
+            final int inflated = inflate(start, available, new byte[available], records, rawLength);
+            int end = 0;
+            int count = 0;
+            while (true) {
+                final int next = recordEnd(records, end, inflated);
+                if (next < 0) {
+                    break;
+                }
+                end = next;
+                count++;
+            }
+            if (count > 0) {
+                chunks.add(new int[]{start, available, end, count, -1});
+            }
+            break;
+        }
+        return chunks;
+    }
+
+    /// 展開後のバイト数が圧縮後のバイト数から考えられる範囲かどうか。壊れた値で大きな配列を作らないようにする
+    private static boolean isValidLength(int rawLength, int compressedLength) {
+        return rawLength >= 0 && compressedLength >= 0 && rawLength <= (long) compressedLength * MAX_DEFLATE_RATIO + 64;
+    }
+
+    /// 展開したレコードの終わりの位置を返す。途中で切れているか、長さや経過時間が壊れている場合は-1
+    private static int recordEnd(@NonNull byte[] records, int position, int limit) {
+        if (position + 2 > limit) {
+            return -1;
+        }
+        final int length = ((records[position] & 0xFF) << 8) | (records[position + 1] & 0xFF);
+        if (length < OrpheSessionRecorder.MIN_PAYLOAD_SIZE || length > OrpheSessionRecorder.MAX_PAYLOAD_SIZE) {
+            return -1;
+        }
+        int p = position + 2;
+        final int varintEnd = Math.min(limit, p + OrpheSessionRecorder.MAX_VARINT_SIZE);
+        while (true) {
+            if (p >= varintEnd) {
+                return -1;
+            }
+            if ((records[p++] & 0x80) == 0) {
+                break;
+            }
+        }
+        return length <= limit - p ? p + length : -1;
+    }
+
+    /// チャンクの圧縮したレコードを展開し、展開できたバイト数を返す。途中で切れているか壊れている場合はそこまで
+    private int inflate(int chunkStart, int compressedLength, @NonNull byte[] input, @NonNull byte[] destination, int length) {
+        final ByteBuffer view = mBuffer.duplicate();
+        view.position(chunkStart + OrpheSessionRecorder.CHUNK_HEADER_SIZE);
+        view.get(input, 0, compressedLength);
+        final Inflater inflater = new Inflater();
+        int inflated = 0;
+        try {
+            inflater.setInput(input, 0, compressedLength);
+            while (inflated < length && !inflater.finished() && !inflater.needsInput() && !inflater.needsDictionary()) {
+                inflated += inflater.inflate(destination, inflated, length - inflated);
+            }
+        } catch (DataFormatException e) {
+            // 壊れている位置までを返す
+        } finally {
+            inflater.end();
+        }
+        return inflated;
+    }
+
+    private void fillFromRecords(int chunk) {
+        final Cursor cursor = new Cursor(chunk);
+        boolean first = true;
+        int firstSerialNumber = 0;
+        int minOffset = 0;
+        int maxOffset = 0;
+        while (cursor.nextInChunk()) {
+            if (first) {
+                mFirstMicros[chunk] = cursor.micros();
+                firstSerialNumber = cursor.serialNumber();
+                first = false;
+            }
+            mLastMicros[chunk] = cursor.micros();
+            // 再送されたパケットなどで順番に並ぶとは限らないため、最初のシリアルナンバーから見た最小と最大を求める
+            final int offset = OrpheSerialNumber.distance(firstSerialNumber, cursor.serialNumber());
+            minOffset = Math.min(minOffset, offset);
+            maxOffset = Math.max(maxOffset, offset);
+        }
+        mMinSerialNumbers[chunk] = OrpheSerialNumber.add(firstSerialNumber, minOffset);
+        mMaxSerialNumbers[chunk] = OrpheSerialNumber.add(firstSerialNumber, maxOffset);
+    }
+
+    /// チャンクのシリアルナンバーの範囲に含まれるかどうか
+    private boolean containsSerialNumber(int chunk, int serialNumber) {
+        final int min = mMinSerialNumbers[chunk];
+        return ((serialNumber - min) & (OrpheSerialNumber.MODULUS - 1))
+                <= ((mMaxSerialNumbers[chunk] - min) & (OrpheSerialNumber.MODULUS - 1));
+    }
+
+    /**
+     * チャンクの数を返します。
+     *
+     * @return チャンクの数
+     */
+    public int chunkCount() {
+        return mChunkCount;
+    }
+
+    /**
+     * レコードの数を返します。
+     *
+     * @return レコードの数
+     */
+    public long recordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * 最後のレコードの記録開始からの経過時間を返します。
+     *
+     * @return 経過時間（マイクロ秒）
+     */
+    public long durationMicros() {
+        return mChunkCount > 0 ? mLastMicros[mChunkCount - 1] : 0;
+    }
+
+    /**
+     * 先頭から読み込む[Cursor]を返します。
+     *
+     * @return 先頭の[Cursor]
+     */
+    @NonNull
+    public Cursor cursor() {
+        return new Cursor(0);
+    }
+
+    /**
+     * 指定した時刻以降の最初のレコードから読み込む[Cursor]を返します。
+     *
+     * @param micros 記録開始からの経過時間（マイクロ秒）
+     * @return [Cursor.next]で指定した時刻以降の最初のレコードが読み込まれる[Cursor]
+     */
+    @NonNull
+    public Cursor seekToTime(long micros) {
+        final Cursor cursor = new Cursor(findChunk(micros));
+        cursor.skipBefore(micros);
+        return cursor;
+    }
+
+    /**
+     * 指定した時刻以降で、指定したシリアルナンバーを持つ最初のレコードから読み込む[Cursor]を返します。
+     * シリアルナンバーは65535の次に0に戻るため、長い記録では同じシリアルナンバーが複数回現れます。
+     *
+     * @param serialNumber シリアルナンバー
+     * @param fromMicros 探し始める記録開始からの経過時間（マイクロ秒）
+     * @return [Cursor.next]で見つかったレコードが読み込まれる[Cursor]。見つからなかった場合はnull
+     */
+    @Nullable
+    public Cursor seekToSerialNumber(int serialNumber, long fromMicros) {
+        for (int chunk = findChunk(fromMicros); chunk < mChunkCount; chunk++) {
+            if (!containsSerialNumber(chunk, serialNumber)) {
+                continue;
+            }
+            final Cursor cursor = new Cursor(chunk);
+            while (cursor.nextInChunk()) {
+                if (cursor.micros() >= fromMicros && cursor.serialNumber() == serialNumber) {
+                    cursor.mHeld = true;
+                    return cursor;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 先頭から探して、指定したシリアルナンバーを持つ最初のレコードから読み込む[Cursor]を返します。
+     *
+     * @param serialNumber シリアルナンバー
+     * @return [Cursor.next]で見つかったレコードが読み込まれる[Cursor]。見つからなかった場合はnull
+     */
+    @Nullable
+    public Cursor seekToSerialNumber(int serialNumber) {
+        return seekToSerialNumber(serialNumber, 0);
+    }
+
+    /// 最後のレコードが指定時刻以降の最初のチャンク
+    private int findChunk(long micros) {
+        int low = 0;
+        int high = mChunkCount;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (mLastMicros[middle] < micros) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * ファイルを閉じます。
+     *
+     * @throws IOException 閉じられなかった場合
+     */
+    @Override
+    public void close() throws IOException {
+        mFile.close();
+    }
+
+    /**
+     * 記録したレコードを順番に読み込みます。生データはデコードするメソッドを呼んだときだけデコードされます。
+     * 1つの[Cursor]は1つのスレッドから使用してください。
+     */
+    public final class Cursor {
+        private final OrpheSessionRecorder.PayloadDelta mDelta = new OrpheSessionRecorder.PayloadDelta();
+        private byte[] mInput = new byte[0];
+        private byte[] mRecords = new byte[0];
+        /// 差分から戻した生データ
+        private byte[] mPayload = new byte[OrpheNotificationRingBuffer.DEFAULT_SLOT_SIZE];
+        private int mChunk;
+        /// 展開したレコードの終わりの位置
+        private int mRecordsEnd;
+        private int mPosition;
+        private long mMicros;
+        private int mPayloadLength = -1;
+        /// 読み込み済みのレコードを次の[next]でもう一度返す
+        private boolean mHeld;
+
+        private Cursor(int chunk) {
+            enterChunk(chunk);
+        }
+
+        private void enterChunk(int chunk) {
+            mChunk = chunk;
+            mPosition = 0;
+            mRecordsEnd = 0;
+            mDelta.reset();
+            if (chunk < mChunkCount) {
+                mMicros = mBuffer.getLong(mChunkStarts[chunk] + 2);
+                if (mInput.length < mCompressedLengths[chunk]) {
+                    mInput = new byte[mCompressedLengths[chunk]];
+                }
+                if (mRecords.length < mRecordsEnds[chunk]) {
+                    mRecords = new byte[mRecordsEnds[chunk]];
+                }
+                mRecordsEnd = inflate(mChunkStarts[chunk], mCompressedLengths[chunk], mInput, mRecords, mRecordsEnds[chunk]);
+            }
+        }
+
+        /// 指定時刻より前のレコードを読み飛ばす
+        private void skipBefore(long micros) {
+            while (next()) {
+                if (mMicros >= micros) {
+                    mHeld = true;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 次のレコードを読み込みます。
+         *
+         * @return 次のレコードがあった場合はtrue
+         */
+        public boolean next() {
+            if (mHeld) {
+                mHeld = false;
+                return true;
+            }
+            while (mChunk < mChunkCount) {
+                if (nextInChunk()) {
+                    return true;
+                }
+                enterChunk(mChunk + 1);
+            }
+            mPayloadLength = -1;
+            return false;
+        }
+
+        /// 読み込んでいるチャンクの次のレコードを読み込む。チャンクの終わりではfalse
+        private boolean nextInChunk() {
+            final int end = recordEnd(mRecords, mPosition, mRecordsEnd);
+            if (end < 0) {
+                // 壊れている場合はチャンクの残りを読み飛ばす
+                mPosition = mRecordsEnd;
+                return false;
+            }
+            final int length = ((mRecords[mPosition] & 0xFF) << 8) | (mRecords[mPosition + 1] & 0xFF);
+            int p = mPosition + 2;
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = mRecords[p++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            if (mPayload.length < length) {
+                mPayload = new byte[length];
+            }
+            System.arraycopy(mRecords, p, mPayload, 0, length);
+            mDelta.decode(mPayload, 0, length);
+            mMicros += delta;
+            mPayloadLength = length;
+            mPosition = end;
+            return true;
+        }
+
+        private void checkRecord() {
+            if (mPayloadLength < 0) {
+                throw new IllegalStateException("next() has not returned a record");
+            }
+        }
+
+        /**
+         * 記録開始からの経過時間を返します。
+         *
+         * @return 経過時間（マイクロ秒）
+         */
+        public long micros() {
+            checkRecord();
+            return mMicros;
+        }
+
+        /**
+         * 受信した時刻を返します。
+         *
+         * @return 受信した時刻（エポックミリ秒）
+         */
+        public long epochMillis() {
+            return startEpochMillis + micros() / 1000;
+        }
+
+        /**
+         * 生データの種類（先頭のバイト）を返します。
+         *
+         * @return 生データの種類
+         */
+        public int packetType() {
+            checkRecord();
+            return mPayload[0] & 0xFF;
+        }
+
+        /**
+         * シリアルナンバーを返します。
+         *
+         * @return シリアルナンバー
+         */
+        public int serialNumber() {
+            checkRecord();
+            return ((mPayload[1] & 0xFF) << 8) | (mPayload[2] & 0xFF);
+        }
+
+        /**
+         * 生データのバイト数を返します。
+         *
+         * @return 生データのバイト数
+         */
+        public int payloadLength() {
+            checkRecord();
+            return mPayloadLength;
+        }
+
+        /**
+         * 生データを配列にコピーします。
+         *
+         * @param destination コピー先の配列（[payloadLength]以上の長さが必要）
+         * @return コピーしたバイト数
+         */
+        public int copyPayload(@NonNull byte[] destination) {
+            checkRecord();
+            System.arraycopy(mPayload, 0, destination, 0, mPayloadLength);
+            return mPayloadLength;
+        }
+
+        @NonNull
+        private byte[] payload() {
+            checkRecord();
+            return mPayload;
+        }
+
+        /**
+         * ORPHE COREの生データとしてデコードします。
+         *
+         * @return センサー値
+         * @throws Exception デコードできなかった場合
+         */
+        @RequiresApi(api = Build.VERSION_CODES.O)
+        @NonNull
+        public OrpheSensorValue[] decodeSensorValues() throws Exception {
+            return OrpheSensorValue.fromBytes(payload(), sidePosition, accRange, gyroRange);
+        }
+
+        /**
+         * ORPHE INSOLEの生データとしてデコードします。
+         *
+         * @return センサー値
+         * @throws Exception デコードできなかった場合
+         */
+        @RequiresApi(api = Build.VERSION_CODES.O)
+        @NonNull
+        public OrpheInsoleValue[] decodeInsoleValues() throws Exception {
+            return OrpheInsoleValue.fromBytes(payload(), sidePosition, accRange, gyroRange);
+        }
+
+        /**
+         * ORPHE COREの生データとしてオブジェクトを作らずに[SensorFrameBatch]にデコードします。
+         *
+         * @param batch 書き込み先のバッファ
+         * @return 書き込んだサンプル数
+         */
+        public int decodeSensorValues(@NonNull SensorFrameBatch batch) {
+            return OrpheSensorValue.fromBytes(payload(), accRange, gyroRange, batch);
+        }
+
+        /**
+         * ORPHE INSOLEの生データとしてオブジェクトを作らずに[SensorFrameBatch]にデコードします。
+         *
+         * @param batch 書き込み先のバッファ
+         * @return 書き込んだサンプル数
+         */
+        public int decodeInsoleValues(@NonNull SensorFrameBatch batch) {
+            return OrpheInsoleValue.fromBytes(payload(), accRange, gyroRange, batch);
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Notifyで受け取った生データ（54/55/56）を受信時刻とともにバイナリファイルに記録します。
+ * 記録はチャンク単位で行い、各チャンクの末尾に時刻とシリアルナンバーの範囲を持つインデックスを書き込みます。
+ * 生データは前のサンプルから予測した値との差分にしてから、チャンクごとにDeflateで圧縮します。
+ * 圧縮とファイルへの書き込みは専用のデーモンスレッドで行い、書き込みが追いつかない場合は待たずに破棄して件数を記録します。
+ *
+ * <pre>
+ * ファイル: [ヘッダー][チャンク][チャンク]...
+ * ヘッダー: magic(4) version(2) accRange(1) gyroRange(1) sidePosition(1) 予約(3) 開始時刻のエポックミリ秒(8)
+ * チャンク: [0xFFFE(2) 基準マイクロ秒(8) 展開後のバイト数(4) 圧縮後のバイト数(4)][圧縮したレコード][フッター]
+ * レコード: 長さ(2) 前のレコードからの経過マイクロ秒(可変長) 差分にした生データ
+ * フッター: 0xFFFF(2) magic(4) レコード数(4) チャンクの開始位置(8) 最初のマイクロ秒(8) 最後のマイクロ秒(8) 最小のシリアルナンバー(2) 最大のシリアルナンバー(2)
+ * </pre>
+ * 数値はすべてビッグエンディアンで、マイクロ秒は記録開始からの経過時間です。
+ * 再送されたパケットなどでシリアルナンバーは順番に並ぶとは限らないため、フッターにはチャンクの最初のシリアルナンバーから見た最小と最大を書き込みます。
+ * 65535から0への折り返しを含む場合、最小が最大より大きくなります。
+ * 差分は[PayloadDelta]を参照してください。各チャンクは単独で展開できます。
+ */
+public class OrpheSessionRecorder implements Closeable {
+    /// ファイルの先頭の"ORPH"
+    static final int MAGIC = 0x4F525048;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 20;
+    static final int CHUNK_HEADER_MARKER = 0xFFFE;
+    static final int CHUNK_HEADER_SIZE = 18;
+    static final int FOOTER_MARKER = 0xFFFF;
+    /// フッターの"CIDX"
+    static final int FOOTER_MAGIC = 0x43494458;
+    static final int FOOTER_SIZE = 38;
+    /// 種類とシリアルナンバーを含む最小の生データのバイト数
+    static final int MIN_PAYLOAD_SIZE = 3;
+    static final int MAX_PAYLOAD_SIZE = 0xFFFD;
+    static final int MAX_VARINT_SIZE = 10;
+
+    /**
+     * デフォルトの1チャンクあたりの圧縮前の最大バイト数
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * デフォルトの書き込み待ちにできるチャンクの数
+     */
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+
+    private static final Chunk END = new Chunk(0);
+
+    /// 書き込み待ちのチャンク。記録するスレッドでレコードを追加し、書き込むスレッドで圧縮する
+    private static final class Chunk {
+        final ByteBuffer records;
+        long firstMicros;
+        long lastMicros;
+        int recordCount;
+        int firstSerialNumber;
+        /// 最初のシリアルナンバーからの差の最小と最大
+        int minSerialOffset;
+        int maxSerialOffset;
+
+        Chunk(int capacity) {
+            records = ByteBuffer.allocate(capacity);
+        }
+    }
+
+    private final FileOutputStream mStream;
+    private final FileChannel mChannel;
+    private final ArrayBlockingQueue<Chunk> mFree;
+    private final ArrayBlockingQueue<Chunk> mFilled;
+    private final Thread mWriter;
+    private final long mStartNanos;
+
+    private Chunk mCurrent;
+    private long mLastMicros;
+    private boolean mClosed;
+
+    /// 以下は書き込むスレッドだけが使う
+    private final PayloadDelta mDelta = new PayloadDelta();
+    private byte[] mOutput;
+    private long mNextChunkOffset = HEADER_SIZE;
+
+    private volatile IOException mError;
+    private volatile long mRecordCount;
+    private volatile long mDroppedCount;
+    private volatile long mChunkCount;
+    private volatile long mBytesWritten;
+
+    /**
+     * Notifyで受け取った生データをバイナリファイルに記録します。
+     *
+     * @param file 書き込むファイル（既にある場合は上書きします）
+     * @param accRange 加速度レンジ
+     * @param gyroRange ジャイロレンジ
+     * @param sidePosition 取り付け位置
+     * @param chunkSize 1チャンクあたりの圧縮前の最大バイト数
+     * @param bufferCount 書き込み待ちにできるチャンクの数
+     * @throws IOException ファイルを開けなかった場合
+     */
+    public OrpheSessionRecorder(@NonNull File file, @NonNull OrpheAccRange accRange, @NonNull OrpheGyroRange gyroRange,
+                                @NonNull OrpheSidePosition sidePosition, int chunkSize, int bufferCount) throws IOException {
+        if (chunkSize < CHUNK_HEADER_SIZE + FOOTER_SIZE + 2 + MAX_VARINT_SIZE + 1 || bufferCount < 1) {
+            throw new IllegalArgumentException("chunkSize or bufferCount is too small");
+        }
+        mStream = new FileOutputStream(file);
+        mChannel = mStream.getChannel();
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort((short) VERSION);
+        header.put((byte) accRange.ordinal());
+        header.put((byte) gyroRange.ordinal());
+        header.put((byte) sidePosition.ordinal());
+        header.put(new byte[3]);
+        header.putLong(System.currentTimeMillis());
+        header.flip();
+        try {
+            while (header.hasRemaining()) {
+                mChannel.write(header);
+            }
+        } catch (IOException e) {
+            mStream.close();
+            throw e;
+        }
+        mStartNanos = System.nanoTime();
+        mBytesWritten = HEADER_SIZE;
+
+        mFree = new ArrayBlockingQueue<>(bufferCount);
+        mFilled = new ArrayBlockingQueue<>(bufferCount + 1);
+        for (int i = 0; i < bufferCount; i++) {
+            mFree.add(new Chunk(chunkSize - CHUNK_HEADER_SIZE - FOOTER_SIZE));
+        }
+        mOutput = new byte[chunkSize];
+        mWriter = new Thread(this::runWriter, OrpheSessionRecorder.class.getSimpleName());
+        // [close]を呼ばずに終了した場合もアプリの終了を妨げない。閉じていないチャンクは失われるが、[OrpheSessionReader]は書き込めたところまで読み込む
+        mWriter.setDaemon(true);
+        mWriter.start();
+    }
+
+    /**
+     * Notifyで受け取った生データをバイナリファイルに記録します。
+     *
+     * @param file 書き込むファイル（既にある場合は上書きします）
+     * @param accRange 加速度レンジ
+     * @param gyroRange ジャイロレンジ
+     * @param sidePosition 取り付け位置
+     * @throws IOException ファイルを開けなかった場合
+     */
+    public OrpheSessionRecorder(@NonNull File file, @NonNull OrpheAccRange accRange, @NonNull OrpheGyroRange gyroRange,
+                                @NonNull OrpheSidePosition sidePosition) throws IOException {
+        this(file, accRange, gyroRange, sidePosition, DEFAULT_CHUNK_SIZE, DEFAULT_BUFFER_COUNT);
+    }
+
+    /**
+     * 生データを追加します。書き込み用の領域が空いていない場合は待たずに破棄します。
+     *
+     * @param value 生データ
+     * @param length 生データのバイト数
+     * @param receivedNanos 受信時刻（[System.nanoTime]）
+     */
+    synchronized void append(@NonNull byte[] value, int length, long receivedNanos) {
+        if (mClosed) {
+            return;
+        }
+        if (length < MIN_PAYLOAD_SIZE || length > MAX_PAYLOAD_SIZE) {
+            mDroppedCount++;
+            return;
+        }
+        final long micros = Math.max(mLastMicros, (receivedNanos - mStartNanos) / 1000);
+        final int maxRecordSize = 2 + MAX_VARINT_SIZE + length;
+        if (mCurrent != null && mCurrent.records.remaining() < maxRecordSize) {
+            finishChunk();
+        }
+        final int serialNumber = ((value[1] & 0xFF) << 8) | (value[2] & 0xFF);
+        if (mCurrent == null) {
+            final Chunk chunk = mFree.poll();
+            if (chunk == null || chunk.records.remaining() < maxRecordSize) {
+                if (chunk != null) {
+                    mFree.offer(chunk);
+                }
+                mDroppedCount++;
+                return;
+            }
+            mCurrent = chunk;
+            chunk.firstMicros = micros;
+            chunk.recordCount = 0;
+            chunk.firstSerialNumber = serialNumber;
+            chunk.minSerialOffset = 0;
+            chunk.maxSerialOffset = 0;
+            mLastMicros = micros;
+        }
+        final Chunk chunk = mCurrent;
+        // 差分と圧縮は書き込むスレッドで行い、ここではコピーだけにする
+        chunk.records.putShort((short) length);
+        putVarint(chunk.records, micros - mLastMicros);
+        chunk.records.put(value, 0, length);
+        mLastMicros = micros;
+        chunk.lastMicros = micros;
+        final int serialOffset = OrpheSerialNumber.distance(chunk.firstSerialNumber, serialNumber);
+        chunk.minSerialOffset = Math.min(chunk.minSerialOffset, serialOffset);
+        chunk.maxSerialOffset = Math.max(chunk.maxSerialOffset, serialOffset);
+        chunk.recordCount++;
+        mRecordCount++;
+    }
+
+    /**
+     * 書き込み中のチャンクを閉じて書き込み待ちにします。
+     */
+    public synchronized void flush() {
+        if (mCurrent != null) {
+            finishChunk();
+        }
+    }
+
+    /**
+     * 残りのデータを書き込んでファイルを閉じます。
+     *
+     * @throws IOException 書き込みに失敗していた場合
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            flush();
+            mClosed = true;
+            mFilled.add(END);
+        }
+        try {
+            mWriter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            mStream.close();
+        }
+        if (mError != null) {
+            throw mError;
+        }
+    }
+
+    private void finishChunk() {
+        final Chunk chunk = mCurrent;
+        mCurrent = null;
+        mChunkCount++;
+        // 空き領域の数しか存在しないので必ず入る
+        mFilled.add(chunk);
+    }
+
+    private void runWriter() {
+        final Deflater deflater = new Deflater();
+        try {
+            while (true) {
+                final Chunk chunk = mFilled.take();
+                if (chunk == END) {
+                    return;
+                }
+                final ByteBuffer output = compress(chunk, deflater);
+                final int size = output.remaining();
+                while (output.hasRemaining()) {
+                    mChannel.write(output);
+                }
+                mNextChunkOffset += size;
+                mBytesWritten += size;
+                chunk.records.clear();
+                mFree.add(chunk);
+            }
+        } catch (IOException e) {
+            // 以降は空き領域が戻らないため、追加されたデータは破棄される
+            mError = e;
+        } catch (InterruptedException e) {
+            mError = new InterruptedIOException();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /// レコードの生データを差分にして圧縮し、チャンクのヘッダーとフッターを付ける
+    @NonNull
+    private ByteBuffer compress(@NonNull Chunk chunk, @NonNull Deflater deflater) {
+        final byte[] records = chunk.records.array();
+        final int rawLength = chunk.records.position();
+        mDelta.reset();
+        int position = 0;
+        while (position < rawLength) {
+            final int length = ((records[position] & 0xFF) << 8) | (records[position + 1] & 0xFF);
+            position += 2;
+            while ((records[position++] & 0x80) != 0) {
+                // 経過マイクロ秒の可変長を読み飛ばす
+            }
+            mDelta.encode(records, position, length);
+            position += length;
+        }
+
+        deflater.reset();
+        deflater.setInput(records, 0, rawLength);
+        deflater.finish();
+        int end = CHUNK_HEADER_SIZE;
+        while (!deflater.finished()) {
+            if (mOutput.length - end < FOOTER_SIZE + 64) {
+                mOutput = Arrays.copyOf(mOutput, mOutput.length * 2);
+            }
+            end += deflater.deflate(mOutput, end, mOutput.length - end - FOOTER_SIZE);
+        }
+        final ByteBuffer output = ByteBuffer.wrap(mOutput);
+        output.putShort((short) CHUNK_HEADER_MARKER);
+        output.putLong(chunk.firstMicros);
+        output.putInt(rawLength);
+        output.putInt(end - CHUNK_HEADER_SIZE);
+        output.position(end);
+        output.putShort((short) FOOTER_MARKER);
+        output.putInt(FOOTER_MAGIC);
+        output.putInt(chunk.recordCount);
+        output.putLong(mNextChunkOffset);
+        output.putLong(chunk.firstMicros);
+        output.putLong(chunk.lastMicros);
+        output.putShort((short) OrpheSerialNumber.add(chunk.firstSerialNumber, chunk.minSerialOffset));
+        output.putShort((short) OrpheSerialNumber.add(chunk.firstSerialNumber, chunk.maxSerialOffset));
+        output.flip();
+        return output;
+    }
+
+    private static void putVarint(@NonNull ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * 記録したレコードの数を返します。
+     *
+     * @return レコードの数
+     */
+    public long recordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * 書き込みが追いつかず破棄したレコードの数を返します。
+     *
+     * @return 破棄したレコードの数
+     */
+    public long droppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * 閉じたチャンクの数を返します。
+     *
+     * @return チャンクの数
+     */
+    public long chunkCount() {
+        return mChunkCount;
+    }
+
+    /**
+     * ファイルに書き込んだ圧縮後のバイト数を返します。
+     *
+     * @return 書き込んだバイト数
+     */
+    public long bytesWritten() {
+        return mBytesWritten;
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public String toString() {
+        return String.format("recorder:(records=%d, dropped=%d, chunks=%d, bytes=%d)",
+                recordCount(), droppedCount(), chunkCount(), bytesWritten());
+    }
+
+    /**
+     * 生データを、前のサンプルから予測した値との差分に置き換えます。
+     * 54/55/56はサンプルごとに、2つ前までのサンプルを結んだ直線で予測します。パケットで古い方のサンプルは、
+     * 同じチャンクで前に記録した同じ種類と長さのパケットのサンプルを使います。それ以外の種類は前のパケットの値を予測とします。
+     * 先頭の種類はそのまま、ヘッダー（8バイト目まで）は前のパケットとバイトごとに引き算します。
+     * センサー値はビッグエンディアンの16ビットごとに引き算し、符号をzigzagで最下位ビットに移してから、上位バイトをすべて並べた後に下位バイトを並べます。
+     * 予測との差は小さいため、上位バイトはほとんどが0になり圧縮しやすくなります。
+     */
+    static final class PayloadDelta {
+        /// センサー値が始まる位置
+        static final int WORDS_OFFSET = 8;
+
+        private final byte[][] mPrevious = new byte[256][];
+        private final int[] mPreviousLength = new int[256];
+        private int[] mValues = new int[0];
+        /// 上位と下位のバイトを分けて並べ替えるための領域
+        private byte[] mWords = new byte[0];
+
+        PayloadDelta() {
+            reset();
+        }
+
+        /**
+         * 前の生データを忘れます。チャンクの先頭で呼びます。
+         */
+        void reset() {
+            Arrays.fill(mPreviousLength, -1);
+        }
+
+        /**
+         * 生データを差分に置き換えます。
+         *
+         * @param bytes 生データを含む配列
+         * @param offset 生データの位置
+         * @param length 生データのバイト数
+         */
+        void encode(@NonNull byte[] bytes, int offset, int length) {
+            apply(bytes, offset, length, true);
+        }
+
+        /**
+         * [encode]で置き換えた差分を生データに戻します。
+         *
+         * @param bytes 差分を含む配列
+         * @param offset 差分の位置
+         * @param length 差分のバイト数
+         */
+        void decode(@NonNull byte[] bytes, int offset, int length) {
+            apply(bytes, offset, length, false);
+        }
+
+        /// 1サンプルの16ビットの数。分からない種類は0
+        private static int sampleWords(int type) {
+            switch (type) {
+                case 54:
+                    return 6;
+                case 55:
+                    return 12;
+                case 56:
+                    return 16;
+                default:
+                    return 0;
+            }
+        }
+
+        private void apply(@NonNull byte[] bytes, int offset, int length, boolean encode) {
+            if (length < 1) {
+                return;
+            }
+            final int type = bytes[offset] & 0xFF;
+            byte[] previous = mPrevious[type];
+            if (previous == null || previous.length < length) {
+                previous = new byte[length];
+                mPrevious[type] = previous;
+                mPreviousLength[type] = -1;
+            }
+            final boolean hasPrevious = mPreviousLength[type] == length;
+            final int header = Math.min(WORDS_OFFSET, length);
+            for (int i = 1; i < header; i++) {
+                applyByte(bytes, offset + i, previous, i, encode, hasPrevious);
+            }
+
+            final int words = (length - header) / 2;
+            final int from = offset + header;
+            final int stride = sampleWords(type);
+            if (mValues.length < words) {
+                mValues = new int[words];
+                mWords = new byte[words * 2];
+            }
+            if (encode) {
+                for (int k = 0; k < words; k++) {
+                    mValues[k] = ((bytes[from + k * 2] & 0xFF) << 8) | (bytes[from + k * 2 + 1] & 0xFF);
+                }
+                for (int k = 0; k < words; k++) {
+                    final int delta = (short) (mValues[k] - reference(k, words, stride, previous, header, hasPrevious));
+                    final int zigzag = (delta << 1) ^ (delta >> 31);
+                    mWords[k] = (byte) (zigzag >> 8);
+                    mWords[words + k] = (byte) zigzag;
+                }
+            } else {
+                // データ中の位置が0のサンプルが最新なので、古いサンプルから戻す
+                for (int k = words - 1; k >= 0; k--) {
+                    final int zigzag = ((bytes[from + k] & 0xFF) << 8) | (bytes[from + words + k] & 0xFF);
+                    final int delta = (zigzag >>> 1) ^ -(zigzag & 1);
+                    mValues[k] = (delta + reference(k, words, stride, previous, header, hasPrevious)) & 0xFFFF;
+                    mWords[k * 2] = (byte) (mValues[k] >> 8);
+                    mWords[k * 2 + 1] = (byte) mValues[k];
+                }
+            }
+            System.arraycopy(mWords, 0, bytes, from, words * 2);
+            for (int k = 0; k < words; k++) {
+                previous[header + k * 2] = (byte) (mValues[k] >> 8);
+                previous[header + k * 2 + 1] = (byte) mValues[k];
+            }
+            final int last = header + words * 2;
+            if (last < length) {
+                applyByte(bytes, offset + last, previous, last, encode, hasPrevious);
+            }
+            mPreviousLength[type] = length;
+        }
+
+        /// 引き算する元の値。2つ前までのサンプルから直線で予測し、1つしかない場合はその値
+        private int reference(int k, int words, int stride, @NonNull byte[] previous, int header, boolean hasPrevious) {
+            final int older = older(k, 1, words, stride, previous, header, hasPrevious);
+            if (older < 0) {
+                return 0;
+            }
+            final int oldest = older(k, 2, words, stride, previous, header, hasPrevious);
+            if (oldest < 0) {
+                return older;
+            }
+            return (short) older * 2 - (short) oldest;
+        }
+
+        /// [count]個古いサンプルの同じ値。パケット内になければ前のパケットから探し、ない場合は-1
+        private int older(int k, int count, int words, int stride, @NonNull byte[] previous, int header, boolean hasPrevious) {
+            int j = k + count * (stride > 0 ? stride : words);
+            if (j < words) {
+                return mValues[j];
+            }
+            j -= words;
+            if (!hasPrevious || j >= words) {
+                return -1;
+            }
+            return ((previous[header + j * 2] & 0xFF) << 8) | (previous[header + j * 2 + 1] & 0xFF);
+        }
+
+        private static void applyByte(@NonNull byte[] bytes, int index, @NonNull byte[] previous, int previousIndex,
+                                      boolean encode, boolean hasPrevious) {
+            final int stored = bytes[index];
+            final int value = encode || !hasPrevious ? stored : stored + previous[previousIndex];
+            bytes[index] = (byte) (encode && hasPrevious ? stored - previous[previousIndex] : value);
+            previous[previousIndex] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 複数のデバイスのセンサー値を共通の時間軸で組にします。
+ * 各デバイスの[SensorFrameBatch.timestamp]は[OrpheDeviceClock]で端末の時計に対応付けられているため、
+ * その時刻が最も近いサンプル同士を組にします。
+ * ストリーム0を基準とし、基準のサンプルごとに他のストリームから[toleranceMillis]以内で最も近いサンプルを選びます。
+ * 他のストリームのサンプルが届くのを待つのは、いずれかのストリームが[maxLatencyMillis]だけ先に進むまでです。
+ * 組にできなかったサンプルは捨てます。
+ * 組にしたサンプル同士の時刻の差は[alignmentError]で集計されます。
+ */
+public class OrpheStreamMerger {
+    /// [select]でまだ決められないことを表す値
+    private static final int WAIT = -1;
+    /// [select]で組にできるサンプルがないことを表す値
+    private static final int NONE = -2;
+
+    /**
+     * 組にしたサンプルを受け取るリスナー。
+     */
+    public interface Listener {
+        /**
+         * サンプルを組にしたときに呼ばれます。
+         *
+         * @param frame ストリームの順に1サンプルずつ格納した[SensorFrameBatch]。コールバックの中でのみ有効です
+         */
+        void onMergedFrame(@NonNull SensorFrameBatch frame);
+    }
+
+    /**
+     * ストリームの数
+     */
+    public final int streamCount;
+
+    /**
+     * 組にするサンプル同士の時刻の差の上限（ミリ秒）
+     */
+    public final long toleranceMillis;
+
+    /**
+     * 他のストリームのサンプルを待つ最大の時間（ミリ秒）
+     */
+    public final long maxLatencyMillis;
+
+    @NonNull
+    private final Listener mListener;
+    private final SensorFrameBatch[] mBuffers;
+    private final int[] mHeads;
+    private final int[] mSelected;
+    @NonNull
+    private final SensorFrameBatch mFrame;
+    private final OrpheLatencyStats mAlignmentError = new OrpheLatencyStats();
+    private long mMergedCount;
+    private long mDroppedCount;
+
+    /**
+     * 複数のデバイスのセンサー値を共通の時間軸で組にします。
+     *
+     * @param streamCount ストリームの数（2以上）
+     * @param toleranceMillis 組にするサンプル同士の時刻の差の上限（ミリ秒）。サンプリング周期の半分程度を指定してください
+     * @param maxLatencyMillis 他のストリームのサンプルを待つ最大の時間（ミリ秒）
+     * @param listener 組にしたサンプルを受け取るリスナー
+     */
+    public OrpheStreamMerger(int streamCount, long toleranceMillis, long maxLatencyMillis, @NonNull Listener listener) {
+        if (streamCount < 2) {
+            throw new IllegalArgumentException("streamCount must be at least 2");
+        }
+        if (toleranceMillis < 0 || maxLatencyMillis < toleranceMillis) {
+            throw new IllegalArgumentException("maxLatencyMillis must not be less than toleranceMillis");
+        }
+        this.streamCount = streamCount;
+        this.toleranceMillis = toleranceMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+        mListener = listener;
+        // 200Hzで待つ時間の倍と、1回のNotify分を保持できる大きさにする
+        final int capacity = (int) Math.min(4096, Math.max(64, maxLatencyMillis * 2 / 5 + SensorFrameBatch.MAX_SAMPLES_PER_PACKET * 2));
+        mBuffers = new SensorFrameBatch[streamCount];
+        for (int i = 0; i < streamCount; i++) {
+            mBuffers[i] = new SensorFrameBatch(capacity);
+        }
+        mHeads = new int[streamCount];
+        mSelected = new int[streamCount];
+        mFrame = new SensorFrameBatch(Math.max(streamCount, SensorFrameBatch.MAX_SAMPLES_PER_PACKET));
+    }
+
+    /**
+     * ストリームにサンプルを追加し、組にできるものを[Listener.onMergedFrame]に渡します。
+     * [OrpheInsoleCallback.gotSensorFrames]などで受け取った[SensorFrameBatch]をそのまま渡せます。
+     * 各ストリームのサンプルは時刻の順に追加してください。
+     *
+     * @param stream ストリームの番号
+     * @param frames 追加するサンプル
+     */
+    public synchronized void add(int stream, @NonNull SensorFrameBatch frames) {
+        final SensorFrameBatch buffer = mBuffers[stream];
+        for (int i = 0; i < frames.size(); i++) {
+            if (buffer.remaining() == 0) {
+                compact(stream);
+                if (buffer.remaining() == 0) {
+                    // 待ちきれないほど溜まった場合は古いものから捨てる
+                    mHeads[stream]++;
+                    mDroppedCount++;
+                    compact(stream);
+                }
+            }
+            buffer.add(frames, i);
+        }
+        merge();
+    }
+
+    private void merge() {
+        final SensorFrameBatch reference = mBuffers[0];
+        long newest = Long.MIN_VALUE;
+        for (int s = 0; s < streamCount; s++) {
+            final SensorFrameBatch buffer = mBuffers[s];
+            if (buffer.size() > mHeads[s]) {
+                newest = Math.max(newest, buffer.timestamp[buffer.size() - 1]);
+            }
+        }
+        while (mHeads[0] < reference.size()) {
+            final long time = reference.timestamp[mHeads[0]];
+            final boolean expired = newest - time > maxLatencyMillis;
+            boolean matched = true;
+            for (int s = 1; s < streamCount; s++) {
+                final int selected = select(s, time, expired);
+                if (selected == WAIT) {
+                    return;
+                }
+                mSelected[s] = selected;
+                matched &= selected != NONE;
+            }
+            if (matched) {
+                emit(time);
+            } else {
+                mDroppedCount++;
+            }
+            mHeads[0]++;
+        }
+    }
+
+    /// 基準の時刻に最も近いサンプルを選ぶ。まだ決められない場合はWAIT、ない場合はNONE
+    private int select(int stream, long time, boolean expired) {
+        final SensorFrameBatch buffer = mBuffers[stream];
+        // 基準の時刻より許容範囲以上古いサンプルは、この先も組にならない
+        while (mHeads[stream] < buffer.size() && buffer.timestamp[mHeads[stream]] < time - toleranceMillis) {
+            mHeads[stream]++;
+            mDroppedCount++;
+        }
+        int best = NONE;
+        long bestDistance = Long.MAX_VALUE;
+        for (int i = mHeads[stream]; i < buffer.size(); i++) {
+            final long distance = Math.abs(buffer.timestamp[i] - time);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+            if (buffer.timestamp[i] >= time) {
+                // 以降のサンプルはさらに離れる
+                return bestDistance <= toleranceMillis ? best : NONE;
+            }
+        }
+        if (!expired) {
+            return WAIT;
+        }
+        return bestDistance <= toleranceMillis ? best : NONE;
+    }
+
+    private void emit(long time) {
+        mFrame.clear();
+        mFrame.add(mBuffers[0], mHeads[0]);
+        long min = time;
+        long max = time;
+        for (int s = 1; s < streamCount; s++) {
+            final SensorFrameBatch buffer = mBuffers[s];
+            final int selected = mSelected[s];
+            mFrame.add(buffer, selected);
+            min = Math.min(min, buffer.timestamp[selected]);
+            max = Math.max(max, buffer.timestamp[selected]);
+            // 選ばなかった古いサンプルは捨て、選んだサンプルは次の組に使わない
+            mDroppedCount += selected - mHeads[s];
+            mHeads[s] = selected + 1;
+        }
+        mMergedCount++;
+        mAlignmentError.record((max - min) * 1_000_000L);
+        mListener.onMergedFrame(mFrame);
+    }
+
+    private void compact(int stream) {
+        mBuffers[stream].removeFirst(mHeads[stream]);
+        mHeads[stream] = 0;
+    }
+
+    /**
+     * まだ組にしていないサンプルの数を返します。
+     *
+     * @param stream ストリームの番号
+     * @return サンプルの数
+     */
+    public synchronized int pendingCount(int stream) {
+        return mBuffers[stream].size() - mHeads[stream];
+    }
+
+    /**
+     * 組にした数を返します。
+     *
+     * @return 組にした数
+     */
+    public synchronized long mergedCount() {
+        return mMergedCount;
+    }
+
+    /**
+     * 組にできずに捨てたサンプルの数を返します。
+     *
+     * @return 捨てたサンプルの数
+     */
+    public synchronized long droppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * 組にしたサンプル同士の時刻の差（最も早いサンプルと最も遅いサンプルの差）の集計を返します。
+     *
+     * @return 時刻の差の集計
+     */
+    @NonNull
+    public OrpheLatencyStats alignmentError() {
+        return mAlignmentError;
+    }
+
+    /**
+     * 組にしていないサンプルと集計を破棄します。再接続した後などに呼んでください。
+     */
+    public synchronized void clear() {
+        for (int s = 0; s < streamCount; s++) {
+            mBuffers[s].clear();
+            mHeads[s] = 0;
+        }
+        mMergedCount = 0;
+        mDroppedCount = 0;
+        mAlignmentError.reset();
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public synchronized String toString() {
+        return String.format("merger:(merged=%d, dropped=%d, error=%s)", mMergedCount, mDroppedCount, mAlignmentError);
+    }
+}
@@ -0,0 +1,112 @@
+package io.orphe.orphecoresdk;
+
+/**
+ * Notifyで受け取ったデータ量からスループット（バイト/秒）を集計します。
+ * 最初に受け取ってから最後に受け取るまでの平均と、1秒ごとの区間の最大を記録します。
+ */
+public class OrpheThroughputMeter {
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+
+    private long mBytes;
+    private long mPackets;
+    private long mFirstNanos;
+    private long mLastNanos;
+    private long mFirstBytes;
+    private long mWindowStartNanos;
+    private long mWindowBytes;
+    private double mPeakBytesPerSecond;
+
+    /**
+     * 受け取ったデータ量を記録します。
+     *
+     * @param bytes 受け取ったバイト数
+     * @param receivedNanos 受信時刻（[System.nanoTime]）
+     */
+    public synchronized void record(int bytes, long receivedNanos) {
+        if (mPackets == 0) {
+            mFirstNanos = receivedNanos;
+            mFirstBytes = bytes;
+            mWindowStartNanos = receivedNanos;
+        } else if (receivedNanos - mWindowStartNanos >= WINDOW_NANOS) {
+            // 区間の最後に受け取った時刻までで区切り、今回のデータは次の区間に含める
+            final long elapsed = mLastNanos - mWindowStartNanos;
+            if (elapsed > 0) {
+                mPeakBytesPerSecond = Math.max(mPeakBytesPerSecond, mWindowBytes * 1e9 / elapsed);
+            }
+            mWindowStartNanos = mLastNanos;
+            mWindowBytes = 0;
+        }
+        mBytes += bytes;
+        mPackets++;
+        mLastNanos = receivedNanos;
+        if (mPackets > 1) {
+            mWindowBytes += bytes;
+        }
+    }
+
+    /**
+     * 記録したバイト数を返します。
+     *
+     * @return バイト数
+     */
+    public synchronized long bytes() {
+        return mBytes;
+    }
+
+    /**
+     * 記録したNotifyの数を返します。
+     *
+     * @return Notifyの数
+     */
+    public synchronized long packets() {
+        return mPackets;
+    }
+
+    /**
+     * 最初に受け取ってから最後に受け取るまでの平均のスループットを返します。
+     * 最初のNotifyは受け取るまでの時間が分からないため含めません。
+     *
+     * @return スループット（バイト/秒）。2回以上記録していない場合は0
+     */
+    public synchronized double bytesPerSecond() {
+        final long elapsed = mLastNanos - mFirstNanos;
+        if (mPackets < 2 || elapsed <= 0) {
+            return 0;
+        }
+        return (mBytes - mFirstBytes) * 1e9 / elapsed;
+    }
+
+    /**
+     * 1秒ごとの区間のスループットの最大を返します。
+     * 1秒に満たない場合は[bytesPerSecond]を返します。
+     *
+     * @return スループット（バイト/秒）
+     */
+    public synchronized double peakBytesPerSecond() {
+        return mPeakBytesPerSecond > 0 ? mPeakBytesPerSecond : bytesPerSecond();
+    }
+
+    /**
+     * 記録をリセットします。
+     */
+    public synchronized void reset() {
+        mBytes = 0;
+        mPackets = 0;
+        mFirstNanos = 0;
+        mLastNanos = 0;
+        mFirstBytes = 0;
+        mWindowStartNanos = 0;
+        mWindowBytes = 0;
+        mPeakBytesPerSecond = 0;
+    }
+
+    /**
+     * 文字列に変換します。
+     *
+     * @return 文字列
+     */
+    public synchronized String toString() {
+        return String.format("throughput:(bytes=%d, packets=%d, average=%.0fB/s, peak=%.0fB/s)",
+                mBytes, mPackets, bytesPerSecond(), peakBytesPerSecond());
+    }
+}
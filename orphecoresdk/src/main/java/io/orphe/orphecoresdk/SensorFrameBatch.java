@@ -0,0 +1,304 @@
+package io.orphe.orphecoresdk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * センサー値をプリミティブ配列で保持する再利用可能なバッファ。
+ * [OrpheSensorValue.fromBytes]や[OrpheInsoleValue.fromBytes]にこのバッファを渡すと、
+ * オブジェクトを生成せずに値を書き込みます。
+ * 同じインスタンスを[clear]して使い回すことでNotifyごとのメモリ確保をなくせます。
+ */
+public class SensorFrameBatch {
+    /**
+     * １回のNotifyで送られる最大のサンプル数。
+     */
+    public static final int MAX_SAMPLES_PER_PACKET = 8;
+
+    /**
+     * センサー値をプリミティブ配列で保持する再利用可能なバッファ。
+     *
+     * @param capacity 保持できるサンプル数
+     */
+    public SensorFrameBatch(final int capacity) {
+        if (capacity < MAX_SAMPLES_PER_PACKET) {
+            throw new IllegalArgumentException("capacity must be at least " + MAX_SAMPLES_PER_PACKET);
+        }
+        this.capacity = capacity;
+        serialNumber = new int[capacity];
+        dataPosition = new int[capacity];
+        deviceTime = new long[capacity];
+        timestamp = new long[capacity];
+        quatW = new float[capacity];
+        quatX = new float[capacity];
+        quatY = new float[capacity];
+        quatZ = new float[capacity];
+        gyroX = new float[capacity];
+        gyroY = new float[capacity];
+        gyroZ = new float[capacity];
+        accX = new float[capacity];
+        accY = new float[capacity];
+        accZ = new float[capacity];
+        pressureToeOutside = new float[capacity];
+        pressureMidOutside = new float[capacity];
+        pressureToeInside = new float[capacity];
+        pressureCenter = new float[capacity];
+        pressureMidInside = new float[capacity];
+        pressureHeel = new float[capacity];
+    }
+
+    /**
+     * 保持できるサンプル数
+     */
+    public final int capacity;
+
+    /**
+     * シリアルナンバー
+     */
+    public final int[] serialNumber;
+
+    /**
+     * 同じデータ中の位置
+     */
+    public final int[] dataPosition;
+
+    /**
+     * デバイスの時刻（その日の0時からのミリ秒）
+     */
+    public final long[] deviceTime;
+
+    /**
+     * タイムスタンプ（エポックミリ秒）。[OrpheDeviceClock]を指定せずに書き込んだ場合は0になります。
+     */
+    public final long[] timestamp;
+
+    /**
+     * クオータニオン
+     */
+    public final float[] quatW;
+    public final float[] quatX;
+    public final float[] quatY;
+    public final float[] quatZ;
+
+    /**
+     * ジャイロによる角度
+     */
+    public final float[] gyroX;
+    public final float[] gyroY;
+    public final float[] gyroZ;
+
+    /**
+     * 加速度
+     */
+    public final float[] accX;
+    public final float[] accY;
+    public final float[] accZ;
+
+    /**
+     * 圧力の値（ORPHE INSOLEのみ）
+     */
+    public final float[] pressureToeOutside;
+    public final float[] pressureMidOutside;
+    public final float[] pressureToeInside;
+    public final float[] pressureCenter;
+    public final float[] pressureMidInside;
+    public final float[] pressureHeel;
+
+    private int mSize;
+    @Nullable
+    private OrpheInsoleCalibration mCalibration;
+
+    /**
+     * 現在格納されているサンプル数を返します。
+     *
+     * @return 格納されているサンプル数
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * 残りの格納可能なサンプル数を返します。
+     *
+     * @return 残りの格納可能なサンプル数
+     */
+    public int remaining() {
+        return capacity - mSize;
+    }
+
+    /**
+     * 格納されているサンプルを破棄します。配列はそのまま再利用されます。
+     */
+    public void clear() {
+        mSize = 0;
+        mCalibration = null;
+    }
+
+    /**
+     * 圧力をニュートンに変換したときの[OrpheInsoleCalibration]を返します。
+     * [OrpheInsoleCalibration.toCode]に渡すと、センサーのAD変換値に戻せます。
+     *
+     * @return 最後に書き込んだ圧力の変換に使った[OrpheInsoleCalibration]。圧力を書き込んでいない場合はnull
+     */
+    @Nullable
+    public OrpheInsoleCalibration calibration() {
+        return mCalibration;
+    }
+
+    /**
+     * 圧力をニュートンに変換したときの[OrpheInsoleCalibration]を記録します。
+     *
+     * @param calibration 圧力の変換に使った[OrpheInsoleCalibration]
+     */
+    void setCalibration(@Nullable OrpheInsoleCalibration calibration) {
+        mCalibration = calibration;
+    }
+
+    /**
+     * 新しいサンプルの位置を確保して返します。
+     *
+     * @return 書き込み先のインデックス
+     */
+    int append() {
+        if (mSize >= capacity) {
+            throw new IllegalStateException("SensorFrameBatch capacity exceeded: " + capacity);
+        }
+        return mSize++;
+    }
+
+    /**
+     * [OrpheSensorSample]の値を追加します。
+     *
+     * @param sample 追加するセンサー値
+     */
+    void add(@NonNull OrpheSensorSample sample) {
+        final int i = append();
+        serialNumber[i] = sample.serialNumber;
+        dataPosition[i] = sample.dataPosition;
+        deviceTime[i] = sample.deviceTime;
+        timestamp[i] = sample.timestamp;
+        quatW[i] = (float) sample.quatW();
+        quatX[i] = (float) sample.quatX();
+        quatY[i] = (float) sample.quatY();
+        quatZ[i] = (float) sample.quatZ();
+        gyroX[i] = (float) sample.gyroX();
+        gyroY[i] = (float) sample.gyroY();
+        gyroZ[i] = (float) sample.gyroZ();
+        accX[i] = (float) sample.accX();
+        accY[i] = (float) sample.accY();
+        accZ[i] = (float) sample.accZ();
+        pressureToeOutside[i] = 0;
+        pressureMidOutside[i] = 0;
+        pressureToeInside[i] = 0;
+        pressureCenter[i] = 0;
+        pressureMidInside[i] = 0;
+        pressureHeel[i] = 0;
+    }
+
+    /**
+     * [OrpheInsoleValue]の値を追加します。
+     *
+     * @param value 追加するインソールの値
+     */
+    void add(@NonNull OrpheInsoleValue value) {
+        final int i = append();
+        serialNumber[i] = value.serialNumber;
+        dataPosition[i] = value.dataPosition;
+        deviceTime[i] = value.deviceTime;
+        timestamp[i] = value.startTime;
+        quatW[i] = (float) value.quatW;
+        quatX[i] = (float) value.quatX;
+        quatY[i] = (float) value.quatY;
+        quatZ[i] = (float) value.quatZ;
+        gyroX[i] = (float) value.gyroX;
+        gyroY[i] = (float) value.gyroY;
+        gyroZ[i] = (float) value.gyroZ;
+        accX[i] = (float) value.accX;
+        accY[i] = (float) value.accY;
+        accZ[i] = (float) value.accZ;
+        pressureToeOutside[i] = (float) value.pressureToeOutside;
+        pressureMidOutside[i] = (float) value.pressureMidOutside;
+        pressureToeInside[i] = (float) value.pressureToeInside;
+        pressureCenter[i] = (float) value.pressureCenter;
+        pressureMidInside[i] = (float) value.pressureMidInside;
+        pressureHeel[i] = (float) value.pressureHeel;
+    }
+
+    /**
+     * 他の[SensorFrameBatch]のサンプルを追加します。
+     *
+     * @param source 追加するサンプルを格納している[SensorFrameBatch]
+     * @param index [source]のインデックス
+     */
+    void add(@NonNull SensorFrameBatch source, int index) {
+        final int i = append();
+        if (source.mCalibration != null) {
+            mCalibration = source.mCalibration;
+        }
+        serialNumber[i] = source.serialNumber[index];
+        dataPosition[i] = source.dataPosition[index];
+        deviceTime[i] = source.deviceTime[index];
+        timestamp[i] = source.timestamp[index];
+        quatW[i] = source.quatW[index];
+        quatX[i] = source.quatX[index];
+        quatY[i] = source.quatY[index];
+        quatZ[i] = source.quatZ[index];
+        gyroX[i] = source.gyroX[index];
+        gyroY[i] = source.gyroY[index];
+        gyroZ[i] = source.gyroZ[index];
+        accX[i] = source.accX[index];
+        accY[i] = source.accY[index];
+        accZ[i] = source.accZ[index];
+        pressureToeOutside[i] = source.pressureToeOutside[index];
+        pressureMidOutside[i] = source.pressureMidOutside[index];
+        pressureToeInside[i] = source.pressureToeInside[index];
+        pressureCenter[i] = source.pressureCenter[index];
+        pressureMidInside[i] = source.pressureMidInside[index];
+        pressureHeel[i] = source.pressureHeel[index];
+    }
+
+    /**
+     * 先頭から指定数のサンプルを破棄し、残りを同じ配列の中で前に詰めます。メモリは確保しません。
+     *
+     * @param count 破棄するサンプル数
+     */
+    void removeFirst(int count) {
+        if (count <= 0) {
+            return;
+        }
+        count = Math.min(count, mSize);
+        final int rest = mSize - count;
+        System.arraycopy(serialNumber, count, serialNumber, 0, rest);
+        System.arraycopy(dataPosition, count, dataPosition, 0, rest);
+        System.arraycopy(deviceTime, count, deviceTime, 0, rest);
+        System.arraycopy(timestamp, count, timestamp, 0, rest);
+        System.arraycopy(quatW, count, quatW, 0, rest);
+        System.arraycopy(quatX, count, quatX, 0, rest);
+        System.arraycopy(quatY, count, quatY, 0, rest);
+        System.arraycopy(quatZ, count, quatZ, 0, rest);
+        System.arraycopy(gyroX, count, gyroX, 0, rest);
+        System.arraycopy(gyroY, count, gyroY, 0, rest);
+        System.arraycopy(gyroZ, count, gyroZ, 0, rest);
+        System.arraycopy(accX, count, accX, 0, rest);
+        System.arraycopy(accY, count, accY, 0, rest);
+        System.arraycopy(accZ, count, accZ, 0, rest);
+        System.arraycopy(pressureToeOutside, count, pressureToeOutside, 0, rest);
+        System.arraycopy(pressureMidOutside, count, pressureMidOutside, 0, rest);
+        System.arraycopy(pressureToeInside, count, pressureToeInside, 0, rest);
+        System.arraycopy(pressureCenter, count, pressureCenter, 0, rest);
+        System.arraycopy(pressureMidInside, count, pressureMidInside, 0, rest);
+        System.arraycopy(pressureHeel, count, pressureHeel, 0, rest);
+        mSize = rest;
+    }
+
+    /**
+     * 指定数のサンプルが格納できるかを確認します。
+     *
+     * @param count 格納するサンプル数
+     */
+    void ensureRemaining(int count) {
+        if (remaining() < count) {
+            throw new IllegalStateException("SensorFrameBatch capacity exceeded: " + capacity);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheBulkDownloader]のテスト。
+ */
+public class OrpheBulkDownloaderTest {
+    private static final long MILLIS = 1_000_000L;
+
+    /// リクエストを記録し、進み具合の通知を数える
+    private static class Device implements OrpheBulkDownloader.Sender, OrpheBulkDownloader.Listener {
+        final ArrayDeque<OrpheValueRequest> pending = new ArrayDeque<>();
+        final List<OrpheValueRequest[]> writes = new ArrayList<>();
+        int progressCount;
+        int finishedCount;
+
+        @Override
+        public void send(OrpheValueRequest[] requests) {
+            assertTrue(requests.length > 0);
+            writes.add(requests);
+            for (OrpheValueRequest request : requests) {
+                pending.add(request);
+            }
+        }
+
+        @Override
+        public void onProgress(OrpheBulkDownloader downloader) {
+            progressCount++;
+        }
+
+        @Override
+        public void onFinished(OrpheBulkDownloader downloader) {
+            finishedCount++;
+        }
+
+        int requestedSerials() {
+            int count = 0;
+            for (OrpheValueRequest[] write : writes) {
+                for (OrpheValueRequest request : write) {
+                    count += request.length;
+                }
+            }
+            return count;
+        }
+    }
+
+    @Test
+    public void keepsWindowsInFlight() {
+        final Device device = new Device();
+        final OrpheBulkDownloader downloader = new OrpheBulkDownloader(100, 1000, 100, 3, device, device);
+        downloader.start(0);
+        assertEquals(3, device.pending.size());
+        assertEquals(100, device.pending.peek().startSerialNumber);
+
+        long time = 0;
+        while (!device.pending.isEmpty()) {
+            final OrpheValueRequest request = device.pending.poll();
+            for (int i = 0; i < request.length; i++) {
+                time += MILLIS;
+                downloader.onSerialNumber(OrpheSerialNumber.add(request.startSerialNumber, i), 104, time);
+            }
+            // 区間が終わるごとに次の区間をリクエストし、同時に3区間までに保つ
+            assertTrue(device.pending.size() <= 3);
+        }
+        assertTrue(downloader.isFinished());
+        assertEquals(1000, downloader.receivedCount());
+        assertEquals(1000, device.requestedSerials());
+        assertEquals(1.0, downloader.progress(), 0);
+        assertEquals(10, device.progressCount);
+        assertEquals(1, device.finishedCount);
+        assertEquals(104_000, downloader.throughput().bytesPerSecond(), 1e-6);
+    }
+
+    @Test
+    public void requestsOnlyHoles() {
+        final Device device = new Device();
+        final OrpheBulkDownloader downloader = new OrpheBulkDownloader(0, 100, 100, 1, device, device);
+        downloader.start(0);
+        device.pending.clear();
+        // 10番台と50〜54が届かなかった
+        for (int serial = 0; serial < 100; serial++) {
+            if ((serial >= 10 && serial < 20) || (serial >= 50 && serial < 55)) {
+                continue;
+            }
+            downloader.onSerialNumber(serial, 104, 10 * MILLIS);
+        }
+        downloader.tick(500 * MILLIS);
+        assertTrue(device.pending.isEmpty());
+        downloader.tick(1100 * MILLIS);
+        assertEquals(2, device.pending.size());
+        final OrpheValueRequest first = device.pending.poll();
+        final OrpheValueRequest second = device.pending.poll();
+        assertEquals(10, first.startSerialNumber);
+        assertEquals(10, first.length);
+        assertEquals(50, second.startSerialNumber);
+        assertEquals(5, second.length);
+        assertEquals(1, downloader.retryCount());
+        for (int serial = 10; serial < 20; serial++) {
+            downloader.onSerialNumber(serial, 104, 1200 * MILLIS);
+        }
+        downloader.onNotFound(50, 5, 1200 * MILLIS);
+        assertTrue(downloader.isFinished());
+        assertEquals(95, downloader.receivedCount());
+        assertEquals(5, downloader.lostCount());
+    }
+
+    @Test
+    public void givesUpAfterRetries() {
+        final Device device = new Device();
+        final OrpheBulkDownloader downloader = new OrpheBulkDownloader(0, 20, 10, 1, device, device);
+        downloader.start(0);
+        for (int serial = 0; serial < 9; serial++) {
+            downloader.onSerialNumber(serial, 104, 0);
+        }
+        long time = 0;
+        for (int retry = 0; retry <= OrpheBulkDownloader.MAX_RETRIES; retry++) {
+            time += OrpheBulkDownloader.TIMEOUT_NANOS;
+            downloader.tick(time);
+        }
+        assertEquals(OrpheBulkDownloader.MAX_RETRIES, downloader.retryCount());
+        assertEquals(1, downloader.lostCount());
+        // 失われたとした後は次の区間に進む
+        final OrpheValueRequest last = device.writes.get(device.writes.size() - 1)[0];
+        assertEquals(10, last.startSerialNumber);
+        assertEquals(10, last.length);
+        assertFalse(downloader.isFinished());
+    }
+
+    @Test
+    public void wrapsAroundSerialNumber() {
+        final Device device = new Device();
+        final OrpheBulkDownloader downloader = new OrpheBulkDownloader(65530, 12, 6, 2, device, device);
+        downloader.start(0);
+        assertEquals(65530, device.pending.poll().startSerialNumber);
+        assertEquals(0, device.pending.poll().startSerialNumber);
+        for (int i = 0; i < 12; i++) {
+            downloader.onSerialNumber(OrpheSerialNumber.add(65530, i), 104, i * MILLIS);
+        }
+        // 範囲外とすでに受け取ったものは数えない
+        downloader.onSerialNumber(6, 104, 20 * MILLIS);
+        assertTrue(downloader.isFinished());
+        assertEquals(12, downloader.receivedCount());
+    }
+
+    @Test
+    public void sendsAllRangesAtOnce() {
+        final Device device = new Device();
+        final OrpheBulkDownloader downloader = new OrpheBulkDownloader(0, 400, 10, 40, device, device);
+        downloader.start(0);
+        // 30件ごとに分けて書き込むのは[OrpheRequestPlanner]が行う
+        assertEquals(1, device.writes.size());
+        assertEquals(40, device.writes.get(0).length);
+        final OrpheValueRequest[] merged = OrpheRequestPlanner.merge(device.writes.get(0));
+        assertEquals(1, merged.length);
+        assertEquals(400, merged[0].length);
+        downloader.cancel();
+        assertTrue(downloader.isFinished());
+        assertEquals(1, device.finishedCount);
+        downloader.cancel();
+        assertEquals(1, device.finishedCount);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyRange() {
+        final Device device = new Device();
+        new OrpheBulkDownloader(0, 0, 10, 1, device, device);
+    }
+}
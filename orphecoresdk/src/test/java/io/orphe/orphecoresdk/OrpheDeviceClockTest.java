@@ -0,0 +1,102 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheDeviceClock]のテスト。
+ */
+public class OrpheDeviceClockTest {
+    private static final long ANCHOR_EPOCH_MILLIS = 1_700_000_000_000L;
+    private static final long NOON = 12 * 60 * 60 * 1000L;
+
+    @Test
+    public void anchorsDeviceTimeToFirstPacket() {
+        final OrpheDeviceClock clock = new OrpheDeviceClock(ANCHOR_EPOCH_MILLIS, 0);
+        clock.observe(NOON, 5_000_000L);
+
+        assertEquals(ANCHOR_EPOCH_MILLIS + 5, clock.toEpochMillis(NOON));
+        assertEquals(ANCHOR_EPOCH_MILLIS + 25, clock.toEpochMillis(NOON + 20));
+        assertEquals(ANCHOR_EPOCH_MILLIS - 15, clock.toEpochMillis(NOON - 20));
+    }
+
+    @Test
+    public void continuesAcrossMidnight() {
+        final OrpheDeviceClock clock = new OrpheDeviceClock(ANCHOR_EPOCH_MILLIS, 0);
+        final long beforeMidnight = OrpheDeviceClock.DAY_MILLIS - 10;
+        clock.observe(beforeMidnight, 0);
+        clock.observe(10, 20_000_000L);
+
+        final long base = clock.toEpochMillis(beforeMidnight);
+        assertEquals(base + 20, clock.toEpochMillis(10));
+        // 日付をまたぐ前のパケットが遅れて届いた場合
+        assertEquals(base + 5, clock.toEpochMillis(OrpheDeviceClock.DAY_MILLIS - 5));
+        assertEquals(base + 30, clock.toEpochMillis(20));
+    }
+
+    @Test
+    public void usesTheFastestDeliveryAndStaysMonotonic() {
+        final OrpheDeviceClock clock = new OrpheDeviceClock(ANCHOR_EPOCH_MILLIS, 0);
+        final Random random = new Random(1);
+        long previous = Long.MIN_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            final long deviceMillis = NOON + i * 20L;
+            // 受信までの遅延は5〜35ミリ秒で、最初のパケットは遅れて届く
+            final long latencyMillis = i == 0 ? 35 : 5 + random.nextInt(31);
+            clock.observe(deviceMillis, (i * 20L + latencyMillis) * 1_000_000L);
+            final long epochMillis = clock.toEpochMillis(deviceMillis);
+            assertTrue(epochMillis >= previous);
+            previous = epochMillis;
+        }
+        assertEquals(ANCHOR_EPOCH_MILLIS + 999 * 20L + 5, clock.toEpochMillis(NOON + 999 * 20L));
+    }
+
+    @Test
+    public void tracksDrift() {
+        final OrpheDeviceClock clock = new OrpheDeviceClock(ANCHOR_EPOCH_MILLIS, 0);
+        final Random random = new Random(2);
+        // デバイスの時計が100ppm遅れる
+        final long skewPpb = 100_000L;
+        long lastReceivedMillis = 0;
+        for (int i = 0; i < 6000; i++) {
+            final long phoneMillis = i * 20L;
+            final long deviceMillis = NOON + phoneMillis - phoneMillis * skewPpb / 1_000_000_000L;
+            lastReceivedMillis = phoneMillis + 5 + random.nextInt(20);
+            clock.observe(deviceMillis, lastReceivedMillis * 1_000_000L);
+        }
+        assertEquals(skewPpb, clock.skewPpb(), skewPpb / 5);
+        final long lastPhoneMillis = 5999 * 20L;
+        final long lastDeviceMillis = NOON + lastPhoneMillis - lastPhoneMillis * skewPpb / 1_000_000_000L;
+        // 最小の遅延（5ミリ秒）の分だけ後ろにずれる
+        assertEquals(ANCHOR_EPOCH_MILLIS + lastPhoneMillis + 5, clock.toEpochMillis(lastDeviceMillis), 2);
+    }
+
+    @Test
+    public void decodersUseTheClock() throws Exception {
+        final OrpheDeviceClock clock = new OrpheDeviceClock(ANCHOR_EPOCH_MILLIS, 0);
+        final List<byte[]> packets = new ArrayList<>();
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(55, 1);
+        simulator.setSink(value -> packets.add(value.clone()));
+        simulator.setStartTimeOfDay(OrpheDeviceClock.DAY_MILLIS - 30);
+        simulator.emit(4);
+
+        long previous = Long.MIN_VALUE;
+        for (int i = 0; i < packets.size(); i++) {
+            final byte[] packet = packets.get(i);
+            clock.onPacket(packet, (i * 20L + 10) * 1_000_000L);
+            for (OrpheInsoleValue value : OrpheInsoleValue.fromBytes(
+                    packet, OrpheSidePosition.leftPlantar, OrpheAccRange.range16, OrpheGyroRange.range2000, clock)) {
+                if (previous != Long.MIN_VALUE) {
+                    assertEquals(OrpheSensorValue.SAMPLE_INTERVAL_MILLIS, value.startTime - previous);
+                }
+                previous = value.startTime;
+            }
+        }
+        assertEquals(ANCHOR_EPOCH_MILLIS + 3 * 20 + 10, previous);
+    }
+}
@@ -0,0 +1,258 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheDeviceSimulator]のテスト。
+ */
+public class OrpheDeviceSimulatorTest {
+    private static class CountingListener implements OrpheNotificationPipeline.Listener<Integer> {
+        final int[] received = new int[OrpheSerialNumber.MODULUS];
+        final List<String> notFound = new ArrayList<>();
+        OrpheRequestPlanner planner;
+        long nowNanos;
+
+        @Override
+        public void onCurrentSerialNumber(int serialNumber) {
+        }
+
+        @Override
+        public void onValueNotFound(int serialNumber, int length) {
+            notFound.add(serialNumber + "+" + length);
+        }
+
+        @Override
+        public synchronized void onValues(Integer[] values) {
+            received[values[0]]++;
+        }
+
+        @Override
+        public void onRequestValues(OrpheValueRequest[] requests) {
+            planner.plan(OrpheRequestPlanner.merge(requests), nowNanos);
+        }
+    }
+
+    private static final OrpheNotificationPipeline.Decoder<Integer> SERIAL_DECODER =
+            value -> new Integer[]{((value[1] & 0xFF) << 8) | (value[2] & 0xFF)};
+
+    @Test
+    public void generatesPacketsThatDecodeAcrossWraparound() {
+        final List<OrpheInsoleValue> values = new ArrayList<>();
+        final OrpheNotificationPipeline<OrpheInsoleValue> pipeline = new OrpheNotificationPipeline<>(
+                value -> OrpheInsoleValue.fromBytes(value, OrpheSidePosition.leftPlantar, OrpheAccRange.range16, OrpheGyroRange.range2000),
+                new OrpheNotificationPipeline.Listener<OrpheInsoleValue>() {
+                    @Override
+                    public void onCurrentSerialNumber(int serialNumber) {
+                    }
+
+                    @Override
+                    public void onValueNotFound(int serialNumber, int length) {
+                    }
+
+                    @Override
+                    public void onValues(OrpheInsoleValue[] decoded) {
+                        values.addAll(Arrays.asList(decoded));
+                    }
+
+                    @Override
+                    public void onRequestValues(OrpheValueRequest[] requests) {
+                    }
+                },
+                Runnable::run, null);
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(55, 1);
+        simulator.setSink(pipeline::onNotified);
+        simulator.setSerialNumber(65534);
+
+        assertEquals(4, simulator.emit(4));
+        assertEquals(16, values.size());
+        final int[] expectedSerialNumbers = {65534, 65535, 0, 1};
+        for (int i = 0; i < values.size(); i++) {
+            final OrpheInsoleValue value = values.get(i);
+            assertEquals(expectedSerialNumbers[i / 4], value.serialNumber);
+            assertEquals(3 - i % 4, value.dataPosition);
+            assertTrue(value.pressureHeel >= 0);
+        }
+    }
+
+    @Test
+    public void deviceTimeAdvancesWithPacketRate() {
+        final SensorFrameBatch batch = new SensorFrameBatch(64);
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(55, 1);
+        simulator.setSink(value -> OrpheInsoleValue.fromBytes(value, OrpheAccRange.range16, OrpheGyroRange.range2000, batch));
+        simulator.setStartTimeOfDay(23 * 60 * 60 * 1000L + 59 * 60 * 1000L + 59_000L);
+        simulator.emit(10);
+
+        assertEquals(40, batch.size());
+        for (int i = 1; i < batch.size(); i++) {
+            // サンプル間隔は5ミリ秒
+            assertEquals(OrpheSensorValue.SAMPLE_INTERVAL_MILLIS, batch.deviceTime[i] - batch.deviceTime[i - 1]);
+        }
+    }
+
+    @Test
+    public void type50TimeOfDayRoundTrips() {
+        final List<OrpheSensorSample> samples = new ArrayList<>();
+        final List<Long> packetTimes = new ArrayList<>();
+        final SensorFrameBatch batch = new SensorFrameBatch(SensorFrameBatch.MAX_SAMPLES_PER_PACKET);
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(50, 1);
+        simulator.setSink(value -> {
+            samples.addAll(Arrays.asList(
+                    OrpheSensorSample.fromBytes(value, OrpheSidePosition.leftInstep, OrpheAccRange.range16, OrpheGyroRange.range2000, null)));
+            packetTimes.add(OrpheDeviceClock.timeOfDayMillis(value));
+            batch.clear();
+            OrpheSensorValue.fromBytes(value, OrpheAccRange.range16, OrpheGyroRange.range2000, batch);
+            packetTimes.add(batch.deviceTime[batch.size() - 1]);
+        });
+        final long start = 12 * 60 * 60 * 1000L + 34 * 60 * 1000L + 56_000L;
+        simulator.setStartTimeOfDay(start);
+        // 1パケットは4サンプル（20ミリ秒）で、ミリ秒部分が1バイトで表せる0〜240ミリ秒
+        simulator.emit(13);
+
+        assertEquals(13 * 4, samples.size());
+        for (int i = 0; i < samples.size(); i++) {
+            final OrpheSensorSample sample = samples.get(i);
+            final long packetTime = start + i / 4 * 4 * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS;
+            assertEquals(packetTime + sample.dataPosition * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS, sample.deviceTime);
+        }
+        // デバイスの時計の対応付けに使う時刻と、バッチにデコードした時刻も同じになる
+        for (int i = 0; i < packetTimes.size(); i++) {
+            assertEquals(start + i / 2 * 4 * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS, (long) packetTimes.get(i));
+        }
+    }
+
+    @Test
+    public void lossIsRecoveredThroughTheRealBackfillPath() {
+        final CountingListener listener = new CountingListener();
+        final OrpheNotificationPipeline<Integer> pipeline =
+                new OrpheNotificationPipeline<>(SERIAL_DECODER, listener, Runnable::run, null);
+        pipeline.setGapTracker(new OrpheSerialGapTracker());
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(56, 42);
+        // Orpheと同じく、再取得のリクエストは書き込みとしてシミュレーターに渡す
+        listener.planner = new OrpheRequestPlanner(simulator::write);
+        pipeline.setRequestPlanner(listener.planner);
+        // 受信時刻はパケットの周期で進める
+        final long periodNanos = 2L * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS * 1_000_000L;
+        simulator.setSink(value -> pipeline.process(value, listener.nowNanos));
+        simulator.setSerialNumber(65000);
+        simulator.setLoss(0.02, 3);
+        simulator.setDuplicateRate(0.01);
+
+        for (int i = 0; i < 1500; i++) {
+            simulator.emit(1);
+            listener.nowNanos += periodNanos;
+        }
+        // 最後の欠落のリクエストの間隔を空ける
+        listener.nowNanos += OrpheNotificationPipeline.BACKFILL_INTERVAL_NANOS;
+        simulator.setLoss(0, 1);
+        simulator.emit(1);
+
+        assertTrue(simulator.lostCount() > 0);
+        assertTrue(simulator.duplicatedCount() > 0);
+        assertEquals(simulator.lostCount(), simulator.resentCount());
+        for (int i = 0; i < 1501; i++) {
+            assertEquals(1, listener.received[OrpheSerialNumber.add(65000, i)]);
+        }
+        assertEquals(0, pipeline.gapTracker().pendingCount());
+        assertTrue(listener.notFound.isEmpty());
+    }
+
+    @Test(timeout = 10000)
+    public void resendLargerThanRingBufferDoesNotBlockDecodeThread() throws Exception {
+        final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "decode"));
+        final CountingListener listener = new CountingListener();
+        final OrpheNotificationPipeline<Integer> pipeline =
+                new OrpheNotificationPipeline<>(SERIAL_DECODER, listener, decodeExecutor, null);
+        pipeline.ringBuffer().setOverflowPolicy(OrpheOverflowPolicy.blockAndCount);
+        pipeline.setGapTracker(new OrpheSerialGapTracker());
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(56, 1);
+        listener.planner = new OrpheRequestPlanner(simulator::write);
+        listener.nowNanos = System.nanoTime();
+        pipeline.setRequestPlanner(listener.planner);
+        simulator.setSink(pipeline::onNotified);
+
+        // リングバッファの格納数より長く欠落させる
+        final int lost = pipeline.ringBuffer().capacity() + 44;
+        simulator.emit(1);
+        simulator.setLoss(1, lost);
+        simulator.emit(lost);
+        simulator.setLoss(0, 1);
+        simulator.emit(1);
+
+        // 再取得の書き込みはデコードするスレッドで受け取るだけで、応答はこのスレッドから送る
+        while (simulator.respond() == 0) {
+            Thread.sleep(1);
+        }
+        final int total = lost + 2;
+        while (count(listener, total) < total) {
+            Thread.sleep(1);
+        }
+        decodeExecutor.shutdown();
+        assertTrue(decodeExecutor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(lost, simulator.resentCount());
+        for (int i = 0; i < total; i++) {
+            assertEquals(1, listener.received[i]);
+        }
+        assertEquals(0, pipeline.ringBuffer().droppedCount());
+    }
+
+    private static int count(CountingListener listener, int length) {
+        synchronized (listener) {
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                count += listener.received[i];
+            }
+            return count;
+        }
+    }
+
+    @Test
+    public void answersNotFoundBeyondRetainedPackets() {
+        final CountingListener listener = new CountingListener();
+        final OrpheNotificationPipeline<Integer> pipeline =
+                new OrpheNotificationPipeline<>(SERIAL_DECODER, listener, Runnable::run, null);
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(54, 1, 16);
+        simulator.setSink(pipeline::onNotified);
+        simulator.emit(32);
+
+        simulator.request(new OrpheValueRequest[]{new OrpheValueRequest(10, 10)});
+        assertEquals("[10+6]", listener.notFound.toString());
+        assertEquals(4, simulator.resentCount());
+        assertEquals(2, listener.received[16]);
+        assertEquals(1, listener.received[15]);
+    }
+
+    @Test
+    public void sameSeedGivesSamePackets() {
+        final List<byte[]> first = new ArrayList<>();
+        final List<byte[]> second = new ArrayList<>();
+        final OrpheDeviceSimulator a = new OrpheDeviceSimulator(50, 7);
+        final OrpheDeviceSimulator b = new OrpheDeviceSimulator(50, 7);
+        a.setSink(value -> first.add(value.clone()));
+        b.setSink(value -> second.add(value.clone()));
+        a.setLoss(0.1, 2);
+        b.setLoss(0.1, 2);
+
+        a.emit(200);
+        b.emit(200);
+        a.notifyCurrentSerialNumber();
+        b.notifyCurrentSerialNumber();
+        assertEquals(first.size(), second.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertArrayEquals(first.get(i), second.get(i));
+        }
+        final byte[] current = first.get(first.size() - 1);
+        assertEquals(53, current[0]);
+        assertEquals(1, current[1]);
+        assertEquals(199, ((current[2] & 0xFF) << 8) | (current[3] & 0xFF));
+    }
+}
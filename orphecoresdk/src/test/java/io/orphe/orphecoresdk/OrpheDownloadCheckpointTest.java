@@ -0,0 +1,190 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheDownloadCheckpoint]と、記録から再開する[OrpheBulkDownloader]のテスト。
+ */
+public class OrpheDownloadCheckpointTest {
+    private static final String ADDRESS = "00:11:22:33:44:55";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /// リクエストされた範囲を記録する
+    private static class Device implements OrpheBulkDownloader.Sender, OrpheBulkDownloader.Listener {
+        final List<OrpheValueRequest> requests = new ArrayList<>();
+        int finishedCount;
+
+        @Override
+        public void send(OrpheValueRequest[] requests) {
+            for (OrpheValueRequest request : requests) {
+                this.requests.add(request);
+            }
+        }
+
+        @Override
+        public void onProgress(OrpheBulkDownloader downloader) {
+        }
+
+        @Override
+        public void onFinished(OrpheBulkDownloader downloader) {
+            finishedCount++;
+        }
+    }
+
+    @Test
+    public void savesAndLoadsBitmap() throws IOException {
+        final File file = OrpheDownloadCheckpoint.fileFor(folder.getRoot(), ADDRESS, 65000, 1000);
+        final OrpheDownloadCheckpoint checkpoint = OrpheDownloadCheckpoint.open(file, 65000, 1000);
+        assertEquals(0, checkpoint.receivedCount());
+        checkpoint.setReceived(0);
+        checkpoint.setReceived(7);
+        checkpoint.setReceived(999);
+        checkpoint.setReceived(999);
+        checkpoint.save();
+        // ヘッダーとビットマップ
+        assertEquals(12 + 125, file.length());
+
+        final OrpheDownloadCheckpoint loaded = OrpheDownloadCheckpoint.open(file, 65000, 1000);
+        assertEquals(3, loaded.receivedCount());
+        assertTrue(loaded.isReceived(0));
+        assertTrue(loaded.isReceived(7));
+        assertFalse(loaded.isReceived(8));
+        assertTrue(loaded.isReceived(999));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherRange() throws IOException {
+        final File file = new File(folder.getRoot(), "range.checkpoint");
+        final OrpheDownloadCheckpoint checkpoint = OrpheDownloadCheckpoint.open(file, 0, 100);
+        checkpoint.setReceived(1);
+        checkpoint.save();
+        OrpheDownloadCheckpoint.open(file, 0, 200);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFile() throws IOException {
+        final File file = new File(folder.getRoot(), "other.checkpoint");
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(new byte[16]);
+        }
+        OrpheDownloadCheckpoint.open(file, 0, 100);
+    }
+
+    @Test
+    public void resumesOnlyMissingRanges() throws IOException {
+        final File file = OrpheDownloadCheckpoint.fileFor(folder.getRoot(), ADDRESS, 0, 300);
+        final Device first = new Device();
+        final OrpheBulkDownloader downloader = new OrpheBulkDownloader(0, 300, 100, 2, first, first,
+                OrpheDownloadCheckpoint.open(file, 0, 300), Runnable::run);
+        downloader.start(0);
+        // 最初の区間と、2つ目の区間の半分を受け取ったところで接続が切れた
+        for (int serial = 0; serial < 150; serial++) {
+            downloader.onSerialNumber(serial, 104, serial);
+        }
+        downloader.pause();
+        assertTrue(downloader.isPaused());
+        first.requests.clear();
+        downloader.tick(10_000_000_000L);
+        assertTrue(first.requests.isEmpty());
+
+        // 再接続したら受け取っていない部分だけをリクエストする
+        downloader.resume(20_000_000_000L);
+        assertEquals(2, first.requests.size());
+        assertEquals(150, first.requests.get(0).startSerialNumber);
+        assertEquals(50, first.requests.get(0).length);
+        assertEquals(200, first.requests.get(1).startSerialNumber);
+        assertEquals(100, first.requests.get(1).length);
+
+        // アプリを終了しても、記録から再開できる
+        final Device second = new Device();
+        final OrpheBulkDownloader restarted = new OrpheBulkDownloader(0, 300, 100, 2, second, second,
+                OrpheDownloadCheckpoint.open(file, 0, 300), Runnable::run);
+        assertEquals(150, restarted.resumedCount());
+        restarted.start(0);
+        assertEquals(150, second.requests.get(0).startSerialNumber);
+        assertEquals(50, second.requests.get(0).length);
+        for (int serial = 150; serial < 300; serial++) {
+            restarted.onSerialNumber(serial, 104, serial);
+        }
+        assertTrue(restarted.isFinished());
+        assertEquals(300, restarted.receivedCount());
+        // すべて受け取ったら記録は削除する
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void writesCheckpointOnExecutorAndCoalesces() throws IOException {
+        final File file = OrpheDownloadCheckpoint.fileFor(folder.getRoot(), ADDRESS, 0, 40);
+        final List<Runnable> tasks = new ArrayList<>();
+        final Device device = new Device();
+        final OrpheBulkDownloader downloader = new OrpheBulkDownloader(0, 40, 10, 4, device, device,
+                OrpheDownloadCheckpoint.open(file, 0, 40), tasks::add);
+        downloader.start(0);
+        // 3つの区間を受け取っても、センサー値を受け取るスレッドでは書き込まず、まだ実行されていない書き込みにまとめる
+        for (int serial = 0; serial < 30; serial++) {
+            downloader.onSerialNumber(serial, 104, serial);
+        }
+        assertFalse(file.exists());
+        assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+        assertEquals(30, OrpheDownloadCheckpoint.open(file, 0, 40).receivedCount());
+
+        // すべて受け取った場合は、待っている書き込みの後に削除する
+        downloader.pause();
+        for (int serial = 30; serial < 40; serial++) {
+            downloader.onSerialNumber(serial, 104, serial);
+        }
+        assertTrue(downloader.isFinished());
+        assertEquals(2, tasks.size());
+        for (Runnable task : tasks) {
+            task.run();
+        }
+        assertFalse(file.exists());
+        assertNull(downloader.checkpointError());
+    }
+
+    @Test
+    public void finishesImmediatelyWhenComplete() throws IOException {
+        final File file = OrpheDownloadCheckpoint.fileFor(folder.getRoot(), ADDRESS, 10, 20);
+        final OrpheDownloadCheckpoint checkpoint = OrpheDownloadCheckpoint.open(file, 10, 20);
+        for (int offset = 0; offset < 20; offset++) {
+            checkpoint.setReceived(offset);
+        }
+        final Device device = new Device();
+        final OrpheBulkDownloader downloader = new OrpheBulkDownloader(10, 20, 8, 2, device, device, checkpoint);
+        downloader.start(0);
+        assertTrue(downloader.isFinished());
+        assertTrue(device.requests.isEmpty());
+        assertEquals(1, device.finishedCount);
+    }
+
+    @Test
+    public void deletesAllForDevice() throws IOException {
+        final File root = folder.getRoot();
+        for (int start = 0; start < 3; start++) {
+            final OrpheDownloadCheckpoint checkpoint = OrpheDownloadCheckpoint.open(
+                    OrpheDownloadCheckpoint.fileFor(root, ADDRESS, start, 10), start, 10);
+            checkpoint.setReceived(0);
+            checkpoint.save();
+        }
+        final OrpheDownloadCheckpoint other = OrpheDownloadCheckpoint.open(
+                OrpheDownloadCheckpoint.fileFor(root, "66:77:88:99:AA:BB", 0, 10), 0, 10);
+        other.setReceived(0);
+        other.save();
+        OrpheDownloadCheckpoint.deleteAll(root, ADDRESS);
+        assertEquals(1, root.listFiles().length);
+        assertTrue(other.file().exists());
+    }
+}
@@ -0,0 +1,182 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheGattOperationQueue]のテスト。
+ */
+public class OrpheGattOperationQueueTest {
+    private static final UUID CHARACTERISTIC = UUID.randomUUID();
+    private static final UUID DESCRIPTOR = UUID.randomUUID();
+
+    private static class ManualScheduler implements OrpheGattOperationQueue.Scheduler {
+        final List<Runnable> scheduled = new ArrayList<>();
+
+        @Override
+        public void schedule(Runnable runnable, long delayMillis) {
+            scheduled.add(runnable);
+        }
+
+        @Override
+        public void cancel(Runnable runnable) {
+            scheduled.remove(runnable);
+        }
+
+        void fireAll() {
+            for (Runnable runnable : new ArrayList<>(scheduled)) {
+                scheduled.remove(runnable);
+                runnable.run();
+            }
+        }
+    }
+
+    private static OrpheGattOperationQueue.Operation recording(List<String> log, String name, boolean started) {
+        return () -> {
+            log.add(name);
+            return started;
+        };
+    }
+
+    @Test
+    public void waitsForCompletionBeforeNextOperation() {
+        final ManualScheduler scheduler = new ManualScheduler();
+        final OrpheGattOperationQueue queue = new OrpheGattOperationQueue(scheduler, 1000);
+        final List<String> log = new ArrayList<>();
+        queue.start();
+
+        queue.enqueue(CHARACTERISTIC, recording(log, "a", true));
+        queue.enqueue(CHARACTERISTIC, recording(log, "b", true));
+        assertEquals(1, log.size());
+        assertEquals(2, queue.size());
+
+        // 関係ないUUIDの完了では進まない
+        queue.onCompleted(DESCRIPTOR);
+        assertEquals(1, log.size());
+
+        queue.onCompleted(CHARACTERISTIC);
+        assertEquals(2, log.size());
+        assertEquals("b", log.get(1));
+        queue.onCompleted(CHARACTERISTIC);
+        assertEquals(0, queue.size());
+        assertTrue(scheduler.scheduled.isEmpty());
+    }
+
+    @Test
+    public void setupOperationsRunFirstAfterStart() {
+        final OrpheGattOperationQueue queue = new OrpheGattOperationQueue(new ManualScheduler(), 1000);
+        final List<String> log = new ArrayList<>();
+
+        queue.enqueue(CHARACTERISTIC, recording(log, "user", true));
+        queue.enqueueSetup(DESCRIPTOR, recording(log, "notify", true));
+        queue.enqueueSetup(CHARACTERISTIC, recording(log, "info", true));
+        assertTrue(log.isEmpty());
+
+        queue.start();
+        queue.onCompleted(DESCRIPTOR);
+        queue.onCompleted(CHARACTERISTIC);
+        assertEquals("[notify, info, user]", log.toString());
+    }
+
+    @Test
+    public void linkRequestsDoNotWaitForCallbacks() {
+        final ManualScheduler scheduler = new ManualScheduler();
+        final OrpheGattOperationQueue queue = new OrpheGattOperationQueue(scheduler, 1000);
+        final List<String> log = new ArrayList<>();
+
+        // 接続直後に追加した接続間隔とPHYの要求は、サービスの探索が終わってから他の設定より先に実行される。
+        // onConnectionUpdatedやonPhyUpdateが呼ばれない場合があるため、完了を待たずにMTUの変更に進む
+        queue.enqueueSetup(OrpheGattOperationQueue.CONNECTION_PRIORITY_UUID, recording(log, "priority", false));
+        queue.enqueueSetup(OrpheGattOperationQueue.PHY_UUID, recording(log, "phy", false));
+        queue.enqueueSetup(OrpheGattOperationQueue.MTU_UUID, recording(log, "mtu", true));
+        queue.enqueueSetup(DESCRIPTOR, recording(log, "notify", true));
+        queue.start();
+        assertEquals("[priority, phy, mtu]", log.toString());
+
+        queue.onCompleted(OrpheGattOperationQueue.MTU_UUID);
+        assertEquals("[priority, phy, mtu, notify]", log.toString());
+        assertEquals(0, queue.timedOutCount());
+    }
+
+    @Test
+    public void runsAfterSetupCompletes() {
+        final ManualScheduler scheduler = new ManualScheduler();
+        final OrpheGattOperationQueue queue = new OrpheGattOperationQueue(scheduler, 1000);
+        final List<String> log = new ArrayList<>();
+
+        queue.enqueueSetup(OrpheGattOperationQueue.MTU_UUID, recording(log, "mtu", true));
+        queue.enqueueSetup(DESCRIPTOR, recording(log, "notify", true));
+        queue.runAfterSetup(() -> log.add("resume"));
+        queue.enqueue(CHARACTERISTIC, recording(log, "write", true));
+        queue.start();
+        assertEquals("[mtu]", log.toString());
+
+        queue.onCompleted(OrpheGattOperationQueue.MTU_UUID);
+        assertEquals("[mtu, notify]", log.toString());
+        queue.onCompleted(DESCRIPTOR);
+        assertEquals("[mtu, notify, resume, write]", log.toString());
+
+        // 設定が終わる前に切断した場合は実行しない
+        queue.onCompleted(CHARACTERISTIC);
+        queue.clear();
+        queue.enqueueSetup(DESCRIPTOR, recording(log, "notify", true));
+        queue.runAfterSetup(() -> log.add("resume"));
+        queue.clear();
+        queue.start();
+        assertEquals("[mtu, notify, resume, write]", log.toString());
+    }
+
+    @Test
+    public void skipsOperationsThatFailToStart() {
+        final OrpheGattOperationQueue queue = new OrpheGattOperationQueue(new ManualScheduler(), 1000);
+        final List<String> log = new ArrayList<>();
+        queue.start();
+
+        queue.enqueue(CHARACTERISTIC, recording(log, "a", false));
+        queue.enqueue(CHARACTERISTIC, recording(log, "b", true));
+        assertEquals("[a, b]", log.toString());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void timeoutAdvancesQueue() {
+        final ManualScheduler scheduler = new ManualScheduler();
+        final OrpheGattOperationQueue queue = new OrpheGattOperationQueue(scheduler, 1000);
+        final List<String> log = new ArrayList<>();
+        queue.start();
+
+        queue.enqueue(CHARACTERISTIC, recording(log, "a", true));
+        queue.enqueue(CHARACTERISTIC, recording(log, "b", true));
+        scheduler.fireAll();
+        assertEquals("[a, b]", log.toString());
+        assertEquals(1, queue.timedOutCount());
+
+        // 完了済みの操作の遅れて届いたタイムアウトは無視される
+        final Runnable stale = scheduler.scheduled.get(0);
+        queue.onCompleted(CHARACTERISTIC);
+        stale.run();
+        assertEquals(1, queue.timedOutCount());
+    }
+
+    @Test
+    public void clearDropsPendingOperationsUntilRestarted() {
+        final OrpheGattOperationQueue queue = new OrpheGattOperationQueue(new ManualScheduler(), 1000);
+        final List<String> log = new ArrayList<>();
+        queue.start();
+
+        queue.enqueue(CHARACTERISTIC, recording(log, "a", true));
+        queue.enqueue(CHARACTERISTIC, recording(log, "b", true));
+        queue.clear();
+        assertEquals(0, queue.size());
+
+        queue.enqueue(CHARACTERISTIC, recording(log, "c", true));
+        assertEquals("[a]", log.toString());
+        queue.start();
+        assertEquals("[a, c]", log.toString());
+    }
+}
@@ -0,0 +1,160 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheInsoleCalibration]、[OrpheInsoleTare]、[OrpheInsoleCalibrationStore]のテスト。
+ */
+public class OrpheInsoleCalibrationTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<byte[]> generate(int packetType, int count) {
+        final List<byte[]> packets = new ArrayList<>();
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(packetType, 9);
+        simulator.setSink(value -> packets.add(value.clone()));
+        simulator.emit(count);
+        return packets;
+    }
+
+    private static OrpheInsoleCalibration perCellCalibration() {
+        final OrpheInsolePressureCurve[] curves = new OrpheInsolePressureCurve[6];
+        final double[] tare = new double[6];
+        for (int i = 0; i < curves.length; i++) {
+            curves[i] = new OrpheInsolePressureCurve(340 + i * 5, 290 + i * 3);
+            tare[i] = i * 0.5;
+        }
+        return new OrpheInsoleCalibration(curves, tare);
+    }
+
+    @Test
+    public void decodesEachCellWithItsOwnCurve() throws Exception {
+        final OrpheInsoleCalibration calibration = perCellCalibration();
+        final byte[] packet = generate(56, 1).get(0);
+        final OrpheInsoleValue[] values = OrpheInsoleValue.fromBytes(
+                packet, OrpheSidePosition.leftPlantar, OrpheAccRange.range16, OrpheGyroRange.range2000, null, calibration);
+        final SensorFrameBatch batch = new SensorFrameBatch(8);
+        OrpheInsoleValue.fromBytes(packet, OrpheAccRange.range16, OrpheGyroRange.range2000, batch, null, calibration);
+
+        for (int s = 0; s < values.length; s++) {
+            // 56の圧力は各サンプルの先頭から20バイト目からで、つま先の内側、中足の内側、つま先の外側、中央、中足の外側、かかとの順
+            final int index = (1 - s) * 32 + 8 + 20;
+            final OrpheInsoleCell[] order = {
+                    OrpheInsoleCell.toeInside, OrpheInsoleCell.midInside, OrpheInsoleCell.toeOutside,
+                    OrpheInsoleCell.center, OrpheInsoleCell.midOutside, OrpheInsoleCell.heel};
+            final double[] actual = {
+                    values[s].pressureToeInside, values[s].pressureMidInside, values[s].pressureToeOutside,
+                    values[s].pressureCenter, values[s].pressureMidOutside, values[s].pressureHeel};
+            for (int c = 0; c < order.length; c++) {
+                final int code = ((packet[index + c * 2] & 0xFF) << 8) | (packet[index + c * 2 + 1] & 0xFF);
+                final OrpheInsolePressureCurve curve = calibration.curve(order[c]);
+                assertEquals(curve.toNewton(code) - calibration.tare(order[c]), actual[c], 0);
+            }
+            assertEquals((float) values[s].pressureHeel, batch.pressureHeel[s], 0f);
+            assertEquals((float) values[s].pressureToeOutside, batch.pressureToeOutside[s], 0f);
+        }
+    }
+
+    @Test
+    public void tareAveragesIncrementally() throws Exception {
+        final OrpheInsoleCalibration base = perCellCalibration();
+        final OrpheInsoleTare tare = new OrpheInsoleTare(40, base);
+        final double[] sum = new double[6];
+        int count = 0;
+        boolean finished = false;
+        for (byte[] packet : generate(55, 20)) {
+            for (OrpheInsoleValue value : OrpheInsoleValue.fromBytes(
+                    packet, OrpheSidePosition.rightPlantar, OrpheAccRange.range16, OrpheGyroRange.range2000, null, base)) {
+                if (count < 40) {
+                    sum[0] += value.pressureToeOutside;
+                    sum[5] += value.pressureHeel;
+                    count++;
+                }
+                finished = tare.add(value);
+            }
+        }
+        assertTrue(finished);
+        assertEquals(40, tare.count());
+        assertEquals(base.tare(OrpheInsoleCell.toeOutside) + sum[0] / 40, tare.tare(OrpheInsoleCell.toeOutside), 1e-9);
+        assertEquals(base.tare(OrpheInsoleCell.heel) + sum[5] / 40, tare.tare(OrpheInsoleCell.heel), 1e-9);
+
+        // 求めた風袋で同じ値をデコードすると平均が0になる
+        final OrpheInsoleCalibration calibration = tare.result();
+        assertSame(base.curve(OrpheInsoleCell.heel), calibration.curve(OrpheInsoleCell.heel));
+        double heel = 0;
+        count = 0;
+        for (byte[] packet : generate(55, 10)) {
+            for (OrpheInsoleValue value : OrpheInsoleValue.fromBytes(
+                    packet, OrpheSidePosition.rightPlantar, OrpheAccRange.range16, OrpheGyroRange.range2000, null, calibration)) {
+                heel += value.pressureHeel;
+                count++;
+            }
+        }
+        assertEquals(0, heel / count, 1e-9);
+    }
+
+    @Test
+    public void storeSavesAndLoadsPerDevice() throws Exception {
+        final File file = new File(folder.getRoot(), "calibration.bin");
+        final OrpheInsoleCalibrationStore store = new OrpheInsoleCalibrationStore();
+        final OrpheInsoleCalibration left = perCellCalibration();
+        final OrpheInsoleCalibration right = OrpheInsoleCalibration.DEFAULT.withTare(new double[]{1, 2, 3, 4, 5, 6});
+        store.put("AA:BB:CC:DD:EE:01", left);
+        store.put("AA:BB:CC:DD:EE:02", right);
+        store.save(file);
+
+        final OrpheInsoleCalibrationStore loaded = OrpheInsoleCalibrationStore.load(file);
+        assertEquals(2, loaded.size());
+        assertNull(loaded.get("AA:BB:CC:DD:EE:03"));
+        final OrpheInsoleCalibration loadedLeft = loaded.get("AA:BB:CC:DD:EE:01");
+        final OrpheInsoleCalibration loadedRight = loaded.get("AA:BB:CC:DD:EE:02");
+        for (OrpheInsoleCell cell : OrpheInsoleCell.values()) {
+            assertEquals(left.curve(cell).offset, loadedLeft.curve(cell).offset, 0);
+            assertEquals(left.curve(cell).scale, loadedLeft.curve(cell).scale, 0);
+            assertEquals(left.tare(cell), loadedLeft.tare(cell), 0);
+            assertEquals(left.toNewton(cell, 1234), loadedLeft.toNewton(cell, 1234), 0);
+            // 標準の曲線は表を作り直さない
+            assertSame(OrpheInsolePressureCurve.DEFAULT, loadedRight.curve(cell));
+            assertEquals(right.tare(cell), loadedRight.tare(cell), 0);
+        }
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        assertEquals(0, OrpheInsoleCalibrationStore.load(new File(folder.getRoot(), "missing.bin")).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws Exception {
+        final File file = folder.newFile("other.bin");
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        }
+        OrpheInsoleCalibrationStore.load(file);
+    }
+
+    @Test
+    public void fixedPointWindowKeepsCalibratedValues() {
+        final OrpheInsoleCalibration calibration = perCellCalibration();
+        final OrpheSampleWindow floats = new OrpheSampleWindow(16, OrpheSamplePrecision.floatPrecision, OrpheAccRange.range16, OrpheGyroRange.range2000, calibration);
+        final OrpheSampleWindow fixed = new OrpheSampleWindow(16, OrpheSamplePrecision.fixedPoint, OrpheAccRange.range16, OrpheGyroRange.range2000, calibration);
+        final SensorFrameBatch batch = new SensorFrameBatch(8);
+        for (byte[] packet : generate(55, 4)) {
+            batch.clear();
+            OrpheInsoleValue.fromBytes(packet, OrpheAccRange.range16, OrpheGyroRange.range2000, batch, null, calibration);
+            floats.add(batch);
+            fixed.add(batch);
+        }
+        for (int i = 0; i < floats.size(); i++) {
+            final float expected = floats.get(OrpheSampleChannel.pressureMidInside, i);
+            assertEquals(expected, fixed.get(OrpheSampleChannel.pressureMidInside, i), Math.abs(expected) * 1e-4f + 1e-4f);
+        }
+    }
+}
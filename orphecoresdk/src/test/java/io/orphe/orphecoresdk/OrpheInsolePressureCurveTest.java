@@ -0,0 +1,68 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheInsolePressureCurve]のテスト。
+ */
+public class OrpheInsolePressureCurveTest {
+    /// 表を使う前の変換式
+    private static double formula(double milliVolt) {
+        return Math.pow(Math.E, ((milliVolt * 3.3 / 4096 * 1000) + 360.02) / 300.03);
+    }
+
+    @Test
+    public void defaultTableMatchesTheFormulaExactly() {
+        for (int code = 0; code < OrpheInsolePressureCurve.TABLE_SIZE; code++) {
+            assertEquals(Double.doubleToLongBits(formula(code)),
+                    Double.doubleToLongBits(OrpheInsolePressureCurve.DEFAULT.toNewton(code)));
+            assertEquals(Double.doubleToLongBits(formula(code)),
+                    Double.doubleToLongBits(OrpheInsoleValue.milliVoltToNewton(code)));
+        }
+        // 12ビットを超える値は計算する
+        assertEquals(formula(65535), OrpheInsolePressureCurve.DEFAULT.toNewton(65535), 0);
+    }
+
+    @Test
+    public void decodersUseTheCurve() throws Exception {
+        final List<byte[]> packets = new ArrayList<>();
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(55, 4);
+        simulator.setSink(value -> packets.add(value.clone()));
+        simulator.emit(1);
+        final byte[] packet = packets.get(0);
+        final OrpheInsolePressureCurve curve = new OrpheInsolePressureCurve(300, 250);
+
+        final OrpheInsoleValue[] defaults = OrpheInsoleValue.fromBytes(packet, OrpheSidePosition.leftPlantar, OrpheAccRange.range16, OrpheGyroRange.range2000, null);
+        final OrpheInsoleValue[] values = OrpheInsoleValue.fromBytes(packet, OrpheSidePosition.leftPlantar, OrpheAccRange.range16, OrpheGyroRange.range2000, null, curve);
+        final SensorFrameBatch batch = new SensorFrameBatch(8);
+        OrpheInsoleValue.fromBytes(packet, OrpheAccRange.range16, OrpheGyroRange.range2000, batch, null, curve);
+        for (int s = 0; s < values.length; s++) {
+            // 55の圧力は各サンプルの先頭から12バイト目からで、つま先の内側が最初
+            final int index = (3 - s) * 24 + 8 + 12;
+            final int code = ((packet[index] & 0xFF) << 8) | (packet[index + 1] & 0xFF);
+            assertEquals(formula(code), defaults[s].pressureToeInside, 0);
+            assertEquals(Math.pow(Math.E, ((code * 3.3 / 4096 * 1000) + 300) / 250), values[s].pressureToeInside, 0);
+            assertEquals((float) values[s].pressureHeel, batch.pressureHeel[s], 0f);
+        }
+    }
+
+    @Test
+    public void toCodeInvertsToNewton() {
+        final OrpheInsolePressureCurve curve = new OrpheInsolePressureCurve(350, 310);
+        for (int code = 0; code < OrpheInsolePressureCurve.TABLE_SIZE; code++) {
+            assertEquals(code, curve.toCode(curve.toNewton(code)));
+            assertEquals(code, curve.toCode((float) curve.toNewton(code)));
+        }
+        assertEquals(-1, curve.toCode(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveScale() {
+        new OrpheInsolePressureCurve(360.02, 0);
+    }
+}
@@ -0,0 +1,35 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheLatencyStats]のテスト。
+ */
+public class OrpheLatencyStatsTest {
+    @Test
+    public void notifiesListenerOfEachRecord() {
+        final OrpheLatencyStats stats = new OrpheLatencyStats();
+        final List<Long> recorded = new ArrayList<>();
+        stats.setListener(latencyNanos -> {
+            // 通知の時点で集計に含まれている
+            assertEquals(recorded.size() + 1, stats.count());
+            recorded.add(latencyNanos);
+        });
+        stats.record(3_000_000L);
+        stats.record(-5);
+        assertEquals(2, recorded.size());
+        assertEquals(3_000_000L, (long) recorded.get(0));
+        assertEquals(0L, (long) recorded.get(1));
+        assertEquals(3.0, stats.maxMillis(), 0);
+
+        stats.setListener(null);
+        stats.record(1_000_000L);
+        assertEquals(2, recorded.size());
+        assertEquals(3, stats.count());
+    }
+}
@@ -0,0 +1,333 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheNotificationPipeline]のテスト。
+ */
+public class OrpheNotificationPipelineTest {
+    private static class RecordingListener implements OrpheNotificationPipeline.Listener<Integer> {
+        final List<String> events = new ArrayList<>();
+        final List<String> threads = new ArrayList<>();
+
+        @Override
+        public void onCurrentSerialNumber(int serialNumber) {
+            events.add("current:" + serialNumber);
+            threads.add(Thread.currentThread().getName());
+        }
+
+        @Override
+        public void onValueNotFound(int serialNumber, int length) {
+            events.add("notFound:" + serialNumber + "+" + length);
+            threads.add(Thread.currentThread().getName());
+        }
+
+        @Override
+        public void onValues(Integer[] values) {
+            events.add("values:" + values[0]);
+            threads.add(Thread.currentThread().getName());
+        }
+
+        @Override
+        public void onRequestValues(OrpheValueRequest[] requests) {
+            for (OrpheValueRequest request : requests) {
+                events.add("request:" + request.startSerialNumber + "+" + request.length);
+            }
+        }
+    }
+
+    private static final OrpheNotificationPipeline.Decoder<Integer> SERIAL_DECODER =
+            value -> new Integer[]{((value[1] & 0xFF) << 8) | (value[2] & 0xFF)};
+
+    @Test
+    public void dispatchesEachPacketType() {
+        final RecordingListener listener = new RecordingListener();
+        final OrpheNotificationPipeline<Integer> pipeline =
+                new OrpheNotificationPipeline<>(SERIAL_DECODER, listener, Runnable::run, null);
+
+        pipeline.onNotified(new byte[]{53, 1, (byte) 0xFF, (byte) 0xFE});
+        pipeline.onNotified(new byte[]{53, 2, 0, 10, 0, 3});
+        pipeline.onNotified(new byte[]{54, 1, 2});
+        pipeline.onNotified(new byte[]{51, 0, 0});
+
+        assertEquals(3, listener.events.size());
+        assertEquals("current:65534", listener.events.get(0));
+        assertEquals("notFound:10+3", listener.events.get(1));
+        assertEquals("values:258", listener.events.get(2));
+        assertEquals(3, pipeline.latencyStats().count());
+    }
+
+    @Test
+    public void decodesAndDeliversOnSeparateExecutors() throws Exception {
+        final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "decode"));
+        final ExecutorService callbackExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "callback"));
+        final List<String> decodeThreads = new ArrayList<>();
+        final RecordingListener listener = new RecordingListener();
+        final OrpheNotificationPipeline<Integer> pipeline = new OrpheNotificationPipeline<>(
+                value -> {
+                    decodeThreads.add(Thread.currentThread().getName());
+                    return SERIAL_DECODER.decode(value);
+                },
+                listener, decodeExecutor, callbackExecutor);
+
+        for (int i = 0; i < 100; i++) {
+            pipeline.onNotified(new byte[]{55, (byte) (i >> 8), (byte) i});
+        }
+        decodeExecutor.shutdown();
+        assertTrue(decodeExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        final CountDownLatch latch = new CountDownLatch(1);
+        callbackExecutor.execute(latch::countDown);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        callbackExecutor.shutdown();
+
+        assertEquals(100, listener.events.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("values:" + i, listener.events.get(i));
+            assertEquals("callback", listener.threads.get(i));
+            assertEquals("decode", decodeThreads.get(i));
+        }
+        assertEquals(100, pipeline.latencyStats().count());
+        assertTrue(pipeline.latencyStats().maxMillis() >= pipeline.latencyStats().averageMillis());
+    }
+
+    @Test
+    public void framesAreOptInAndRecycledAfterDelivery() {
+        final List<SensorFrameBatch> frames = new ArrayList<>();
+        final List<Integer> serialNumbers = new ArrayList<>();
+        final List<String> sources = new ArrayList<>();
+        final OrpheNotificationPipeline<Integer> pipeline = new OrpheNotificationPipeline<>(
+                new OrpheNotificationPipeline.Decoder<Integer>() {
+                    @Override
+                    public Integer[] decode(byte[] value) throws Exception {
+                        return SERIAL_DECODER.decode(value);
+                    }
+
+                    @Override
+                    public boolean decodeFrames(byte[] value, SensorFrameBatch batch) {
+                        sources.add("bytes");
+                        batch.serialNumber[batch.append()] = ((value[1] & 0xFF) << 8) | (value[2] & 0xFF);
+                        return true;
+                    }
+
+                    @Override
+                    public boolean toFrames(Integer[] values, SensorFrameBatch batch) {
+                        sources.add("values");
+                        batch.serialNumber[batch.append()] = values[0];
+                        return true;
+                    }
+                },
+                new RecordingListener() {
+                    @Override
+                    public void onFrames(SensorFrameBatch batch) {
+                        frames.add(batch);
+                        assertEquals(1, batch.size());
+                        serialNumbers.add(batch.serialNumber[0]);
+                    }
+                },
+                Runnable::run, null);
+
+        // 有効にするまでは書き込まない
+        pipeline.process(new byte[]{54, 0, 1}, 0);
+        assertTrue(sources.isEmpty());
+
+        pipeline.setFramesEnabled(true);
+        pipeline.process(new byte[]{54, 0, 2}, 0);
+        pipeline.process(new byte[]{54, 0, 3}, 0);
+        // 並べ替える場合は出力した値から書き込む
+        pipeline.setReorderBuffer(new OrpheReorderBuffer<>(value -> 0, 200));
+        pipeline.process(new byte[]{54, 0, 4}, 0);
+
+        assertEquals("[bytes, bytes, values]", sources.toString());
+        assertEquals("[2, 3, 4]", serialNumbers.toString());
+        // 配信が終わったものを次の配信で使い回す
+        assertSame(frames.get(0), frames.get(1));
+        assertSame(frames.get(0), frames.get(2));
+    }
+
+    @Test
+    public void gapTrackerRequestsMissingAndDropsDuplicates() {
+        final RecordingListener listener = new RecordingListener();
+        final OrpheNotificationPipeline<Integer> pipeline =
+                new OrpheNotificationPipeline<>(SERIAL_DECODER, listener, Runnable::run, null);
+        final OrpheSerialGapTracker gapTracker = new OrpheSerialGapTracker();
+        pipeline.setGapTracker(gapTracker);
+
+        final long second = 1_000_000_000L;
+        pipeline.process(new byte[]{54, (byte) 0xFF, (byte) 0xFE}, second);
+        pipeline.process(new byte[]{54, 0, 2}, 2 * second);
+        pipeline.process(new byte[]{54, 0, 2}, 3 * second);
+        pipeline.process(new byte[]{54, (byte) 0xFF, (byte) 0xFF}, 4 * second);
+        pipeline.process(new byte[]{53, 2, 0, 0, 0, 2}, 5 * second);
+
+        assertEquals("[values:65534, values:2, request:65535+3, values:65535]", listener.events.subList(0, 4).toString());
+        assertEquals("notFound:0+2", listener.events.get(4));
+        assertEquals(1, gapTracker.duplicateCount());
+        assertEquals(1, gapTracker.recoveredCount());
+        assertEquals(2, gapTracker.lostCount());
+    }
+
+    @Test
+    public void recoveredValueIsDeliveredOnce() {
+        final RecordingListener listener = new RecordingListener();
+        final OrpheNotificationPipeline<Integer> pipeline =
+                new OrpheNotificationPipeline<>(SERIAL_DECODER, listener, Runnable::run, null);
+        pipeline.setGapTracker(new OrpheSerialGapTracker());
+
+        pipeline.process(new byte[]{54, 0, 1}, 0);
+        pipeline.process(new byte[]{54, 0, 3}, OrpheNotificationPipeline.BACKFILL_INTERVAL_NANOS);
+        // 再取得した2が、再送の重複などで2回届いた場合
+        pipeline.process(new byte[]{54, 0, 2}, 2 * OrpheNotificationPipeline.BACKFILL_INTERVAL_NANOS);
+        pipeline.process(new byte[]{54, 0, 2}, 3 * OrpheNotificationPipeline.BACKFILL_INTERVAL_NANOS);
+
+        assertEquals("[values:1, values:3, request:2+1, values:2]", listener.events.toString());
+        assertEquals(1, pipeline.gapTracker().recoveredCount());
+        assertEquals(1, pipeline.gapTracker().duplicateCount());
+    }
+
+    @Test
+    public void recoveredAndReplayedValuesAreNotLive() {
+        for (boolean reorder : new boolean[]{false, true}) {
+            final List<String> live = new ArrayList<>();
+            final OrpheNotificationPipeline<Integer> pipeline = new OrpheNotificationPipeline<>(SERIAL_DECODER,
+                    new RecordingListener() {
+                        @Override
+                        public void onValues(Integer[] values, boolean isLive) {
+                            live.add(values[0] + ":" + isLive);
+                        }
+                    }, Runnable::run, null);
+            pipeline.setGapTracker(new OrpheSerialGapTracker());
+            if (reorder) {
+                pipeline.setReorderBuffer(new OrpheReorderBuffer<>(value -> 0, 200));
+            }
+            pipeline.process(new byte[]{54, 0, 1}, 0);
+            pipeline.process(new byte[]{54, 0, 3}, 0);
+            pipeline.process(new byte[]{54, 0, 2}, 0);
+            // アプリがリクエストした範囲の再送
+            pipeline.gapTracker().onRequested(new OrpheValueRequest[]{new OrpheValueRequest(1, 3)});
+            pipeline.process(new byte[]{54, 0, 1}, 0);
+            pipeline.process(new byte[]{54, 0, 4}, 0);
+            pipeline.flushReorderBuffer();
+            if (reorder) {
+                // 並べ替えても最初に受け取ったものかどうかを保ち、出力済みの1の再送は破棄される
+                assertEquals("[1:true, 2:false, 3:true, 4:true]", live.toString());
+            } else {
+                assertEquals("[1:true, 3:true, 2:false, 1:false, 4:true]", live.toString());
+            }
+        }
+    }
+
+    @Test
+    public void heldValuesAreReleasedByTimerWithoutFurtherInput() {
+        final RecordingListener listener = new RecordingListener();
+        final OrpheNotificationPipeline<Integer> pipeline =
+                new OrpheNotificationPipeline<>(SERIAL_DECODER, listener, Runnable::run, null);
+        pipeline.setReorderBuffer(new OrpheReorderBuffer<>(value -> 0, 200));
+        final List<Runnable> timers = new ArrayList<>();
+        final List<Long> delays = new ArrayList<>();
+        pipeline.setHoldScheduler((runnable, delayMillis) -> {
+            timers.add(runnable);
+            delays.add(delayMillis);
+        });
+
+        // 2が欠けているので3は保持される
+        final long receivedNanos = System.nanoTime() - 1_000_000_000L;
+        pipeline.process(new byte[]{54, 0, 1}, receivedNanos);
+        pipeline.process(new byte[]{54, 0, 3}, receivedNanos);
+        assertEquals("[values:1]", listener.events.toString());
+        assertEquals(1, timers.size());
+        assertEquals(200L, (long) delays.get(0));
+
+        // 次のセンサー値が届かなくても、タイマーで保持時間を過ぎたものが配信される
+        timers.get(0).run();
+        assertEquals("[values:1, values:3]", listener.events.toString());
+        assertEquals(1, pipeline.reorderBuffer().skippedCount());
+        assertEquals(1, timers.size());
+    }
+
+    @Test
+    public void heldValuesAreFlushedWhenOrderingStops() {
+        final RecordingListener listener = new RecordingListener();
+        final OrpheNotificationPipeline<Integer> pipeline =
+                new OrpheNotificationPipeline<>(SERIAL_DECODER, listener, Runnable::run, null);
+        pipeline.setReorderBuffer(new OrpheReorderBuffer<>(value -> 0, 200));
+        pipeline.process(new byte[]{54, 0, 1}, 0);
+        pipeline.process(new byte[]{54, 0, 3}, 0);
+        pipeline.process(new byte[]{54, 0, 5}, 0);
+        pipeline.flushReorderBuffer();
+        assertEquals("[values:1, values:3, values:5]", listener.events.toString());
+
+        pipeline.process(new byte[]{54, 0, 7}, 0);
+        pipeline.setReorderBuffer(null);
+        assertEquals("[values:1, values:3, values:5, values:7]", listener.events.toString());
+    }
+
+    @Test
+    public void replayThroughputCountsOnlyRequestedSerials() {
+        final RecordingListener listener = new RecordingListener();
+        final OrpheNotificationPipeline<Integer> pipeline =
+                new OrpheNotificationPipeline<>(SERIAL_DECODER, listener, Runnable::run, null);
+        pipeline.process(new byte[]{54, 0, 1}, 0);
+        assertEquals(0, pipeline.replayThroughput().packets());
+
+        pipeline.startReplay(new OrpheValueRequest[]{new OrpheValueRequest(65534, 4)});
+        pipeline.process(new byte[]{54, (byte) 0xFF, (byte) 0xFE}, 1_000_000L);
+        pipeline.process(new byte[]{54, 0, 1}, 2_000_000L);
+        // リクエストしていない範囲やリアルタイムのセンサー値は含めない
+        pipeline.process(new byte[]{54, 0, 2}, 3_000_000L);
+        pipeline.process(new byte[]{54, 1, 0}, 4_000_000L);
+        assertEquals(2, pipeline.replayThroughput().packets());
+        assertEquals(6, pipeline.replayThroughput().bytes());
+    }
+
+    @Test
+    public void onlyPacketsAdvancingLatestSerialAreLive() {
+        final RecordingListener listener = new RecordingListener();
+        final List<String> live = new ArrayList<>();
+        final OrpheNotificationPipeline<Integer> pipeline = new OrpheNotificationPipeline<>(
+                new OrpheNotificationPipeline.Decoder<Integer>() {
+                    @Override
+                    public Integer[] decode(byte[] value) throws Exception {
+                        return SERIAL_DECODER.decode(value);
+                    }
+
+                    @Override
+                    public Integer[] decode(byte[] value, long receivedNanos, boolean isLive) throws Exception {
+                        final Integer[] values = decode(value);
+                        live.add(values[0] + ":" + isLive);
+                        return values;
+                    }
+                }, listener, Runnable::run, null);
+        pipeline.setSerialClock(new OrpheSerialClock(OrpheSerialClock.CORE_PERIOD_NANOS));
+        pipeline.process(new byte[]{54, (byte) 0xC3, 0x50}, 0);
+        pipeline.process(new byte[]{54, (byte) 0xC3, 0x51}, 10_000_000L);
+        // 40000件前の蓄積データは25536件進んだように見えるが、受信時刻として使わない
+        pipeline.process(new byte[]{54, 0x27, 0x11}, 20_000_000L);
+        pipeline.process(new byte[]{54, (byte) 0xC3, 0x52}, 30_000_000L);
+        assertEquals("[50000:true, 50001:true, 10001:false, 50002:true]", live.toString());
+    }
+
+    @Test
+    public void latencyStatsPercentiles() {
+        final OrpheLatencyStats stats = new OrpheLatencyStats();
+        for (int i = 0; i < 99; i++) {
+            stats.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        stats.record(TimeUnit.MILLISECONDS.toNanos(20));
+
+        assertEquals(100, stats.count());
+        assertEquals(20.0, stats.maxMillis(), 1e-9);
+        assertTrue(stats.percentileMillis(50) <= 0.128);
+        assertEquals(20.0, stats.percentileMillis(100), 1e-9);
+        stats.reset();
+        assertEquals(0, stats.count());
+    }
+}
@@ -0,0 +1,129 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheNotificationRingBuffer]のテスト。
+ */
+public class OrpheNotificationRingBufferTest {
+    private static byte[] payload(int sequence) {
+        final byte[] bytes = new byte[16];
+        for (int i = 0; i < bytes.length; i += 4) {
+            bytes[i] = (byte) (sequence >> 24);
+            bytes[i + 1] = (byte) (sequence >> 16);
+            bytes[i + 2] = (byte) (sequence >> 8);
+            bytes[i + 3] = (byte) sequence;
+        }
+        return bytes;
+    }
+
+    private static int sequenceOf(byte[] bytes) {
+        final int sequence = ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+        for (int i = 4; i < 16; i += 4) {
+            final int other = ((bytes[i] & 0xFF) << 24) | ((bytes[i + 1] & 0xFF) << 16) | ((bytes[i + 2] & 0xFF) << 8) | (bytes[i + 3] & 0xFF);
+            assertEquals("torn read", sequence, other);
+        }
+        return sequence;
+    }
+
+    @Test
+    public void dropNewestKeepsOldestEntries() {
+        final OrpheNotificationRingBuffer buffer = new OrpheNotificationRingBuffer(4, 16, OrpheOverflowPolicy.dropNewest);
+        for (int i = 0; i < 6; i++) {
+            buffer.offer(payload(i), 16, i);
+        }
+        assertEquals(4, buffer.occupancy());
+        assertEquals(2, buffer.droppedCount());
+        assertEquals(4, buffer.highWaterMark());
+
+        final byte[] destination = new byte[16];
+        for (int i = 0; i < 4; i++) {
+            assertEquals(16, buffer.poll(destination));
+            assertEquals(i, sequenceOf(destination));
+            assertEquals(i, buffer.polledNanos());
+        }
+        assertEquals(-1, buffer.poll(destination));
+    }
+
+    @Test
+    public void dropOldestKeepsNewestEntries() {
+        final OrpheNotificationRingBuffer buffer = new OrpheNotificationRingBuffer(4, 16, OrpheOverflowPolicy.dropOldest);
+        for (int i = 0; i < 6; i++) {
+            buffer.offer(payload(i), 16, i);
+        }
+        assertEquals(4, buffer.occupancy());
+        assertEquals(2, buffer.droppedCount());
+
+        final byte[] destination = new byte[16];
+        for (int i = 2; i < 6; i++) {
+            assertEquals(16, buffer.poll(destination));
+            assertEquals(i, sequenceOf(destination));
+        }
+    }
+
+    @Test
+    public void rejectsOversizedPayload() {
+        final OrpheNotificationRingBuffer buffer = new OrpheNotificationRingBuffer(4, 8, OrpheOverflowPolicy.dropOldest);
+        assertFalse(buffer.offer(new byte[16], 16, 0));
+        assertEquals(0, buffer.occupancy());
+        assertEquals(1, buffer.droppedCount());
+    }
+
+    @Test
+    public void capacityIsRoundedUpToPowerOfTwo() {
+        assertEquals(8, new OrpheNotificationRingBuffer(5, 16, OrpheOverflowPolicy.dropOldest).capacity());
+        assertEquals(256, new OrpheNotificationRingBuffer(256, 16, OrpheOverflowPolicy.dropOldest).capacity());
+    }
+
+    @Test
+    public void blockAndCountDeliversEverything() throws Exception {
+        assertConcurrentTransfer(OrpheOverflowPolicy.blockAndCount, true);
+    }
+
+    @Test
+    public void dropOldestNeverTearsUnderContention() throws Exception {
+        assertConcurrentTransfer(OrpheOverflowPolicy.dropOldest, false);
+    }
+
+    private static void assertConcurrentTransfer(OrpheOverflowPolicy policy, boolean lossless) throws Exception {
+        final int total = 200000;
+        final OrpheNotificationRingBuffer buffer = new OrpheNotificationRingBuffer(8, 16, policy);
+        final AtomicBoolean done = new AtomicBoolean();
+        final int[] received = new int[1];
+        final Throwable[] failure = new Throwable[1];
+        final Thread consumer = new Thread(() -> {
+            try {
+                final byte[] destination = new byte[16];
+                int previous = -1;
+                while (!done.get() || buffer.occupancy() > 0) {
+                    if (buffer.poll(destination) < 0) {
+                        continue;
+                    }
+                    final int sequence = sequenceOf(destination);
+                    assertTrue(sequence > previous);
+                    previous = sequence;
+                    received[0]++;
+                }
+            } catch (Throwable t) {
+                failure[0] = t;
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < total; i++) {
+            buffer.offer(payload(i), 16, i);
+        }
+        done.set(true);
+        consumer.join(30000);
+
+        assertNull(failure[0]);
+        assertEquals(total, received[0] + buffer.droppedCount());
+        assertTrue(buffer.highWaterMark() <= buffer.capacity());
+        if (lossless) {
+            assertEquals(0, buffer.droppedCount());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheReconnector]のテスト。
+ */
+public class OrpheReconnectorTest {
+    private static final String KEY = OrpheKnownDevices.key("Orphe", OrpheSidePosition.leftPlantar);
+    private static final String ADDRESS = "00:11:22:33:44:55";
+
+    private static class MapStore implements OrpheKnownDevices.Store {
+        final Map<String, String> values = new HashMap<>();
+
+        @Override
+        public String get(String key) {
+            return values.get(key);
+        }
+
+        @Override
+        public void put(String key, String value) {
+            if (value != null) {
+                values.put(key, value);
+            } else {
+                values.remove(key);
+            }
+        }
+    }
+
+    private static class ManualScheduler implements OrpheGattOperationQueue.Scheduler {
+        final List<Runnable> scheduled = new ArrayList<>();
+
+        @Override
+        public void schedule(Runnable runnable, long delayMillis) {
+            scheduled.add(runnable);
+        }
+
+        @Override
+        public void cancel(Runnable runnable) {
+            scheduled.remove(runnable);
+        }
+
+        void fireAll() {
+            for (Runnable runnable : new ArrayList<>(scheduled)) {
+                scheduled.remove(runnable);
+                runnable.run();
+            }
+        }
+    }
+
+    private final MapStore mStore = new MapStore();
+    private final ManualScheduler mScheduler = new ManualScheduler();
+    private int mTimeouts;
+
+    private OrpheReconnector reconnector() {
+        return new OrpheReconnector(new OrpheKnownDevices(mStore), KEY, mScheduler,
+                OrpheReconnector.DEFAULT_TIMEOUT_MILLIS, () -> mTimeouts++);
+    }
+
+    @Test
+    public void reconnectsOnlyWhenEnabledAndDropped() {
+        final OrpheReconnector reconnector = reconnector();
+        assertFalse(reconnector.shouldReconnect(true, true));
+
+        reconnector.setEnabled(true);
+        assertTrue(reconnector.isEnabled());
+        assertTrue(reconnector.shouldReconnect(true, true));
+        // 切断を依頼した場合や、古いBluetoothGattの切断では接続し直さない
+        assertFalse(reconnector.shouldReconnect(false, true));
+        assertFalse(reconnector.shouldReconnect(true, false));
+    }
+
+    @Test
+    public void schedulesTimeoutOnceWhileReconnecting() {
+        final OrpheReconnector reconnector = reconnector();
+        reconnector.onReconnecting();
+        reconnector.onReconnecting();
+        assertTrue(reconnector.isReconnecting());
+        assertEquals(1, mScheduler.scheduled.size());
+
+        mScheduler.fireAll();
+        assertEquals(1, mTimeouts);
+        assertFalse(reconnector.isReconnecting());
+    }
+
+    @Test
+    public void connectingCancelsTimeoutAndSavesAddress() {
+        final OrpheReconnector reconnector = reconnector();
+        assertNull(reconnector.knownAddress());
+        reconnector.onReconnecting();
+
+        reconnector.onConnected(ADDRESS);
+        assertFalse(reconnector.isReconnecting());
+        assertTrue(mScheduler.scheduled.isEmpty());
+        assertEquals(ADDRESS, reconnector.knownAddress());
+        assertEquals(ADDRESS, mStore.values.get("Orphe.leftPlantar"));
+    }
+
+    @Test
+    public void timeoutAfterCancelDoesNothing() {
+        final OrpheReconnector reconnector = reconnector();
+        reconnector.onReconnecting();
+        // 取り消しが間に合わずに実行された場合
+        final Runnable timeout = mScheduler.scheduled.get(0);
+        reconnector.cancel();
+        timeout.run();
+        assertEquals(0, mTimeouts);
+    }
+
+    @Test
+    public void reusesServicesOnlyAfterNotificationsEnabled() {
+        final OrpheReconnector reconnector = reconnector();
+        reconnector.onNewGatt();
+        assertFalse(reconnector.useCachedServices(true));
+        assertFalse(reconnector.onNotificationEnabled(true));
+
+        // 同じBluetoothGattで接続し直した場合
+        assertTrue(reconnector.useCachedServices(true));
+        assertFalse(reconnector.useCachedServices(false));
+
+        reconnector.onNewGatt();
+        assertFalse(reconnector.useCachedServices(true));
+    }
+
+    @Test
+    public void disconnectsWhenCachedServicesFail() {
+        final OrpheReconnector reconnector = reconnector();
+        reconnector.onNotificationEnabled(true);
+        assertTrue(reconnector.useCachedServices(true));
+
+        assertTrue(reconnector.onNotificationEnabled(false));
+        // 探索からやり直した後の失敗では切断しない
+        assertFalse(reconnector.useCachedServices(true));
+        assertFalse(reconnector.onNotificationEnabled(false));
+    }
+
+    @Test
+    public void forgetRemovesAddress() {
+        final OrpheReconnector reconnector = reconnector();
+        reconnector.onConnected(ADDRESS);
+        reconnector.forget();
+        assertNull(reconnector.knownAddress());
+        assertTrue(mStore.values.isEmpty());
+    }
+
+    @Test
+    public void keysAreSeparatedBySidePosition() {
+        final OrpheKnownDevices knownDevices = new OrpheKnownDevices(mStore);
+        knownDevices.save(OrpheKnownDevices.key("Orphe", OrpheSidePosition.leftPlantar), ADDRESS);
+        assertNull(knownDevices.load(OrpheKnownDevices.key("Orphe", OrpheSidePosition.rightPlantar)));
+        assertNull(knownDevices.load(OrpheKnownDevices.key("OrpheInsole", OrpheSidePosition.leftPlantar)));
+        assertEquals(ADDRESS, knownDevices.load(OrpheKnownDevices.key("Orphe", OrpheSidePosition.leftPlantar)));
+    }
+}
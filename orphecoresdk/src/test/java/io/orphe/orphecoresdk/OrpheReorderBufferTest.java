@@ -0,0 +1,134 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheReorderBuffer]のテスト。
+ */
+public class OrpheReorderBufferTest {
+    private static final long MILLIS = 1_000_000L;
+
+    /// シリアルナンバーとデータ中の位置を持つセンサー値の代わり
+    private static class Sample {
+        final int serialNumber;
+        final int dataPosition;
+
+        Sample(int serialNumber, int dataPosition) {
+            this.serialNumber = serialNumber;
+            this.dataPosition = dataPosition;
+        }
+
+        @Override
+        public String toString() {
+            return serialNumber + "/" + dataPosition;
+        }
+    }
+
+    private static class Recorder implements OrpheReorderBuffer.Emitter<Sample> {
+        final List<String> emitted = new ArrayList<>();
+
+        @Override
+        public void emit(Sample[] values, long receivedNanos, boolean live) {
+            for (Sample value : values) {
+                emitted.add(value.toString());
+            }
+        }
+    }
+
+    private static Sample[] packet(int serialNumber, int... dataPositions) {
+        final Sample[] values = new Sample[dataPositions.length];
+        for (int i = 0; i < dataPositions.length; i++) {
+            values[i] = new Sample(serialNumber, dataPositions[i]);
+        }
+        return values;
+    }
+
+    private static OrpheReorderBuffer<Sample> newBuffer(long maxHoldMillis) {
+        return new OrpheReorderBuffer<>(value -> value.dataPosition, maxHoldMillis);
+    }
+
+    @Test
+    public void reordersAcrossWraparound() {
+        final OrpheReorderBuffer<Sample> buffer = newBuffer(100);
+        final Recorder recorder = new Recorder();
+
+        buffer.offer(65534, packet(65534, 1, 0), 0, true, recorder);
+        buffer.offer(0, packet(0, 1, 0), MILLIS, true, recorder);
+        buffer.offer(65535, packet(65535, 1, 0), 2 * MILLIS, true, recorder);
+
+        assertEquals("[65534/1, 65534/0, 65535/1, 65535/0, 0/1, 0/0]", recorder.emitted.toString());
+        assertEquals(0, buffer.heldCount());
+    }
+
+    @Test
+    public void dropsDuplicatesAndMergesPartialPackets() {
+        final OrpheReorderBuffer<Sample> buffer = newBuffer(100);
+        final Recorder recorder = new Recorder();
+
+        buffer.offer(10, packet(10, 3, 2, 1, 0), 0, true, recorder);
+        buffer.offer(12, packet(12, 3, 1), MILLIS, true, recorder);
+        buffer.offer(12, packet(12, 3, 2, 0), 2 * MILLIS, true, recorder);
+        buffer.offer(11, packet(11, 1, 0), 3 * MILLIS, true, recorder);
+        buffer.offer(10, packet(10, 3, 2, 1, 0), 4 * MILLIS, true, recorder);
+
+        assertEquals("[10/3, 10/2, 10/1, 10/0, 11/1, 11/0, 12/3, 12/2, 12/1, 12/0]", recorder.emitted.toString());
+        assertEquals(1, buffer.duplicateCount());
+        assertEquals(4, buffer.lateDropCount());
+    }
+
+    @Test
+    public void skipsMissingSerialAfterMaxHold() {
+        final OrpheReorderBuffer<Sample> buffer = newBuffer(100);
+        final Recorder recorder = new Recorder();
+
+        buffer.offer(1, packet(1, 0), 0, true, recorder);
+        buffer.offer(3, packet(3, 0), 10 * MILLIS, true, recorder);
+        buffer.offer(4, packet(4, 0), 50 * MILLIS, true, recorder);
+        assertEquals("[1/0]", recorder.emitted.toString());
+        assertEquals(2, buffer.heldCount());
+
+        buffer.offer(5, packet(5, 0), 110 * MILLIS, true, recorder);
+        assertEquals("[1/0, 3/0, 4/0, 5/0]", recorder.emitted.toString());
+        assertEquals(1, buffer.skippedCount());
+
+        buffer.offer(2, packet(2, 0), 120 * MILLIS, true, recorder);
+        assertEquals(1, buffer.lateDropCount());
+    }
+
+    @Test
+    public void flushesOnDiscontinuity() {
+        final OrpheReorderBuffer<Sample> buffer = newBuffer(1000);
+        final Recorder recorder = new Recorder();
+
+        buffer.offer(100, packet(100, 0), 0, true, recorder);
+        buffer.offer(102, packet(102, 0), MILLIS, true, recorder);
+        buffer.offer(5000, packet(5000, 0), 2 * MILLIS, true, recorder);
+        buffer.offer(5001, packet(5001, 0), 3 * MILLIS, true, recorder);
+
+        assertEquals("[100/0, 102/0, 5000/0, 5001/0]", recorder.emitted.toString());
+        assertEquals(0, buffer.heldCount());
+    }
+
+    @Test
+    public void passesFarReplaysThroughWithoutRestarting() {
+        final OrpheReorderBuffer<Sample> buffer = newBuffer(1000);
+        final Recorder recorder = new Recorder();
+
+        buffer.offer(5000, packet(5000, 0), 0, true, recorder);
+        buffer.offer(5002, packet(5002, 0), MILLIS, true, recorder);
+        // 蓄積されたデータの再取得がリアルタイムのセンサー値の間に届いた場合
+        buffer.offer(100, packet(100, 0), 2 * MILLIS, false, recorder);
+        buffer.offer(45000, packet(45000, 0), 3 * MILLIS, false, recorder);
+        assertEquals(1, buffer.heldCount());
+        buffer.offer(5001, packet(5001, 0), 4 * MILLIS, true, recorder);
+
+        assertEquals("[5000/0, 100/0, 45000/0, 5001/0, 5002/0]", recorder.emitted.toString());
+        assertEquals(2, buffer.passedCount());
+        assertEquals(0, buffer.skippedCount());
+    }
+}
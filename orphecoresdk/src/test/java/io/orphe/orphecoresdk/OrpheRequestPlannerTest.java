@@ -0,0 +1,161 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheRequestPlanner]のテスト。
+ */
+public class OrpheRequestPlannerTest {
+    private static final long MILLIS = 1_000_000L;
+
+    private static OrpheValueRequest range(int start, int length) {
+        return new OrpheValueRequest(start, length);
+    }
+
+    private static void assertRange(int start, int length, OrpheValueRequest request) {
+        assertEquals(start, request.startSerialNumber);
+        assertEquals(length, request.length);
+    }
+
+    @Test
+    public void mergesOverlappingAndAdjacentRanges() {
+        final OrpheValueRequest[] merged = OrpheRequestPlanner.merge(new OrpheValueRequest[]{
+                range(500, 10), range(100, 10), range(110, 5), range(105, 20), range(300, 0), range(505, 3)
+        });
+        // 最初に指定された範囲の順に並べる
+        assertEquals(2, merged.length);
+        assertRange(500, 10, merged[0]);
+        assertRange(100, 25, merged[1]);
+    }
+
+    @Test
+    public void mergesAcrossWrapAround() {
+        final OrpheValueRequest[] merged = OrpheRequestPlanner.merge(new OrpheValueRequest[]{
+                range(3, 4), range(65530, 10), range(200, 1)
+        });
+        assertEquals(2, merged.length);
+        assertRange(65530, 13, merged[0]);
+        assertRange(200, 1, merged[1]);
+    }
+
+    @Test
+    public void splitsWholeRing() {
+        final OrpheValueRequest[] merged = OrpheRequestPlanner.merge(new OrpheValueRequest[]{
+                range(10, 100), range(65000, 2000), range(1000, 64600)
+        });
+        assertEquals(2, merged.length);
+        assertRange(1000, OrpheRequestPlanner.MAX_LENGTH, merged[0]);
+        assertRange(999, 1, merged[1]);
+    }
+
+    @Test
+    public void payloadHasOnlyNeededBytes() {
+        final byte[] payload = OrpheRequestPlanner.payload(new OrpheValueRequest[]{range(0x1234, 0x0102)}, 0, 1);
+        assertArrayEquals(new byte[]{11, 2, 0x12, 0x34, 0x01, 0x02}, payload);
+    }
+
+    @Test
+    public void writesNextAfterLastRangeArrives() {
+        final List<byte[]> writes = new ArrayList<>();
+        final OrpheRequestPlanner planner = new OrpheRequestPlanner(writes::add);
+        final OrpheValueRequest[] requests = new OrpheValueRequest[70];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = range(i * 10, 5);
+        }
+        planner.plan(OrpheRequestPlanner.merge(requests), 0);
+        assertEquals(1, writes.size());
+        assertEquals(2 + 30 * 4, writes.get(0).length);
+        assertTrue(planner.hasPending());
+
+        // 前の書き込みの範囲を受け取っている間は次を書き込まない
+        planner.onSerialNumber(0, 10 * MILLIS);
+        planner.onSerialNumber(290, 20 * MILLIS);
+        assertEquals(1, writes.size());
+        planner.onSerialNumber(294, 30 * MILLIS);
+        assertEquals(2, writes.size());
+        assertEquals(2 + 30 * 4, writes.get(1).length);
+
+        // 最後の範囲が見つからなかった場合も次に進む
+        planner.onNotFound(590, 5, 40 * MILLIS);
+        assertEquals(3, writes.size());
+        assertEquals(2 + 10 * 4, writes.get(2).length);
+        // 最後の書き込みも受け取り終わるまでは途中とみなす
+        assertTrue(planner.hasPending());
+        planner.onSerialNumber(694, 50 * MILLIS);
+        assertFalse(planner.hasPending());
+        assertEquals(3, planner.writeCount());
+    }
+
+    @Test
+    public void writesNextWhenIdle() {
+        final List<byte[]> writes = new ArrayList<>();
+        final OrpheRequestPlanner planner = new OrpheRequestPlanner(writes::add);
+        final OrpheValueRequest[] requests = new OrpheValueRequest[31];
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = range(i * 10, 5);
+        }
+        planner.plan(OrpheRequestPlanner.merge(requests), 0);
+        planner.onSerialNumber(100, 500 * MILLIS);
+        // リクエストしていないシリアルナンバーは待つ理由にならない
+        planner.onSerialNumber(1000, 1400 * MILLIS);
+        planner.tick(1400 * MILLIS);
+        assertEquals(1, writes.size());
+        planner.tick(1500 * MILLIS);
+        assertEquals(2, writes.size());
+        assertArrayEquals(new byte[]{11, 2, 0x01, 0x2C, 0, 5}, writes.get(1));
+    }
+
+    @Test
+    public void mergesRequestsFromSeveralProducers() {
+        final List<byte[]> writes = new ArrayList<>();
+        final OrpheRequestPlanner planner = new OrpheRequestPlanner(writes::add);
+        // まとめて取得
+        final OrpheValueRequest[] download = new OrpheValueRequest[40];
+        for (int i = 0; i < download.length; i++) {
+            download[i] = range(i * 10, 5);
+        }
+        planner.plan(OrpheRequestPlanner.merge(download), 0);
+        assertEquals(1, writes.size());
+
+        // 欠落の再取得は、受け取っている途中の書き込みを置き換えず、まだ書き込んでいない範囲とまとめる
+        planner.plan(new OrpheValueRequest[]{range(5000, 100), range(303, 4)}, 10 * MILLIS);
+        assertEquals(1, writes.size());
+        assertTrue(planner.hasPending());
+
+        planner.onSerialNumber(294, 20 * MILLIS);
+        assertEquals(2, writes.size());
+        // 300〜304と303〜306は1つにまとめる
+        assertEquals(2 + 11 * 4, writes.get(1).length);
+
+        // まとめて取得の次のリクエストも、再取得の範囲を捨てない
+        planner.plan(new OrpheValueRequest[]{range(6000, 10)}, 30 * MILLIS);
+        assertEquals(2, writes.size());
+        planner.onSerialNumber(5099, 40 * MILLIS);
+        assertEquals(3, writes.size());
+        assertEquals(2 + 4, writes.get(2).length);
+        planner.onSerialNumber(6009, 50 * MILLIS);
+        assertFalse(planner.hasPending());
+
+        final boolean[] written = new boolean[OrpheSerialNumber.MODULUS];
+        for (byte[] write : writes) {
+            for (int i = OrpheRequestPlanner.HEADER_SIZE; i < write.length; i += OrpheRequestPlanner.RANGE_SIZE) {
+                final int start = ((write[i] & 0xFF) << 8) | (write[i + 1] & 0xFF);
+                final int length = ((write[i + 2] & 0xFF) << 8) | (write[i + 3] & 0xFF);
+                for (int n = 0; n < length; n++) {
+                    written[OrpheSerialNumber.add(start, n)] = true;
+                }
+            }
+        }
+        for (OrpheValueRequest request : download) {
+            assertTrue(written[request.startSerialNumber]);
+        }
+        assertTrue(written[306]);
+        assertTrue(written[5099]);
+        assertTrue(written[6009]);
+    }
+}
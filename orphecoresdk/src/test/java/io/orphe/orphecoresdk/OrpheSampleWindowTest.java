@@ -0,0 +1,138 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheSampleWindow]のテスト。
+ */
+public class OrpheSampleWindowTest {
+    private static void fill(int packetType, int count, OrpheSampleWindow... windows) {
+        fill(packetType, count, OrpheInsoleCalibration.DEFAULT, windows);
+    }
+
+    private static void fill(int packetType, int count, OrpheInsoleCalibration calibration, OrpheSampleWindow... windows) {
+        final SensorFrameBatch frames = new SensorFrameBatch(SensorFrameBatch.MAX_SAMPLES_PER_PACKET);
+        final OrpheDeviceClock clock = new OrpheDeviceClock(1_700_000_000_000L, 0);
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(packetType, 5);
+        simulator.setSerialNumber(65530);
+        simulator.setSink(value -> {
+            clock.onPacket(value, OrpheDeviceClock.timeOfDayMillis(value) * 1_000_000L);
+            frames.clear();
+            if (packetType == 50 || packetType == 54) {
+                OrpheSensorValue.fromBytes(value, OrpheAccRange.range16, OrpheGyroRange.range2000, frames, clock);
+            } else {
+                OrpheInsoleValue.fromBytes(value, OrpheAccRange.range16, OrpheGyroRange.range2000, frames, clock, calibration);
+            }
+            for (OrpheSampleWindow window : windows) {
+                window.add(frames);
+            }
+        });
+        simulator.emit(count);
+    }
+
+    @Test
+    public void fixedPointKeepsTheSameValues() {
+        for (int packetType : new int[]{50, 54, 55, 56}) {
+            final OrpheSampleWindow floats = new OrpheSampleWindow(64, OrpheSamplePrecision.floatPrecision, OrpheAccRange.range16, OrpheGyroRange.range2000);
+            final OrpheSampleWindow fixed = new OrpheSampleWindow(64, OrpheSamplePrecision.fixedPoint, OrpheAccRange.range16, OrpheGyroRange.range2000);
+            fill(packetType, 10, floats, fixed);
+
+            assertEquals(floats.size(), fixed.size());
+            for (int i = 0; i < floats.size(); i++) {
+                assertEquals(floats.timestamp(i), fixed.timestamp(i));
+                assertEquals(floats.deviceTime(i), fixed.deviceTime(i));
+                assertEquals(floats.serialNumber(i), fixed.serialNumber(i));
+                assertEquals(floats.dataPosition(i), fixed.dataPosition(i));
+                for (OrpheSampleChannel channel : OrpheSampleChannel.values()) {
+                    final float expected = floats.get(channel, i);
+                    if (channel.isPressure()) {
+                        assertEquals(expected, fixed.get(channel, i), Math.abs(expected) * 1e-5f);
+                    } else {
+                        assertEquals(expected, fixed.get(channel, i), 0f);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void keepsTheLatestSamples() {
+        final OrpheSampleWindow window = new OrpheSampleWindow(10, OrpheSamplePrecision.fixedPoint, OrpheAccRange.range16, OrpheGyroRange.range2000);
+        fill(56, 8, window);
+
+        assertEquals(16, window.addedCount());
+        assertEquals(10, window.size());
+        // 65530から始まり、1パケットに2サンプル
+        assertEquals(65533, window.serialNumber(0));
+        assertEquals(1, window.serialNumber(9));
+        for (int i = 1; i < window.size(); i++) {
+            assertEquals(OrpheSensorValue.SAMPLE_INTERVAL_MILLIS, window.timestamp(i) - window.timestamp(i - 1));
+        }
+
+        final float[] acc = new float[16];
+        assertEquals(10, window.copy(OrpheSampleChannel.accZ, acc));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(window.get(OrpheSampleChannel.accZ, i), acc[i], 0f);
+            assertEquals(window.raw(OrpheSampleChannel.accZ, i) * window.scale(OrpheSampleChannel.accZ), acc[i], 0f);
+        }
+    }
+
+    @Test
+    public void copiesAcrossTheEndOfTheBuffer() {
+        final OrpheSampleWindow window = new OrpheSampleWindow(12, OrpheSamplePrecision.floatPrecision, OrpheAccRange.range16, OrpheGyroRange.range2000);
+        fill(55, 5, window);
+
+        final float[] gyro = new float[12];
+        assertEquals(12, window.copy(OrpheSampleChannel.gyroX, gyro));
+        for (int i = 0; i < 12; i++) {
+            assertEquals(window.get(OrpheSampleChannel.gyroX, i), gyro[i], 0f);
+        }
+    }
+
+    @Test
+    public void pressureCodesFollowTheCalibrationOfTheFrames() {
+        // 接続時に読み込んだり風袋を計測したりして、ウィンドウを作成した後にキャリブレーションが変わった場合
+        final OrpheInsoleCalibration calibration = OrpheInsoleCalibration.DEFAULT.withTare(new double[]{1, 2, 3, 4, 5, 6});
+        final OrpheSampleWindow floats = new OrpheSampleWindow(16, OrpheSamplePrecision.floatPrecision, OrpheAccRange.range16, OrpheGyroRange.range2000);
+        final OrpheSampleWindow fixed = new OrpheSampleWindow(16, OrpheSamplePrecision.fixedPoint, OrpheAccRange.range16, OrpheGyroRange.range2000);
+        fill(55, 4, calibration, floats, fixed);
+
+        assertSame(calibration, fixed.calibration());
+        for (int i = 0; i < fixed.size(); i++) {
+            for (OrpheInsoleCell cell : OrpheInsoleCell.VALUES) {
+                final OrpheSampleChannel channel = OrpheSampleChannel.values()[OrpheSampleChannel.pressureToeOutside.ordinal() + cell.ordinal()];
+                final float expected = floats.get(channel, i);
+                assertEquals(expected, calibration.toNewton(cell, fixed.raw(channel, i)), Math.abs(expected) * 1e-5 + 1e-3);
+                assertEquals(expected, fixed.get(channel, i), Math.abs(expected) * 1e-5 + 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void coreSamplesHaveNoPressure() {
+        final OrpheSampleWindow window = new OrpheSampleWindow(8, OrpheSamplePrecision.fixedPoint, OrpheAccRange.range16, OrpheGyroRange.range2000);
+        fill(54, 1, window);
+
+        assertEquals(0f, window.get(OrpheSampleChannel.pressureHeel, 0), 0f);
+        assertEquals(-1, window.raw(OrpheSampleChannel.pressureHeel, 0));
+        assertTrue(Float.isNaN(window.scale(OrpheSampleChannel.pressureHeel)));
+    }
+
+    @Test
+    public void fixedPointHalvesTheMemory() {
+        final OrpheSampleWindow floats = new OrpheSampleWindow(8, OrpheSamplePrecision.floatPrecision, OrpheAccRange.range16, OrpheGyroRange.range2000);
+        final OrpheSampleWindow fixed = new OrpheSampleWindow(8, OrpheSamplePrecision.fixedPoint, OrpheAccRange.range16, OrpheGyroRange.range2000);
+
+        assertEquals(83, floats.bytesPerSample());
+        assertEquals(51, fixed.bytesPerSample());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void floatPrecisionHasNoRawValues() {
+        final OrpheSampleWindow window = new OrpheSampleWindow(8, OrpheSamplePrecision.floatPrecision, OrpheAccRange.range16, OrpheGyroRange.range2000);
+        fill(54, 1, window);
+        window.raw(OrpheSampleChannel.accX, 0);
+    }
+}
@@ -0,0 +1,44 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheScanPolicy]のテスト。
+ */
+public class OrpheScanPolicyTest {
+    @Test
+    public void defaultKeepsScanningUntilTimeout() {
+        assertFalse(OrpheScanPolicy.DEFAULT.isSatisfied(0));
+        assertFalse(OrpheScanPolicy.DEFAULT.isSatisfied(10));
+        assertEquals(20000, OrpheScanPolicy.DEFAULT.timeoutMillis);
+        assertEquals(0, OrpheScanPolicy.DEFAULT.reportDelayMillis);
+    }
+
+    @Test
+    public void lowLatencyStopsAtFirstDevice() {
+        assertFalse(OrpheScanPolicy.LOW_LATENCY.isSatisfied(0));
+        assertTrue(OrpheScanPolicy.LOW_LATENCY.isSatisfied(1));
+        assertNotEquals(OrpheScanPolicy.DEFAULT.scanMode, OrpheScanPolicy.LOW_LATENCY.scanMode);
+    }
+
+    @Test
+    public void stopsAtTargetDeviceCount() {
+        final OrpheScanPolicy policy = new OrpheScanPolicy(OrpheScanPolicy.LOW_LATENCY.scanMode, 500,
+                OrpheScanPolicy.LOW_LATENCY.matchMode, 2, 5000);
+        assertFalse(policy.isSatisfied(1));
+        assertTrue(policy.isSatisfied(2));
+        assertTrue(policy.isSatisfied(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeTargetDeviceCount() {
+        new OrpheScanPolicy(OrpheScanPolicy.DEFAULT.scanMode, 0, OrpheScanPolicy.DEFAULT.matchMode, -1, 5000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroTimeout() {
+        new OrpheScanPolicy(OrpheScanPolicy.DEFAULT.scanMode, 0, OrpheScanPolicy.DEFAULT.matchMode, 1, 0);
+    }
+}
@@ -0,0 +1,146 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheScanRouter]のテスト。
+ */
+public class OrpheScanRouterTest {
+    private static final String LEFT = "left";
+    private static final String RIGHT = "right";
+
+    private static OrpheScanRouter<String> insoles() {
+        final OrpheScanRouter<String> router = new OrpheScanRouter<>();
+        router.add(LEFT, OrpheSide.left, true, null);
+        router.add(RIGHT, OrpheSide.right, true, null);
+        router.request(LEFT);
+        router.request(RIGHT);
+        return router;
+    }
+
+    @Test
+    public void routesByAdvertisedSide() {
+        final OrpheScanRouter<String> router = insoles();
+        assertTrue(router.isWaiting());
+        assertEquals(RIGHT, router.route("A", false, true, OrpheSide.right));
+        // 同じデバイスは2回割り当てない
+        assertNull(router.route("A", false, true, OrpheSide.right));
+        assertNull(router.route("B", false, true, OrpheSide.right));
+        assertEquals(Collections.singletonList(LEFT), router.waitingTargets());
+        assertEquals(LEFT, router.route("C", false, true, OrpheSide.left));
+        assertFalse(router.isWaiting());
+        assertEquals("A", router.assigned(RIGHT));
+        assertEquals("C", router.assigned(LEFT));
+    }
+
+    @Test
+    public void ignoresOtherDeviceTypes() {
+        final OrpheScanRouter<String> router = insoles();
+        assertNull(router.route("A", true, false, null));
+        assertTrue(router.isWaiting());
+    }
+
+    @Test
+    public void routesByAddress() {
+        final OrpheScanRouter<String> router = new OrpheScanRouter<>();
+        router.add(LEFT, OrpheSide.left, false, "B");
+        router.add(RIGHT, OrpheSide.right, false, null);
+        router.request(LEFT);
+        router.request(RIGHT);
+        // 左右が分からないデバイスはアドレスを指定していない枠に割り当てる
+        assertEquals(RIGHT, router.route("A", true, false, null));
+        // アドレスを指定した枠には左右にかかわらず割り当てる
+        assertEquals(LEFT, router.route("B", true, false, OrpheSide.right));
+        assertTrue(router.onDeviceInfo(LEFT, "B", OrpheSide.right));
+        assertFalse(router.isWaiting());
+    }
+
+    @Test
+    public void reservedAddressIsNotTakenBySideSlot() {
+        final OrpheScanRouter<String> router = new OrpheScanRouter<>();
+        router.add(LEFT, OrpheSide.left, false, "B");
+        router.add(RIGHT, OrpheSide.right, false, null);
+        router.request(RIGHT);
+        assertNull(router.route("B", true, false, null));
+        assertEquals("B", router.request(LEFT));
+    }
+
+    @Test
+    public void swapsDevicesAfterDeviceInfo() {
+        final OrpheScanRouter<String> router = new OrpheScanRouter<>();
+        router.add(LEFT, OrpheSide.left, false, null);
+        router.add(RIGHT, OrpheSide.right, false, null);
+        router.request(LEFT);
+        router.request(RIGHT);
+        // 左右が分からないので見つかった順に割り当てる
+        assertEquals(LEFT, router.route("A", true, false, null));
+        assertEquals(RIGHT, router.route("B", true, false, null));
+        assertFalse(router.isWaiting());
+
+        // 両方とも逆だった
+        assertFalse(router.onDeviceInfo(LEFT, "A", OrpheSide.right));
+        assertNull(router.assigned(LEFT));
+        assertNull(router.assign("A"));
+        assertFalse(router.onDeviceInfo(RIGHT, "B", OrpheSide.left));
+        assertNull(router.assign("B"));
+
+        // 切断後に待ち始めると、左右が分かったデバイスが割り当てられる
+        assertEquals("B", router.request(LEFT));
+        assertEquals("A", router.request(RIGHT));
+        assertTrue(router.onDeviceInfo(LEFT, "B", OrpheSide.left));
+        assertTrue(router.onDeviceInfo(RIGHT, "A", OrpheSide.right));
+        assertFalse(router.isWaiting());
+
+        // 次回は左右が記録されているので最初から一致する枠に割り当てる
+        router.request(LEFT);
+        router.request(RIGHT);
+        assertEquals("B", router.assigned(LEFT));
+        assertEquals("A", router.assigned(RIGHT));
+    }
+
+    @Test
+    public void mismatchedDeviceGoesToWaitingSlot() {
+        final OrpheScanRouter<String> router = new OrpheScanRouter<>();
+        router.add(LEFT, OrpheSide.left, false, null);
+        router.add(RIGHT, OrpheSide.right, false, null);
+        router.request(LEFT);
+        assertEquals(LEFT, router.route("A", true, false, null));
+        router.request(RIGHT);
+        assertFalse(router.onDeviceInfo(LEFT, "A", OrpheSide.right));
+        assertEquals(RIGHT, router.assign("A"));
+        assertEquals(Collections.<String>emptyList(), router.waitingTargets());
+    }
+
+    @Test
+    public void cancelStopsWaiting() {
+        final OrpheScanRouter<String> router = insoles();
+        router.cancel(LEFT);
+        router.cancel(RIGHT);
+        assertFalse(router.isWaiting());
+        assertNull(router.route("A", false, true, OrpheSide.left));
+        router.remove(LEFT);
+        router.request(RIGHT);
+        assertEquals(Arrays.asList(RIGHT), router.waitingTargets());
+        assertTrue(router.hasInsole());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicateTarget() {
+        final OrpheScanRouter<String> router = insoles();
+        router.add(LEFT, OrpheSide.left, true, null);
+    }
+
+    @Test
+    public void readsAdvertisedSide() {
+        assertNull(OrpheScanRouter.advertisedSide(null));
+        assertNull(OrpheScanRouter.advertisedSide(new byte[6]));
+        assertEquals(OrpheSide.left, OrpheScanRouter.advertisedSide(new byte[]{1, 0, 0, 0, 0, 1, 0}));
+        assertEquals(OrpheSide.right, OrpheScanRouter.advertisedSide(new byte[]{1, 0, 0, 0, 0, 1, 1}));
+        assertNull(OrpheScanRouter.advertisedSide(new byte[]{1, 0, 0, 0, 0, 1, 2}));
+    }
+}
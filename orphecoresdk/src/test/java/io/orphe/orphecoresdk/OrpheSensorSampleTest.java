@@ -0,0 +1,114 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheSensorSample]のテスト。
+ */
+public class OrpheSensorSampleTest {
+    private static final long ANCHOR_EPOCH_MILLIS = 1_700_000_000_000L;
+
+    private static List<byte[]> generate(int packetType, int serialNumber, int count) {
+        final List<byte[]> packets = new ArrayList<>();
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(packetType, 3);
+        simulator.setSink(value -> packets.add(value.clone()));
+        simulator.setSerialNumber(serialNumber);
+        simulator.emit(count);
+        return packets;
+    }
+
+    private static void assertSameValue(OrpheSensorValue expected, OrpheSensorValue actual) {
+        assertEquals(expected.sidePosition, actual.sidePosition);
+        assertEquals(expected.serialNumber, actual.serialNumber);
+        assertEquals(expected.dataPosition, actual.dataPosition);
+        assertEquals(expected.startTime, actual.startTime);
+        assertEquals(expected.quatW, actual.quatW, 0);
+        assertEquals(expected.quatX, actual.quatX, 0);
+        assertEquals(expected.quatY, actual.quatY, 0);
+        assertEquals(expected.quatZ, actual.quatZ, 0);
+        assertEquals(expected.eulerX, actual.eulerX, 0);
+        assertEquals(expected.eulerY, actual.eulerY, 0);
+        assertEquals(expected.eulerZ, actual.eulerZ, 0);
+        assertEquals(expected.accX, actual.accX, 0);
+        assertEquals(expected.accY, actual.accY, 0);
+        assertEquals(expected.accZ, actual.accZ, 0);
+        assertEquals(expected.gyroX, actual.gyroX, 0);
+        assertEquals(expected.gyroY, actual.gyroY, 0);
+        assertEquals(expected.gyroZ, actual.gyroZ, 0);
+        assertEquals(expected.accOfGravityX, actual.accOfGravityX, 0);
+        assertEquals(expected.accOfGravityY, actual.accOfGravityY, 0);
+        assertEquals(expected.accOfGravityZ, actual.accOfGravityZ, 0);
+        assertEquals(expected.normalizedEulerX, actual.normalizedEulerX, 0);
+        assertEquals(expected.normalizedEulerY, actual.normalizedEulerY, 0);
+        assertEquals(expected.normalizedEulerZ, actual.normalizedEulerZ, 0);
+        assertEquals(expected.normalizedAccX, actual.normalizedAccX, 0);
+        assertEquals(expected.normalizedAccY, actual.normalizedAccY, 0);
+        assertEquals(expected.normalizedAccZ, actual.normalizedAccZ, 0);
+        assertEquals(expected.normalizedGyroX, actual.normalizedGyroX, 0);
+        assertEquals(expected.normalizedGyroY, actual.normalizedGyroY, 0);
+        assertEquals(expected.normalizedGyroZ, actual.normalizedGyroZ, 0);
+    }
+
+    @Test
+    public void toSensorValueMatchesFromBytes() throws Exception {
+        for (int packetType : new int[]{50, 54}) {
+            final OrpheDeviceClock valueClock = new OrpheDeviceClock(ANCHOR_EPOCH_MILLIS, 0);
+            final OrpheDeviceClock sampleClock = new OrpheDeviceClock(ANCHOR_EPOCH_MILLIS, 0);
+            final List<byte[]> packets = generate(packetType, 100, 20);
+            for (int i = 0; i < packets.size(); i++) {
+                final byte[] packet = packets.get(i);
+                valueClock.onPacket(packet, i * 20_000_000L);
+                sampleClock.onPacket(packet, i * 20_000_000L);
+                final OrpheSensorValue[] values = OrpheSensorValue.fromBytes(
+                        packet, OrpheSidePosition.leftInstep, OrpheAccRange.range16, OrpheGyroRange.range2000, valueClock);
+                final OrpheSensorSample[] samples = OrpheSensorSample.fromBytes(
+                        packet, OrpheSidePosition.leftInstep, OrpheAccRange.range16, OrpheGyroRange.range2000, sampleClock);
+                assertEquals(values.length, samples.length);
+                for (int j = 0; j < values.length; j++) {
+                    assertSameValue(values[j], samples[j].toSensorValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void eulerIsComputedOnceWithTheSameResult() {
+        final byte[] packet = generate(50, 0, 1).get(0);
+        for (OrpheSensorSample sample : OrpheSensorSample.fromBytes(
+                packet, OrpheSidePosition.rightInstep, OrpheAccRange.range8, OrpheGyroRange.range1000, null)) {
+            final double w = sample.quatW();
+            final double x = sample.quatX();
+            final double y = sample.quatY();
+            final double z = sample.quatZ();
+            assertEquals(OrpheSensorValue.toEulerY(w, x, y, z), sample.eulerY(), 0);
+            assertEquals(OrpheSensorValue.toEulerX(w, x, y, z), sample.eulerX(), 0);
+            assertEquals(OrpheSensorValue.toEulerZ(w, x, y, z), sample.eulerZ(), 0);
+            assertEquals(sample.eulerX() / 180.0, sample.normalizedEulerX(), 0);
+        }
+    }
+
+    @Test
+    public void serialNumbersAreUnsigned() {
+        final List<byte[]> packets = generate(54, 40000, 2);
+        final OrpheSensorSample[] first = OrpheSensorSample.fromBytes(
+                packets.get(0), OrpheSidePosition.leftInstep, OrpheAccRange.range16, OrpheGyroRange.range2000, null);
+        final OrpheSensorSample[] second = OrpheSensorSample.fromBytes(
+                packets.get(1), OrpheSidePosition.leftInstep, OrpheAccRange.range16, OrpheGyroRange.range2000, null);
+        assertEquals(8, first.length);
+        assertEquals(40000, first[0].serialNumber);
+        assertEquals(40001, second[0].serialNumber);
+        assertEquals(7, first[0].dataPosition);
+        assertEquals(first[7].timestamp - 7 * OrpheSensorValue.SAMPLE_INTERVAL_MILLIS, first[0].timestamp);
+    }
+
+    @Test
+    public void otherPacketsGiveNoSamples() {
+        assertEquals(0, OrpheSensorSample.fromBytes(
+                new byte[]{53, 1, 0, 0}, OrpheSidePosition.leftInstep, OrpheAccRange.range16, OrpheGyroRange.range2000, null).length);
+    }
+}
@@ -0,0 +1,128 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheSerialClock]のテスト。
+ */
+public class OrpheSerialClockTest {
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    public void requestsExactlyLatestFrames() {
+        final OrpheSerialClock clock = new OrpheSerialClock(OrpheSerialClock.CORE_PERIOD_NANOS);
+        assertNull(clock.latestRequest(10, 0));
+        assertEquals(-1, clock.serialNumberAt(0));
+        clock.observe(1000, 0);
+        assertTrue(clock.isSynchronized());
+        // 1秒後は25フレーム進んでいる
+        final OrpheValueRequest request = clock.latestRequest(100, 1000 * MILLIS);
+        assertEquals(1025 - 99, request.startSerialNumber);
+        assertEquals(100, request.length);
+        assertEquals(1025, clock.serialNumberAt(1000 * MILLIS));
+        assertEquals(1025, clock.serialNumberAt(1039 * MILLIS));
+    }
+
+    @Test
+    public void learnsActualPeriod() {
+        final OrpheSerialClock clock = new OrpheSerialClock(OrpheSerialClock.CORE_PERIOD_NANOS);
+        // 実際の周期は41ms。届くまでの遅延は0〜30ms
+        final long period = 41 * MILLIS;
+        for (int frame = 0; frame < 2000; frame++) {
+            clock.observe(OrpheSerialNumber.add(60000, frame), frame * period + (frame * 7919 % 31) * MILLIS);
+        }
+        assertEquals(period, clock.periodNanos(), 0.01 * MILLIS);
+        // 最後に受け取ってから10秒後でも1フレームもずれない
+        final long now = 1999 * period + 10_000 * MILLIS + period / 2;
+        assertEquals(OrpheSerialNumber.add(60000, 1999 + 244), clock.serialNumberAt(now));
+    }
+
+    @Test
+    public void wrapsAroundWithoutNegativeSerialNumber() {
+        final OrpheSerialClock clock = new OrpheSerialClock(OrpheSerialClock.INSOLE_PERIOD_NANOS);
+        clock.observe(5, 0);
+        // 最新の10件は65532〜5
+        final OrpheValueRequest request = clock.latestRequest(10, 10 * MILLIS);
+        assertEquals(65532, request.startSerialNumber);
+        assertEquals(10, request.length);
+        clock.observe(65535, 100 * MILLIS);
+        // 古いシリアルナンバーは無視する
+        assertEquals(1, clock.observedCount());
+        clock.observe(13, 200 * MILLIS);
+        assertEquals(2, clock.observedCount());
+        assertEquals(15, clock.serialNumberAt(200 * MILLIS));
+        assertEquals(100 * MILLIS, clock.nanosOf(10));
+        assertEquals(-220 * MILLIS, clock.nanosOf(65530));
+    }
+
+    @Test
+    public void requestsOnlyNewFrames() {
+        final OrpheSerialClock clock = new OrpheSerialClock(OrpheSerialClock.CORE_PERIOD_NANOS);
+        clock.observe(65530, 0);
+        assertNull(clock.requestSince(65530, 20 * MILLIS));
+        final OrpheValueRequest request = clock.requestSince(65530, 400 * MILLIS);
+        assertEquals(65531, request.startSerialNumber);
+        assertEquals(10, request.length);
+    }
+
+    @Test
+    public void ignoresImpossiblePeriod() {
+        final OrpheSerialClock clock = new OrpheSerialClock(OrpheSerialClock.CORE_PERIOD_NANOS);
+        // 溜まっていたものが1msごとにまとめて届いた
+        for (int frame = 0; frame < 1000; frame++) {
+            clock.observe(frame, frame * MILLIS);
+        }
+        assertEquals(OrpheSerialClock.CORE_PERIOD_NANOS, clock.periodNanos());
+        assertEquals(999, clock.serialNumberAt(999 * MILLIS));
+    }
+
+    @Test
+    public void ignoresReplaysFarBehind() {
+        final OrpheSerialClock clock = new OrpheSerialClock(OrpheSerialClock.CORE_PERIOD_NANOS);
+        for (int frame = 0; frame < 500; frame++) {
+            clock.observe(OrpheSerialNumber.add(50000, frame), frame * 40 * MILLIS);
+        }
+        // 40000件前のものを再取得すると25536件進んだように見える
+        for (int frame = 0; frame < 100; frame++) {
+            clock.observe(OrpheSerialNumber.add(50499, -40000 + frame), (20000 + frame) * MILLIS);
+        }
+        assertEquals(100, clock.rejectedCount());
+        assertEquals(0, clock.resyncCount());
+        assertEquals(500, clock.observedCount());
+        assertEquals(OrpheSerialNumber.add(50000, 502), clock.serialNumberAt(20100 * MILLIS));
+        assertEquals(OrpheSerialClock.CORE_PERIOD_NANOS, clock.periodNanos());
+    }
+
+    @Test
+    public void observeReturnsWhetherLatestSerialAdvanced() {
+        final OrpheSerialClock clock = new OrpheSerialClock(OrpheSerialClock.CORE_PERIOD_NANOS);
+        assertTrue(clock.observe(1000, 0));
+        assertTrue(clock.observe(1001, 10 * MILLIS));
+        // 同じものや過去のもの、受信間隔より進みすぎたものは再取得したデータとして扱う
+        assertFalse(clock.observe(1001, 20 * MILLIS));
+        assertFalse(clock.observe(900, 30 * MILLIS));
+        assertFalse(clock.observe(OrpheSerialNumber.add(1001, -40000), 40 * MILLIS));
+        assertTrue(clock.observe(1002, 50 * MILLIS));
+    }
+
+    @Test
+    public void resynchronizesWhenFirstSerialWasReplay() {
+        final OrpheSerialClock clock = new OrpheSerialClock(OrpheSerialClock.CORE_PERIOD_NANOS);
+        // 接続直後に再取得したデータが最初に届いた
+        clock.observe(10000, 0);
+        for (int frame = 0; frame < 100; frame++) {
+            clock.observe(OrpheSerialNumber.add(50000, frame), (10 + frame * 40) * MILLIS);
+        }
+        assertEquals(1, clock.resyncCount());
+        assertEquals(OrpheSerialNumber.add(50000, 99), clock.serialNumberAt(3970 * MILLIS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooLongRequest() {
+        final OrpheSerialClock clock = new OrpheSerialClock(OrpheSerialClock.CORE_PERIOD_NANOS);
+        clock.observe(0, 0);
+        clock.latestRequest(OrpheSerialNumber.MODULUS, 0);
+    }
+}
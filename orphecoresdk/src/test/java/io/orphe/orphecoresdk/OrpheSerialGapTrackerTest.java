@@ -0,0 +1,181 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheSerialGapTracker]のテスト。
+ */
+public class OrpheSerialGapTrackerTest {
+    @Test
+    public void serialNumberArithmeticWrapsAround() {
+        assertEquals(1, OrpheSerialNumber.distance(65535, 0));
+        assertEquals(-1, OrpheSerialNumber.distance(0, 65535));
+        assertEquals(10, OrpheSerialNumber.distance(65530, 4));
+        assertEquals(3, OrpheSerialNumber.add(65534, 5));
+        assertEquals(65534, OrpheSerialNumber.add(2, -4));
+    }
+
+    @Test
+    public void coalescesGapsAcrossWraparound() {
+        final OrpheSerialGapTracker tracker = new OrpheSerialGapTracker();
+        assertEquals(OrpheSerialGapTracker.RESULT_NEW, tracker.onSerialNumber(65530));
+        assertEquals(OrpheSerialGapTracker.RESULT_NEW, tracker.onSerialNumber(65534));
+        assertEquals(OrpheSerialGapTracker.RESULT_NEW, tracker.onSerialNumber(2));
+        assertEquals(OrpheSerialGapTracker.RESULT_NEW, tracker.onSerialNumber(3));
+        assertEquals(3 + 3, tracker.missingCount());
+
+        final OrpheValueRequest[] requests = tracker.takeRequests();
+        assertEquals(2, requests.length);
+        assertEquals(65531, requests[0].startSerialNumber);
+        assertEquals(3, requests[0].length);
+        assertEquals(65535, requests[1].startSerialNumber);
+        assertEquals(3, requests[1].length);
+        assertEquals(0, tracker.pendingCount());
+        assertEquals(0, tracker.takeRequests().length);
+
+        assertEquals(OrpheSerialGapTracker.RESULT_RECOVERED, tracker.onSerialNumber(0));
+        assertEquals(OrpheSerialGapTracker.RESULT_DUPLICATE, tracker.onSerialNumber(0));
+        assertEquals(OrpheSerialGapTracker.RESULT_DUPLICATE, tracker.onSerialNumber(3));
+        assertEquals(1, tracker.recoveredCount());
+        assertEquals(2, tracker.duplicateCount());
+    }
+
+    @Test
+    public void splitsRequestsIntoWritesOfThirtyRanges() {
+        final OrpheSerialGapTracker tracker = new OrpheSerialGapTracker();
+        tracker.onSerialNumber(0);
+        for (int i = 1; i <= 40; i++) {
+            tracker.onSerialNumber(i * 2);
+        }
+        assertEquals(40, tracker.pendingCount());
+
+        final OrpheValueRequest[] first = tracker.takeRequests();
+        assertEquals(OrpheSerialGapTracker.MAX_REQUESTS_PER_WRITE, first.length);
+        for (int i = 0; i < first.length; i++) {
+            assertEquals(i * 2 + 1, first[i].startSerialNumber);
+            assertEquals(1, first[i].length);
+        }
+        final OrpheValueRequest[] second = tracker.takeRequests();
+        assertEquals(10, second.length);
+        assertEquals(61, second[0].startSerialNumber);
+        assertEquals(40, tracker.requestedCount());
+    }
+
+    @Test
+    public void notFoundMarksSerialsAsLost() {
+        final OrpheSerialGapTracker tracker = new OrpheSerialGapTracker();
+        tracker.onSerialNumber(100);
+        tracker.onSerialNumber(110);
+        tracker.takeRequests();
+        tracker.onNotFound(101, 4);
+        tracker.onSerialNumber(120);
+
+        assertEquals(4, tracker.lostCount());
+        final OrpheValueRequest[] requests = tracker.takeRequests();
+        assertEquals(1, requests.length);
+        assertEquals(111, requests[0].startSerialNumber);
+        assertEquals(9, requests[0].length);
+    }
+
+    @Test
+    public void largeJumpsAreNotTreatedAsGaps() {
+        final OrpheSerialGapTracker tracker = new OrpheSerialGapTracker();
+        tracker.onSerialNumber(0);
+        tracker.onSerialNumber(OrpheSerialGapTracker.MAX_GAP + 100);
+        assertEquals(0, tracker.missingCount());
+        assertEquals(OrpheSerialGapTracker.RESULT_UNTRACKED, tracker.onSerialNumber(OrpheSerialGapTracker.MAX_GAP + 50));
+    }
+
+    @Test
+    public void expiresGapsThatLeaveTheHorizon() {
+        final OrpheSerialGapTracker tracker = new OrpheSerialGapTracker();
+        tracker.onSerialNumber(0);
+        tracker.onSerialNumber(5);
+        for (int i = 1; i <= OrpheSerialGapTracker.HORIZON; i++) {
+            tracker.onSerialNumber(5 + i);
+        }
+        assertEquals(4, tracker.expiredCount());
+        assertEquals(0, tracker.pendingCount());
+        // 管理範囲より前のシリアルナンバーはリクエストしたもの以外はカウンターが戻ったとみなす
+        tracker.onRequested(new OrpheValueRequest[]{new OrpheValueRequest(0, 5)});
+        assertEquals(OrpheSerialGapTracker.RESULT_REPLAYED, tracker.onSerialNumber(3));
+        assertEquals(0, tracker.restartCount());
+    }
+
+    @Test
+    public void restartsWhenCounterGoesBack() {
+        final OrpheSerialGapTracker tracker = new OrpheSerialGapTracker();
+        for (int serial = 30000; serial < 30010; serial++) {
+            tracker.onSerialNumber(serial);
+        }
+        assertEquals(OrpheSerialGapTracker.RESULT_NEW, tracker.onSerialNumber(0));
+        assertEquals(1, tracker.restartCount());
+        // 戻った後も重複とせず、欠落も検出する
+        assertEquals(OrpheSerialGapTracker.RESULT_NEW, tracker.onSerialNumber(1));
+        assertEquals(OrpheSerialGapTracker.RESULT_NEW, tracker.onSerialNumber(4));
+        assertEquals(2, tracker.pendingCount());
+        assertEquals(0, tracker.duplicateCount());
+    }
+
+    @Test
+    public void resetForgetsPreviousConnection() {
+        final OrpheSerialGapTracker tracker = new OrpheSerialGapTracker();
+        for (int serial = 100; serial < 200; serial++) {
+            tracker.onSerialNumber(serial);
+        }
+        tracker.onSerialNumber(205);
+        tracker.reset();
+        // 再接続後に少し前のシリアルナンバーから届いても重複にしない
+        assertEquals(OrpheSerialGapTracker.RESULT_NEW, tracker.onSerialNumber(150));
+        assertEquals(OrpheSerialGapTracker.RESULT_NEW, tracker.onSerialNumber(151));
+        assertEquals(0, tracker.duplicateCount());
+        assertEquals(0, tracker.pendingCount());
+        assertEquals(5, tracker.expiredCount());
+        assertEquals(0, tracker.takeRequests().length);
+    }
+
+    @Test
+    public void requestedReplaysAreNotDuplicates() {
+        final OrpheSerialGapTracker tracker = new OrpheSerialGapTracker();
+        for (int serial = 0; serial < 100; serial++) {
+            tracker.onSerialNumber(serial);
+        }
+        tracker.onRequested(new OrpheValueRequest[]{new OrpheValueRequest(60, 20)});
+        assertEquals(OrpheSerialGapTracker.RESULT_REPLAYED, tracker.onSerialNumber(70));
+        assertEquals(OrpheSerialGapTracker.RESULT_DUPLICATE, tracker.onSerialNumber(90));
+        assertEquals(1, tracker.duplicateCount());
+    }
+
+    @Test
+    public void recoveredSerialReceivedTwiceIsDuplicate() {
+        final OrpheSerialGapTracker tracker = new OrpheSerialGapTracker();
+        tracker.onSerialNumber(0);
+        tracker.onSerialNumber(5);
+        // 欠落の再取得は[onRequested]に渡さないため、再送が2回届いても2回目は重複になる
+        assertEquals(1, tracker.takeRequests().length);
+        assertEquals(OrpheSerialGapTracker.RESULT_RECOVERED, tracker.onSerialNumber(2));
+        assertEquals(OrpheSerialGapTracker.RESULT_DUPLICATE, tracker.onSerialNumber(2));
+
+        // アプリがリクエストした場合だけ、受け取り済みのシリアルナンバーも再送として通す
+        tracker.onRequested(new OrpheValueRequest[]{new OrpheValueRequest(2, 1)});
+        assertEquals(OrpheSerialGapTracker.RESULT_REPLAYED, tracker.onSerialNumber(2));
+        assertEquals(1, tracker.duplicateCount());
+    }
+
+    @Test
+    public void remembersOnlyHorizonStates() {
+        final OrpheSerialGapTracker tracker = new OrpheSerialGapTracker();
+        // 65536件を一周しても、管理範囲の中の欠落だけをリクエストする
+        for (int serial = 0; serial < OrpheSerialNumber.MODULUS + 100; serial++) {
+            if (serial != OrpheSerialNumber.MODULUS + 50) {
+                tracker.onSerialNumber(serial & 0xFFFF);
+            }
+        }
+        final OrpheValueRequest[] requests = tracker.takeRequests();
+        assertEquals(1, requests.length);
+        assertEquals(50, requests[0].startSerialNumber);
+        assertEquals(1, requests[0].length);
+    }
+}
@@ -0,0 +1,250 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheSessionReader]のテスト。
+ */
+public class OrpheSessionReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final long PACKET_INTERVAL_NANOS = 20_000_000L;
+
+    private static byte[] insolePacket(int serialNumber) {
+        final byte[] bytes = new byte[104];
+        bytes[0] = 55;
+        bytes[1] = (byte) (serialNumber >> 8);
+        bytes[2] = (byte) serialNumber;
+        bytes[3] = 12;
+        bytes[4] = 34;
+        bytes[5] = 56;
+        for (int i = 8; i < bytes.length; i++) {
+            bytes[i] = (byte) (serialNumber * 7 + i * 13);
+        }
+        return bytes;
+    }
+
+    /// 65500から始まり、途中で折り返すシリアルナンバーのセッションを記録する
+    private File record(int count) throws Exception {
+        final File file = folder.newFile();
+        final OrpheSessionRecorder recorder = new OrpheSessionRecorder(
+                file, OrpheAccRange.range16, OrpheGyroRange.range1000, OrpheSidePosition.leftPlantar, 2048, count);
+        final long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            recorder.append(insolePacket((65500 + i) & 0xFFFF), 104, start + i * PACKET_INTERVAL_NANOS);
+        }
+        recorder.close();
+        assertEquals(0, recorder.droppedCount());
+        return file;
+    }
+
+    @Test
+    public void readsHeaderAndAllRecords() throws Exception {
+        try (OrpheSessionReader reader = new OrpheSessionReader(record(300))) {
+            assertEquals(OrpheAccRange.range16, reader.accRange);
+            assertEquals(OrpheGyroRange.range1000, reader.gyroRange);
+            assertEquals(OrpheSidePosition.leftPlantar, reader.sidePosition);
+            assertEquals(300, reader.recordCount());
+            assertTrue(reader.chunkCount() > 1);
+
+            final OrpheSessionReader.Cursor cursor = reader.cursor();
+            final byte[] payload = new byte[512];
+            int count = 0;
+            while (cursor.next()) {
+                assertEquals(104, cursor.copyPayload(payload));
+                assertEquals((65500 + count) & 0xFFFF, cursor.serialNumber());
+                assertEquals(55, cursor.packetType());
+                count++;
+            }
+            assertEquals(300, count);
+        }
+    }
+
+    @Test
+    public void seeksByTimeAndSerialNumber() throws Exception {
+        try (OrpheSessionReader reader = new OrpheSessionReader(record(300))) {
+            final OrpheSessionReader.Cursor first = reader.cursor();
+            assertTrue(first.next());
+            final OrpheSessionReader.Cursor byTime = reader.seekToTime(first.micros() + 150 * PACKET_INTERVAL_NANOS / 1000 - 10);
+            assertTrue(byTime.next());
+            assertEquals((65500 + 150) & 0xFFFF, byTime.serialNumber());
+
+            // 折り返した後のシリアルナンバー
+            final OrpheSessionReader.Cursor bySerial = reader.seekToSerialNumber(200);
+            assertNotNull(bySerial);
+            assertTrue(bySerial.next());
+            assertEquals(200, bySerial.serialNumber());
+            assertEquals((200 + 36) * PACKET_INTERVAL_NANOS / 1000, bySerial.micros() - first.micros(), 1);
+
+            assertNull(reader.seekToSerialNumber(1000));
+            assertNull(reader.seekToSerialNumber(65510, 20 * PACKET_INTERVAL_NANOS / 1000));
+
+            final OrpheSessionReader.Cursor end = reader.seekToTime(Long.MAX_VALUE);
+            assertFalse(end.next());
+        }
+    }
+
+    @Test
+    public void decodesLazilyThroughExistingDecoders() throws Exception {
+        try (OrpheSessionReader reader = new OrpheSessionReader(record(10))) {
+            final OrpheSessionReader.Cursor cursor = reader.seekToSerialNumber(65505);
+            assertNotNull(cursor);
+            assertTrue(cursor.next());
+
+            final SensorFrameBatch fromFile = new SensorFrameBatch(8);
+            final SensorFrameBatch expected = new SensorFrameBatch(8);
+            assertEquals(4, cursor.decodeInsoleValues(fromFile));
+            OrpheInsoleValue.fromBytes(insolePacket(65505), OrpheAccRange.range16, OrpheGyroRange.range1000, expected);
+            for (int i = 0; i < 4; i++) {
+                assertEquals(expected.serialNumber[i], fromFile.serialNumber[i]);
+                assertEquals(expected.gyroX[i], fromFile.gyroX[i], 0);
+                assertEquals(expected.accZ[i], fromFile.accZ[i], 0);
+                assertEquals(expected.pressureHeel[i], fromFile.pressureHeel[i], 0);
+            }
+        }
+    }
+
+    @Test
+    public void recoversTruncatedRecording() throws Exception {
+        final File file = record(300);
+        final long fullLength = file.length();
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            // 最後のチャンクのフッターとレコードの一部を失った状態にする
+            output.setLength(fullLength - 60);
+        }
+        try (OrpheSessionReader reader = new OrpheSessionReader(file)) {
+            assertTrue(reader.recordCount() < 300);
+            assertTrue(reader.recordCount() > 250);
+            final OrpheSessionReader.Cursor cursor = reader.cursor();
+            long count = 0;
+            while (cursor.next()) {
+                assertEquals((65500 + count) & 0xFFFF, cursor.serialNumber());
+                count++;
+            }
+            assertEquals(reader.recordCount(), count);
+            final OrpheSessionReader.Cursor last = reader.seekToSerialNumber((int) ((65500 + count - 1) & 0xFFFF));
+            assertNotNull(last);
+        }
+    }
+
+    @Test
+    public void seeksToSerialNumberOutOfOrderInChunk() throws Exception {
+        final File file = folder.newFile();
+        final OrpheSessionRecorder recorder = new OrpheSessionRecorder(
+                file, OrpheAccRange.range16, OrpheGyroRange.range1000, OrpheSidePosition.leftPlantar, 2048, 64);
+        final long start = System.nanoTime();
+        for (int i = 0; i < 200; i++) {
+            recorder.append(insolePacket((65500 + i) & 0xFFFF), 104, start + i * PACKET_INTERVAL_NANOS);
+            if (i == 150) {
+                // 後から再送された古いパケットが、チャンクの途中に入る
+                recorder.append(insolePacket(65505), 104, start + i * PACKET_INTERVAL_NANOS);
+            }
+        }
+        recorder.close();
+
+        try (OrpheSessionReader reader = new OrpheSessionReader(file)) {
+            final OrpheSessionReader.Cursor first = reader.cursor();
+            assertTrue(first.next());
+            final OrpheSessionReader.Cursor resent = reader.seekToSerialNumber(65505, first.micros() + 100 * PACKET_INTERVAL_NANOS / 1000);
+            assertNotNull(resent);
+            assertTrue(resent.next());
+            assertEquals(65505, resent.serialNumber());
+            assertEquals(150 * PACKET_INTERVAL_NANOS / 1000, resent.micros() - first.micros(), 1);
+        }
+    }
+
+    /// レコードを1つのチャンクとして書き込んだファイルを作る
+    private File writeChunk(byte[] records, int recordCount) throws Exception {
+        final File file = folder.newFile();
+        new OrpheSessionRecorder(file, OrpheAccRange.range16, OrpheGyroRange.range1000, OrpheSidePosition.leftPlantar).close();
+        final Deflater deflater = new Deflater();
+        deflater.setInput(records);
+        deflater.finish();
+        final byte[] compressed = new byte[records.length + 64];
+        final int compressedLength = deflater.deflate(compressed);
+        assertTrue(deflater.finished());
+        deflater.end();
+        final ByteBuffer chunk = ByteBuffer.allocate(OrpheSessionRecorder.CHUNK_HEADER_SIZE + compressedLength + OrpheSessionRecorder.FOOTER_SIZE);
+        chunk.putShort((short) OrpheSessionRecorder.CHUNK_HEADER_MARKER);
+        chunk.putLong(0);
+        chunk.putInt(records.length);
+        chunk.putInt(compressedLength);
+        chunk.put(compressed, 0, compressedLength);
+        chunk.putShort((short) OrpheSessionRecorder.FOOTER_MARKER);
+        chunk.putInt(OrpheSessionRecorder.FOOTER_MAGIC);
+        chunk.putInt(recordCount);
+        chunk.putLong(OrpheSessionRecorder.HEADER_SIZE);
+        chunk.putLong(0);
+        chunk.putLong(0);
+        chunk.putShort((short) 0);
+        chunk.putShort((short) 0xFFFF);
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.seek(OrpheSessionRecorder.HEADER_SIZE);
+            output.write(chunk.array());
+        }
+        return file;
+    }
+
+    private static ByteBuffer validRecord(ByteBuffer records) {
+        records.putShort((short) 104);
+        records.put((byte) 0);
+        records.put(insolePacket(1));
+        return records;
+    }
+
+    @Test
+    public void stopsAtRecordLongerThanChunk() throws Exception {
+        final ByteBuffer records = validRecord(ByteBuffer.allocate(200));
+        records.putShort((short) 300);
+        records.put((byte) 0);
+        final File file = writeChunk(Arrays.copyOf(records.array(), records.position() + 20), 2);
+        try (OrpheSessionReader reader = new OrpheSessionReader(file)) {
+            final OrpheSessionReader.Cursor cursor = reader.cursor();
+            assertTrue(cursor.next());
+            assertEquals(1, cursor.serialNumber());
+            assertFalse(cursor.next());
+            assertNull(reader.seekToSerialNumber(2));
+        }
+    }
+
+    @Test
+    public void stopsAtVarintLongerThanLimit() throws Exception {
+        final ByteBuffer records = validRecord(ByteBuffer.allocate(300));
+        records.putShort((short) 104);
+        for (int i = 0; i < 11; i++) {
+            records.put((byte) 0x80);
+        }
+        records.put((byte) 0);
+        records.put(insolePacket(2));
+        final File file = writeChunk(Arrays.copyOf(records.array(), records.position()), 2);
+        try (OrpheSessionReader reader = new OrpheSessionReader(file)) {
+            final OrpheSessionReader.Cursor cursor = reader.cursor();
+            assertTrue(cursor.next());
+            assertFalse(cursor.next());
+        }
+    }
+
+    @Test
+    public void stopsAtVarintCutAtChunkEnd() throws Exception {
+        final ByteBuffer records = validRecord(ByteBuffer.allocate(200));
+        records.putShort((short) 104);
+        records.put((byte) 0x80);
+        final File file = writeChunk(Arrays.copyOf(records.array(), records.position()), 2);
+        try (OrpheSessionReader reader = new OrpheSessionReader(file)) {
+            final OrpheSessionReader.Cursor cursor = reader.cursor();
+            assertTrue(cursor.next());
+            assertFalse(cursor.next());
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheSessionRecorder]のテスト。
+ */
+public class OrpheSessionRecorderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] packet(int serialNumber) {
+        final byte[] bytes = new byte[104];
+        bytes[0] = 55;
+        bytes[1] = (byte) (serialNumber >> 8);
+        bytes[2] = (byte) serialNumber;
+        for (int i = 3; i < bytes.length; i++) {
+            bytes[i] = (byte) (serialNumber * 31 + i);
+        }
+        return bytes;
+    }
+
+    private static ByteBuffer read(File file) throws Exception {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            final byte[] bytes = new byte[(int) input.length()];
+            input.readFully(bytes);
+            return ByteBuffer.wrap(bytes);
+        }
+    }
+
+    private static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static byte[] inflate(ByteBuffer buffer, int compressedLength, int rawLength) throws Exception {
+        final byte[] compressed = new byte[compressedLength];
+        buffer.get(compressed);
+        final Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        final byte[] records = new byte[rawLength];
+        assertEquals(rawLength, inflater.inflate(records));
+        assertTrue(inflater.finished());
+        inflater.end();
+        return records;
+    }
+
+    @Test
+    public void writesHeaderChunksAndFooters() throws Exception {
+        final File file = folder.newFile("session.orphe");
+        final OrpheSessionRecorder recorder = new OrpheSessionRecorder(
+                file, OrpheAccRange.range8, OrpheGyroRange.range2000, OrpheSidePosition.rightPlantar, 1024, 16);
+        final long start = System.nanoTime();
+        final int total = 100;
+        for (int i = 0; i < total; i++) {
+            final int serialNumber = (65500 + i) & 0xFFFF;
+            // 再利用される領域を想定して、余分な長さの配列を渡す
+            final byte[] scratch = new byte[512];
+            System.arraycopy(packet(serialNumber), 0, scratch, 0, 104);
+            recorder.append(scratch, 104, start + i * 20_000_000L);
+        }
+        recorder.close();
+        assertEquals(total, recorder.recordCount());
+        assertEquals(0, recorder.droppedCount());
+        assertEquals(file.length(), recorder.bytesWritten());
+
+        final ByteBuffer buffer = read(file);
+        assertEquals(OrpheSessionRecorder.MAGIC, buffer.getInt());
+        assertEquals(OrpheSessionRecorder.VERSION, buffer.getShort());
+        assertEquals(OrpheAccRange.range8, OrpheAccRange.fromValue(buffer.get()));
+        assertEquals(OrpheGyroRange.range2000, OrpheGyroRange.fromValue(buffer.get()));
+        assertEquals(OrpheSidePosition.rightPlantar, OrpheSidePosition.fromValue(buffer.get()));
+        buffer.position(OrpheSessionRecorder.HEADER_SIZE);
+
+        int records = 0;
+        int chunks = 0;
+        long previousMicros = -1;
+        long baseMicros = -1;
+        while (buffer.hasRemaining()) {
+            final int chunkStart = buffer.position();
+            assertEquals(OrpheSessionRecorder.CHUNK_HEADER_MARKER, buffer.getShort() & 0xFFFF);
+            long micros = buffer.getLong();
+            final long firstMicros = micros;
+            final int rawLength = buffer.getInt();
+            final int compressedLength = buffer.getInt();
+            final ByteBuffer inflated = ByteBuffer.wrap(inflate(buffer, compressedLength, rawLength));
+            final OrpheSessionRecorder.PayloadDelta delta = new OrpheSessionRecorder.PayloadDelta();
+            int chunkRecords = 0;
+            while (inflated.hasRemaining()) {
+                final int length = inflated.getShort() & 0xFFFF;
+                micros += getVarint(inflated);
+                final byte[] payload = new byte[length];
+                inflated.get(payload);
+                delta.decode(payload, 0, length);
+                final int serialNumber = (65500 + records) & 0xFFFF;
+                assertArrayEquals(packet(serialNumber), payload);
+                assertTrue(micros >= previousMicros);
+                if (baseMicros < 0) {
+                    // 記録の開始から最初のパケットまでの時間はスレッドの起動などで変わる
+                    baseMicros = micros;
+                }
+                assertEquals(records * 20_000L, micros - baseMicros, 1000);
+                previousMicros = micros;
+                records++;
+                chunkRecords++;
+            }
+            assertEquals(OrpheSessionRecorder.FOOTER_MARKER, buffer.getShort() & 0xFFFF);
+            assertEquals(OrpheSessionRecorder.FOOTER_MAGIC, buffer.getInt());
+            assertEquals(chunkRecords, buffer.getInt());
+            assertEquals(chunkStart, buffer.getLong());
+            assertEquals(firstMicros, buffer.getLong());
+            assertEquals(micros, buffer.getLong());
+            assertEquals((65500 + records - chunkRecords) & 0xFFFF, buffer.getShort() & 0xFFFF);
+            assertEquals((65500 + records - 1) & 0xFFFF, buffer.getShort() & 0xFFFF);
+            chunks++;
+        }
+        assertEquals(total, records);
+        assertEquals(recorder.chunkCount(), chunks);
+        assertTrue(chunks > 1);
+    }
+
+    @Test
+    public void footersCanBeWalkedFromTheEnd() throws Exception {
+        final File file = folder.newFile("session.orphe");
+        final OrpheSessionRecorder recorder = new OrpheSessionRecorder(
+                file, OrpheAccRange.range16, OrpheGyroRange.range500, OrpheSidePosition.leftPlantar, 512, 8);
+        for (int i = 0; i < 20; i++) {
+            recorder.append(packet(i), 104, System.nanoTime());
+        }
+        recorder.close();
+
+        final ByteBuffer buffer = read(file);
+        long end = buffer.limit();
+        int records = 0;
+        while (end > OrpheSessionRecorder.HEADER_SIZE) {
+            final int footer = (int) end - OrpheSessionRecorder.FOOTER_SIZE;
+            assertEquals(OrpheSessionRecorder.FOOTER_MARKER, buffer.getShort(footer) & 0xFFFF);
+            assertEquals(OrpheSessionRecorder.FOOTER_MAGIC, buffer.getInt(footer + 2));
+            records += buffer.getInt(footer + 6);
+            end = buffer.getLong(footer + 10);
+        }
+        assertEquals(OrpheSessionRecorder.HEADER_SIZE, end);
+        assertEquals(20, records);
+    }
+
+    @Test
+    public void compressesConsecutivePackets() throws Exception {
+        final File file = folder.newFile("session.orphe");
+        final OrpheSessionRecorder recorder = new OrpheSessionRecorder(
+                file, OrpheAccRange.range16, OrpheGyroRange.range500, OrpheSidePosition.leftPlantar);
+        final OrpheDeviceSimulator simulator = new OrpheDeviceSimulator(55, 1);
+        final long start = System.nanoTime();
+        final int[] count = new int[1];
+        simulator.setSink(value -> recorder.append(value, value.length, start + count[0]++ * 20_000_000L));
+        // 1分間の記録
+        simulator.emit(3000);
+        recorder.close();
+        assertEquals(3000, recorder.recordCount());
+        assertEquals(0, recorder.droppedCount());
+        assertEquals(file.length(), recorder.bytesWritten());
+        assertTrue(recorder.bytesWritten() * 8 < 3000L * 104);
+    }
+
+    @Test
+    public void payloadDeltaRestoresPayloads() {
+        final OrpheSessionRecorder.PayloadDelta encoder = new OrpheSessionRecorder.PayloadDelta();
+        final OrpheSessionRecorder.PayloadDelta decoder = new OrpheSessionRecorder.PayloadDelta();
+        // 長さが違うものや奇数の長さのものも含める
+        final byte[][] payloads = {packet(1), packet(2), Arrays.copyOf(packet(3), 33), packet(65535), Arrays.copyOf(packet(4), 5)};
+        payloads[2][0] = 56;
+        for (byte[] original : payloads) {
+            final byte[] bytes = original.clone();
+            encoder.encode(bytes, 0, bytes.length);
+            decoder.decode(bytes, 0, bytes.length);
+            assertArrayEquals(original, bytes);
+        }
+
+        // サンプルごとに10ずつ増える値。データ中の位置が0のサンプルが最新
+        final byte[] ramp = new byte[104];
+        ramp[0] = 55;
+        for (int s = 0; s < 4; s++) {
+            for (int f = 0; f < 12; f++) {
+                final int value = 1000 + f * 100 + (3 - s) * 10;
+                ramp[8 + s * 24 + f * 2] = (byte) (value >> 8);
+                ramp[8 + s * 24 + f * 2 + 1] = (byte) value;
+            }
+        }
+        encoder.reset();
+        encoder.encode(ramp, 0, 104);
+        assertEquals(55, ramp[0]);
+        for (int k = 0; k < 48; k++) {
+            // 上位バイトが先、下位バイトが後に並ぶ
+            final int zigzag = ((ramp[8 + k] & 0xFF) << 8) | (ramp[8 + 48 + k] & 0xFF);
+            if (k < 24) {
+                // 2つ前までのサンプルから予測できる
+                assertEquals(0, zigzag);
+            } else if (k < 36) {
+                // 1つ前のサンプルとの差（+10）
+                assertEquals(20, zigzag);
+            } else {
+                assertEquals((1000 + (k - 36) * 100) * 2, zigzag);
+            }
+        }
+    }
+
+    @Test
+    public void dropsPayloadThatDoesNotFitInAChunk() throws Exception {
+        final File file = folder.newFile("session.orphe");
+        final OrpheSessionRecorder recorder = new OrpheSessionRecorder(
+                file, OrpheAccRange.range16, OrpheGyroRange.range500, OrpheSidePosition.leftPlantar, 128, 2);
+        recorder.append(new byte[512], 512, System.nanoTime());
+        recorder.close();
+        assertEquals(1, recorder.droppedCount());
+        assertEquals(0, recorder.recordCount());
+        assertEquals(OrpheSessionRecorder.HEADER_SIZE, file.length());
+    }
+}
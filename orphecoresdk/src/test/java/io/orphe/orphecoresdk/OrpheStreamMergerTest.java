@@ -0,0 +1,158 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheStreamMerger]のテスト。
+ */
+public class OrpheStreamMergerTest {
+    /// 組にしたサンプルのシリアルナンバーと時刻を記録する
+    private static class Recorder implements OrpheStreamMerger.Listener {
+        final List<long[]> frames = new ArrayList<>();
+
+        @Override
+        public void onMergedFrame(SensorFrameBatch frame) {
+            final long[] row = new long[frame.size() * 2];
+            for (int i = 0; i < frame.size(); i++) {
+                row[i * 2] = frame.serialNumber[i];
+                row[i * 2 + 1] = frame.timestamp[i];
+            }
+            frames.add(row);
+        }
+    }
+
+    /// 5ms間隔のサンプルをcount個、startMillisから並べる
+    private static SensorFrameBatch batch(int firstSerial, long startMillis, int count) {
+        final SensorFrameBatch batch = new SensorFrameBatch(SensorFrameBatch.MAX_SAMPLES_PER_PACKET);
+        for (int i = 0; i < count; i++) {
+            final int index = batch.append();
+            batch.serialNumber[index] = firstSerial + i;
+            batch.timestamp[index] = startMillis + i * 5L;
+            batch.pressureHeel[index] = firstSerial + i;
+        }
+        return batch;
+    }
+
+    @Test
+    public void pairsNearestSamples() {
+        final Recorder recorder = new Recorder();
+        final OrpheStreamMerger merger = new OrpheStreamMerger(2, 2, 100, recorder);
+        // 右は2ms遅れてサンプリングされ、Notifyも遅れて届く
+        for (int packet = 0; packet < 10; packet++) {
+            merger.add(0, batch(packet * 4, 1000 + packet * 20L, 4));
+            merger.add(1, batch(500 + packet * 4, 1002 + packet * 20L, 4));
+        }
+        assertEquals(40, recorder.frames.size());
+        for (int i = 0; i < recorder.frames.size(); i++) {
+            final long[] frame = recorder.frames.get(i);
+            assertEquals(i, frame[0]);
+            assertEquals(500 + i, frame[2]);
+            assertEquals(2, frame[3] - frame[1]);
+        }
+        assertEquals(40, merger.mergedCount());
+        assertEquals(0, merger.droppedCount());
+        assertEquals(2.0, merger.alignmentError().averageMillis(), 1e-9);
+        assertEquals(2.0, merger.alignmentError().maxMillis(), 1e-9);
+    }
+
+    @Test
+    public void waitsForOtherStream() {
+        final Recorder recorder = new Recorder();
+        final OrpheStreamMerger merger = new OrpheStreamMerger(2, 2, 100, recorder);
+        merger.add(0, batch(0, 1000, 8));
+        assertEquals(0, recorder.frames.size());
+        assertEquals(8, merger.pendingCount(0));
+        merger.add(1, batch(100, 1001, 4));
+        // 右の最後のサンプル（1016ms）以前の4つが組になる
+        assertEquals(4, recorder.frames.size());
+        merger.add(1, batch(104, 1021, 4));
+        assertEquals(8, recorder.frames.size());
+        assertEquals(0, merger.pendingCount(0));
+    }
+
+    @Test
+    public void dropsSamplesWithoutPartner() {
+        final Recorder recorder = new Recorder();
+        final OrpheStreamMerger merger = new OrpheStreamMerger(2, 2, 50, recorder);
+        // 右のパケットが1つ欠落した
+        merger.add(0, batch(0, 1000, 4));
+        merger.add(1, batch(100, 1000, 4));
+        merger.add(0, batch(4, 1020, 4));
+        merger.add(0, batch(8, 1040, 4));
+        merger.add(1, batch(108, 1040, 4));
+        assertEquals(8, recorder.frames.size());
+        assertEquals(4, merger.droppedCount());
+        assertEquals(0, merger.alignmentError().maxMillis(), 1e-9);
+    }
+
+    @Test
+    public void latencyIsBounded() {
+        final Recorder recorder = new Recorder();
+        final OrpheStreamMerger merger = new OrpheStreamMerger(2, 2, 50, recorder);
+        merger.add(1, batch(100, 1000, 1));
+        // 右が止まっても、左が50ms以上進めば待つのをやめる
+        for (int packet = 0; packet < 5; packet++) {
+            merger.add(0, batch(packet * 4, 1000 + packet * 20L, 4));
+        }
+        assertEquals(1, recorder.frames.size());
+        assertTrue(merger.pendingCount(0) <= 50 / 5 + 1);
+        // 追加したサンプルはすべて組になったか、捨てられたか、待っている
+        assertEquals(21, merger.mergedCount() * 2 + merger.droppedCount() + merger.pendingCount(0) + merger.pendingCount(1));
+    }
+
+    @Test
+    public void keepsBoundedBufferWhenReferenceStops() {
+        final Recorder recorder = new Recorder();
+        final OrpheStreamMerger merger = new OrpheStreamMerger(2, 2, 50, recorder);
+        for (int packet = 0; packet < 1000; packet++) {
+            merger.add(1, batch(packet * 4, 1000 + packet * 20L, 4));
+        }
+        assertEquals(0, recorder.frames.size());
+        assertEquals(4000, merger.droppedCount() + merger.pendingCount(1));
+        assertTrue(merger.pendingCount(1) <= 64);
+    }
+
+    @Test
+    public void mergesThreeStreams() {
+        final Recorder recorder = new Recorder();
+        final OrpheStreamMerger merger = new OrpheStreamMerger(3, 2, 100, recorder);
+        for (int packet = 0; packet < 5; packet++) {
+            merger.add(0, batch(packet * 4, 1000 + packet * 20L, 4));
+            merger.add(1, batch(100 + packet * 4, 999 + packet * 20L, 4));
+            merger.add(2, batch(200 + packet * 4, 1001 + packet * 20L, 4));
+        }
+        // 最後の基準のサンプル（1095ms）はストリーム1の1094msより後なので、次のサンプルを待っている
+        assertEquals(19, recorder.frames.size());
+        assertEquals(1, merger.pendingCount(0));
+        assertEquals(6, recorder.frames.get(0).length);
+        assertEquals(2.0, merger.alignmentError().maxMillis(), 1e-9);
+        merger.clear();
+        assertEquals(0, merger.mergedCount());
+        assertEquals(0, merger.pendingCount(2));
+    }
+
+    @Test
+    public void copiesAndRemovesRows() {
+        final SensorFrameBatch source = batch(10, 1000, 8);
+        final SensorFrameBatch target = new SensorFrameBatch(8);
+        target.add(source, 3);
+        assertEquals(13, target.serialNumber[0]);
+        assertEquals(1015, target.timestamp[0]);
+        assertEquals(13f, target.pressureHeel[0], 0f);
+        source.removeFirst(5);
+        assertEquals(3, source.size());
+        assertEquals(15, source.serialNumber[0]);
+        assertEquals(17f, source.pressureHeel[2], 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSingleStream() {
+        new OrpheStreamMerger(1, 2, 100, frame -> {
+        });
+    }
+}
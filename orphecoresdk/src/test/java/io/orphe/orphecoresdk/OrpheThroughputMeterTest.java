@@ -0,0 +1,69 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * [OrpheThroughputMeter]のテスト。
+ */
+public class OrpheThroughputMeterTest {
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    public void averagesAfterFirstPacket() {
+        final OrpheThroughputMeter meter = new OrpheThroughputMeter();
+        assertEquals(0, meter.bytesPerSecond(), 0);
+        meter.record(104, 0);
+        assertEquals(0, meter.bytesPerSecond(), 0);
+        // 10msごとに104バイト
+        for (int i = 1; i <= 100; i++) {
+            meter.record(104, i * 10 * MILLIS);
+        }
+        assertEquals(101, meter.packets());
+        assertEquals(104 * 101, meter.bytes());
+        assertEquals(10400, meter.bytesPerSecond(), 1e-6);
+        assertEquals(10400, meter.peakBytesPerSecond(), 1e-6);
+    }
+
+    @Test
+    public void keepsPeakOfBurst() {
+        final OrpheThroughputMeter meter = new OrpheThroughputMeter();
+        long time = 0;
+        // 最初の1秒は7.5msごとに244バイト
+        for (int i = 0; i <= 200; i++) {
+            meter.record(244, time);
+            time += 7_500_000L;
+        }
+        // その後の2秒は50msごとに104バイト
+        for (int i = 0; i < 40; i++) {
+            meter.record(104, time);
+            time += 50 * MILLIS;
+        }
+        assertEquals(244 / 0.0075, meter.peakBytesPerSecond(), 1);
+        assertTrue(meter.bytesPerSecond() < meter.peakBytesPerSecond());
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        final OrpheThroughputMeter meter = new OrpheThroughputMeter();
+        meter.record(100, 0);
+        meter.record(100, 2000 * MILLIS);
+        meter.reset();
+        assertEquals(0, meter.bytes());
+        assertEquals(0, meter.packets());
+        assertEquals(0, meter.peakBytesPerSecond(), 0);
+        meter.record(50, 5000 * MILLIS);
+        meter.record(50, 5100 * MILLIS);
+        assertEquals(500, meter.bytesPerSecond(), 1e-6);
+    }
+
+    @Test
+    public void linkParametersPayload() {
+        assertEquals(20, OrpheLinkParameters.INITIAL.payloadSize());
+        final OrpheLinkParameters parameters = OrpheLinkParameters.INITIAL.withMtu(OrpheLinkProfile.MTU).withInterval(7.5);
+        assertEquals(244, parameters.payloadSize());
+        assertEquals(7.5, parameters.intervalMillis, 0);
+        assertEquals(OrpheLinkParameters.INITIAL.txPhy, parameters.txPhy);
+    }
+}
@@ -0,0 +1,251 @@
+package io.orphe.orphecoresdk;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * [SensorFrameBatch]への書き込みのテスト。
+ */
+public class SensorFrameBatchTest {
+    private static byte[] corePacket(int serialNumber, long seed) {
+        final byte[] bytes = new byte[8 + 8 * 12];
+        new Random(seed).nextBytes(bytes);
+        bytes[0] = 54;
+        bytes[1] = (byte) (serialNumber >> 8);
+        bytes[2] = (byte) serialNumber;
+        bytes[3] = 12;
+        bytes[4] = 34;
+        bytes[5] = 56;
+        bytes[6] = 0x01;
+        bytes[7] = (byte) 0xF4;
+        return bytes;
+    }
+
+    private static byte[] insolePacket(int serialNumber, long seed) {
+        final byte[] bytes = new byte[8 + 4 * 24];
+        new Random(seed).nextBytes(bytes);
+        bytes[0] = 55;
+        bytes[1] = (byte) (serialNumber >> 8);
+        bytes[2] = (byte) serialNumber;
+        bytes[3] = 23;
+        bytes[4] = 59;
+        bytes[5] = 59;
+        bytes[6] = 0x03;
+        bytes[7] = (byte) 0xE7;
+        return bytes;
+    }
+
+    @Test
+    public void coreValuesMatchObjectDecoder() throws Exception {
+        final byte[] bytes = corePacket(1234, 1);
+        final OrpheSensorValue[] values = OrpheSensorValue.fromBytes(bytes, OrpheSidePosition.leftPlantar, OrpheAccRange.range16, OrpheGyroRange.range2000);
+        final SensorFrameBatch batch = new SensorFrameBatch(16);
+        final int count = OrpheSensorValue.fromBytes(bytes, OrpheAccRange.range16, OrpheGyroRange.range2000, batch);
+
+        assertEquals(values.length, count);
+        assertEquals(count, batch.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(1234, batch.serialNumber[i]);
+            assertEquals(values[i].dataPosition, batch.dataPosition[i]);
+            assertEquals((float) values[i].accX, batch.accX[i], 0f);
+            assertEquals((float) values[i].accY, batch.accY[i], 0f);
+            assertEquals((float) values[i].accZ, batch.accZ[i], 0f);
+            assertEquals((float) values[i].gyroX, batch.gyroX[i], 0f);
+            assertEquals((float) values[i].gyroY, batch.gyroY[i], 0f);
+            assertEquals((float) values[i].gyroZ, batch.gyroZ[i], 0f);
+        }
+        assertEquals((12 * 3600 + 34 * 60 + 56) * 1000L + 500, batch.deviceTime[count - 1]);
+    }
+
+    @Test
+    public void insoleValuesMatchObjectDecoder() throws Exception {
+        final byte[] bytes = insolePacket(65535, 2);
+        final OrpheInsoleValue[] values = OrpheInsoleValue.fromBytes(bytes, OrpheSidePosition.rightPlantar, OrpheAccRange.range16, OrpheGyroRange.range2000);
+        final SensorFrameBatch batch = new SensorFrameBatch(16);
+        final int count = OrpheInsoleValue.fromBytes(bytes, OrpheAccRange.range16, OrpheGyroRange.range2000, batch);
+
+        assertEquals(values.length, count);
+        for (int i = 0; i < count; i++) {
+            assertEquals(65535, batch.serialNumber[i]);
+            assertEquals((float) values[i].accX, batch.accX[i], 0f);
+            assertEquals((float) values[i].gyroZ, batch.gyroZ[i], 0f);
+            assertEquals((float) values[i].pressureToeOutside, batch.pressureToeOutside[i], 0f);
+            assertEquals((float) values[i].pressureMidOutside, batch.pressureMidOutside[i], 0f);
+            assertEquals((float) values[i].pressureToeInside, batch.pressureToeInside[i], 0f);
+            assertEquals((float) values[i].pressureCenter, batch.pressureCenter[i], 0f);
+            assertEquals((float) values[i].pressureMidInside, batch.pressureMidInside[i], 0f);
+            assertEquals((float) values[i].pressureHeel, batch.pressureHeel[i], 0f);
+        }
+        assertEquals(86399999L, batch.deviceTime[count - 1]);
+    }
+
+    @Test
+    public void clockFillsTimestamps() throws Exception {
+        final byte[] bytes = insolePacket(7, 6);
+        final OrpheDeviceClock valueClock = new OrpheDeviceClock(1_700_000_000_000L, 0);
+        final OrpheDeviceClock batchClock = new OrpheDeviceClock(1_700_000_000_000L, 0);
+        valueClock.onPacket(bytes, 10_000_000L);
+        batchClock.onPacket(bytes, 10_000_000L);
+        final OrpheInsoleValue[] values = OrpheInsoleValue.fromBytes(bytes, OrpheSidePosition.rightPlantar, OrpheAccRange.range16, OrpheGyroRange.range2000, valueClock);
+        final SensorFrameBatch batch = new SensorFrameBatch(8);
+        final int count = OrpheInsoleValue.fromBytes(bytes, OrpheAccRange.range16, OrpheGyroRange.range2000, batch, batchClock);
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(values[i].startTime, batch.timestamp[i]);
+        }
+        batch.clear();
+        OrpheInsoleValue.fromBytes(bytes, OrpheAccRange.range16, OrpheGyroRange.range2000, batch);
+        assertEquals(0, batch.timestamp[0]);
+    }
+
+    @Test
+    public void addsDeliveredValues() throws Exception {
+        final byte[] core = corePacket(40000, 7);
+        final byte[] insole = insolePacket(300, 8);
+        final SensorFrameBatch expected = new SensorFrameBatch(8);
+        final SensorFrameBatch actual = new SensorFrameBatch(8);
+
+        OrpheSensorValue.fromBytes(core, OrpheAccRange.range16, OrpheGyroRange.range2000, expected);
+        for (OrpheSensorSample sample : OrpheSensorSample.fromBytes(core, OrpheSidePosition.leftInstep, OrpheAccRange.range16, OrpheGyroRange.range2000, null)) {
+            actual.add(sample);
+        }
+        assertSameFrames(expected, actual);
+
+        expected.clear();
+        actual.clear();
+        OrpheInsoleValue.fromBytes(insole, OrpheAccRange.range16, OrpheGyroRange.range2000, expected);
+        for (OrpheInsoleValue value : OrpheInsoleValue.fromBytes(insole, OrpheSidePosition.leftPlantar, OrpheAccRange.range16, OrpheGyroRange.range2000)) {
+            actual.add(value);
+        }
+        assertSameFrames(expected, actual);
+    }
+
+    private static void assertSameFrames(SensorFrameBatch expected, SensorFrameBatch actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.serialNumber[i], actual.serialNumber[i]);
+            assertEquals(expected.dataPosition[i], actual.dataPosition[i]);
+            assertEquals(expected.deviceTime[i], actual.deviceTime[i]);
+            assertEquals(expected.accX[i], actual.accX[i], 0f);
+            assertEquals(expected.accZ[i], actual.accZ[i], 0f);
+            assertEquals(expected.gyroY[i], actual.gyroY[i], 0f);
+            assertEquals(expected.pressureToeOutside[i], actual.pressureToeOutside[i], 0f);
+            assertEquals(expected.pressureHeel[i], actual.pressureHeel[i], 0f);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void throwsWhenCapacityIsExceeded() {
+        final SensorFrameBatch batch = new SensorFrameBatch(8);
+        OrpheSensorValue.fromBytes(corePacket(1, 3), OrpheAccRange.range16, OrpheGyroRange.range2000, batch);
+        OrpheSensorValue.fromBytes(corePacket(2, 3), OrpheAccRange.range16, OrpheGyroRange.range2000, batch);
+    }
+
+    @Test
+    public void doesNotAllocateInSteadyState() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        final byte[] core = corePacket(100, 4);
+        final byte[] insole = insolePacket(200, 5);
+        final SensorFrameBatch batch = new SensorFrameBatch(8);
+        final long threadId = Thread.currentThread().getId();
+        long checksum = 0;
+        // JITが落ち着くまで回す
+        for (int i = 0; i < 20000; i++) {
+            checksum += decode(core, insole, batch);
+        }
+        final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100000; i++) {
+            checksum += decode(core, insole, batch);
+        }
+        final long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(checksum > 0);
+        // 計測そのもののオーバーヘッドのみ許容する
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void removeFirstShiftsEveryColumn() throws Exception {
+        final SensorFrameBatch batch = new SensorFrameBatch(8);
+        final int count = OrpheInsoleValue.fromBytes(insolePacket(300, 6), OrpheAccRange.range16, OrpheGyroRange.range2000, batch);
+        final SensorFrameBatch expected = new SensorFrameBatch(8);
+        for (int i = 1; i < count; i++) {
+            expected.add(batch, i);
+        }
+        batch.removeFirst(1);
+
+        assertEquals(count - 1, batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(expected.serialNumber[i], batch.serialNumber[i]);
+            assertEquals(expected.dataPosition[i], batch.dataPosition[i]);
+            assertEquals(expected.deviceTime[i], batch.deviceTime[i]);
+            assertEquals(expected.timestamp[i], batch.timestamp[i]);
+            assertEquals(expected.quatW[i], batch.quatW[i], 0f);
+            assertEquals(expected.quatX[i], batch.quatX[i], 0f);
+            assertEquals(expected.quatY[i], batch.quatY[i], 0f);
+            assertEquals(expected.quatZ[i], batch.quatZ[i], 0f);
+            assertEquals(expected.gyroX[i], batch.gyroX[i], 0f);
+            assertEquals(expected.gyroY[i], batch.gyroY[i], 0f);
+            assertEquals(expected.gyroZ[i], batch.gyroZ[i], 0f);
+            assertEquals(expected.accX[i], batch.accX[i], 0f);
+            assertEquals(expected.accY[i], batch.accY[i], 0f);
+            assertEquals(expected.accZ[i], batch.accZ[i], 0f);
+            assertEquals(expected.pressureToeOutside[i], batch.pressureToeOutside[i], 0f);
+            assertEquals(expected.pressureMidOutside[i], batch.pressureMidOutside[i], 0f);
+            assertEquals(expected.pressureToeInside[i], batch.pressureToeInside[i], 0f);
+            assertEquals(expected.pressureCenter[i], batch.pressureCenter[i], 0f);
+            assertEquals(expected.pressureMidInside[i], batch.pressureMidInside[i], 0f);
+            assertEquals(expected.pressureHeel[i], batch.pressureHeel[i], 0f);
+        }
+    }
+
+    @Test
+    public void removeFirstDoesNotAllocate() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        final byte[] insole = insolePacket(200, 5);
+        final SensorFrameBatch batch = new SensorFrameBatch(8);
+        final long threadId = Thread.currentThread().getId();
+        long checksum = 0;
+        // JITが落ち着くまで回す
+        for (int i = 0; i < 20000; i++) {
+            checksum += shift(insole, batch);
+        }
+        final long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100000; i++) {
+            checksum += shift(insole, batch);
+        }
+        final long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(checksum > 0);
+        // 計測そのもののオーバーヘッドのみ許容する
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static int shift(byte[] insole, SensorFrameBatch batch) {
+        batch.clear();
+        OrpheInsoleValue.fromBytes(insole, OrpheAccRange.range16, OrpheGyroRange.range2000, batch);
+        batch.removeFirst(1);
+        return batch.size();
+    }
+
+    private static int decode(byte[] core, byte[] insole, SensorFrameBatch batch) {
+        batch.clear();
+        int count = OrpheSensorValue.fromBytes(core, OrpheAccRange.range16, OrpheGyroRange.range2000, batch);
+        batch.clear();
+        count += OrpheInsoleValue.fromBytes(insole, OrpheAccRange.range16, OrpheGyroRange.range2000, batch);
+        return count;
+    }
+}
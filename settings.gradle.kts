@@ -22,3 +22,4 @@ dependencyResolutionManagement {
 rootProject.name = "ORPHE CORE SDK for Android"
 include(":app")
 include(":orphecoresdk")
+include(":benchmarks")